@@ -0,0 +1,151 @@
+package io.github.marceltanuri.frameworks.restam3.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Generates CSV data in the format of {@code cep.csv}, with the size and the shape of the full
+ * Brazilian CEP base: consecutive CEPs share their city and neighborhood, there are 5,570 cities in 27
+ * states, tens of thousands of neighborhoods and mostly distinct street names. The data is generated
+ * while it is read, so that only the structures loaded from it take memory.
+ *
+ * @author Marcel Tanuri
+ */
+public final class CepDataset {
+
+    /**
+     * The largest number of rows that can be generated.
+     */
+    public static final int MAX_ROWS = (100_000_000 - 1_000_000) / 31;
+
+    private static final String HEADER = "cep;logradouro;complemento;unidade;bairro;localidade;uf;estado;regiao;ibge;gia;ddd;siafi;geolocalizacao_lat;geolocalizacao_lng";
+    private static final String[] UFS = {
+            "AC", "AL", "AP", "AM", "BA", "CE", "DF", "ES", "GO", "MA", "MT", "MS", "MG", "PA",
+            "PB", "PR", "PE", "PI", "RJ", "RN", "RS", "RO", "RR", "SC", "SP", "SE", "TO"};
+    private static final String[] ESTADOS = {
+            "Acre", "Alagoas", "Amapá", "Amazonas", "Bahia", "Ceará", "Distrito Federal", "Espírito Santo",
+            "Goiás", "Maranhão", "Mato Grosso", "Mato Grosso do Sul", "Minas Gerais", "Pará", "Paraíba",
+            "Paraná", "Pernambuco", "Piauí", "Rio de Janeiro", "Rio Grande do Norte", "Rio Grande do Sul",
+            "Rondônia", "Roraima", "Santa Catarina", "São Paulo", "Sergipe", "Tocantins"};
+    private static final String[] REGIOES = {
+            "Norte", "Nordeste", "Norte", "Norte", "Nordeste", "Nordeste", "Centro-Oeste", "Sudeste",
+            "Centro-Oeste", "Nordeste", "Centro-Oeste", "Centro-Oeste", "Sudeste", "Norte", "Nordeste",
+            "Sul", "Nordeste", "Nordeste", "Sudeste", "Nordeste", "Sul", "Norte", "Norte", "Sul", "Sudeste",
+            "Nordeste", "Norte"};
+    private static final String[] STREET_TYPES = {"Rua", "Avenida", "Travessa", "Alameda", "Praça", "Rua", "Rua"};
+    private static final String[] FIRST_NAMES = {
+            "José", "João", "Antônio", "Francisco", "Luís", "Paulo", "Pedro", "Maria", "Ana", "Sebastião",
+            "Joaquim", "Benedito", "Conceição", "Raimundo", "Tereza", "Manoel", "Geraldo", "Aparecida",
+            "Marcelo", "Luíza", "Helena", "Rui", "Otávio", "Cecília", "Inácio", "Mário", "Clóvis", "Irene"};
+    private static final String[] LAST_NAMES = {
+            "da Silva", "dos Santos", "Oliveira", "Souza", "Rodrigues", "Ferreira", "Alves", "Pereira",
+            "Lima", "Gomes", "Costa", "Ribeiro", "Martins", "Carvalho", "Almeida", "Lopes", "Soares",
+            "Fernandes", "Vieira", "Barbosa", "Rocha", "Dias", "Nascimento", "Andrade", "Moreira", "Nunes",
+            "Marques", "Machado", "Mendes", "Freitas", "Cardoso", "Ramos", "Gonçalves", "Santana", "Teixeira"};
+    private static final String[] NEIGHBORHOOD_TYPES = {"Jardim", "Vila", "Parque", "Conjunto Habitacional", "Residencial", "Centro"};
+    private static final String[] COMPLEMENTS = {"lado ímpar", "lado par", "até 999/1000", "de 1001/1002 ao fim", "até 120", "de 121 ao fim"};
+    private static final int CITIES = 5_570;
+    private static final int CEPS_PER_NEIGHBORHOOD = 16;
+
+    private CepDataset() {
+    }
+
+    /**
+     * Gets the CEP of a row of the generated data. CEPs are spread over the whole range, which holds
+     * up to {@value #MAX_ROWS} rows.
+     *
+     * @param row the row
+     * @return the CEP, as eight digits
+     */
+    public static String cep(int row) {
+        return String.format(Locale.ROOT, "%08d", 1_000_000 + row * 31);
+    }
+
+    /**
+     * Opens the generated data, header included.
+     *
+     * @param rows the number of rows
+     * @return a stream of the UTF-8 encoded CSV data
+     */
+    public static InputStream csv(int rows) {
+        if (rows > MAX_ROWS) {
+            throw new IllegalArgumentException("At most " + MAX_ROWS + " rows can be generated: " + rows);
+        }
+        return new InputStream() {
+            private final StringBuilder line = new StringBuilder(256);
+            private byte[] bytes = (HEADER + "\n").getBytes(StandardCharsets.UTF_8);
+            private int position;
+            private int row;
+
+            @Override
+            public int read() {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) {
+                if (position == bytes.length) {
+                    if (row == rows) {
+                        return -1;
+                    }
+                    line.setLength(0);
+                    _appendRow(line, row++);
+                    bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+                    position = 0;
+                }
+                int count = Math.min(length, bytes.length - position);
+                System.arraycopy(bytes, position, buffer, offset, count);
+                position += count;
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Writes the generated data to a file, header included.
+     *
+     * @param file the file
+     * @param rows the number of rows
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path file, int rows) throws IOException {
+        try (InputStream in = csv(rows); OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            in.transferTo(out);
+        }
+    }
+
+    private static void _appendRow(StringBuilder line, int row) {
+        int neighborhood = row / CEPS_PER_NEIGHBORHOOD;
+        int city = (neighborhood / 11) % CITIES;
+        int state = city % UFS.length;
+        String cep = cep(row);
+        _field(line, cep.substring(0, 5) + "-" + cep.substring(5)).append(';');
+        _field(line, STREET_TYPES[row % STREET_TYPES.length] + " " + FIRST_NAMES[(row / 7) % FIRST_NAMES.length]
+                + " " + LAST_NAMES[(row / 3) % LAST_NAMES.length] + (row % 5 == 0 ? "" : " " + (row % 997))).append(';');
+        _field(line, row % 4 == 0 ? COMPLEMENTS[(row / 4) % COMPLEMENTS.length] : "").append(';');
+        _field(line, row % 100 == 0 ? "Edifício " + LAST_NAMES[row % LAST_NAMES.length] : "").append(';');
+        _field(line, NEIGHBORHOOD_TYPES[neighborhood % NEIGHBORHOOD_TYPES.length] + " "
+                + LAST_NAMES[(neighborhood / 6) % LAST_NAMES.length] + " " + (neighborhood % 1999)).append(';');
+        _field(line, "Município " + FIRST_NAMES[city % FIRST_NAMES.length] + " " + (city / FIRST_NAMES.length)).append(';');
+        _field(line, UFS[state]).append(';');
+        _field(line, ESTADOS[state]).append(';');
+        _field(line, REGIOES[state]).append(';');
+        _field(line, Integer.toString(1_100_000 + city * 17)).append(';');
+        _field(line, UFS[state].equals("SP") ? Integer.toString(1000 + city % 645) : "").append(';');
+        _field(line, Integer.toString(11 + state * 3 % 89)).append(';');
+        _field(line, Integer.toString(1000 + city)).append(';');
+        _field(line, String.format(Locale.ROOT, "%.6f", -33.0 + (city % 300) * 0.1 + (row % 1000) * 0.0001)).append(';');
+        _field(line, String.format(Locale.ROOT, "%.6f", -73.0 + (city / 300) * 1.5 + (row % 997) * 0.0001)).append('\n');
+    }
+
+    private static StringBuilder _field(StringBuilder line, String value) {
+        return line.append('"').append(value).append('"');
+    }
+}
@@ -0,0 +1,115 @@
+package io.github.marceltanuri.frameworks.restam3.benchmark;
+
+import io.github.marceltanuri.frameworks.restam3.demo.model.Endereco;
+import io.github.marceltanuri.frameworks.restam3.demo.model.Geolocalizacao;
+import io.github.marceltanuri.frameworks.restam3.demo.repository.CepRepository;
+import io.github.marceltanuri.frameworks.restam3.demo.repository.CepTable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time to load a generated CSV file of two million addresses (see {@link CepDataset})
+ * into a {@link CepRepository}:
+ * <ul>
+ * <li>{@code legacy}: line by line, with {@code String.split} and {@code replaceAll}, as the
+ * repository used to;</li>
+ * <li>{@code sequential}: with the byte-level tokenizer, on a single thread;</li>
+ * <li>{@code parallel}: with the byte-level tokenizer, on all the threads of the common fork/join
+ * pool.</li>
+ * </ul>
+ * Run with:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec@jmh -Djmh.args="CepLoadBenchmark"
+ * </pre>
+ *
+ * @author Marcel Tanuri
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class CepLoadBenchmark {
+
+    @Param({"2000000"})
+    public int rows;
+
+    @Param({"legacy", "sequential", "parallel"})
+    public String loader;
+
+    private Path csv;
+    private ForkJoinPool singleThread;
+
+    @Setup
+    public void setUp() throws IOException {
+        csv = Files.createTempFile("cep", ".csv");
+        CepDataset.write(csv, rows);
+        singleThread = new ForkJoinPool(1);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        singleThread.shutdown();
+        Files.deleteIfExists(csv);
+    }
+
+    @Benchmark
+    public CepRepository load() throws Exception {
+        return switch (loader) {
+            case "legacy" -> new CepRepository(_loadLegacy(csv));
+            // Loading from within a pool forks the parsing tasks in that pool.
+            case "sequential" -> singleThread.submit(() -> CepRepository.load(csv.toString())).get();
+            default -> CepRepository.load(csv.toString());
+        };
+    }
+
+    /**
+     * The loader {@link CepRepository} had before the byte-level tokenizer.
+     */
+    private static CepTable _loadLegacy(Path csv) throws IOException {
+        CepTable.Builder builder = CepTable.builder(1024);
+        try (BufferedReader br = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+            String line;
+            br.readLine(); // Skip header
+            while ((line = br.readLine()) != null) {
+                String[] values = line.split(";");
+                Endereco endereco = new Endereco();
+                endereco.setCep(values[0].replaceAll("\"", "").replaceAll("-", ""));
+                endereco.setLogradouro(values[1].replaceAll("\"", ""));
+                endereco.setComplemento(values[2].replaceAll("\"", ""));
+                endereco.setUnidade(values[3].replaceAll("\"", ""));
+                endereco.setBairro(values[4].replaceAll("\"", ""));
+                endereco.setLocalidade(values[5].replaceAll("\"", ""));
+                endereco.setUf(values[6].replaceAll("\"", ""));
+                endereco.setEstado(values[7].replaceAll("\"", ""));
+                endereco.setRegiao(values[8].replaceAll("\"", ""));
+                endereco.setIbge(values[9].replaceAll("\"", ""));
+                endereco.setGia(values[10].replaceAll("\"", ""));
+                endereco.setDdd(values[11].replaceAll("\"", ""));
+                endereco.setSiafi(values[12].replaceAll("\"", ""));
+                endereco.setGeolocalizacao(new Geolocalizacao(values[13].replaceAll("\"", ""), values[14].replaceAll("\"", "")));
+                builder.add(endereco);
+            }
+        }
+        return builder.build();
+    }
+}
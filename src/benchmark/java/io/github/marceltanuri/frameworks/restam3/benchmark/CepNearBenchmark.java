@@ -0,0 +1,86 @@
+package io.github.marceltanuri.frameworks.restam3.benchmark;
+
+import io.github.marceltanuri.frameworks.restam3.demo.model.Geolocalizacao;
+import io.github.marceltanuri.frameworks.restam3.demo.repository.CepRepository;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures nearest-address searches on a generated base of a million addresses (see
+ * {@link CepDataset}), from random points within a kilometer or so of random addresses, as a routing
+ * service would look up the surroundings of its stops. The time to build the spatial index is
+ * printed once, before measuring.
+ * <p>
+ * Run with:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec@jmh -Djmh.args="CepNearBenchmark"
+ * </pre>
+ *
+ * @author Marcel Tanuri
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class CepNearBenchmark {
+
+    private static final int POINTS = 1 << 12;
+
+    @Param({"1000000"})
+    public int rows;
+
+    @Param({"1", "10", "100"})
+    public int k;
+
+    private CepRepository repository;
+    private double[] latitudes;
+    private double[] longitudes;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        repository = new CepRepository(CepDataset.csv(rows));
+        Random random = new Random(42);
+        latitudes = new double[POINTS];
+        longitudes = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            Geolocalizacao address = repository.findByCep(CepDataset.cep(random.nextInt(rows))).getGeolocalizacao();
+            latitudes[i] = Double.parseDouble(address.getLat()) + 0.02 * (random.nextDouble() - 0.5);
+            longitudes[i] = Double.parseDouble(address.getLng()) + 0.02 * (random.nextDouble() - 0.5);
+        }
+        long start = System.nanoTime();
+        if (repository.findNearest(latitudes[0], longitudes[0], k, Double.POSITIVE_INFINITY).size() != k) {
+            throw new IllegalStateException("The generated CEPs were not loaded");
+        }
+        System.out.printf("%nSpatial index of %,d rows built in %,d ms%n", rows, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Benchmark
+    public List<CepRepository.Neighbor> findNearest() {
+        int point = next++ & (POINTS - 1);
+        return repository.findNearest(latitudes[point], longitudes[point], k, Double.POSITIVE_INFINITY);
+    }
+
+    /** Within 500 m, where some points find fewer than k addresses. */
+    @Benchmark
+    public List<CepRepository.Neighbor> findNearestWithinRadius() {
+        int point = next++ & (POINTS - 1);
+        return repository.findNearest(latitudes[point], longitudes[point], k, 0.5);
+    }
+}
@@ -0,0 +1,93 @@
+package io.github.marceltanuri.frameworks.restam3.benchmark;
+
+import io.github.marceltanuri.frameworks.restam3.demo.model.Endereco;
+import io.github.marceltanuri.frameworks.restam3.demo.repository.CepRepository;
+import io.github.marceltanuri.frameworks.restam3.demo.repository.CepTable;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures reading the addresses of a range of CEPs on a generated base of a million addresses (see
+ * {@link CepDataset}): with a scan of the sorted index, and with a point lookup of every CEP of the
+ * range, as clients had to before range queries.
+ * <p>
+ * Run with:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec@jmh -Djmh.args="CepRangeBenchmark"
+ * </pre>
+ *
+ * @author Marcel Tanuri
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class CepRangeBenchmark {
+
+    private static final int RANGES = 64;
+
+    @Param({"1000000"})
+    public int rows;
+
+    /** The number of addresses in each range. */
+    @Param({"1000"})
+    public int addresses;
+
+    private CepRepository repository;
+    private String[] firstCeps;
+    private String[] lastCeps;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        repository = new CepRepository(CepDataset.csv(rows));
+        Random random = new Random(42);
+        firstCeps = new String[RANGES];
+        lastCeps = new String[RANGES];
+        for (int i = 0; i < RANGES; i++) {
+            int row = random.nextInt(rows - addresses);
+            firstCeps[i] = CepDataset.cep(row);
+            lastCeps[i] = CepDataset.cep(row + addresses - 1);
+        }
+        // Build the sorted index before measuring.
+        if (repository.findRange(firstCeps[0], lastCeps[0], null, addresses).size() != addresses) {
+            throw new IllegalStateException("The generated CEPs were not loaded");
+        }
+    }
+
+    @Benchmark
+    public void scanRange(Blackhole blackhole) {
+        int range = next++ & (RANGES - 1);
+        for (Endereco endereco : repository.findRange(firstCeps[range], lastCeps[range], null, addresses)) {
+            blackhole.consume(endereco);
+        }
+    }
+
+    @Benchmark
+    public void lookUpEachCep(Blackhole blackhole) {
+        int range = next++ & (RANGES - 1);
+        int last = CepTable.parseCep(lastCeps[range]);
+        for (int key = CepTable.parseCep(firstCeps[range]); key <= last; key++) {
+            Endereco endereco = repository.findByCep(CepTable.formatCep(key));
+            if (endereco != null) {
+                blackhole.consume(endereco);
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package io.github.marceltanuri.frameworks.restam3.benchmark;
+
+import io.github.marceltanuri.frameworks.restam3.demo.model.Endereco;
+import io.github.marceltanuri.frameworks.restam3.demo.model.Geolocalizacao;
+import io.github.marceltanuri.frameworks.restam3.demo.repository.CepRepository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures CEP lookups on a generated base of a million addresses (see {@link CepDataset}), with
+ * the {@code HashMap<String, Endereco>} {@link CepRepository} used to hold, with its columnar table
+ * parsed from the CSV, and with the same table mapped from a snapshot file. The time each layout
+ * takes to load and the heap it retains are printed once the data is loaded.
+ * <p>
+ * Run with:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec@jmh -Djmh.args="CepRepositoryBenchmark -prof gc"
+ * </pre>
+ *
+ * @author Marcel Tanuri
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class CepRepositoryBenchmark {
+
+    private static final int LOOKUPS = 1 << 12;
+
+    @Param({"1000000"})
+    public int rows;
+
+    @Param({"hashmap", "columnar", "mapped"})
+    public String layout;
+
+    private Lookup repository;
+    private String[] knownCeps;
+    private int next;
+    // Distinct from the stored keys, like a CEP parsed from a request path, so lookups compare contents.
+    private final String unknownCep = new String("99999999");
+
+    /** CEP lookups, whatever the layout. */
+    private interface Lookup {
+        Endereco findByCep(String cep);
+
+        boolean contains(String cep);
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        Path snapshot = null;
+        if (layout.equals("mapped")) {
+            snapshot = Files.createTempFile("cep", ".idx");
+            snapshot.toFile().deleteOnExit();
+            new CepRepository(CepDataset.csv(rows)).getTable().write(snapshot);
+        }
+
+        long before = _usedHeap();
+        long start = System.nanoTime();
+        repository = switch (layout) {
+            case "hashmap" -> new HashMapRepository(CepDataset.csv(rows));
+            case "columnar" -> new ColumnarRepository(new CepRepository(CepDataset.csv(rows)));
+            default -> new ColumnarRepository(CepRepository.load(snapshot.toString()));
+        };
+        long elapsed = System.nanoTime() - start;
+        long retained = _usedHeap() - before;
+        System.out.printf("%n%s: %,d rows load in %,d ms and retain %,d MB (%,d bytes per row)%n",
+                layout, rows, elapsed / 1_000_000, retained >> 20, retained / rows);
+
+        Random random = new Random(42);
+        knownCeps = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            knownCeps[i] = new String(CepDataset.cep(random.nextInt(rows)));
+        }
+        if (repository.findByCep(knownCeps[0]) == null) {
+            throw new IllegalStateException("The generated CEPs were not loaded");
+        }
+    }
+
+    @Benchmark
+    public Endereco findKnownCep() {
+        return repository.findByCep(knownCeps[next++ & (LOOKUPS - 1)]);
+    }
+
+    /** The index alone, without building the address the columnar layout returns. */
+    @Benchmark
+    public boolean containsKnownCep() {
+        return repository.contains(knownCeps[next++ & (LOOKUPS - 1)]);
+    }
+
+    @Benchmark
+    public Endereco findUnknownCep() {
+        return repository.findByCep(unknownCep);
+    }
+
+    private static long _usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static final class ColumnarRepository implements Lookup {
+
+        private final CepRepository repository;
+
+        ColumnarRepository(CepRepository repository) {
+            this.repository = repository;
+        }
+
+        @Override
+        public Endereco findByCep(String cep) {
+            return repository.findByCep(cep);
+        }
+
+        @Override
+        public boolean contains(String cep) {
+            return repository.getTable().rowOf(cep) >= 0;
+        }
+    }
+
+    /**
+     * The layout {@link CepRepository} had before it became columnar: one {@link Endereco} per row
+     * in a map, loaded the same way.
+     */
+    private static final class HashMapRepository implements Lookup {
+
+        private final Map<String, Endereco> enderecos = new HashMap<>();
+
+        HashMapRepository(InputStream csv) throws IOException {
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8))) {
+                String line;
+                br.readLine(); // Skip header
+                while ((line = br.readLine()) != null) {
+                    String[] values = line.split(";");
+                    Endereco endereco = new Endereco();
+                    endereco.setCep(values[0].replaceAll("\"", "").replaceAll("-", ""));
+                    endereco.setLogradouro(values[1].replaceAll("\"", ""));
+                    endereco.setComplemento(values[2].replaceAll("\"", ""));
+                    endereco.setUnidade(values[3].replaceAll("\"", ""));
+                    endereco.setBairro(values[4].replaceAll("\"", ""));
+                    endereco.setLocalidade(values[5].replaceAll("\"", ""));
+                    endereco.setUf(values[6].replaceAll("\"", ""));
+                    endereco.setEstado(values[7].replaceAll("\"", ""));
+                    endereco.setRegiao(values[8].replaceAll("\"", ""));
+                    endereco.setIbge(values[9].replaceAll("\"", ""));
+                    endereco.setGia(values[10].replaceAll("\"", ""));
+                    endereco.setDdd(values[11].replaceAll("\"", ""));
+                    endereco.setSiafi(values[12].replaceAll("\"", ""));
+                    endereco.setGeolocalizacao(new Geolocalizacao(values[13].replaceAll("\"", ""), values[14].replaceAll("\"", "")));
+                    enderecos.put(endereco.getCep(), endereco);
+                }
+            }
+        }
+
+        @Override
+        public Endereco findByCep(String cep) {
+            return enderecos.get(cep);
+        }
+
+        @Override
+        public boolean contains(String cep) {
+            return enderecos.containsKey(cep);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package io.github.marceltanuri.frameworks.restam3.benchmark;
+
+import io.github.marceltanuri.frameworks.restam3.demo.model.Endereco;
+import io.github.marceltanuri.frameworks.restam3.demo.repository.CepRepository;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures text searches of the top ten addresses on a generated base of a million addresses (see
+ * {@link CepDataset}), with queries made of the street and city names of random addresses:
+ * <ul>
+ * <li>{@code typed}: the whole names;</li>
+ * <li>{@code typing}: the names cut in the middle of a word, as an autocomplete field sends them;</li>
+ * <li>{@code typo}: the whole names, with two letters of a word swapped.</li>
+ * </ul>
+ * The time to build the full-text index is printed once, before measuring.
+ * <p>
+ * Run with:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec@jmh -Djmh.args="CepSearchBenchmark"
+ * </pre>
+ *
+ * @author Marcel Tanuri
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class CepSearchBenchmark {
+
+    private static final int QUERIES = 1 << 10;
+
+    @Param({"1000000"})
+    public int rows;
+
+    @Param({"typed", "typing", "typo"})
+    public String query;
+
+    private CepRepository repository;
+    private String[] queries;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        repository = new CepRepository(CepDataset.csv(rows));
+        Random random = new Random(42);
+        queries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            Endereco address = repository.findByCep(CepDataset.cep(random.nextInt(rows)));
+            String text = address.getLogradouro() + " " + address.getLocalidade();
+            if (query.equals("typing")) {
+                text = text.substring(0, text.length() / 2 + random.nextInt(text.length() / 2));
+                text = text.endsWith(" ") ? text.substring(0, text.length() - 1) : text;
+            } else if (query.equals("typo")) {
+                // Swap two letters inside the second word, the first name of the street.
+                int start = text.indexOf(' ') + 1;
+                char[] chars = text.toCharArray();
+                char swapped = chars[start + 1];
+                chars[start + 1] = chars[start + 2];
+                chars[start + 2] = swapped;
+                text = new String(chars);
+            }
+            queries[i] = text;
+        }
+        long start = System.nanoTime();
+        if (repository.search(queries[0], 10).isEmpty()) {
+            throw new IllegalStateException("The generated CEPs were not loaded");
+        }
+        System.out.printf("%nFull-text index of %,d rows built in %,d ms%n", rows, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Benchmark
+    public List<CepRepository.Match> search() {
+        return repository.search(queries[next++ & (QUERIES - 1)], 10);
+    }
+}
@@ -0,0 +1,92 @@
+package io.github.marceltanuri.frameworks.restam3.benchmark;
+
+import io.github.marceltanuri.frameworks.restam3.demo.model.Endereco;
+import io.github.marceltanuri.frameworks.restam3.demo.model.Geolocalizacao;
+import io.github.marceltanuri.frameworks.restam3.json.CodecJsonParser;
+import io.github.marceltanuri.frameworks.restam3.json.ConfigurableJacksonParser;
+import io.github.marceltanuri.frameworks.restam3.json.JsonParser;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link ConfigurableJacksonParser} against {@link CodecJsonParser}, which uses the codec
+ * generated for {@code @JsonModel} classes, serializing and deserializing the demo's
+ * {@link Endereco}, the payload of every CEP lookup, through the {@code String} methods and
+ * through the byte-oriented ones that the framework uses on the request path.
+ * <p>
+ * Run with:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec@jmh -Djmh.args="JsonBenchmark -prof gc"
+ * </pre>
+ *
+ * @author Marcel Tanuri
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+
+    @Param({"jackson", "codec"})
+    public String implementation;
+
+    private JsonParser parser;
+    private Endereco endereco;
+    private String json;
+    private byte[] jsonBytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        parser = implementation.equals("codec") ? new CodecJsonParser() : new ConfigurableJacksonParser();
+        endereco = new Endereco();
+        endereco.setCep("01001000");
+        endereco.setLogradouro("Praça da Sé");
+        endereco.setComplemento("lado ímpar");
+        endereco.setUnidade("");
+        endereco.setBairro("Sé");
+        endereco.setLocalidade("São Paulo");
+        endereco.setUf("SP");
+        endereco.setEstado("São Paulo");
+        endereco.setRegiao("Sudeste");
+        endereco.setIbge("3550308");
+        endereco.setGia("1004");
+        endereco.setDdd("11");
+        endereco.setSiafi("7107");
+        endereco.setGeolocalizacao(new Geolocalizacao("-23.550520", "-46.633309"));
+        json = parser.toJson(endereco);
+        jsonBytes = parser.toJsonBytes(endereco);
+    }
+
+    @Benchmark
+    public String toJson() throws Exception {
+        return parser.toJson(endereco);
+    }
+
+    @Benchmark
+    public Endereco fromJson() throws Exception {
+        return parser.fromJson(json, Endereco.class);
+    }
+
+    @Benchmark
+    public byte[] toJsonBytes() throws Exception {
+        return parser.toJsonBytes(endereco);
+    }
+
+    @Benchmark
+    public Endereco fromJsonBytes() throws Exception {
+        return parser.fromJson(jsonBytes, Endereco.class);
+    }
+}
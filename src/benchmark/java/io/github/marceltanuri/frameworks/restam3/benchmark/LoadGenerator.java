@@ -0,0 +1,469 @@
+package io.github.marceltanuri.frameworks.restam3.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.github.marceltanuri.frameworks.restam3.Demo;
+import io.github.marceltanuri.frameworks.restam3.HttpServer;
+import io.github.marceltanuri.frameworks.restam3.Router;
+import io.github.marceltanuri.frameworks.restam3.ServerHandle;
+import io.github.marceltanuri.frameworks.restam3.Transport;
+import io.github.marceltanuri.frameworks.restam3.metrics.LatencyHistogram;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end load generator: drives {@code GET /cep/{cep}} requests over real sockets against the
+ * {@link Demo} routes (or any {@link Router}) served in-process, or against an external server, and
+ * reports throughput and latency percentiles as JSON so runs can be compared across releases.
+ * <p>
+ * Each connection is a virtual thread with a raw socket, either kept alive across requests or
+ * opened anew (with {@code Connection: close}) for every request. Two pacing modes are supported:
+ * <ul>
+ *   <li><b>closed loop</b> ({@code rate=0}): every connection sends its next request as soon as the
+ *   previous response arrives. A stalled server then also stalls the client, which silently skips
+ *   the requests it would have sent meanwhile (coordinated omission), so next to the raw latencies
+ *   the report gives percentiles corrected the way HdrHistogram's
+ *   {@code recordValueWithExpectedInterval} does, using the running mean latency of each connection
+ *   as its expected interval between requests;</li>
+ *   <li><b>open loop</b> ({@code rate>0}): requests follow a fixed schedule of {@code rate} requests
+ *   per second spread over the connections, and latency is measured from the time each request was
+ *   due rather than from when it was actually sent, so time spent waiting behind a slow response
+ *   counts against the server.</li>
+ * </ul>
+ * Run with:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:java \
+ *     -Dexec.mainClass=io.github.marceltanuri.frameworks.restam3.benchmark.LoadGenerator \
+ *     -Dconnections=64 -Drate=20000 -Dseconds=30 -Doutput=target/load.json
+ * </pre>
+ * System properties: {@code target} ({@code demo}, the default, or {@code host:port}),
+ * {@code transport}, {@code eventLoops}, {@code connections}, {@code reuse}, {@code rate},
+ * {@code warmupSeconds}, {@code seconds}, {@code ceps} (comma-separated) and {@code output} (a file;
+ * the report goes to standard output otherwise).
+ * Client and server share the machine, so absolute numbers are only comparable between runs on the same box.
+ *
+ * @author Marcel Tanuri
+ */
+public final class LoadGenerator {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 100};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999", "max"};
+
+    private LoadGenerator() {
+    }
+
+    /**
+     * The parameters of a run.
+     *
+     * @param connections   the number of concurrent connections
+     * @param reuse         whether connections are kept alive across requests
+     * @param rate          the total request rate per second of an open-loop run, or 0 for a closed loop
+     * @param warmupSeconds the duration of the unmeasured warmup
+     * @param seconds       the duration of the measurement
+     * @param ceps          the CEPs requested in turn
+     */
+    public record Options(int connections, boolean reuse, int rate, int warmupSeconds, int seconds, List<String> ceps) {
+
+        /**
+         * Reads the options from the system properties described in {@link LoadGenerator}.
+         *
+         * @return the options
+         */
+        public static Options fromSystemProperties() {
+            return new Options(
+                    Integer.getInteger("connections", 64),
+                    Boolean.parseBoolean(System.getProperty("reuse", "true")),
+                    Integer.getInteger("rate", 0),
+                    Integer.getInteger("warmupSeconds", 5),
+                    Integer.getInteger("seconds", 20),
+                    Arrays.asList(System.getProperty("ceps", "01001000,09732530").split(",")));
+        }
+    }
+
+    /**
+     * Runs the load generator with the settings of the system properties.
+     *
+     * @param args ignored; see {@link LoadGenerator} for the system properties
+     * @throws Exception if the server cannot be started or the report cannot be written
+     */
+    public static void main(String[] args) throws Exception {
+        Options options = Options.fromSystemProperties();
+        String target = System.getProperty("target", "demo");
+
+        Map<String, Object> report;
+        if (target.equals("demo")) {
+            Transport transport = Transport.valueOf(System.getProperty("transport", Transport.NIO.name()));
+            int eventLoops = Integer.getInteger("eventLoops", Runtime.getRuntime().availableProcessors());
+            report = run(Demo.router(), transport, eventLoops, options);
+        } else {
+            int colon = target.lastIndexOf(':');
+            report = run(target.substring(0, colon), Integer.parseInt(target.substring(colon + 1)), options);
+        }
+
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        String output = System.getProperty("output");
+        if (output == null) {
+            System.out.println(mapper.writeValueAsString(report));
+        } else {
+            mapper.writeValue(new File(output), report);
+            System.out.println("Report written to " + output);
+        }
+    }
+
+    /**
+     * Serves a router in-process on an ephemeral port and runs the load against it.
+     *
+     * @param router     the routes to serve
+     * @param transport  the server transport
+     * @param eventLoops the number of event loops of the NIO transport
+     * @param options    the run parameters
+     * @return the report, ready to be serialized as JSON
+     * @throws InterruptedException if interrupted while waiting for the run to end
+     */
+    public static Map<String, Object> run(Router router, Transport transport, int eventLoops, Options options)
+            throws InterruptedException {
+        ServerHandle server = HttpServer.create(router)
+                .transport(transport)
+                .eventLoops(eventLoops)
+                .keepAliveTimeout(Duration.ofMinutes(5))
+                .maxRequestsPerConnection(Integer.MAX_VALUE)
+                .backlog(1024)
+                .start(0);
+        try {
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("target", "in-process");
+            report.put("transport", transport.name());
+            report.putAll(run("localhost", server.getPort(), options));
+            return report;
+        } finally {
+            server.stop(Duration.ofSeconds(5));
+        }
+    }
+
+    /**
+     * Runs the load against a server that is already listening.
+     *
+     * @param host    the server host
+     * @param port    the server port
+     * @param options the run parameters
+     * @return the report, ready to be serialized as JSON
+     * @throws InterruptedException if interrupted while waiting for the run to end
+     */
+    public static Map<String, Object> run(String host, int port, Options options) throws InterruptedException {
+        Run run = new Run(host, port, options);
+        CountDownLatch done = new CountDownLatch(options.connections());
+        for (int i = 0; i < options.connections(); i++) {
+            int index = i;
+            Thread.ofVirtual().start(() -> {
+                try {
+                    run.drive(index);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        TimeUnit.SECONDS.sleep(options.warmupSeconds());
+        long start = System.nanoTime();
+        run.measureFromNanos = start;
+        run.measuring = true;
+        TimeUnit.SECONDS.sleep(options.seconds());
+        run.measuring = false;
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        run.running = false;
+        done.await(30, TimeUnit.SECONDS);
+
+        return run.report(elapsed);
+    }
+
+    /**
+     * The state shared by the connections of one run.
+     */
+    private static final class Run {
+        private final String host;
+        private final int port;
+        private final Options options;
+        private final byte[][] requests;
+        private final Semaphore connectPermits = new Semaphore(256); // avoid overflowing the accept backlog
+        private final long startNanos = System.nanoTime();
+
+        private final LatencyHistogram corrected = new LatencyHistogram();
+        private final LatencyHistogram uncorrected = new LatencyHistogram();
+        private final LongAdder[] statusClasses = new LongAdder[6];
+        private final LongAdder errors = new LongAdder();
+
+        private volatile boolean running = true;
+        private volatile boolean measuring;
+        private volatile long measureFromNanos;
+
+        Run(String host, int port, Options options) {
+            this.host = host;
+            this.port = port;
+            this.options = options;
+            this.requests = new byte[options.ceps().size()][];
+            for (int i = 0; i < requests.length; i++) {
+                requests[i] = ("GET /cep/" + options.ceps().get(i).trim() + " HTTP/1.1\r\n"
+                        + "Host: " + host + "\r\n"
+                        + "Accept: application/json\r\n"
+                        + (options.reuse() ? "" : "Connection: close\r\n")
+                        + "\r\n").getBytes(StandardCharsets.US_ASCII);
+            }
+            for (int i = 0; i < statusClasses.length; i++) {
+                statusClasses[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Issues requests on one connection until the run ends.
+         */
+        void drive(int index) {
+            long interval = options.rate() > 0 ? (long) (1e9 * options.connections() / options.rate()) : 0;
+            long due = startNanos + interval * index / options.connections(); // stagger the schedules
+            int next = index;
+            long measuredNanos = 0;
+            long measured = 0;
+            Connection connection = null;
+            while (running) {
+                long sent;
+                if (interval > 0) {
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                        if (!running) {
+                            break;
+                        }
+                    }
+                    sent = System.nanoTime();
+                } else {
+                    sent = System.nanoTime();
+                    due = sent;
+                }
+                try {
+                    if (connection == null) {
+                        connection = _connect();
+                    }
+                    int status = connection.exchange(requests[next++ % requests.length]);
+                    if (!options.reuse()) {
+                        connection.close();
+                        connection = null;
+                    }
+                    long now = System.nanoTime();
+                    if (measuring && due - measureFromNanos >= 0) {
+                        measuredNanos += now - sent;
+                        measured++;
+                        _record(now - due, now - sent, interval > 0 ? 0 : measuredNanos / measured, status);
+                    }
+                } catch (IOException | InterruptedException e) {
+                    if (measuring) {
+                        errors.increment();
+                    }
+                    if (connection != null) {
+                        connection.close();
+                        connection = null;
+                    }
+                }
+                due += interval;
+            }
+            if (connection != null) {
+                connection.close();
+            }
+        }
+
+        private Connection _connect() throws IOException, InterruptedException {
+            connectPermits.acquire();
+            try {
+                return new Connection(host, port);
+            } finally {
+                connectPermits.release();
+            }
+        }
+
+        /**
+         * Records one measured response.
+         *
+         * @param latency        the time since the request was due
+         * @param serviceTime    the time since the request was actually sent
+         * @param expectedNanos  for a closed loop, the usual interval between two requests of the
+         *                       connection, from which the requests it missed are back-filled
+         * @param status         the response status code
+         */
+        private void _record(long latency, long serviceTime, long expectedNanos, int status) {
+            statusClasses[Math.min(status / 100, 5)].increment();
+            uncorrected.record(serviceTime);
+            corrected.record(latency);
+            if (expectedNanos > 0) {
+                // Back-fill the requests a closed-loop client could not send while waiting.
+                for (long missed = latency - expectedNanos; missed >= expectedNanos; missed -= expectedNanos) {
+                    corrected.record(missed);
+                }
+            }
+        }
+
+        Map<String, Object> report(double elapsedSeconds) {
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("host", host);
+            report.put("port", port);
+            report.put("mode", options.rate() > 0 ? "open" : "closed");
+            report.put("connections", options.connections());
+            report.put("connectionReuse", options.reuse());
+            report.put("targetRate", options.rate() > 0 ? options.rate() : null);
+            report.put("warmupSeconds", options.warmupSeconds());
+            report.put("seconds", elapsedSeconds);
+            report.put("ceps", options.ceps());
+
+            long requestCount = uncorrected.getCount();
+            report.put("requests", requestCount);
+            report.put("errors", errors.sum());
+            report.put("throughput", requestCount / elapsedSeconds);
+            Map<String, Long> responses = new LinkedHashMap<>();
+            for (int i = 1; i < statusClasses.length; i++) {
+                responses.put(i + "xx", statusClasses[i].sum());
+            }
+            report.put("responses", responses);
+
+            Map<String, Object> latency = new LinkedHashMap<>();
+            latency.put("unit", "microseconds");
+            if (options.rate() > 0) {
+                latency.put("scheduleIntervalMicros", 1e6 * options.connections() / options.rate());
+            }
+            latency.put("corrected", _percentiles(corrected));
+            latency.put("uncorrected", _percentiles(uncorrected));
+            report.put("latency", latency);
+
+            Map<String, Object> environment = new LinkedHashMap<>();
+            environment.put("timestamp", Instant.now().toString());
+            environment.put("javaVersion", System.getProperty("java.version"));
+            environment.put("javaVm", System.getProperty("java.vm.name"));
+            environment.put("os", System.getProperty("os.name") + " " + System.getProperty("os.version"));
+            environment.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+            report.put("environment", environment);
+            return report;
+        }
+
+        private static Map<String, Object> _percentiles(LatencyHistogram histogram) {
+            Map<String, Object> percentiles = new LinkedHashMap<>();
+            long count = histogram.getCount();
+            percentiles.put("mean", count == 0 ? 0 : histogram.getSumNanos() / count / 1000);
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                percentiles.put(PERCENTILE_NAMES[i], histogram.getValueAtPercentile(PERCENTILES[i]) / 1000);
+            }
+            return percentiles;
+        }
+    }
+
+    /**
+     * A client connection speaking just enough HTTP/1.1 to read responses delimited by
+     * Content-Length, chunked encoding or the end of the stream.
+     */
+    private static final class Connection {
+        private final Socket socket;
+        private final OutputStream out;
+        private final InputStream in;
+        private final StringBuilder line = new StringBuilder();
+
+        Connection(String host, int port) throws IOException {
+            socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(host, port), 30_000);
+                socket.setTcpNoDelay(true);
+                out = socket.getOutputStream();
+                in = new BufferedInputStream(socket.getInputStream());
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Sends one request and reads its response.
+         *
+         * @return the response status code
+         */
+        int exchange(byte[] request) throws IOException {
+            out.write(request);
+            out.flush();
+
+            String statusLine = _readLine();
+            if (statusLine.length() < 12 || !statusLine.startsWith("HTTP/1.")) {
+                throw new IOException("Malformed status line: " + statusLine);
+            }
+            int status = Integer.parseInt(statusLine.substring(9, 12));
+            long contentLength = -1;
+            boolean chunked = false;
+            for (String header = _readLine(); !header.isEmpty(); header = _readLine()) {
+                if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                    contentLength = Long.parseLong(header.substring(15).trim());
+                } else if (header.regionMatches(true, 0, "Transfer-Encoding:", 0, 18)) {
+                    chunked = header.substring(18).trim().equalsIgnoreCase("chunked");
+                }
+            }
+
+            if (chunked) {
+                for (long size = _chunkSize(); size > 0; size = _chunkSize()) {
+                    in.skipNBytes(size);
+                    _readLine();
+                }
+                while (!_readLine().isEmpty()) {
+                    // trailers
+                }
+            } else if (contentLength >= 0) {
+                in.skipNBytes(contentLength);
+            } else {
+                while (in.read() >= 0) {
+                    // delimited by the end of the stream
+                }
+            }
+            return status;
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // nothing left to release
+            }
+        }
+
+        private long _chunkSize() throws IOException {
+            String size = _readLine();
+            int extension = size.indexOf(';');
+            return Long.parseLong((extension < 0 ? size : size.substring(0, extension)).trim(), 16);
+        }
+
+        private String _readLine() throws IOException {
+            line.setLength(0);
+            while (true) {
+                int b = in.read();
+                if (b < 0) {
+                    throw new IOException("Connection closed");
+                }
+                if (b == '\n') {
+                    int length = line.length();
+                    if (length > 0 && line.charAt(length - 1) == '\r') {
+                        line.setLength(length - 1);
+                    }
+                    return line.toString();
+                }
+                line.append((char) b);
+            }
+        }
+    }
+}
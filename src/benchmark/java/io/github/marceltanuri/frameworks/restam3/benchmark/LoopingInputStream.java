@@ -0,0 +1,35 @@
+package io.github.marceltanuri.frameworks.restam3.benchmark;
+
+import java.io.InputStream;
+
+/**
+ * An endless stream replaying the same bytes over and over, standing in for a persistent
+ * connection that keeps sending the same requests, so that a connection-bound parser can be
+ * measured without any I/O.
+ *
+ * @author Marcel Tanuri
+ */
+final class LoopingInputStream extends InputStream {
+
+    private final byte[] data;
+    private int position;
+
+    LoopingInputStream(byte[] data) {
+        this.data = data;
+    }
+
+    @Override
+    public int read() {
+        int b = data[position] & 0xFF;
+        position = (position + 1) % data.length;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        int count = Math.min(len, data.length - position);
+        System.arraycopy(data, position, b, off, count);
+        position = (position + count) % data.length;
+        return count;
+    }
+}
@@ -0,0 +1,114 @@
+package io.github.marceltanuri.frameworks.restam3.benchmark;
+
+import io.github.marceltanuri.frameworks.restam3.http.HttpRequest;
+import io.github.marceltanuri.frameworks.restam3.http.HttpRequestParser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures request parsing on the bytes a browser-like client actually sends, through both entry
+ * points: {@link HttpRequestParser#parse(byte[], int, int)} over an already framed request (the
+ * NIO transport) and {@link HttpRequestParser#next()} reading from a connection stream (the
+ * blocking transport).
+ * <p>
+ * Run with:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec@jmh -Djmh.args="ParserBenchmark -prof gc"
+ * </pre>
+ *
+ * @author Marcel Tanuri
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+    static final byte[] GET = ("GET /cep/01001000?fields=logradouro,bairro HTTP/1.1\r\n"
+            + "Host: api.example.com\r\n"
+            + "User-Agent: Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0 Safari/537.36\r\n"
+            + "Accept: application/json, text/plain, */*\r\n"
+            + "Accept-Encoding: gzip, deflate, br\r\n"
+            + "Accept-Language: pt-BR,pt;q=0.9,en-US;q=0.8,en;q=0.7\r\n"
+            + "Connection: keep-alive\r\n"
+            + "Cookie: session=6f1c2b7e9a3d4c5b8e0f; theme=dark\r\n"
+            + "Referer: https://www.example.com/busca\r\n"
+            + "\r\n").getBytes(StandardCharsets.US_ASCII);
+
+    static final byte[] POST;
+
+    static {
+        String body = "{\"cep\":\"01001000\",\"logradouro\":\"Praça da Sé\",\"complemento\":\"lado ímpar\","
+                + "\"bairro\":\"Sé\",\"localidade\":\"São Paulo\",\"uf\":\"SP\"}";
+        byte[] bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+        String head = "POST /cep HTTP/1.1\r\n"
+                + "Host: api.example.com\r\n"
+                + "User-Agent: curl/8.5.0\r\n"
+                + "Accept: application/json\r\n"
+                + "Content-Type: application/json; charset=utf-8\r\n"
+                + "Content-Length: " + bodyBytes.length + "\r\n"
+                + "\r\n";
+        byte[] headBytes = head.getBytes(StandardCharsets.US_ASCII);
+        POST = new byte[headBytes.length + bodyBytes.length];
+        System.arraycopy(headBytes, 0, POST, 0, headBytes.length);
+        System.arraycopy(bodyBytes, 0, POST, headBytes.length, bodyBytes.length);
+    }
+
+    private HttpRequestParser getConnection;
+    private HttpRequestParser postConnection;
+
+    @Setup
+    public void setUp() {
+        getConnection = new HttpRequestParser(new LoopingInputStream(GET));
+        postConnection = new HttpRequestParser(new LoopingInputStream(POST));
+    }
+
+    @Benchmark
+    public HttpRequest parseFramedGet() throws IOException {
+        return HttpRequestParser.parse(GET, 0, GET.length);
+    }
+
+    @Benchmark
+    public HttpRequest parseFramedPost() throws IOException {
+        return HttpRequestParser.parse(POST, 0, POST.length);
+    }
+
+    /**
+     * Parses and then reads what a typical controller reads: the path, a header and a query parameter.
+     */
+    @Benchmark
+    public void parseFramedGetAndRead(Blackhole blackhole) throws IOException {
+        HttpRequest request = HttpRequestParser.parse(GET, 0, GET.length);
+        blackhole.consume(request.getPath());
+        blackhole.consume(request.getHeader("Accept"));
+        blackhole.consume(request.getQueryParam("fields"));
+    }
+
+    @Benchmark
+    public HttpRequest parseStreamingGet() throws IOException {
+        return getConnection.next();
+    }
+
+    /**
+     * Parses from the connection stream and reads the whole body, as {@code HttpRequest#getBody()} does.
+     */
+    @Benchmark
+    public String parseStreamingPostWithBody() throws IOException {
+        return postConnection.next().getBody();
+    }
+}
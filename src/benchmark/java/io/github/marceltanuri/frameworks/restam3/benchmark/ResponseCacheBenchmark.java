@@ -0,0 +1,131 @@
+package io.github.marceltanuri.frameworks.restam3.benchmark;
+
+import io.github.marceltanuri.frameworks.restam3.ResponseCache;
+import io.github.marceltanuri.frameworks.restam3.Router;
+import io.github.marceltanuri.frameworks.restam3.controller.RestController;
+import io.github.marceltanuri.frameworks.restam3.demo.model.Endereco;
+import io.github.marceltanuri.frameworks.restam3.http.HttpRequest;
+import io.github.marceltanuri.frameworks.restam3.http.HttpRequestParser;
+import io.github.marceltanuri.frameworks.restam3.http.HttpResponse;
+import io.github.marceltanuri.frameworks.restam3.http.HttpStatus;
+import io.github.marceltanuri.frameworks.restam3.json.ConfigurableJacksonParser;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Router#dispatch(HttpRequest)} of a CEP lookup route, with and without a
+ * {@link ResponseCache}, under a Zipf-distributed workload (exponent 1) over 5,000 CEPs, with
+ * a cache that only has room for a tenth of them. The controller serializes an {@link Endereco}
+ * with Jackson on every call, as the demo does. The hit rate is printed after each iteration.
+ * <p>
+ * Run with:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec@jmh -Djmh.args="ResponseCacheBenchmark -prof gc"
+ * </pre>
+ *
+ * @author Marcel Tanuri
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseCacheBenchmark {
+
+    private static final int CEPS = 5_000;
+    private static final int REQUESTS = 1 << 16;
+
+    @Param({"false", "true"})
+    public boolean cached;
+
+    private Router router;
+    private ResponseCache cache;
+    private HttpRequest[] requests;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        router = Router.create().addRoute("/cep/{cep}", new EnderecoController());
+        if (cached) {
+            // Each entry weighs around 600 bytes: room for about 500 of the 5,000 CEPs.
+            cache = ResponseCache.create().maximumWeight(300_000).route("/cep/{cep}", Duration.ofMinutes(10));
+            router.cache(cache);
+        }
+
+        double[] cumulative = new double[CEPS];
+        double total = 0;
+        for (int rank = 0; rank < CEPS; rank++) {
+            total += 1.0 / (rank + 1);
+            cumulative[rank] = total;
+        }
+        Random random = new Random(42);
+        HttpRequest[] byRank = new HttpRequest[CEPS];
+        requests = new HttpRequest[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+            rank = rank < 0 ? -rank - 1 : rank;
+            if (byRank[rank] == null) {
+                byte[] raw = ("GET /cep/" + (10_000_000 + rank * 7919) + " HTTP/1.1\r\nHost: localhost\r\n\r\n")
+                        .getBytes(StandardCharsets.US_ASCII);
+                byRank[rank] = HttpRequestParser.parse(raw, 0, raw.length);
+            }
+            requests[i] = byRank[rank];
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void printHitRate() {
+        if (cache != null) {
+            ResponseCache.Stats stats = cache.getStats();
+            System.out.printf("%nhit rate %.3f, %d entries, %d evictions, %d rejections%n",
+                    stats.hitRate(), stats.entries(), stats.evictions(), stats.rejections());
+        }
+    }
+
+    @Benchmark
+    public HttpResponse dispatch() {
+        return router.dispatch(requests[next++ & (REQUESTS - 1)]);
+    }
+
+    private static final class EnderecoController extends RestController {
+        EnderecoController() {
+            super(new ConfigurableJacksonParser());
+        }
+
+        @Override
+        public HttpResponse handleGet(HttpRequest request) {
+            Endereco endereco = new Endereco();
+            endereco.setCep(request.getPathParam("cep"));
+            endereco.setLogradouro("Praça da Sé");
+            endereco.setComplemento("lado ímpar");
+            endereco.setBairro("Sé");
+            endereco.setLocalidade("São Paulo");
+            endereco.setUf("SP");
+            endereco.setEstado("São Paulo");
+            endereco.setRegiao("Sudeste");
+            endereco.setIbge("3550308");
+            endereco.setDdd("11");
+            return _toJson(endereco)
+                    .map(json -> new HttpResponse(json, HttpStatus.OK))
+                    .orElse(_sendError(HttpStatus.INTERNAL_SERVER_ERROR));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package io.github.marceltanuri.frameworks.restam3.benchmark;
+
+import io.github.marceltanuri.frameworks.restam3.http.HttpRequest;
+import io.github.marceltanuri.frameworks.restam3.http.HttpRequestParser;
+import io.github.marceltanuri.frameworks.restam3.http.HttpResponse;
+import io.github.marceltanuri.frameworks.restam3.http.HttpResponseWriter;
+import io.github.marceltanuri.frameworks.restam3.http.HttpStatus;
+import io.github.marceltanuri.frameworks.restam3.http.ResponseCompressor;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures response encoding through both entry points of {@link HttpResponseWriter}:
+ * {@link HttpResponseWriter#encode(HttpResponse, boolean)} into buffers (the NIO transport) and
+ * {@link HttpResponseWriter#write(HttpResponse, HttpRequest, boolean)} to a buffered connection
+ * stream (the blocking transport), for a small JSON document and a 16 KiB one, and the gzip
+ * compression of a 16 KiB list of addresses by {@link ResponseCompressor}.
+ * <p>
+ * Run with:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec@jmh -Djmh.args="ResponseWriterBenchmark -prof gc"
+ * </pre>
+ *
+ * @author Marcel Tanuri
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseWriterBenchmark {
+
+    private HttpResponse small;
+    private HttpResponse large;
+    private HttpResponse list;
+    private HttpRequest request;
+    private HttpRequest gzipRequest;
+    private ResponseCompressor compressor;
+    private HttpResponseWriter encoder;
+    private HttpResponseWriter writer;
+
+    @Setup
+    public void setUp() throws IOException {
+        small = new HttpResponse("{\"cep\":\"01001000\",\"logradouro\":\"Praça da Sé\",\"localidade\":\"São Paulo\",\"uf\":\"SP\"}",
+                HttpStatus.OK, Map.of("Cache-Control", "max-age=60"));
+        char[] filler = new char[16 * 1024 - 12];
+        Arrays.fill(filler, 'x');
+        large = new HttpResponse("{\"data\":\"" + new String(filler) + "\"}", HttpStatus.OK);
+        StringBuilder addresses = new StringBuilder("[");
+        for (int i = 0; addresses.length() < 16 * 1024; i++) {
+            addresses.append(i == 0 ? "" : ",").append("{\"cep\":\"").append(String.format("%08d", 1001000 + i * 37))
+                    .append("\",\"logradouro\":\"Rua ").append(i).append("\",\"bairro\":\"Sé\",")
+                    .append("\"localidade\":\"São Paulo\",\"uf\":\"SP\"}");
+        }
+        list = new HttpResponse(addresses.append(']').toString(), HttpStatus.OK);
+        request = HttpRequestParser.parse(ParserBenchmark.GET, 0, ParserBenchmark.GET.length);
+        byte[] gzipGet = "GET /address HTTP/1.1\r\nHost: localhost\r\nAccept-Encoding: gzip, deflate, br\r\n\r\n"
+                .getBytes(StandardCharsets.US_ASCII);
+        gzipRequest = HttpRequestParser.parse(gzipGet, 0, gzipGet.length);
+        compressor = ResponseCompressor.create();
+        encoder = new HttpResponseWriter();
+        writer = new HttpResponseWriter(new BufferedOutputStream(OutputStream.nullOutputStream()));
+    }
+
+    @Benchmark
+    public ByteBuffer[] encodeSmall() throws IOException {
+        return encoder.encode(small, true);
+    }
+
+    @Benchmark
+    public ByteBuffer[] encodeLarge() throws IOException {
+        return encoder.encode(large, true);
+    }
+
+    @Benchmark
+    public boolean writeSmall() throws IOException {
+        boolean keepAlive = writer.write(small, request, true);
+        writer.flush();
+        return keepAlive;
+    }
+
+    @Benchmark
+    public boolean writeLarge() throws IOException {
+        boolean keepAlive = writer.write(large, request, true);
+        writer.flush();
+        return keepAlive;
+    }
+
+    @Benchmark
+    public HttpResponse gzipList() {
+        return compressor.compress(gzipRequest, list);
+    }
+}
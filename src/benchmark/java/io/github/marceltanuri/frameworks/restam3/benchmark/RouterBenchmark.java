@@ -0,0 +1,125 @@
+package io.github.marceltanuri.frameworks.restam3.benchmark;
+
+import io.github.marceltanuri.frameworks.restam3.Router;
+import io.github.marceltanuri.frameworks.restam3.controller.RestController;
+import io.github.marceltanuri.frameworks.restam3.http.HttpRequest;
+import io.github.marceltanuri.frameworks.restam3.http.HttpRequestParser;
+import io.github.marceltanuri.frameworks.restam3.http.HttpResponse;
+import io.github.marceltanuri.frameworks.restam3.http.HttpResponseWriter;
+import io.github.marceltanuri.frameworks.restam3.http.HttpStatus;
+import io.github.marceltanuri.frameworks.restam3.json.ConfigurableJacksonParser;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Router#dispatch(HttpRequest)} and the whole
+ * {@link Router#handleRequest(HttpRequestParser, HttpResponseWriter, boolean)} cycle (parse,
+ * route, handle, write) with up to 20,000 registered routes, next to the previous routing
+ * strategy (a linear {@code startsWith} scan over a {@code HashMap}) as a reference.
+ * <p>
+ * Requests are spread over 1,024 paths picked at random among the routes, so lookups do not all
+ * hit the same, cached, branch of the tree.
+ * <p>
+ * Run with:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec@jmh -Djmh.args="RouterBenchmark -prof gc"
+ * </pre>
+ *
+ * @author Marcel Tanuri
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouterBenchmark {
+
+    private static final int PATHS = 1024;
+
+    /** Half the number of registered routes: each resource has an item route and a collection route. */
+    @Param({"10", "1000", "10000"})
+    public int resources;
+
+    private Router router;
+    private Map<String, RestController> legacy;
+    private HttpRequest[] requests;
+    private String[] paths;
+    private HttpRequestParser connection;
+    private HttpResponseWriter writer;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        RestController controller = new NoopController();
+        router = Router.create();
+        legacy = new HashMap<>();
+        for (int i = 0; i < resources; i++) {
+            router.addRoute("/api/v1/resource" + i + "/{id}", controller);
+            router.addRoute("/api/v1/resource" + i + "/{id:int}/items", controller);
+            legacy.put("/api/v1/resource" + i, controller);
+        }
+
+        Random random = new Random(42);
+        requests = new HttpRequest[PATHS];
+        paths = new String[PATHS];
+        ByteArrayOutputStream pipeline = new ByteArrayOutputStream();
+        for (int i = 0; i < PATHS; i++) {
+            paths[i] = "/api/v1/resource" + random.nextInt(resources) + "/" + random.nextInt(100_000)
+                    + (i % 2 == 0 ? "/items" : "");
+            byte[] raw = ("GET " + paths[i] + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+            requests[i] = HttpRequestParser.parse(raw, 0, raw.length);
+            pipeline.write(raw);
+        }
+        connection = new HttpRequestParser(new LoopingInputStream(pipeline.toByteArray()));
+        writer = new HttpResponseWriter(new BufferedOutputStream(OutputStream.nullOutputStream()));
+    }
+
+    @Benchmark
+    public HttpResponse dispatch() {
+        return router.dispatch(requests[next++ & (PATHS - 1)]);
+    }
+
+    @Benchmark
+    public boolean handleRequest() throws IOException {
+        return router.handleRequest(connection, writer, true);
+    }
+
+    @Benchmark
+    public RestController linearScan() {
+        String path = paths[next++ & (PATHS - 1)];
+        return legacy.keySet().stream().filter(path::startsWith).findFirst().map(legacy::get).orElse(null);
+    }
+
+    private static final class NoopController extends RestController {
+        private static final HttpResponse OK = new HttpResponse("{}", HttpStatus.OK);
+
+        NoopController() {
+            super(new ConfigurableJacksonParser());
+        }
+
+        @Override
+        public HttpResponse handleGet(HttpRequest request) {
+            return OK;
+        }
+    }
+}
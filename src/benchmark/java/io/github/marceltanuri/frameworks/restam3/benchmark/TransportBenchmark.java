@@ -0,0 +1,228 @@
+package io.github.marceltanuri.frameworks.restam3.benchmark;
+
+import io.github.marceltanuri.frameworks.restam3.HttpServer;
+import io.github.marceltanuri.frameworks.restam3.Router;
+import io.github.marceltanuri.frameworks.restam3.ServerHandle;
+import io.github.marceltanuri.frameworks.restam3.Transport;
+import io.github.marceltanuri.frameworks.restam3.controller.RestController;
+import io.github.marceltanuri.frameworks.restam3.http.HttpRequest;
+import io.github.marceltanuri.frameworks.restam3.http.HttpResponse;
+import io.github.marceltanuri.frameworks.restam3.http.HttpStatus;
+import io.github.marceltanuri.frameworks.restam3.json.ConfigurableJacksonParser;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compares the {@link Transport#BLOCKING} and {@link Transport#NIO} transports with a large number
+ * of concurrent persistent connections, each one issuing back-to-back requests (closed loop).
+ * <p>
+ * Run with:
+ * <pre>
+ * ulimit -n 65536
+ * mvn -Pbenchmark test-compile exec:java \
+ *     -Dexec.mainClass=io.github.marceltanuri.frameworks.restam3.benchmark.TransportBenchmark \
+ *     -Dconnections=10000 -Dseconds=20
+ * </pre>
+ * Client and server share the machine, so absolute numbers are only comparable between runs on the same box.
+ *
+ * @author Marcel Tanuri
+ */
+public final class TransportBenchmark {
+
+    private static final byte[] REQUEST = "GET /ping HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private TransportBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark for both transports.
+     *
+     * @param args ignored; use the {@code connections}, {@code seconds}, {@code warmupSeconds}
+     *             and {@code eventLoops} system properties instead
+     * @throws Exception if a server cannot be started
+     */
+    public static void main(String[] args) throws Exception {
+        int connections = Integer.getInteger("connections", 10_000);
+        int seconds = Integer.getInteger("seconds", 20);
+        int warmupSeconds = Integer.getInteger("warmupSeconds", 5);
+        int eventLoops = Integer.getInteger("eventLoops", Runtime.getRuntime().availableProcessors());
+
+        List<String> report = new ArrayList<>();
+        for (Transport transport : Transport.values()) {
+            ServerHandle server = _startServer(transport, eventLoops);
+            report.add(_run(transport, server.getPort(), connections, warmupSeconds, seconds));
+            server.stop(Duration.ofSeconds(5));
+        }
+        System.out.println();
+        System.out.printf("%-9s %11s %12s %10s %10s %10s %10s%n",
+                "transport", "connections", "req/s", "p50(us)", "p99(us)", "p999(us)", "errors");
+        report.forEach(System.out::println);
+    }
+
+    private static ServerHandle _startServer(Transport transport, int eventLoops) {
+        Router router = Router.create().addRoute("/ping", new PingController());
+        return HttpServer.create(router)
+                .transport(transport)
+                .eventLoops(eventLoops)
+                .keepAliveTimeout(Duration.ofMinutes(5))
+                .maxRequestsPerConnection(Integer.MAX_VALUE)
+                .backlog(1024)
+                .start(0);
+    }
+
+    private static String _run(Transport transport, int port, int connections, int warmupSeconds, int seconds)
+            throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicBoolean measuring = new AtomicBoolean(false);
+        LongAdder requests = new LongAdder();
+        AtomicInteger errors = new AtomicInteger();
+        AtomicInteger connected = new AtomicInteger();
+        Histogram histogram = new Histogram();
+        CountDownLatch done = new CountDownLatch(connections);
+        Semaphore connectPermits = new Semaphore(256); // avoid overflowing the accept backlog
+
+        for (int i = 0; i < connections; i++) {
+            Thread.ofVirtual().start(() -> {
+                try (Socket socket = new Socket()) {
+                    connectPermits.acquire();
+                    try {
+                        socket.connect(new InetSocketAddress("localhost", port), 30_000);
+                    } finally {
+                        connectPermits.release();
+                    }
+                    socket.setTcpNoDelay(true);
+                    connected.incrementAndGet();
+                    OutputStream out = socket.getOutputStream();
+                    InputStream in = new BufferedInputStream(socket.getInputStream());
+                    while (running.get()) {
+                        long start = System.nanoTime();
+                        out.write(REQUEST);
+                        out.flush();
+                        _readResponse(in);
+                        if (measuring.get()) {
+                            histogram.record(System.nanoTime() - start);
+                            requests.increment();
+                        }
+                    }
+                } catch (Exception e) {
+                    errors.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        TimeUnit.SECONDS.sleep(warmupSeconds);
+        measuring.set(true);
+        long start = System.nanoTime();
+        TimeUnit.SECONDS.sleep(seconds);
+        measuring.set(false);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        running.set(false);
+        done.await(30, TimeUnit.SECONDS);
+
+        return String.format("%-9s %11d %12.0f %10d %10d %10d %10d",
+                transport, connected.get(), requests.sum() / elapsed,
+                histogram.percentile(0.50) / 1000, histogram.percentile(0.99) / 1000,
+                histogram.percentile(0.999) / 1000, errors.get());
+    }
+
+    /**
+     * Reads one response, using Content-Length to find its end.
+     */
+    private static void _readResponse(InputStream in) throws IOException {
+        int contentLength = 0;
+        StringBuilder line = new StringBuilder();
+        while (true) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("Connection closed");
+            }
+            if (b == '\n') {
+                if (line.length() <= 1) {
+                    break;
+                }
+                String header = line.toString();
+                if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                    contentLength = Integer.parseInt(header.substring(15).trim());
+                }
+                line.setLength(0);
+            } else {
+                line.append((char) b);
+            }
+        }
+        in.skipNBytes(contentLength);
+    }
+
+    /**
+     * Log-linear latency histogram (16 sub-buckets per power of two), safe for concurrent recording.
+     */
+    static final class Histogram {
+        private final AtomicLongArray counts = new AtomicLongArray(64 * 16);
+
+        void record(long nanos) {
+            counts.incrementAndGet(_bucket(Math.max(1, nanos)));
+        }
+
+        long percentile(double p) {
+            long total = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                total += counts.get(i);
+            }
+            long rank = (long) Math.ceil(total * p);
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= rank && seen > 0) {
+                    return _upperBound(i);
+                }
+            }
+            return 0;
+        }
+
+        private static int _bucket(long value) {
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int subBucket = exponent < 4 ? 0 : (int) ((value >>> (exponent - 4)) & 15);
+            return exponent * 16 + subBucket;
+        }
+
+        private static long _upperBound(int bucket) {
+            int exponent = bucket / 16;
+            int subBucket = bucket % 16;
+            if (exponent < 4) {
+                return 1L << (exponent + 1);
+            }
+            return (16L + subBucket + 1) << (exponent - 4);
+        }
+    }
+
+    /**
+     * Minimal controller so the benchmark measures the transport rather than application work.
+     */
+    private static final class PingController extends RestController {
+        PingController() {
+            super(new ConfigurableJacksonParser());
+        }
+
+        @Override
+        public HttpResponse handleGet(HttpRequest request) {
+            return new HttpResponse("{\"pong\":true}", HttpStatus.OK);
+        }
+    }
+}
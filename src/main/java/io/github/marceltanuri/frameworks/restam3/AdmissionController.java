@@ -0,0 +1,124 @@
+package io.github.marceltanuri.frameworks.restam3;
+
+import io.github.marceltanuri.frameworks.restam3.http.HttpResponse;
+import io.github.marceltanuri.frameworks.restam3.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounds the number of requests processed at the same time, so that an overloaded server keeps
+ * serving the requests it accepts at a stable latency and sheds the rest quickly.
+ * <p>
+ * A request first tries to take one of the in-flight permits, and takes one at once if it is free,
+ * even while other requests are queued. When none is free it waits in a bounded queue, where the
+ * permits released are handed out in arrival order, for at most the queue timeout; when the queue
+ * is full or the timeout expires, the request is rejected with a pre-built response carrying a
+ * {@code Retry-After} header.
+ *
+ * @author Marcel Tanuri
+ */
+public final class AdmissionController {
+
+    private final int maxInFlightRequests;
+    private final int maxQueuedRequests;
+    private final long queueTimeoutNanos;
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final HttpStatus rejectStatus;
+    private final String retryAfterSeconds;
+
+    /**
+     * Creates a new admission controller.
+     *
+     * @param maxInFlightRequests the maximum number of requests processed at the same time
+     * @param maxQueuedRequests   the maximum number of requests waiting for a permit
+     * @param queueTimeout        how long a queued request waits for a permit before being rejected
+     * @param rejectStatus        the status of the rejection response
+     * @param retryAfter          the delay advertised to rejected clients in {@code Retry-After}
+     */
+    AdmissionController(int maxInFlightRequests, int maxQueuedRequests, Duration queueTimeout,
+                        HttpStatus rejectStatus, Duration retryAfter) {
+        this.maxInFlightRequests = maxInFlightRequests;
+        this.maxQueuedRequests = maxQueuedRequests;
+        this.queueTimeoutNanos = queueTimeout.toNanos();
+        this.permits = new Semaphore(maxInFlightRequests, true);
+        this.rejectStatus = rejectStatus;
+        this.retryAfterSeconds = Long.toString(Math.max(1, (retryAfter.toMillis() + 999) / 1000));
+    }
+
+    /**
+     * Takes an in-flight permit, waiting in the queue if none is free. Meant for threads that may
+     * block, such as the virtual threads that serve the requests of both transports.
+     *
+     * @return {@code true} if the request was admitted and {@link #release()} must be called once
+     * it completes, {@code false} if it must be rejected
+     */
+    public boolean acquire() {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        if (queued.incrementAndGet() > maxQueuedRequests) {
+            queued.decrementAndGet();
+            return false;
+        }
+        try {
+            return permits.tryAcquire(queueTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    /**
+     * Takes an in-flight permit only if one is free right now, without queuing. The blocking
+     * transport calls it first, to flush the responses to earlier pipelined requests before it
+     * waits in {@link #acquire()}.
+     *
+     * @return {@code true} if the request was admitted and {@link #release()} must be called once
+     * it completes, {@code false} if it must be rejected
+     */
+    public boolean tryAcquire() {
+        return permits.tryAcquire();
+    }
+
+    /**
+     * Returns the permit of a completed request.
+     */
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * Builds the response sent to a rejected request.
+     *
+     * @return a response with the configured rejection status and a {@code Retry-After} header
+     */
+    public HttpResponse rejection() {
+        return new HttpResponse("{\"error\": \"" + rejectStatus.getMessage() + "\"}", rejectStatus,
+                Map.of("Retry-After", retryAfterSeconds));
+    }
+
+    /**
+     * Gets the number of requests currently being processed.
+     *
+     * @return the number of permits in use
+     */
+    public int getInFlightRequests() {
+        return maxInFlightRequests - permits.availablePermits();
+    }
+
+    /**
+     * Gets the number of requests currently waiting for a permit.
+     *
+     * @return the queue length
+     */
+    public int getQueuedRequests() {
+        return queued.get();
+    }
+}
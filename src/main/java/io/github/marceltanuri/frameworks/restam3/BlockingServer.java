@@ -0,0 +1,261 @@
+package io.github.marceltanuri.frameworks.restam3;
+
+import io.github.marceltanuri.frameworks.restam3.http.ConnectionLimits;
+import io.github.marceltanuri.frameworks.restam3.http.HttpRequestParser;
+import io.github.marceltanuri.frameworks.restam3.http.HttpResponseWriter;
+import io.github.marceltanuri.frameworks.restam3.metrics.ServerMetrics;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link Transport#BLOCKING} transport: a platform thread accepts connections from a
+ * {@link ServerSocket} and each connection is served by its own Virtual Thread.
+ * <p>
+ * Open connections are tracked so that {@link #stop(Duration)} can close those waiting idle for
+ * their next request while letting the busy ones finish the request in progress.
+ *
+ * @author Marcel Tanuri
+ */
+final class BlockingServer implements TransportServer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BlockingServer.class);
+
+    private static final long DRAIN_POLL_MILLIS = 10;
+
+    private final Router router;
+    private final int maxRequestsPerConnection;
+    private final ConnectionLimits limits;
+    private final AdmissionController admission;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private ServerSocket serverSocket;
+    private ExecutorService executor;
+    private Thread acceptor;
+    private Thread writeWatchdog;
+    private volatile boolean draining;
+
+    BlockingServer(Router router, int maxRequestsPerConnection, ConnectionLimits limits, AdmissionController admission) {
+        this.router = router;
+        this.maxRequestsPerConnection = maxRequestsPerConnection;
+        this.limits = limits;
+        this.admission = admission;
+    }
+
+    @Override
+    public int start(int port, int backlog) throws IOException {
+        serverSocket = new ServerSocket(port, backlog);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        acceptor = Thread.ofPlatform().name("restam3-acceptor").start(this::_acceptLoop);
+        writeWatchdog = Thread.ofPlatform().name("restam3-write-watchdog").daemon().start(this::_watchWrites);
+        LOGGER.info("Server started on port {}", serverSocket.getLocalPort());
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public boolean stop(Duration grace) throws InterruptedException {
+        long deadline = System.nanoTime() + grace.toNanos();
+        draining = true;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            LOGGER.debug("Error closing server socket", e);
+        }
+        acceptor.join();
+        writeWatchdog.interrupt();
+
+        // Busy connections answer their current request with "Connection: close" and end on their
+        // own; idle ones are closed here, again on every poll since a connection may turn idle later.
+        boolean drained;
+        while (true) {
+            connections.stream().filter(connection -> connection.idle).forEach(Connection::close);
+            drained = connections.isEmpty();
+            if (drained || System.nanoTime() - deadline >= 0) {
+                break;
+            }
+            Thread.sleep(DRAIN_POLL_MILLIS);
+        }
+        if (!drained) {
+            LOGGER.warn("Closing {} connection(s) still busy after the grace period", connections.size());
+            connections.forEach(Connection::close);
+        }
+        executor.shutdownNow();
+        executor.awaitTermination(1, TimeUnit.SECONDS);
+        LOGGER.info("Server stopped");
+        return drained;
+    }
+
+    @Override
+    public boolean isAlive() {
+        return acceptor != null && acceptor.isAlive();
+    }
+
+    private void _acceptLoop() {
+        while (!draining) {
+            try {
+                Socket clientSocket = serverSocket.accept();
+                LOGGER.debug("New client connected");
+                executor.submit(() -> _handleClient(clientSocket));
+            } catch (IOException e) {
+                if (!draining) {
+                    LOGGER.error("Error accepting connection", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Blocking socket writes cannot time out, so a client that stops reading its responses would
+     * hold its connection forever; this loop closes the connections whose current write has
+     * stalled for longer than the write timeout.
+     */
+    private void _watchWrites() {
+        long timeoutNanos = limits.writeTimeout().toNanos();
+        long intervalMillis = Math.max(10, Math.min(1000, limits.writeTimeout().toMillis() / 4));
+        try {
+            while (!draining) {
+                Thread.sleep(intervalMillis);
+                long now = System.nanoTime();
+                for (Connection connection : connections) {
+                    long started = connection.writeStartedNanos;
+                    if (started != 0 && now - started > timeoutNanos) {
+                        LOGGER.debug("Closing connection stalled on a response write");
+                        connection.close();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // stopping
+        }
+    }
+
+    /**
+     * Serves the requests of a client connection, delegating each one to the router and
+     * sending the resulting responses in the same order the requests arrived (pipelining).
+     * <p>
+     * This method is executed by a dedicated Virtual Thread for each client connection.
+     *
+     * @param clientSocket The client socket connection.
+     */
+    private void _handleClient(Socket clientSocket) {
+        ServerMetrics metrics = router.getMetrics();
+        Connection connection = new Connection(clientSocket, metrics);
+        connections.add(connection);
+        metrics.getOpenConnections().increment();
+        try (clientSocket) {
+            clientSocket.setTcpNoDelay(true);
+            HttpRequestParser parser = new HttpRequestParser(connection.input(), limits, clientSocket::setSoTimeout);
+            HttpResponseWriter writer = new HttpResponseWriter(new BufferedOutputStream(connection.output()));
+            int served = 0;
+            boolean keepAlive;
+            do {
+                served++;
+                connection.idle = !parser.hasBufferedInput();
+                keepAlive = router.handleRequest(parser, writer, served < maxRequestsPerConnection && !draining, admission);
+            } while (keepAlive);
+            LOGGER.debug("Closing client connection");
+        } catch (IOException e) {
+            if (!draining) {
+                LOGGER.error("Error handling client request", e);
+            }
+        } finally {
+            connections.remove(connection);
+            metrics.getOpenConnections().decrement();
+        }
+    }
+
+    /**
+     * A served connection, idle while it waits for the first byte of its next request.
+     */
+    private static final class Connection {
+
+        final Socket socket;
+        final ServerMetrics metrics;
+        volatile boolean idle;
+        volatile long writeStartedNanos;
+
+        Connection(Socket socket, ServerMetrics metrics) {
+            this.socket = socket;
+            this.metrics = metrics;
+        }
+
+        /**
+         * Wraps the socket input so that receiving request bytes marks the connection busy and
+         * is counted in the metrics.
+         */
+        InputStream input() throws IOException {
+            return new FilterInputStream(socket.getInputStream()) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    idle = false;
+                    if (b >= 0) {
+                        metrics.getBytesReceived().increment();
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int read = super.read(b, off, len);
+                    idle = false;
+                    if (read > 0) {
+                        metrics.getBytesReceived().add(read);
+                    }
+                    return read;
+                }
+            };
+        }
+
+        /**
+         * Wraps the socket output so that the write watchdog can see how long a write has been
+         * blocked, and so that sent bytes are counted in the metrics.
+         */
+        OutputStream output() throws IOException {
+            return new FilterOutputStream(socket.getOutputStream()) {
+                @Override
+                public void write(int b) throws IOException {
+                    writeStartedNanos = System.nanoTime();
+                    try {
+                        out.write(b);
+                        metrics.getBytesSent().increment();
+                    } finally {
+                        writeStartedNanos = 0;
+                    }
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    writeStartedNanos = System.nanoTime();
+                    try {
+                        out.write(b, off, len);
+                        metrics.getBytesSent().add(len);
+                    } finally {
+                        writeStartedNanos = 0;
+                    }
+                }
+            };
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+    }
+}
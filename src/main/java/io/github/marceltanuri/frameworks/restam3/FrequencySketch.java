@@ -0,0 +1,109 @@
+package io.github.marceltanuri.frameworks.restam3;
+
+/**
+ * A count-min sketch estimating how often keys were requested recently, the popularity filter of
+ * TinyLFU admission.
+ * <p>
+ * Each key has four 4-bit counters, in words picked by four hash functions, and its estimate is
+ * the smallest of them. Sixteen counters are packed per 64-bit word and the table has about one
+ * word per expected entry, so the whole sketch costs around 8 bytes per entry. Once the
+ * number of increments reaches ten times the width of the sketch, every counter is halved, so the
+ * estimates follow a changing popularity instead of saturating.
+ * <p>
+ * Updates are not synchronized: under contention an increment may occasionally be lost, which only
+ * makes an estimate slightly lower and is harmless for admission decisions.
+ *
+ * @author Marcel Tanuri
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_COUNT = 15;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * Creates a sketch.
+     *
+     * @param expectedEntries the number of entries the cache is expected to hold
+     */
+    FrequencySketch(int expectedEntries) {
+        int width = Integer.highestOneBit(Math.max(1024, Math.min(expectedEntries, 1 << 24)) * 2 - 1);
+        this.table = new long[width];
+        this.tableMask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    /**
+     * Estimates how often a key was counted recently.
+     *
+     * @param keyHash the hash code of the key
+     * @return the estimate, between 0 and 15
+     */
+    int frequency(int keyHash) {
+        int hash = _spread(keyHash);
+        int start = (hash & 3) << 2;
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < 4; i++) {
+            int offset = (start + i) << 2;
+            int count = (int) ((table[_indexOf(hash, i)] >>> offset) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Counts one occurrence of a key.
+     *
+     * @param keyHash the hash code of the key
+     */
+    void increment(int keyHash) {
+        int hash = _spread(keyHash);
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= _incrementAt(_indexOf(hash, i), start + i);
+        }
+        if (added && ++additions >= sampleSize) {
+            _reset();
+        }
+    }
+
+    private boolean _incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = 0xfL << offset;
+        long word = table[index];
+        if ((word & mask) == mask) {
+            return false;
+        }
+        table[index] = word + (1L << offset);
+        return true;
+    }
+
+    /**
+     * Halves every counter, ageing the popularity of all keys at once.
+     */
+    private void _reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions >>>= 1;
+    }
+
+    private int _indexOf(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return (int) h & tableMask;
+    }
+
+    private static int _spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
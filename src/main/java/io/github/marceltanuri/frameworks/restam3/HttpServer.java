@@ -1,12 +1,12 @@
 package io.github.marceltanuri.frameworks.restam3;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+
+import io.github.marceltanuri.frameworks.restam3.http.ConnectionLimits;
+import io.github.marceltanuri.frameworks.restam3.http.HttpStatus;
+import io.github.marceltanuri.frameworks.restam3.nio.NioServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,6 +14,17 @@ import org.slf4j.LoggerFactory;
  * A simple, lightweight HTTP server designed for RESTful APIs.
  * It uses Java's Virtual Threads (available in JDK 21+) to efficiently handle
  * concurrent client connections with minimal resource overhead.
+ * <p>
+ * Connections are persistent (HTTP/1.1 keep-alive): each Virtual Thread serves
+ * requests from its connection in order until the client asks to close it, the
+ * connection stays idle longer than the keep-alive timeout, or the maximum number
+ * of requests per connection is reached.
+ * <p>
+ * Alternatively, {@link Transport#NIO} serves connections from a fixed number of
+ * non-blocking {@code Selector} event loops instead of one Virtual Thread per connection.
+ * <p>
+ * {@link #start(int)} runs the server in the background and returns a {@link ServerHandle}
+ * reporting readiness and liveness and stopping the server gracefully.
  *
  * @author Marcel Tanuri
  */
@@ -21,7 +32,31 @@ public class HttpServer {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpServer.class);
 
+    private static final int DEFAULT_MAX_REQUESTS_PER_CONNECTION = 1000;
+    private static final int DEFAULT_MAX_QUEUED_REQUESTS = 1000;
+    private static final Duration DEFAULT_QUEUE_TIMEOUT = Duration.ofSeconds(1);
+    private static final Duration DEFAULT_RETRY_AFTER = Duration.ofSeconds(1);
+    private static final int DEFAULT_BACKLOG = 50;
+
     private final Router router;
+    private int maxRequestsPerConnection = DEFAULT_MAX_REQUESTS_PER_CONNECTION;
+    private Duration keepAliveTimeout = ConnectionLimits.DEFAULT.idleTimeout();
+    private Transport transport = Transport.BLOCKING;
+    private int eventLoops = Runtime.getRuntime().availableProcessors();
+    private long maxBodySize = ConnectionLimits.DEFAULT.maxBodySize();
+    private int maxRequestLineLength = ConnectionLimits.DEFAULT.maxRequestLineLength();
+    private int maxHeaderCount = ConnectionLimits.DEFAULT.maxHeaderCount();
+    private int maxHeaderSize = ConnectionLimits.DEFAULT.maxHeaderSize();
+    private Duration requestLineTimeout = ConnectionLimits.DEFAULT.requestLineTimeout();
+    private Duration headersTimeout = ConnectionLimits.DEFAULT.headersTimeout();
+    private Duration bodyTimeout = ConnectionLimits.DEFAULT.bodyTimeout();
+    private Duration writeTimeout = ConnectionLimits.DEFAULT.writeTimeout();
+    private int maxInFlightRequests = Integer.MAX_VALUE;
+    private int maxQueuedRequests = DEFAULT_MAX_QUEUED_REQUESTS;
+    private Duration queueTimeout = DEFAULT_QUEUE_TIMEOUT;
+    private HttpStatus rejectStatus = HttpStatus.SERVICE_UNAVAILABLE;
+    private Duration retryAfter = DEFAULT_RETRY_AFTER;
+    private int backlog = DEFAULT_BACKLOG;
 
     // Private constructor to enforce the use of the static factory method 'create()'.
     private HttpServer(Router router) {
@@ -41,44 +76,276 @@ public class HttpServer {
         return new HttpServer(router);
     }
 
+    /**
+     * Sets the maximum number of requests served on a single connection before it is closed.
+     * <p>
+     * Use {@code 1} to disable keep-alive entirely.
+     *
+     * @param maxRequestsPerConnection The maximum number of requests per connection (default 1000).
+     * @return The current HttpServer instance, allowing further method calls.
+     */
+    public HttpServer maxRequestsPerConnection(int maxRequestsPerConnection) {
+        if (maxRequestsPerConnection < 1) {
+            throw new IllegalArgumentException("maxRequestsPerConnection must be at least 1");
+        }
+        this.maxRequestsPerConnection = maxRequestsPerConnection;
+        return this;
+    }
+
+    /**
+     * Sets how long an idle persistent connection is kept open while waiting for the next request.
+     *
+     * @param keepAliveTimeout The idle timeout (default 5 seconds).
+     * @return The current HttpServer instance, allowing further method calls.
+     */
+    public HttpServer keepAliveTimeout(Duration keepAliveTimeout) {
+        this.keepAliveTimeout = _positive(keepAliveTimeout, "keepAliveTimeout");
+        return this;
+    }
+
+    /**
+     * Sets how long the request line may take to arrive once its first byte was received.
+     * Slow clients exceeding it are answered with {@code 408 Request Timeout} and disconnected.
+     *
+     * @param requestLineTimeout The deadline for the request line (default 10 seconds).
+     * @return The current HttpServer instance, allowing further method calls.
+     */
+    public HttpServer requestLineTimeout(Duration requestLineTimeout) {
+        this.requestLineTimeout = _positive(requestLineTimeout, "requestLineTimeout");
+        return this;
+    }
+
+    /**
+     * Sets how long the headers may take to arrive after the request line.
+     * Slow clients exceeding it are answered with {@code 408 Request Timeout} and disconnected.
+     *
+     * @param headersTimeout The deadline for the headers (default 10 seconds).
+     * @return The current HttpServer instance, allowing further method calls.
+     */
+    public HttpServer headersTimeout(Duration headersTimeout) {
+        this.headersTimeout = _positive(headersTimeout, "headersTimeout");
+        return this;
+    }
+
+    /**
+     * Sets how long the request body may take to arrive after the headers.
+     * Slow clients exceeding it are answered with {@code 408 Request Timeout} and disconnected.
+     *
+     * @param bodyTimeout The deadline for the body (default 30 seconds).
+     * @return The current HttpServer instance, allowing further method calls.
+     */
+    public HttpServer bodyTimeout(Duration bodyTimeout) {
+        this.bodyTimeout = _positive(bodyTimeout, "bodyTimeout");
+        return this;
+    }
+
+    /**
+     * Sets how long writing a response may stall, e.g. because the client stopped reading,
+     * before the connection is closed.
+     *
+     * @param writeTimeout The write timeout (default 30 seconds).
+     * @return The current HttpServer instance, allowing further method calls.
+     */
+    public HttpServer writeTimeout(Duration writeTimeout) {
+        this.writeTimeout = _positive(writeTimeout, "writeTimeout");
+        return this;
+    }
 
     /**
-     * Starts the HTTP server on the specified port.
+     * Sets the maximum length of the request line (method, target and version); longer ones are
+     * answered with {@code 414 URI Too Long}.
+     *
+     * @param maxRequestLineLength The maximum length in bytes (default 8 KiB).
+     * @return The current HttpServer instance, allowing further method calls.
+     */
+    public HttpServer maxRequestLineLength(int maxRequestLineLength) {
+        if (maxRequestLineLength < 16) {
+            throw new IllegalArgumentException("maxRequestLineLength must be at least 16");
+        }
+        this.maxRequestLineLength = maxRequestLineLength;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of header fields and the maximum size of the request line plus
+     * headers; requests exceeding either are answered with {@code 431 Request Header Fields Too Large}.
+     *
+     * @param maxHeaderCount The maximum number of header fields (default 100).
+     * @param maxHeaderSize The maximum size of the request head in bytes (default 32 KiB).
+     * @return The current HttpServer instance, allowing further method calls.
+     */
+    public HttpServer maxHeaders(int maxHeaderCount, int maxHeaderSize) {
+        if (maxHeaderCount < 1 || maxHeaderSize < 64) {
+            throw new IllegalArgumentException("maxHeaderCount must be at least 1 and maxHeaderSize at least 64");
+        }
+        this.maxHeaderCount = maxHeaderCount;
+        this.maxHeaderSize = maxHeaderSize;
+        return this;
+    }
+
+    /**
+     * Selects the transport used to accept and serve connections.
+     *
+     * @param transport The transport (default {@link Transport#BLOCKING}).
+     * @return The current HttpServer instance, allowing further method calls.
+     */
+    public HttpServer transport(Transport transport) {
+        if (transport == null) {
+            throw new IllegalArgumentException("transport must not be null");
+        }
+        this.transport = transport;
+        return this;
+    }
+
+    /**
+     * Sets the number of event loop threads used by the {@link Transport#NIO} transport.
+     *
+     * @param eventLoops The number of event loops (default: number of available processors).
+     * @return The current HttpServer instance, allowing further method calls.
+     */
+    public HttpServer eventLoops(int eventLoops) {
+        if (eventLoops < 1) {
+            throw new IllegalArgumentException("eventLoops must be at least 1");
+        }
+        this.eventLoops = eventLoops;
+        return this;
+    }
+
+    /**
+     * Sets the maximum size of a request body.
      * <p>
-     * The server uses a Virtual Thread executor to handle each incoming connection,
-     * ensuring high concurrency and low thread overhead.
+     * Requests declaring a larger {@code Content-Length} are answered with {@code 413 Payload Too Large}
+     * before any of the body is read; chunked bodies are cut off with the same status as soon as
+     * they exceed the limit. With the {@link Transport#BLOCKING} transport bodies are streamed to
+     * the controller (see {@link io.github.marceltanuri.frameworks.restam3.http.HttpRequest#getBodyReader()}),
+     * while the {@link Transport#NIO} transport holds each body in memory, up to this size.
      *
-     * @param port The port number for the server to listen on.
+     * @param maxBodySize The maximum body size in bytes (default 10 MiB).
+     * @return The current HttpServer instance, allowing further method calls.
      */
-    public void start(int port) {
-        Banner.print();
-        try {
-            ServerSocket serverSocket = new ServerSocket(port);
-            LOGGER.info("Server started on port {}", port);
-            ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
-            while (true) {
-                Socket clientSocket = serverSocket.accept();
-                LOGGER.debug("New client connected");
-                executor.submit(() -> _handleClient(clientSocket));
-            }
-        } catch (IOException e) {
-            LOGGER.error("Error starting server", e);
+    public HttpServer maxBodySize(long maxBodySize) {
+        if (maxBodySize < 0) {
+            throw new IllegalArgumentException("maxBodySize must not be negative");
         }
+        this.maxBodySize = maxBodySize;
+        return this;
     }
 
     /**
-     * Reads the client's request, delegates it to the router, and sends the resulting response.
+     * Sets the maximum number of requests processed at the same time. Further requests wait in a
+     * bounded queue (see {@link #maxQueuedRequests(int)}) or are rejected, so that the requests
+     * being served keep a stable latency under overload.
      * <p>
-     * This method is executed by a dedicated Virtual Thread for each client connection.
+     * Both transports queue the same way: the {@link Transport#NIO} event loops hand each request
+     * over to a virtual thread, which waits for a slot while the loop goes on serving other
+     * connections.
      *
-     * @param clientSocket The client socket connection.
+     * @param maxInFlightRequests The maximum number of concurrent requests (default: unlimited).
+     * @return The current HttpServer instance, allowing further method calls.
      */
-    private void _handleClient(Socket clientSocket) {
-        try (clientSocket) {
-            BufferedReader in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-            router.handleRequest(clientSocket, in);
+    public HttpServer maxInFlightRequests(int maxInFlightRequests) {
+        if (maxInFlightRequests < 1) {
+            throw new IllegalArgumentException("maxInFlightRequests must be at least 1");
+        }
+        this.maxInFlightRequests = maxInFlightRequests;
+        return this;
+    }
+
+    /**
+     * Sets how many requests may wait for a free slot when {@link #maxInFlightRequests(int)} is reached.
+     * Requests arriving when the queue is full are rejected immediately.
+     *
+     * @param maxQueuedRequests The maximum queue length (default 1000); {@code 0} disables queuing.
+     * @return The current HttpServer instance, allowing further method calls.
+     */
+    public HttpServer maxQueuedRequests(int maxQueuedRequests) {
+        if (maxQueuedRequests < 0) {
+            throw new IllegalArgumentException("maxQueuedRequests must not be negative");
+        }
+        this.maxQueuedRequests = maxQueuedRequests;
+        return this;
+    }
+
+    /**
+     * Sets how long a queued request waits for a free slot before being rejected.
+     *
+     * @param queueTimeout The maximum wait (default 1 second).
+     * @return The current HttpServer instance, allowing further method calls.
+     */
+    public HttpServer queueTimeout(Duration queueTimeout) {
+        if (queueTimeout == null || queueTimeout.isNegative()) {
+            throw new IllegalArgumentException("queueTimeout must not be negative");
+        }
+        this.queueTimeout = queueTimeout;
+        return this;
+    }
+
+    /**
+     * Sets the status and the {@code Retry-After} delay of the response sent to rejected requests.
+     *
+     * @param rejectStatus Either {@link HttpStatus#SERVICE_UNAVAILABLE} (default) or {@link HttpStatus#TOO_MANY_REQUESTS}.
+     * @param retryAfter The delay advertised in {@code Retry-After}, rounded up to whole seconds (default 1 second).
+     * @return The current HttpServer instance, allowing further method calls.
+     */
+    public HttpServer rejectWith(HttpStatus rejectStatus, Duration retryAfter) {
+        if (rejectStatus != HttpStatus.SERVICE_UNAVAILABLE && rejectStatus != HttpStatus.TOO_MANY_REQUESTS) {
+            throw new IllegalArgumentException("rejectStatus must be SERVICE_UNAVAILABLE or TOO_MANY_REQUESTS");
+        }
+        if (retryAfter == null || retryAfter.isNegative()) {
+            throw new IllegalArgumentException("retryAfter must not be negative");
+        }
+        this.rejectStatus = rejectStatus;
+        this.retryAfter = retryAfter;
+        return this;
+    }
+
+    /**
+     * Sets the length of the operating system queue of connections not yet accepted by the server.
+     *
+     * @param backlog The listen backlog (default 50).
+     * @return The current HttpServer instance, allowing further method calls.
+     */
+    public HttpServer backlog(int backlog) {
+        if (backlog < 1) {
+            throw new IllegalArgumentException("backlog must be at least 1");
+        }
+        this.backlog = backlog;
+        return this;
+    }
+
+    /**
+     * Starts the HTTP server on the specified port and returns without blocking the calling thread.
+     * <p>
+     * With the default {@link Transport#BLOCKING} transport, the server uses a Virtual Thread
+     * executor to handle each incoming connection, ensuring high concurrency and low thread overhead.
+     * The threads accepting connections are not daemon threads, so the JVM keeps running until the
+     * server is stopped through the returned handle.
+     *
+     * @param port The port number for the server to listen on, or 0 to pick a free port.
+     * @return The handle used to query and stop the running server.
+     * @throws UncheckedIOException If the port cannot be bound.
+     */
+    public ServerHandle start(int port) {
+        Banner.print();
+        AdmissionController admission = maxInFlightRequests == Integer.MAX_VALUE ? null
+                : new AdmissionController(maxInFlightRequests, maxQueuedRequests, queueTimeout, rejectStatus, retryAfter);
+        ConnectionLimits limits = new ConnectionLimits(maxBodySize, maxRequestLineLength, maxHeaderCount, maxHeaderSize,
+                keepAliveTimeout, requestLineTimeout, headersTimeout, bodyTimeout, writeTimeout);
+        TransportServer server = transport == Transport.NIO
+                ? new NioServer(router, eventLoops, maxRequestsPerConnection, limits, admission)
+                : new BlockingServer(router, maxRequestsPerConnection, limits, admission);
+        try {
+            return new ServerHandle(server, server.start(port, backlog));
         } catch (IOException e) {
-            LOGGER.error("Error handling client request", e);
+            LOGGER.error("Error starting server", e);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Duration _positive(Duration value, String name) {
+        if (value == null || value.isNegative() || value.isZero()) {
+            throw new IllegalArgumentException(name + " must be positive");
         }
+        return value;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,434 @@
+package io.github.marceltanuri.frameworks.restam3;
+
+import io.github.marceltanuri.frameworks.restam3.http.HttpRequest;
+import io.github.marceltanuri.frameworks.restam3.http.HttpResponse;
+import io.github.marceltanuri.frameworks.restam3.http.StreamingHttpResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * A size-bounded cache of encoded GET responses, placed by the {@link Router} in front of the
+ * controllers of the routes it is enabled for. It uses a Fluent Interface design for configuration.
+ * <p>
+ * Caching is opt-in per route pattern, each with its own time to live (see
+ * {@link #route(String, Duration)}). Entries are keyed on the request path and query string, on
+ * the values of the headers selected with {@link #varyOn(String...)} and on the negotiated content
+ * coding, and hold the final response, body already serialized and compressed, so a hit skips the
+ * controller, JSON serialization and compression altogether. Only complete responses with a
+ * heuristically cacheable status (200, 203, 300, 301, 404, 410) are stored, and never those marked
+ * {@code Cache-Control: no-store} or {@code private} or setting a cookie.
+ * <p>
+ * The cache is bounded by the total weight of its entries, roughly their size in bytes. When a new
+ * entry does not fit, a few entries are sampled at random and the least frequently used one is the
+ * eviction candidate; following TinyLFU, the new entry is only admitted if it has been requested
+ * more often recently than that candidate, according to a {@link FrequencySketch} that counts
+ * every lookup, cached or not. This keeps a burst of one-off requests from flushing the popular
+ * entries of a skewed (Zipf-like) workload, as a plain LRU would.
+ * <p>
+ * Hits are lock-free; insertions and removals take a short lock. Concurrent misses on the same key
+ * all run the controller, the last response stored winning. Every invalidation advances a
+ * generation counter, and a response is only stored if no invalidation started since the caller
+ * read the generation (see {@link #generation()}), before running the controller: a response
+ * computed from data that was replaced meanwhile is dropped rather than cached for a whole time to
+ * live.
+ *
+ * @author Marcel Tanuri
+ */
+public final class ResponseCache {
+
+    /** The default maximum weight of the cache: 16 MiB. */
+    public static final long DEFAULT_MAXIMUM_WEIGHT = 16L << 20;
+
+    private static final int EVICTION_SAMPLE_SIZE = 8;
+    private static final int ENTRY_OVERHEAD = 160; // entry, map node, response and header objects
+    private static final int AVERAGE_ENTRY_WEIGHT = 512;
+
+    private long maximumWeight = DEFAULT_MAXIMUM_WEIGHT;
+    private final Map<String, Long> ttls = new HashMap<>();
+    private String[] varyHeaders = new String[0];
+    private FrequencySketch sketch = _newSketch(DEFAULT_MAXIMUM_WEIGHT);
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private Entry[] slots = new Entry[64]; // guarded by lock, for random sampling
+    private int slotCount;                 // guarded by lock
+    private long weight;                   // guarded by lock
+    private volatile long generation;      // written with the lock held
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    // Private constructor to enforce the use of the static factory method 'create()'.
+    private ResponseCache() {
+    }
+
+    /**
+     * Creates an empty cache of {@value #DEFAULT_MAXIMUM_WEIGHT} bytes, enabled for no route yet.
+     *
+     * @return a new ResponseCache instance
+     */
+    public static ResponseCache create() {
+        return new ResponseCache();
+    }
+
+    /**
+     * Sets the maximum total weight of the cached responses.
+     *
+     * @param maximumWeight the bound, roughly in bytes (body, key and a fixed per-entry overhead)
+     * @return this cache, for method chaining
+     */
+    public ResponseCache maximumWeight(long maximumWeight) {
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("maximumWeight must be positive");
+        }
+        this.maximumWeight = maximumWeight;
+        this.sketch = _newSketch(maximumWeight);
+        return this;
+    }
+
+    /**
+     * Enables caching for the GET requests of a route.
+     *
+     * @param pattern the route pattern, as registered in the router (e.g., {@code /cep/{cep}})
+     * @param ttl     how long a response stays fresh
+     * @return this cache, for method chaining
+     */
+    public ResponseCache route(String pattern, Duration ttl) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be positive");
+        }
+        ttls.put(pattern, ttl.toNanos());
+        return this;
+    }
+
+    /**
+     * Makes request headers part of the cache key, for responses that depend on them
+     * (e.g., {@code Accept-Language}). The content coding negotiated from {@code Accept-Encoding}
+     * is always part of the key.
+     *
+     * @param headerNames the names of the headers
+     * @return this cache, for method chaining
+     */
+    public ResponseCache varyOn(String... headerNames) {
+        List<String> names = new ArrayList<>(Arrays.asList(varyHeaders));
+        names.addAll(Arrays.asList(headerNames));
+        this.varyHeaders = names.toArray(new String[0]);
+        return this;
+    }
+
+    /**
+     * Removes every cached response for a path, whatever its query string and variant.
+     *
+     * @param path the request path (e.g., {@code /cep/01001000})
+     */
+    public void invalidate(String path) {
+        invalidateIf(target -> target.equals(path) || target.startsWith(path + "?"));
+    }
+
+    /**
+     * Removes the cached responses whose request target matches a predicate.
+     *
+     * @param target tested with the path and query string of each cached request
+     */
+    public void invalidateIf(Predicate<String> target) {
+        // Advanced before the scan: a response stored after it started may already be stale.
+        _advanceGeneration();
+        for (Entry entry : entries.values()) {
+            if (target.test(entry.target)) {
+                _remove(entry);
+            }
+        }
+    }
+
+    /**
+     * Removes every cached response.
+     */
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            generation++;
+            entries.clear();
+            Arrays.fill(slots, 0, slotCount, null);
+            slotCount = 0;
+            weight = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets a snapshot of the cache statistics.
+     *
+     * @return the counts since the cache was created
+     */
+    public Stats getStats() {
+        lock.lock();
+        try {
+            return new Stats(hits.sum(), misses.sum(), evictions.sum(), rejections.sum(), slotCount, weight);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cache statistics.
+     *
+     * @param hits       lookups answered from the cache
+     * @param misses     lookups that had to run the controller, including expired entries
+     * @param evictions  entries removed to make room for new ones
+     * @param rejections responses not admitted because they were less popular than the entries
+     *                   they would have displaced
+     * @param entries    the number of cached responses
+     * @param weight     the total weight of the cached responses
+     */
+    public record Stats(long hits, long misses, long evictions, long rejections, long entries, long weight) {
+
+        /**
+         * Gets the share of lookups answered from the cache.
+         *
+         * @return the hit rate, between 0 and 1
+         */
+        public double hitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+    }
+
+    /**
+     * Gets the time to live of a route's responses.
+     *
+     * @param pattern the pattern of the matched route
+     * @return the time to live in nanoseconds, or -1 if the route is not cached
+     */
+    long ttlNanos(String pattern) {
+        Long ttl = ttls.get(pattern);
+        return ttl != null ? ttl : -1;
+    }
+
+    /**
+     * Builds the cache key of a request.
+     *
+     * @param request  the request
+     * @param encoding the content coding negotiated for the response, or null
+     * @return the key
+     */
+    String key(HttpRequest request, String encoding) {
+        String query = request.getQueryString();
+        if (varyHeaders.length == 0 && (query == null || query.isEmpty())) {
+            return encoding == null ? request.getPath() : request.getPath() + '\n' + encoding;
+        }
+        StringBuilder key = new StringBuilder(64).append(request.getPath());
+        if (query != null && !query.isEmpty()) {
+            key.append('?').append(query);
+        }
+        for (String header : varyHeaders) {
+            String value = request.getHeader(header);
+            key.append('\n').append(value != null ? value : "");
+        }
+        if (encoding != null) {
+            key.append('\n').append(encoding);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Gets the invalidation generation, to be read before computing a response that may be stored.
+     *
+     * @return the number of invalidations started so far
+     */
+    long generation() {
+        return generation;
+    }
+
+    /**
+     * Looks up a fresh response, counting the access in the popularity sketch.
+     *
+     * @param key the cache key
+     * @return the cached response, or null on a miss
+     */
+    HttpResponse get(String key) {
+        sketch.increment(key.hashCode());
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAtNanos - System.nanoTime() > 0) {
+            hits.increment();
+            return entry.response;
+        }
+        misses.increment();
+        if (entry != null) {
+            _remove(entry);
+        }
+        return null;
+    }
+
+    /**
+     * Stores a response if it is cacheable and popular enough to be admitted.
+     *
+     * @param key        the cache key
+     * @param response   the final response
+     * @param ttlNanos   how long the response stays fresh
+     * @param generation the {@link #generation()} read before the response was computed; the
+     *                   response is dropped if an invalidation started since
+     */
+    void put(String key, HttpResponse response, long ttlNanos, long generation) {
+        if (!_isCacheable(response)) {
+            return;
+        }
+        long entryWeight = ENTRY_OVERHEAD + 2L * key.length() + response.getBodyBytes().length;
+        if (entryWeight > maximumWeight) {
+            return;
+        }
+        long now = System.nanoTime();
+        int variant = key.indexOf('\n');
+        String target = variant < 0 ? key : key.substring(0, variant);
+        Entry entry = new Entry(key, target, response, now + ttlNanos, entryWeight);
+        int candidateFrequency = sketch.frequency(key.hashCode());
+
+        lock.lock();
+        try {
+            if (generation != this.generation) {
+                return;
+            }
+            Entry previous = entries.get(key);
+            if (previous != null) {
+                _removeLocked(previous);
+            }
+            while (weight + entryWeight > maximumWeight) {
+                Entry victim = _sampleVictim(now);
+                boolean expired = victim.expiresAtNanos - now <= 0;
+                if (!expired && sketch.frequency(victim.key.hashCode()) >= candidateFrequency) {
+                    rejections.increment();
+                    return;
+                }
+                _removeLocked(victim);
+                if (!expired) {
+                    evictions.increment();
+                }
+            }
+            entries.put(key, entry);
+            if (slotCount == slots.length) {
+                slots = Arrays.copyOf(slots, slotCount * 2);
+            }
+            entry.slot = slotCount;
+            slots[slotCount++] = entry;
+            weight += entryWeight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Picks the eviction candidate among a few random entries: an expired one if any, otherwise
+     * the least frequently used. Must be called with the lock held, on a non-empty cache.
+     */
+    private Entry _sampleVictim(long now) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Entry victim = null;
+        int victimFrequency = Integer.MAX_VALUE;
+        for (int i = 0; i < Math.min(EVICTION_SAMPLE_SIZE, slotCount); i++) {
+            Entry sampled = slots[random.nextInt(slotCount)];
+            if (sampled.expiresAtNanos - now <= 0) {
+                return sampled;
+            }
+            int frequency = sketch.frequency(sampled.key.hashCode());
+            if (frequency < victimFrequency) {
+                victim = sampled;
+                victimFrequency = frequency;
+            }
+        }
+        return victim;
+    }
+
+    private void _advanceGeneration() {
+        lock.lock();
+        try {
+            generation++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void _remove(Entry entry) {
+        lock.lock();
+        try {
+            _removeLocked(entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void _removeLocked(Entry entry) {
+        if (!entries.remove(entry.key, entry)) {
+            return;
+        }
+        Entry last = slots[--slotCount];
+        slots[entry.slot] = last;
+        last.slot = entry.slot;
+        slots[slotCount] = null;
+        weight -= entry.weight;
+    }
+
+    private static boolean _isCacheable(HttpResponse response) {
+        if (response instanceof StreamingHttpResponse) {
+            return false;
+        }
+        switch (response.getStatus().getCode()) {
+            case 200, 203, 300, 301, 404, 410 -> { }
+            default -> {
+                return false;
+            }
+        }
+        Map<String, String> headers = response.getHeaders();
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                String name = header.getKey();
+                if (name.equalsIgnoreCase("Set-Cookie")) {
+                    return false;
+                }
+                if (name.equalsIgnoreCase("Cache-Control") && header.getValue() != null) {
+                    String value = header.getValue().toLowerCase(Locale.ROOT);
+                    if (value.contains("no-store") || value.contains("private")) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private static FrequencySketch _newSketch(long maximumWeight) {
+        return new FrequencySketch((int) Math.min(1 << 24, maximumWeight / AVERAGE_ENTRY_WEIGHT));
+    }
+
+    /**
+     * A cached response.
+     */
+    private static final class Entry {
+        final String key;
+        final String target;
+        final HttpResponse response;
+        final long expiresAtNanos;
+        final long weight;
+        int slot; // guarded by lock
+
+        Entry(String key, String target, HttpResponse response, long expiresAtNanos, long weight) {
+            this.key = key;
+            this.target = target;
+            this.response = response;
+            this.expiresAtNanos = expiresAtNanos;
+            this.weight = weight;
+        }
+    }
+}
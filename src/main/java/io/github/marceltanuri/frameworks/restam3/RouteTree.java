@@ -0,0 +1,367 @@
+package io.github.marceltanuri.frameworks.restam3;
+
+import io.github.marceltanuri.frameworks.restam3.controller.RestController;
+import io.github.marceltanuri.frameworks.restam3.metrics.RouteMetrics;
+import io.github.marceltanuri.frameworks.restam3.metrics.ServerMetrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A radix tree of route patterns, compiled when routes are registered.
+ * <p>
+ * Patterns are made of static text and whole-segment tokens:
+ * <ul>
+ *     <li>{@code {name}} captures one path segment;</li>
+ *     <li>{@code {name:int}} captures one segment made only of digits;</li>
+ *     <li>{@code *} matches any single segment;</li>
+ *     <li>{@code **}, as the last segment, matches the rest of the path (possibly empty).</li>
+ * </ul>
+ * A lookup walks the tree once over the characters of the path, trying static edges before
+ * parameters and wildcards, so its cost depends on the path length and not on the number of
+ * routes. Exact matches win; otherwise the longest purely static route that is a prefix of the
+ * path is used, which keeps the behavior of routes such as {@code /cep} matching {@code /cep/123}.
+ * <p>
+ * Each route carries its {@link RouteMetrics}, so recording a request needs no further lookup.
+ *
+ * @author Marcel Tanuri
+ */
+final class RouteTree {
+
+    private static final int MAX_CAPTURES = 32;
+
+    private final Node root = new Node("");
+    private final ServerMetrics metrics;
+
+    RouteTree(ServerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Registers a route pattern, replacing any controller previously registered for the same pattern.
+     *
+     * @param pattern    the route pattern
+     * @param controller the controller handling matching requests
+     * @throws IllegalArgumentException if the pattern is malformed
+     */
+    void add(String pattern, RestController controller) {
+        List<String> names = new ArrayList<>();
+        Node node = root;
+        int position = 0;
+        boolean isStatic = true;
+        while (position < pattern.length()) {
+            int tokenEnd = _tokenEnd(pattern, position);
+            if (tokenEnd < 0) {
+                int next = _nextToken(pattern, position);
+                node = _insertStatic(node, pattern.substring(position, next));
+                position = next;
+                continue;
+            }
+            isStatic = false;
+            String token = pattern.substring(position, tokenEnd);
+            if (token.equals("**")) {
+                if (tokenEnd != pattern.length()) {
+                    throw new IllegalArgumentException("'**' must be the last segment of " + pattern);
+                }
+                names.add("**");
+                node = node.catchAll != null ? node.catchAll : (node.catchAll = new Node(""));
+            } else if (token.equals("*")) {
+                names.add("*");
+                node = node.wildcard != null ? node.wildcard : (node.wildcard = new Node(""));
+            } else {
+                String name = token.substring(1, token.length() - 1);
+                ParamType type = ParamType.STRING;
+                int colon = name.indexOf(':');
+                if (colon >= 0) {
+                    type = ParamType.of(name.substring(colon + 1), pattern);
+                    name = name.substring(0, colon);
+                }
+                if (name.isEmpty()) {
+                    throw new IllegalArgumentException("Empty parameter name in " + pattern);
+                }
+                names.add(name);
+                node = _paramChild(node, type);
+            }
+            position = tokenEnd;
+        }
+        if (names.size() > MAX_CAPTURES) {
+            throw new IllegalArgumentException("Too many parameters in " + pattern);
+        }
+        RouteMetrics routeMetrics = node.route != null ? node.route.metrics() : metrics.register(pattern);
+        node.route = new Route(pattern, controller, names.toArray(new String[0]), isStatic, routeMetrics);
+    }
+
+    /**
+     * Finds the route for a path.
+     *
+     * @param path the request path, without query string
+     * @return the match, or null if no route applies
+     */
+    RouteMatch match(String path) {
+        Walk walk = new Walk(path);
+        Route exact = walk.match(root, 0, 0);
+        if (exact != null) {
+            return new RouteMatch(exact, Arrays.copyOf(walk.captures, walk.exactCaptureCount * 2));
+        }
+        return walk.prefix != null ? new RouteMatch(walk.prefix, new int[0]) : null;
+    }
+
+    /**
+     * Returns the end of the wildcard or parameter token starting at {@code position}, or -1 if
+     * the text there is static. Tokens always span a whole segment.
+     */
+    private static int _tokenEnd(String pattern, int position) {
+        if (position > 0 && pattern.charAt(position - 1) != '/') {
+            return -1;
+        }
+        int segmentEnd = pattern.indexOf('/', position);
+        if (segmentEnd < 0) {
+            segmentEnd = pattern.length();
+        }
+        String segment = pattern.substring(position, segmentEnd);
+        if (segment.equals("*") || segment.equals("**")
+                || (segment.length() > 2 && segment.charAt(0) == '{' && segment.charAt(segment.length() - 1) == '}')) {
+            return segmentEnd;
+        }
+        if (segment.indexOf('{') >= 0 || segment.indexOf('}') >= 0 || segment.indexOf('*') >= 0) {
+            throw new IllegalArgumentException("Parameters and wildcards must span a whole segment: " + pattern);
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the start of the next token after the static text at {@code position}.
+     */
+    private static int _nextToken(String pattern, int position) {
+        int slash = pattern.indexOf('/', position);
+        while (slash >= 0) {
+            if (_tokenEnd(pattern, slash + 1) >= 0 && slash + 1 < pattern.length()) {
+                return slash + 1;
+            }
+            slash = pattern.indexOf('/', slash + 1);
+        }
+        return pattern.length();
+    }
+
+    private static Node _insertStatic(Node node, String text) {
+        int position = 0;
+        while (position < text.length()) {
+            Node child = node.staticChild(text.charAt(position));
+            if (child == null) {
+                return node.addStaticChild(new Node(text.substring(position)));
+            }
+            int common = _commonPrefix(child.label, text, position);
+            if (common < child.label.length()) {
+                child = node.split(child, common);
+            }
+            node = child;
+            position += common;
+        }
+        return node;
+    }
+
+    private static int _commonPrefix(String label, String text, int offset) {
+        int max = Math.min(label.length(), text.length() - offset);
+        int i = 0;
+        while (i < max && label.charAt(i) == text.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static Node _paramChild(Node node, ParamType type) {
+        for (ParamEdge edge : node.params) {
+            if (edge.type == type) {
+                return edge.node;
+            }
+        }
+        ParamEdge edge = new ParamEdge(type, new Node(""));
+        node.params = Arrays.copyOf(node.params, node.params.length + 1);
+        node.params[node.params.length - 1] = edge;
+        // Narrower types are tried first, so /{id:int} wins over /{slug} for numeric segments.
+        Arrays.sort(node.params, (a, b) -> a.type.ordinal() - b.type.ordinal());
+        return edge.node;
+    }
+
+    /**
+     * A registered route.
+     *
+     * @param pattern    the pattern the route was registered with
+     * @param controller the controller handling the route
+     * @param paramNames the names of the captured values, in path order
+     * @param isStatic   whether the pattern has no parameters or wildcards (eligible for prefix matching)
+     * @param metrics    the latency histograms of the route
+     */
+    record Route(String pattern, RestController controller, String[] paramNames, boolean isStatic,
+                 RouteMetrics metrics) {
+    }
+
+    /**
+     * The result of a lookup: the route and the start/end offsets of each captured value.
+     *
+     * @param route    the matched route
+     * @param captures pairs of offsets into the path, one pair per parameter name
+     */
+    record RouteMatch(Route route, int[] captures) {
+    }
+
+    private enum ParamType {
+        INT, STRING;
+
+        static ParamType of(String name, String pattern) {
+            return switch (name) {
+                case "int" -> INT;
+                case "string" -> STRING;
+                default -> throw new IllegalArgumentException("Unknown parameter type '" + name + "' in " + pattern);
+            };
+        }
+
+        boolean accepts(String path, int start, int end) {
+            if (this == INT) {
+                for (int i = start; i < end; i++) {
+                    char c = path.charAt(i);
+                    if (c < '0' || c > '9') {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    private record ParamEdge(ParamType type, Node node) {
+    }
+
+    private static final class Node {
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private static final ParamEdge[] NO_PARAMS = new ParamEdge[0];
+
+        String label;
+        char[] firstChars = new char[0];
+        Node[] children = NO_CHILDREN;
+        ParamEdge[] params = NO_PARAMS;
+        Node wildcard;
+        Node catchAll;
+        Route route;
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        Node staticChild(char c) {
+            for (int i = 0; i < firstChars.length; i++) {
+                if (firstChars[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node addStaticChild(Node child) {
+            firstChars = Arrays.copyOf(firstChars, firstChars.length + 1);
+            firstChars[firstChars.length - 1] = child.label.charAt(0);
+            children = Arrays.copyOf(children, children.length + 1);
+            children[children.length - 1] = child;
+            return child;
+        }
+
+        /**
+         * Splits a child edge so that its first {@code length} characters become a node of their own.
+         */
+        Node split(Node child, int length) {
+            Node middle = new Node(child.label.substring(0, length));
+            child.label = child.label.substring(length);
+            middle.addStaticChild(child);
+            for (int i = 0; i < children.length; i++) {
+                if (children[i] == child) {
+                    children[i] = middle;
+                }
+            }
+            return middle;
+        }
+    }
+
+    /**
+     * The state of one lookup: captured offsets and the best prefix candidate seen so far.
+     */
+    private static final class Walk {
+        final String path;
+        final int[] captures = new int[MAX_CAPTURES * 2];
+        int exactCaptureCount;
+        Route prefix;
+        int prefixLength = -1;
+
+        Walk(String path) {
+            this.path = path;
+        }
+
+        /**
+         * Matches the rest of the path from {@code position}, the label of {@code node} being consumed.
+         */
+        Route match(Node node, int position, int captureCount) {
+            int length = path.length();
+            if (position == length) {
+                if (node.route != null) {
+                    exactCaptureCount = captureCount;
+                    return node.route;
+                }
+                if (node.catchAll != null && node.catchAll.route != null) {
+                    return _capture(node.catchAll.route, position, length, captureCount);
+                }
+                return null;
+            }
+            if (node.route != null && node.route.isStatic() && position > prefixLength) {
+                prefix = node.route;
+                prefixLength = position;
+            }
+
+            Node child = node.staticChild(path.charAt(position));
+            if (child != null && path.startsWith(child.label, position)) {
+                Route route = match(child, position + child.label.length(), captureCount);
+                if (route != null) {
+                    return route;
+                }
+            }
+
+            if (node.params.length > 0 || node.wildcard != null) {
+                int segmentEnd = path.indexOf('/', position);
+                if (segmentEnd < 0) {
+                    segmentEnd = length;
+                }
+                if (segmentEnd > position && captureCount < MAX_CAPTURES) {
+                    for (ParamEdge edge : node.params) {
+                        if (edge.type.accepts(path, position, segmentEnd)) {
+                            captures[captureCount * 2] = position;
+                            captures[captureCount * 2 + 1] = segmentEnd;
+                            Route route = match(edge.node, segmentEnd, captureCount + 1);
+                            if (route != null) {
+                                return route;
+                            }
+                        }
+                    }
+                    if (node.wildcard != null) {
+                        captures[captureCount * 2] = position;
+                        captures[captureCount * 2 + 1] = segmentEnd;
+                        Route route = match(node.wildcard, segmentEnd, captureCount + 1);
+                        if (route != null) {
+                            return route;
+                        }
+                    }
+                }
+            }
+
+            if (node.catchAll != null && node.catchAll.route != null && captureCount < MAX_CAPTURES) {
+                return _capture(node.catchAll.route, position, length, captureCount);
+            }
+            return null;
+        }
+
+        private Route _capture(Route route, int start, int end, int captureCount) {
+            captures[captureCount * 2] = start;
+            captures[captureCount * 2 + 1] = end;
+            exactCaptureCount = captureCount + 1;
+            return route;
+        }
+    }
+}
@@ -1,31 +1,64 @@
 package io.github.marceltanuri.frameworks.restam3;
 
 import io.github.marceltanuri.frameworks.restam3.controller.RestController;
+import io.github.marceltanuri.frameworks.restam3.http.ConditionalRequests;
+import io.github.marceltanuri.frameworks.restam3.http.HttpMethod;
 import io.github.marceltanuri.frameworks.restam3.http.HttpRequest;
+import io.github.marceltanuri.frameworks.restam3.http.HttpRequestParser;
 import io.github.marceltanuri.frameworks.restam3.http.HttpResponse;
+import io.github.marceltanuri.frameworks.restam3.http.HttpResponseWriter;
+import io.github.marceltanuri.frameworks.restam3.http.ResponseCompressor;
+import io.github.marceltanuri.frameworks.restam3.http.StreamingHttpResponse;
+import io.github.marceltanuri.frameworks.restam3.metrics.MetricsController;
+import io.github.marceltanuri.frameworks.restam3.metrics.RouteMetrics;
+import io.github.marceltanuri.frameworks.restam3.metrics.ServerMetrics;
 
-import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.net.Socket;
-import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
+import java.io.UncheckedIOException;
+import java.net.SocketTimeoutException;
+import java.time.Instant;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import io.github.marceltanuri.frameworks.restam3.http.HttpStatus;
+import io.github.marceltanuri.frameworks.restam3.http.HttpStatusException;
+import io.github.marceltanuri.frameworks.restam3.http.PathParameters;
 
 
 /**
  * A simple router responsible for mapping HTTP request paths to the appropriate {@link RestController}
  * and dispatching the request for processing. It uses a Fluent Interface design for configuration.
+ * <p>
+ * Routes are compiled into a radix tree when they are added, so dispatching costs the same no matter
+ * how many routes are registered. Patterns may contain path parameters ({@code /cep/{cep}},
+ * {@code /users/{id:int}}) and wildcards ({@code /files/*}, {@code /static/**}); captured values are
+ * available through {@link HttpRequest#getPathParam(String)}. A route without parameters also
+ * handles longer paths it is a prefix of, the longest such route winning.
+ * <p>
+ * The router also owns the {@link ServerMetrics} of the server: it records the latency of every
+ * dispatched request under its route and method, and counts every response it writes; the
+ * transports add connection and byte counts. {@link #addMetricsRoute(String)} exposes them.
+ * <p>
+ * With {@link #compression(ResponseCompressor)}, response bodies are compressed as negotiated with
+ * each client before being handed to the transport. With {@link #cache(ResponseCache)}, the final
+ * responses of selected GET routes are cached and served again without calling their controller.
+ * <p>
+ * Successful GET responses carry a strong {@code ETag} computed from their body, or derived from the
+ * version supplied by the controller (see {@link RestController#getVersion(HttpRequest)}), and
+ * conditional requests ({@code If-None-Match}, {@code If-Modified-Since}) whose copy is current are
+ * answered with a bodyless {@code 304 Not Modified}; with a controller-supplied version, before the
+ * controller even builds the response.
  *
  * @author Marcel Tanuri
  */
 public class Router {
 
-    private final Map<String, RestController> routes = new HashMap<>();
+    private final ServerMetrics metrics = new ServerMetrics();
+    private final RouteTree routes = new RouteTree(metrics);
+    private ResponseCompressor compressor;
+    private ResponseCache cache;
 
     // Private constructor to enforce the use of the static factory method 'create()'.
     private Router() {
@@ -48,12 +81,13 @@ public class Router {
      * <p>
      * This method returns the Router instance itself to support method chaining (Fluent Interface).
      *
-     * @param path The route path (e.g., "/api/users").
+     * @param path The route path or pattern (e.g., "/api/users" or "/api/users/{id:int}").
      * @param controller The controller that will handle requests for this path.
      * @return The current Router instance, allowing further method calls.
+     * @throws IllegalArgumentException If the pattern is malformed.
      */
     public Router addRoute(String path, RestController controller) {
-        routes.put(path, controller);
+        routes.add(path, controller);
         return this;
     }
 
@@ -72,60 +106,386 @@ public class Router {
     }
 
     /**
-     * Handles an incoming HTTP request by parsing the request, finding the appropriate
-     * controller based on the path, and dispatching the call to the corresponding HTTP method handler.
+     * Adds a route serving the metrics of this router in the Prometheus text format.
+     * <p>
+     * This method returns the Router instance itself to support method chaining (Fluent Interface).
+     *
+     * @param path The route path (e.g., "/metrics").
+     * @return The current Router instance, allowing further method calls.
+     */
+    public Router addMetricsRoute(String path) {
+        return addRoute(path, new MetricsController(metrics));
+    }
+
+    /**
+     * Enables the compression of response bodies, negotiated from the {@code Accept-Encoding}
+     * header of each request.
+     * <p>
+     * This method returns the Router instance itself to support method chaining (Fluent Interface).
+     *
+     * @param compressor The compressor settings (e.g., {@code ResponseCompressor.create().minSize(1024)}),
+     *                   or null to send bodies uncompressed.
+     * @return The current Router instance, allowing further method calls.
+     */
+    public Router compression(ResponseCompressor compressor) {
+        this.compressor = compressor;
+        return this;
+    }
+
+    /**
+     * Enables a response cache for the GET routes it is configured for (see
+     * {@link ResponseCache#route(String, java.time.Duration)}).
+     * <p>
+     * This method returns the Router instance itself to support method chaining (Fluent Interface).
+     *
+     * @param cache The response cache, or null to disable caching.
+     * @return The current Router instance, allowing further method calls.
+     */
+    public Router cache(ResponseCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    /**
+     * Gets the metrics recorded by this router and by the transports serving it.
+     *
+     * @return The server metrics.
+     */
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Reads the next HTTP request from a persistent connection, dispatches it and writes the response.
+     * <p>
+     * The response is only flushed when no further (pipelined) request is already buffered, so
+     * responses to pipelined requests are written in order and batched into fewer socket writes.
+     *
+     * @param parser The request parser bound to the client connection.
+     * @param writer The response writer bound to the client connection.
+     * @param keepAliveAllowed Whether the server allows the connection to be reused after this request.
+     * @return {@code true} if the connection should be kept open for another request.
+     * @throws IOException If an I/O error occurs while sending the response.
+     */
+    public boolean handleRequest(HttpRequestParser parser, HttpResponseWriter writer, boolean keepAliveAllowed) throws IOException {
+        return handleRequest(parser, writer, keepAliveAllowed, null);
+    }
+
+    /**
+     * Reads the next HTTP request from a persistent connection and, if the admission controller
+     * admits it, dispatches it and writes the response.
+     * <p>
+     * A request that is not admitted is answered with the controller's rejection response and the
+     * connection is closed, shedding the client's further requests as well.
+     *
+     * @param parser The request parser bound to the client connection.
+     * @param writer The response writer bound to the client connection.
+     * @param keepAliveAllowed Whether the server allows the connection to be reused after this request.
+     * @param admission The admission controller bounding concurrent requests, or null for no limit.
+     * @return {@code true} if the connection should be kept open for another request.
+     * @throws IOException If an I/O error occurs while sending the response.
+     */
+    public boolean handleRequest(HttpRequestParser parser, HttpResponseWriter writer, boolean keepAliveAllowed,
+                                 AdmissionController admission) throws IOException {
+        HttpRequest httpRequest;
+        try {
+            httpRequest = parser.next();
+        } catch (EOFException | SocketTimeoutException e) {
+            // The client closed the connection or stayed idle past the keep-alive timeout.
+            return false;
+        } catch (HttpStatusException e) {
+            _write(writer, error(e.getStatus(), e), null, false);
+            writer.flush();
+            return false;
+        } catch (IOException | IllegalArgumentException e) {
+            _write(writer, badRequest(e), null, false);
+            writer.flush();
+            return false;
+        }
+
+        if (admission == null) {
+            return _process(parser, writer, keepAliveAllowed, httpRequest);
+        }
+        if (!admission.tryAcquire()) {
+            writer.flush(); // do not hold back responses to earlier pipelined requests while queued
+            if (!admission.acquire()) {
+                _write(writer, admission.rejection(), httpRequest, false);
+                writer.flush();
+                return false;
+            }
+        }
+        try {
+            return _process(parser, writer, keepAliveAllowed, httpRequest);
+        } finally {
+            admission.release();
+        }
+    }
+
+    private boolean _process(HttpRequestParser parser, HttpResponseWriter writer, boolean keepAliveAllowed,
+                             HttpRequest httpRequest) throws IOException {
+        if (httpRequest.getContentLength() != 0 && expectsContinue(httpRequest)) {
+            writer.writeContinue();
+        }
+        HttpResponse response = dispatch(httpRequest);
+        HttpStatusException bodyFailure = httpRequest.getBodyFailure();
+        if (bodyFailure != null) {
+            // The rest of the body cannot be skipped, so the connection is closed after the error.
+            _write(writer, error(bodyFailure.getStatus(), bodyFailure), httpRequest, false);
+            writer.flush();
+            return false;
+        }
+        boolean keepAlive = _write(writer, response, httpRequest, keepAliveAllowed && httpRequest.isKeepAlive());
+        if (!keepAlive || !parser.hasBufferedInput()) {
+            writer.flush();
+        }
+        return keepAlive;
+    }
+
+    private boolean _write(HttpResponseWriter writer, HttpResponse response, HttpRequest httpRequest,
+                           boolean keepAlive) throws IOException {
+        try {
+            if (httpRequest == null) {
+                writer.write(response, keepAlive);
+            } else {
+                keepAlive = writer.write(response, httpRequest, keepAlive);
+            }
+        } catch (IllegalArgumentException e) {
+            // A header the writer refuses to send (such as a value with a line break); nothing was written yet.
+            response = error(HttpStatus.INTERNAL_SERVER_ERROR, e);
+            keepAlive = false;
+            writer.write(response, false);
+        }
+        metrics.recordResponse(response.getStatus());
+        return keepAlive;
+    }
+
+    /**
+     * Finds the appropriate controller based on the request path and dispatches the call
+     * to the corresponding HTTP method handler.
+     * <p>
+     * This is also the entry point used by transports that frame and parse requests themselves.
+     * The latency of the request, from the reception of its head (see
+     * {@link HttpRequest#getReceivedNanos()}) until the controller returns, is recorded in the
+     * histogram of the matched route and method. It includes the compression of the response body,
+     * when enabled, and is much shorter for responses served from the cache.
      *
-     * @param clientSocket The client socket used to send the final response.
-     * @param in The input reader (BufferedReader) containing the raw HTTP request data.
-     * @throws IOException If an I/O error occurs while reading the request or sending the response.
+     * @param httpRequest The parsed HTTP request.
+     * @return The response produced by the controller, a {@code 404 Not Found} response,
+     * or a {@code 400 Bad Request} response if the controller rejected the request arguments.
      */
-    public void handleRequest(Socket clientSocket, BufferedReader in) throws IOException {
+    public HttpResponse dispatch(HttpRequest httpRequest) {
+        long start = httpRequest.getReceivedNanos();
+        if (start == 0) {
+            start = System.nanoTime();
+        }
+        metrics.recordRequestStarted();
+        RouteTree.RouteMatch match = routes.match(httpRequest.getPath());
         try {
-            HttpRequest httpRequest = HttpRequest.from(in);
+            return _respond(httpRequest, match);
+        } finally {
+            RouteMetrics routeMetrics = match != null ? match.route().metrics() : metrics.getUnmatchedRoute();
+            routeMetrics.record(httpRequest.getMethod(), System.nanoTime() - start);
+        }
+    }
+
+    private HttpResponse _respond(HttpRequest httpRequest, RouteTree.RouteMatch match) {
+        if (match == null) {
+            return _compress(httpRequest, new HttpResponse("{\"error\": \"Not Found\"}", HttpStatus.NOT_FOUND));
+        }
+        if (match.captures().length > 0) {
+            httpRequest.setPathParams(new PathParameters(httpRequest.getPath(), match.route().paramNames(), match.captures()));
+        }
+        if (httpRequest.getMethod() != HttpMethod.GET) {
+            return _compress(httpRequest, _dispatch(httpRequest, match.route().controller()));
+        }
+        return _respondToGet(httpRequest, match.route());
+    }
 
-            String path = httpRequest.getPath();
-            Optional<RestController> controller = routes.keySet().stream()
-                .filter(path::startsWith)
-                .findFirst()
-                .map(routes::get);
+    /**
+     * Answers a GET request, from the controller's version alone when it shows that the client
+     * is up to date, otherwise from the cache or the controller, tagging the response and answering
+     * {@code 304 Not Modified} when the client already holds it.
+     */
+    private HttpResponse _respondToGet(HttpRequest httpRequest, RouteTree.Route route) {
+        RestController controller = route.controller();
+        // Read before the controller sees the data, so that a response computed from data
+        // replaced meanwhile is not cached (see ResponseCache#generation()).
+        long generation = cache != null ? cache.generation() : 0;
+        String versionTag;
+        Instant lastModified;
+        try {
+            String version = controller.getVersion(httpRequest);
+            versionTag = version != null ? ConditionalRequests.versionTag(version) : null;
+            lastModified = controller.getLastModified(httpRequest);
+        } catch (IllegalArgumentException e) {
+            return badRequest(e);
+        }
+        HttpResponse notModified = _checkValidators(httpRequest, versionTag, lastModified);
+        if (notModified != null) {
+            return notModified;
+        }
+
+        HttpResponse response;
+        long ttlNanos = cache != null ? cache.ttlNanos(route.pattern()) : -1;
+        if (ttlNanos < 0) {
+            response = _produce(httpRequest, controller, versionTag, lastModified);
+        } else {
+            String encoding = compressor != null ? ResponseCompressor.negotiate(httpRequest.getHeader("Accept-Encoding")) : null;
+            String key = cache.key(httpRequest, encoding);
+            response = cache.get(key);
+            if (response == null) {
+                response = _produce(httpRequest, controller, versionTag, lastModified);
+                cache.put(key, response, ttlNanos, generation);
+            }
+        }
+        if (response.getStatus() == HttpStatus.OK
+                && ConditionalRequests.isNotModified(httpRequest, ConditionalRequests.header(response, "ETag"), lastModified)) {
+            return ConditionalRequests.notModified(response);
+        }
+        return response;
+    }
+
+    /**
+     * Evaluates the request conditions against the version and modification time supplied by the
+     * controller, before any response is built. Only a version tells that the resource exists: with
+     * a modification time alone, the conditions are left for the response of the controller, since
+     * a missing resource must still be answered with its error rather than {@code 304}.
+     *
+     * @return the {@code 304 Not Modified} response, or null if the response must be built
+     */
+    private HttpResponse _checkValidators(HttpRequest httpRequest, String versionTag, Instant lastModified) {
+        if (versionTag == null) {
+            return null;
+        }
+        String etag = versionTag;
+        String ifNoneMatch = httpRequest.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            // The client may hold a compressed representation, whose tag has a content coding suffix.
+            etag = ConditionalRequests.matchingTag(ifNoneMatch, versionTag, true);
+            if (etag == null) {
+                return null;
+            }
+        } else if (!ConditionalRequests.isNotModified(httpRequest, null, lastModified)) {
+            return null;
+        }
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (etag != null) {
+            headers.put("ETag", etag);
+        }
+        if (lastModified != null) {
+            headers.put("Last-Modified", ConditionalRequests.httpDate(lastModified));
+        }
+        if (compressor != null) {
+            headers.put("Vary", "Accept-Encoding");
+        }
+        return ConditionalRequests.notModified(headers);
+    }
 
-            if (controller.isEmpty()) {
-                _sendResponse(clientSocket, new HttpResponse("{\"error\": \"Not Found\"}", HttpStatus.NOT_FOUND));
-                return;
+    /**
+     * Calls the controller and adds the validators of a successful response: the controller's
+     * version or, by default, a strong entity tag computed from the body, and the modification time.
+     */
+    private HttpResponse _produce(HttpRequest httpRequest, RestController controller, String versionTag,
+                                  Instant lastModified) {
+        HttpResponse response = _dispatch(httpRequest, controller);
+        if (response.getStatus() == HttpStatus.OK) {
+            Map<String, String> validators = new LinkedHashMap<>(4);
+            if (ConditionalRequests.header(response, "ETag") == null) {
+                if (versionTag != null) {
+                    validators.put("ETag", versionTag);
+                } else if (!(response instanceof StreamingHttpResponse)) {
+                    validators.put("ETag", ConditionalRequests.strongTag(response.getBodyBytes()));
+                }
+            }
+            if (lastModified != null && ConditionalRequests.header(response, "Last-Modified") == null) {
+                validators.put("Last-Modified", ConditionalRequests.httpDate(lastModified));
             }
-            
-            HttpResponse response = switch (httpRequest.getMethod()) {
-                case GET    -> controller.get().handleGet(httpRequest);
-                case POST   -> controller.get().handlePost(httpRequest);
-                case PATCH  -> controller.get().handlePatch(httpRequest);
-                case PUT    -> controller.get().handlePut(httpRequest);
-                case DELETE -> controller.get().handleDelete(httpRequest);
+            if (!validators.isEmpty()) {
+                response = ConditionalRequests.withHeaders(response, validators);
+            }
+        }
+        return _compress(httpRequest, response);
+    }
+
+    private HttpResponse _compress(HttpRequest httpRequest, HttpResponse response) {
+        return compressor != null ? compressor.compress(httpRequest, response) : response;
+    }
+
+    private HttpResponse _dispatch(HttpRequest httpRequest, RestController controller) {
+        try {
+            return switch (httpRequest.getMethod()) {
+                case GET    -> controller.handleGet(httpRequest);
+                case POST   -> controller.handlePost(httpRequest);
+                case PATCH  -> controller.handlePatch(httpRequest);
+                case PUT    -> controller.handlePut(httpRequest);
+                case DELETE -> controller.handleDelete(httpRequest);
                 default     -> new HttpResponse(HttpStatus.NOT_IMPLEMENTED);
             };
+        } catch (IllegalArgumentException e) {
+            return badRequest(e);
+        } catch (UncheckedIOException e) {
+            // The request body could not be read (see HttpRequest#getBody()).
+            if (e.getCause() instanceof HttpStatusException statusException) {
+                return error(statusException.getStatus(), statusException);
+            }
+            return badRequest(e.getCause());
+        }
+    }
 
-            _sendResponse(clientSocket, response);
+    /**
+     * Tells whether the client waits for a {@code 100 Continue} interim response before sending the body.
+     *
+     * @param httpRequest The parsed HTTP request.
+     * @return {@code true} if the request carries {@code Expect: 100-continue}.
+     */
+    public static boolean expectsContinue(HttpRequest httpRequest) {
+        return !"HTTP/1.0".equals(httpRequest.getHttpVersion())
+                && httpRequest.headers().containsToken("Expect", "100-continue");
+    }
 
-        } catch (IOException | IllegalArgumentException e) {
-            _sendResponse(clientSocket, new HttpResponse("{\"error\": \"" + e.getMessage() + "\"}", HttpStatus.BAD_REQUEST));
-        }
+    /**
+     * Builds the {@code 400 Bad Request} response for a malformed request.
+     *
+     * @param cause The error raised while parsing or handling the request.
+     * @return The error response.
+     */
+    public HttpResponse badRequest(Exception cause) {
+        return error(HttpStatus.BAD_REQUEST, cause);
     }
 
     /**
-     * Sends the complete HTTP response back to the client socket.
+     * Builds an error response carrying the message of the exception that caused it, escaped as a
+     * JSON string since it may quote bytes of the request.
      *
-     * @param clientSocket The client socket.
-     * @param response The {@link HttpResponse} object to be serialized and sent.
-     * @throws IOException If an I/O error occurs during transmission.
-     */
-    private void _sendResponse(Socket clientSocket, HttpResponse response) throws IOException {
-        OutputStream out = clientSocket.getOutputStream();
-        // Constructs the HTTP response string (Status Line, Headers, Body)
-        String httpResponse = "HTTP/1.1 " + response.getStatus().getCode() + " " + response.getStatus().getMessage() + "\r\n" +
-                "Content-Type: application/json\r\n" +
-                "Content-Length: " + response.getBody().getBytes(StandardCharsets.UTF_8).length + "\r\n" +
-                "\r\n" +
-                response.getBody();
-        out.write(httpResponse.getBytes(StandardCharsets.UTF_8));
-        out.flush();
-    }
-}
\ No newline at end of file
+     * @param status The HTTP status of the response.
+     * @param cause The error raised while parsing or handling the request.
+     * @return The error response.
+     */
+    public HttpResponse error(HttpStatus status, Exception cause) {
+        return new HttpResponse("{\"error\": \"" + _escapeJson(String.valueOf(cause.getMessage())) + "\"}", status);
+    }
+
+    private static String _escapeJson(String text) {
+        StringBuilder escaped = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != '"' && c != '\\' && c >= 0x20) {
+                if (escaped != null) {
+                    escaped.append(c);
+                }
+                continue;
+            }
+            if (escaped == null) {
+                escaped = new StringBuilder(text.length() + 16).append(text, 0, i);
+            }
+            switch (c) {
+                case '"', '\\' -> escaped.append('\\').append(c);
+                case '\n' -> escaped.append("\\n");
+                case '\r' -> escaped.append("\\r");
+                case '\t' -> escaped.append("\\t");
+                default -> escaped.append(String.format("\\u%04x", (int) c));
+            }
+        }
+        return escaped != null ? escaped.toString() : text;
+    }
+}
@@ -0,0 +1,129 @@
+package io.github.marceltanuri.frameworks.restam3;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Controls a server started with {@link HttpServer#start(int)}: exposes its port and its
+ * readiness and liveness, and stops it gracefully.
+ * <p>
+ * A typical deployment stops the server from a shutdown hook, so that a rolling restart lets the
+ * requests in flight complete instead of failing them:
+ * <pre>{@code
+ * ServerHandle server = HttpServer.create(router).start(8080);
+ * Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(Duration.ofSeconds(10))));
+ * }</pre>
+ *
+ * @author Marcel Tanuri
+ */
+public final class ServerHandle {
+
+    /**
+     * The lifecycle state of a server.
+     */
+    public enum State {
+        /**
+         * Accepting connections and serving requests.
+         */
+        RUNNING,
+        /**
+         * No longer accepting connections; completing the requests in flight.
+         */
+        DRAINING,
+        /**
+         * Every connection is closed and the threads of the server are released.
+         */
+        STOPPED
+    }
+
+    private final TransportServer server;
+    private final int port;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    // Not a monitor: a Virtual Thread waiting for the drain inside synchronized code would pin its carrier.
+    private final ReentrantLock stopLock = new ReentrantLock();
+    private volatile State state = State.RUNNING;
+    private boolean drained;
+
+    ServerHandle(TransportServer server, int port) {
+        this.server = server;
+        this.port = port;
+    }
+
+    /**
+     * Gets the port the server listens on, which is useful when it was started on port 0.
+     *
+     * @return the bound port
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Gets the current lifecycle state.
+     *
+     * @return the state of the server
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Tells whether the server accepts new requests; suitable for a readiness probe. It turns
+     * false as soon as {@link #stop(Duration)} is called, before the connections are drained.
+     *
+     * @return {@code true} if the server is running and able to accept connections
+     */
+    public boolean isReady() {
+        return state == State.RUNNING && server.isAlive();
+    }
+
+    /**
+     * Tells whether the server is still able to serve requests; suitable for a liveness probe.
+     *
+     * @return {@code true} unless the server was stopped or its threads died
+     */
+    public boolean isLive() {
+        return state != State.STOPPED && server.isAlive();
+    }
+
+    /**
+     * Stops the server gracefully: it stops accepting connections, lets the requests in flight
+     * complete within the grace period, closes idle keep-alive connections and then releases its
+     * threads. Calling it again after the server stopped has no effect.
+     *
+     * @param grace how long the requests in flight are given to complete
+     * @return {@code true} if every connection was drained within the grace period, {@code false}
+     * if some had to be closed forcibly
+     */
+    public boolean stop(Duration grace) {
+        stopLock.lock();
+        try {
+            if (state == State.STOPPED) {
+                return drained;
+            }
+            state = State.DRAINING;
+            try {
+                drained = server.stop(grace);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                drained = false;
+            } finally {
+                state = State.STOPPED;
+                stopped.countDown();
+            }
+            return drained;
+        } finally {
+            stopLock.unlock();
+        }
+    }
+
+    /**
+     * Blocks the calling thread until the server is stopped.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitStop() throws InterruptedException {
+        stopped.await();
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.marceltanuri.frameworks.restam3;
+
+/**
+ * The I/O model used by {@link HttpServer} to accept connections and exchange bytes with clients.
+ *
+ * @author Marcel Tanuri
+ */
+public enum Transport {
+    /**
+     * Blocking {@code ServerSocket} with one Virtual Thread per connection (default).
+     */
+    BLOCKING,
+    /**
+     * Non-blocking {@code ServerSocketChannel} served by a fixed set of {@code Selector} event loops.
+     */
+    NIO
+}
@@ -0,0 +1,42 @@
+package io.github.marceltanuri.frameworks.restam3;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * The running side of a {@link Transport}: binds the listening socket, serves connections and
+ * drains them on shutdown. Instances are created by {@link HttpServer} and controlled through
+ * the {@link ServerHandle} returned by {@link HttpServer#start(int)}.
+ *
+ * @author Marcel Tanuri
+ */
+public interface TransportServer {
+
+    /**
+     * Binds the port and starts accepting connections on background threads, without blocking.
+     *
+     * @param port    the port number to listen on, or 0 to pick a free port
+     * @param backlog the length of the queue of connections not yet accepted
+     * @return the port actually bound
+     * @throws IOException if the port cannot be bound
+     */
+    int start(int port, int backlog) throws IOException;
+
+    /**
+     * Stops accepting connections, lets in-flight requests complete, closes idle keep-alive
+     * connections and releases the threads of the transport. Connections still busy when the
+     * grace period ends are closed forcibly.
+     *
+     * @param grace how long in-flight requests are given to complete
+     * @return {@code true} if every connection was drained within the grace period
+     * @throws InterruptedException if interrupted while waiting for connections to drain
+     */
+    boolean stop(Duration grace) throws InterruptedException;
+
+    /**
+     * Tells whether the threads accepting and serving connections are still running.
+     *
+     * @return {@code true} while the transport is able to serve requests
+     */
+    boolean isAlive();
+}
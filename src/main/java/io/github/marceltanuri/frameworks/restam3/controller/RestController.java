@@ -3,17 +3,28 @@ package io.github.marceltanuri.frameworks.restam3.controller;
 import io.github.marceltanuri.frameworks.restam3.http.HttpRequest;
 import io.github.marceltanuri.frameworks.restam3.http.HttpResponse;
 import io.github.marceltanuri.frameworks.restam3.http.HttpStatus;
+import io.github.marceltanuri.frameworks.restam3.http.StreamingHttpResponse;
 import io.github.marceltanuri.frameworks.restam3.json.JsonParser; 
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.InputStream;
 import java.lang.reflect.Type;
+import java.time.Instant;
 import java.util.Optional;
 
 /**
  * A REST base controller providing common HTTP request handling and
  * JSON serialization/deserialization capabilities via dependency injection.
+ * <p>
+ * Successful GET responses get a strong {@code ETag} computed from their body, and conditional
+ * requests from clients that already hold the current representation are answered with
+ * {@code 304 Not Modified}, without any code in the controller. Controllers that can tell the
+ * version of a resource cheaply may override {@link #getVersion(HttpRequest)}, so that such requests
+ * are answered before {@link #handleGet(HttpRequest)} is even called, and
+ * {@link #getLastModified(HttpRequest)} to send {@code Last-Modified} and honor
+ * {@code If-Modified-Since}.
  *
  * @author Marcel Tanuri
  */
@@ -41,6 +52,36 @@ public abstract class RestController {
         return new HttpResponse(HttpStatus.NOT_IMPLEMENTED);
     }
 
+    /**
+     * Gets the current version of the resource targeted by a GET request, used as its entity tag
+     * instead of one computed from the response body. It is called before {@link #handleGet(HttpRequest)},
+     * with the path parameters already available, and should be much cheaper than building the response
+     * (e.g., a revision number or the version of the data set the resource comes from). A version
+     * asserts that the resource exists: a conditional request matching it is answered with
+     * {@code 304 Not Modified} without calling {@link #handleGet(HttpRequest)}.
+     *
+     * @param request the HTTP request
+     * @return an opaque version token without double quotes, or null (the default) to tag responses by
+     * their content, and for resources that do not exist
+     */
+    public String getVersion(HttpRequest request) {
+        return null;
+    }
+
+    /**
+     * Gets the time the resource targeted by a GET request was last modified, sent as
+     * {@code Last-Modified} and used to evaluate {@code If-Modified-Since}. It is called before
+     * {@link #handleGet(HttpRequest)}, with the path parameters already available, but the condition
+     * is only evaluated on a successful response, since a modification time does not tell whether
+     * the resource exists.
+     *
+     * @param request the HTTP request
+     * @return the modification time, or null (the default) if unknown
+     */
+    public Instant getLastModified(HttpRequest request) {
+        return null;
+    }
+
     /**
      * Handles POST requests.
      *
@@ -97,6 +138,36 @@ public abstract class RestController {
         }
     }
 
+    /**
+     * Converts a Java object into its UTF-8 encoded JSON representation using the injected parser,
+     * ready to be sent without a {@code String} in between (see
+     * {@link HttpResponse#HttpResponse(byte[], HttpStatus, java.util.Map)}).
+     *
+     * @param object The object to convert.
+     * @return An Optional containing the JSON bytes, or empty if a serialization error occurs.
+     */
+    protected Optional<byte[]> _toJsonBytes(Object object) {
+        try {
+            return Optional.of(jsonParser.toJsonBytes(object));
+        } catch (Exception e) {
+            LOGGER.error("Error converting object to JSON", e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Builds a response that serializes the object as JSON directly to the connection while it is
+     * sent, instead of materializing the whole JSON document in memory. Prefer it for large results
+     * such as listings and dumps.
+     *
+     * @param object The object to serialize.
+     * @param status The HTTP status code to return.
+     * @return A streaming response (chunked, since its length is not known in advance).
+     */
+    protected HttpResponse _streamJson(Object object, HttpStatus status) {
+        return StreamingHttpResponse.json(jsonParser, object, status);
+    }
+
     /**
      * Converts a JSON string into a Java object of the specified type using the injected parser.
      *
@@ -118,6 +189,27 @@ public abstract class RestController {
         }
     }
 
+    /**
+     * Converts the JSON body of a request into a Java object of the specified type, parsing it
+     * straight from the body stream instead of buffering the whole payload first.
+     * <p>
+     * If the body exceeds the server's maximum body size, the result is empty and the router
+     * answers the request with {@code 413 Payload Too Large}, whatever the controller returns.
+     *
+     * @param <T> The target object type.
+     * @param request The request whose body holds the JSON document.
+     * @param typeOfT The destination type (e.g., {@code MyClass.class} or a {@code TypeReference} for collections).
+     * @return An Optional containing the deserialized object.
+     */
+    protected <T> Optional<T> _fromJson(HttpRequest request, Type typeOfT) {
+        try (InputStream body = request.getBodyStream()) {
+            return Optional.of(jsonParser.fromJson(body, typeOfT));
+        } catch (Exception e) {
+            LOGGER.error("Error converting JSON request body to object", e);
+            return Optional.empty();
+        }
+    }
+
     /**
      * Sends an HTTP error response using only the status code.
      * The response body will be automatically generated with a simple JSON error message.
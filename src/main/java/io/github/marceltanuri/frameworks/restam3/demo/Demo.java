@@ -1,16 +1,26 @@
 package io.github.marceltanuri.frameworks.restam3;
 
+import io.github.marceltanuri.frameworks.restam3.demo.controller.CepAdminController;
+import io.github.marceltanuri.frameworks.restam3.demo.controller.CepNearController;
+import io.github.marceltanuri.frameworks.restam3.demo.controller.CepRangeController;
 import io.github.marceltanuri.frameworks.restam3.demo.controller.CepRestController;
+import io.github.marceltanuri.frameworks.restam3.demo.controller.CepSearchController;
 import io.github.marceltanuri.frameworks.restam3.demo.repository.CepRepository;
 
 import io.github.marceltanuri.frameworks.restam3.Router;
 import io.github.marceltanuri.frameworks.restam3.HttpServer;
 
+import io.github.marceltanuri.frameworks.restam3.http.ResponseCompressor;
 import io.github.marceltanuri.frameworks.restam3.json.JsonParser;
+import io.github.marceltanuri.frameworks.restam3.json.CodecJsonParser;
 import io.github.marceltanuri.frameworks.restam3.json.ConfigurableJacksonParser;
 import com.fasterxml.jackson.databind.SerializationFeature;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.util.Arrays;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
 /**
@@ -20,6 +30,14 @@ import java.util.Arrays;
  */
 public class Demo {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(Demo.class);
+
+    /**
+     * The system property that, set to {@code true}, routes the {@link CepAdminController} under
+     * {@code /admin/cep/{action}}. It is off by default, since the controller is not authenticated.
+     */
+    public static final String ADMIN_PROPERTY = "cep.admin";
+
     private Demo() {
     }
 
@@ -29,19 +47,72 @@ public class Demo {
      * @param args the command line arguments
      */
     public static void main(String[] args) {
-        JsonParser jsonParser = new ConfigurableJacksonParser(mapper -> {
+        ServerHandle server = HttpServer.create(router()).start(8080);
+
+        // Let in-flight requests complete when the process is asked to terminate.
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(Duration.ofSeconds(10))));
+    }
+
+    /**
+     * Builds the routes of the demo application, so that tools such as load generators can serve
+     * them in-process.
+     *
+     * @return a router serving CEP lookups under {@code /cep/{cep}}, {@code /address/{cep}} and {@code /test/{cep}},
+     *         range scans under {@code /cep/range} and {@code /cep/prefix/{prefix}} and nearest-address
+     *         searches under {@code /cep/near}, whose data is reloaded when its file changes
+     */
+    public static Router router() {
+        // Endereco is serialized by its generated codec; the Jackson configuration still applies to the rest.
+        JsonParser jsonParser = new CodecJsonParser(new ConfigurableJacksonParser(mapper -> {
             mapper.enable(SerializationFeature.INDENT_OUTPUT);
+        }));
+        // One repository, shared by all the routes: its data is loaded only once, and reloaded in place.
+        CepRepository cepRepository = new CepRepository();
+        ResponseCache cache = ResponseCache.create()
+            .route("/cep/{cep}", Duration.ofMinutes(10))
+            .route("/address/{cep}", Duration.ofMinutes(10))
+            .route("/address/search", Duration.ofMinutes(1));
+        cepRepository.addChangeListener(change -> {
+            if (change.isFull()) {
+                cache.invalidateAll();
+                return;
+            }
+            for (String cep : change.ceps()) {
+                cache.invalidate("/cep/" + cep);
+                cache.invalidate("/address/" + cep);
+            }
+            // Any search may match a changed address.
+            cache.invalidate("/address/search");
         });
+        if (cepRepository.isWatchable()) {
+            try {
+                cepRepository.watch();
+            } catch (IOException e) {
+                LOGGER.warn("Cannot watch the CEP data for changes", e);
+            }
+        }
 
-        HttpServer.create(
-            Router.create()
+        Router router = Router.create()
+            .compression(ResponseCompressor.create())
+            .cache(cache)
+            .addRoute(
+                Arrays.asList("/cep/{cep}", "/address/{cep}"),
+                new CepRestController(cepRepository, jsonParser))
+            .addRoute(
+                Arrays.asList("/cep/range", "/cep/prefix/{prefix}"),
+                new CepRangeController(cepRepository, jsonParser))
+            .addRoute(
+                "/cep/near",
+                new CepNearController(cepRepository, jsonParser))
             .addRoute(
-                Arrays.asList("/cep", "address"), 
-                new CepRestController(new CepRepository(), jsonParser))
+                "/address/search",
+                new CepSearchController(cepRepository, jsonParser))
             .addRoute(
-                "/test", 
-                new CepRestController(new CepRepository(), jsonParser))
-        )
-        .start(8080);
+                "/test/{cep}",
+                new CepRestController(cepRepository, jsonParser));
+        if (Boolean.getBoolean(ADMIN_PROPERTY)) {
+            router.addRoute("/admin/cep/{action}", new CepAdminController(cepRepository, jsonParser));
+        }
+        return router;
     }
 }
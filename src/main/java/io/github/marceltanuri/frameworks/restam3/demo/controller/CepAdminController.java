@@ -0,0 +1,114 @@
+package io.github.marceltanuri.frameworks.restam3.demo.controller;
+
+import io.github.marceltanuri.frameworks.restam3.controller.RestController;
+import io.github.marceltanuri.frameworks.restam3.demo.repository.CepRepository;
+import io.github.marceltanuri.frameworks.restam3.http.HttpRequest;
+import io.github.marceltanuri.frameworks.restam3.http.HttpResponse;
+import io.github.marceltanuri.frameworks.restam3.http.HttpStatus;
+import io.github.marceltanuri.frameworks.restam3.json.JsonParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A REST controller for updating the data of a {@link CepRepository} while it is in use, meant to be
+ * routed under {@code /admin/cep/{action}}:
+ * <ul>
+ * <li>{@code GET /admin/cep/status} tells the version, size and load time of the data;</li>
+ * <li>{@code POST /admin/cep/reload} reads the source of the repository again;</li>
+ * <li>{@code POST /admin/cep/delta} applies the delta file in the body of the request (see
+ * {@link CepRepository#applyDelta(java.nio.file.Path)}).</li>
+ * </ul>
+ * The controller does not authenticate its callers: only route it where they are trusted.
+ *
+ * @author Marcel Tanuri
+ */
+public class CepAdminController extends RestController {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CepAdminController.class);
+
+    private static final Map<String, String> JSON_HEADERS = Collections.singletonMap("Content-Type", "application/json");
+
+    private final CepRepository cepRepository;
+
+    /**
+     * Creates a new CepAdminController.
+     *
+     * @param cepRepository the repository to update
+     * @param jsonParser the JSON parser
+     */
+    public CepAdminController(CepRepository cepRepository, JsonParser jsonParser) {
+        super(jsonParser);
+        this.cepRepository = cepRepository;
+    }
+
+    /**
+     * Handles GET requests for the status of the data.
+     *
+     * @param request the HTTP request
+     * @return the HTTP response
+     */
+    @Override
+    public HttpResponse handleGet(HttpRequest request) {
+        if (!"status".equals(request.getPathParam("action"))) {
+            return _sendError(HttpStatus.NOT_FOUND);
+        }
+        return _status(null);
+    }
+
+    /**
+     * Handles POST requests reloading the data or applying a delta.
+     *
+     * @param request the HTTP request
+     * @return the HTTP response
+     */
+    @Override
+    public HttpResponse handlePost(HttpRequest request) {
+        String action = request.getPathParam("action");
+        try {
+            switch (action) {
+                case "reload" -> {
+                    cepRepository.reload();
+                    return _status(null);
+                }
+                case "delta" -> {
+                    try (InputStream body = request.getBodyStream()) {
+                        return _status(cepRepository.applyDelta(body).size());
+                    }
+                }
+                default -> {
+                    return _sendError(HttpStatus.NOT_FOUND);
+                }
+            }
+        } catch (IllegalStateException e) {
+            return _sendError(e.getMessage(), HttpStatus.CONFLICT);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Error running CEP admin action " + action, e);
+            return _sendError("Falha ao atualizar os CEPs", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private HttpResponse _status(Integer changed) {
+        CepRepository.Snapshot snapshot = cepRepository.getSnapshot();
+        Status status = new Status(snapshot.version(), snapshot.table().size(), snapshot.loadedAt().toString(), changed);
+        return _toJsonBytes(status)
+                .map(json -> new HttpResponse(json, HttpStatus.OK, JSON_HEADERS))
+                .orElse(_sendError(HttpStatus.INTERNAL_SERVER_ERROR));
+    }
+
+    /**
+     * The state of the data after an action.
+     *
+     * @param version the version of the data
+     * @param size the number of CEPs
+     * @param loadedAt when the data was published
+     * @param changed the number of CEPs changed by a delta, or null
+     */
+    public record Status(long version, int size, String loadedAt, Integer changed) {
+    }
+}
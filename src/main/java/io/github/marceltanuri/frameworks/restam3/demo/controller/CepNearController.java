@@ -0,0 +1,92 @@
+package io.github.marceltanuri.frameworks.restam3.demo.controller;
+
+import io.github.marceltanuri.frameworks.restam3.controller.RestController;
+import io.github.marceltanuri.frameworks.restam3.demo.repository.CepRepository;
+import io.github.marceltanuri.frameworks.restam3.http.HttpRequest;
+import io.github.marceltanuri.frameworks.restam3.http.HttpResponse;
+import io.github.marceltanuri.frameworks.restam3.http.HttpStatus;
+import io.github.marceltanuri.frameworks.restam3.json.JsonParser;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A REST controller for finding the addresses nearest to a point, meant to be routed under
+ * {@code /cep/near?lat=-23.5505&lng=-46.6333&k=10&radiusKm=5}: {@code k} (up to {@value #MAX_K}, by
+ * default {@value #DEFAULT_K}) bounds the number of addresses and {@code radiusKm}, if set, their
+ * distance. The addresses are listed nearest first, each with its distance in kilometers.
+ *
+ * @author Marcel Tanuri
+ */
+public class CepNearController extends RestController {
+
+    /**
+     * The number of addresses when the request does not set one.
+     */
+    public static final int DEFAULT_K = 10;
+
+    /**
+     * The largest number of addresses a request may ask for.
+     */
+    public static final int MAX_K = 1000;
+
+    private static final Map<String, String> JSON_HEADERS = Collections.singletonMap("Content-Type", "application/json");
+
+    private final CepRepository cepRepository;
+
+    /**
+     * Creates a new CepNearController.
+     *
+     * @param cepRepository the repository to search
+     * @param jsonParser the JSON parser
+     */
+    public CepNearController(CepRepository cepRepository, JsonParser jsonParser) {
+        super(jsonParser);
+        this.cepRepository = cepRepository;
+    }
+
+    /**
+     * Gets the time the data of the repository was published, which no result can be newer than.
+     *
+     * @param request the HTTP request
+     * @return the load time of the current data
+     */
+    @Override
+    public Instant getLastModified(HttpRequest request) {
+        return cepRepository.getLoadedAt();
+    }
+
+    /**
+     * Handles GET requests for the addresses nearest to a point.
+     *
+     * @param request the HTTP request
+     * @return the HTTP response
+     */
+    @Override
+    public HttpResponse handleGet(HttpRequest request) {
+        List<CepRepository.Neighbor> nearest;
+        try {
+            String lat = request.getQueryParam("lat");
+            String lng = request.getQueryParam("lng");
+            if (lat == null || lng == null) {
+                return _sendError("Parâmetros 'lat' e 'lng' obrigatórios", HttpStatus.BAD_REQUEST);
+            }
+            String k = request.getQueryParam("k");
+            String radiusKm = request.getQueryParam("radiusKm");
+            int count = k != null ? Integer.parseInt(k) : DEFAULT_K;
+            if (count > MAX_K) {
+                return _sendError("Parâmetro 'k' deve ser no máximo " + MAX_K, HttpStatus.BAD_REQUEST);
+            }
+            nearest = cepRepository.findNearest(Double.parseDouble(lat), Double.parseDouble(lng), count,
+                    radiusKm != null ? Double.parseDouble(radiusKm) : Double.POSITIVE_INFINITY);
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException included
+            return _sendError(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+        return _toJsonBytes(nearest)
+                .map(json -> new HttpResponse(json, HttpStatus.OK, JSON_HEADERS))
+                .orElse(_sendError(HttpStatus.INTERNAL_SERVER_ERROR));
+    }
+}
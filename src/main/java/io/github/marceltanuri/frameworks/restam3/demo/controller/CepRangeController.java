@@ -0,0 +1,132 @@
+package io.github.marceltanuri.frameworks.restam3.demo.controller;
+
+import io.github.marceltanuri.frameworks.restam3.controller.RestController;
+import io.github.marceltanuri.frameworks.restam3.demo.model.Endereco;
+import io.github.marceltanuri.frameworks.restam3.demo.repository.CepPage;
+import io.github.marceltanuri.frameworks.restam3.demo.repository.CepRepository;
+import io.github.marceltanuri.frameworks.restam3.http.HttpRequest;
+import io.github.marceltanuri.frameworks.restam3.http.HttpResponse;
+import io.github.marceltanuri.frameworks.restam3.http.HttpStatus;
+import io.github.marceltanuri.frameworks.restam3.http.StreamingHttpResponse;
+import io.github.marceltanuri.frameworks.restam3.json.JsonParser;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A REST controller for scanning ranges of CEPs, meant to be routed under:
+ * <ul>
+ * <li>{@code /cep/range?from=01000000&to=01099999}, for the CEPs between two CEPs, both included;</li>
+ * <li>{@code /cep/prefix/{prefix}}, for the CEPs starting with up to eight digits.</li>
+ * </ul>
+ * Results are paginated: {@code limit} sets the page size (up to {@value #MAX_LIMIT}, by default
+ * {@value #DEFAULT_LIMIT}), and the {@code next} cursor of a page, passed as {@code after}, gets the
+ * following one. A page is streamed to the client one address at a time, as
+ * {@code {"next": ..., "size": ..., "items": [...]}}, without being held in memory.
+ *
+ * @author Marcel Tanuri
+ */
+public class CepRangeController extends RestController {
+
+    /**
+     * The page size when the request does not set one.
+     */
+    public static final int DEFAULT_LIMIT = 1000;
+
+    /**
+     * The largest page size a request may ask for.
+     */
+    public static final int MAX_LIMIT = 100_000;
+
+    private static final Map<String, String> JSON_HEADERS = Collections.singletonMap("Content-Type", "application/json");
+
+    private final CepRepository cepRepository;
+
+    /**
+     * Creates a new CepRangeController.
+     *
+     * @param cepRepository the repository to scan
+     * @param jsonParser the JSON parser
+     */
+    public CepRangeController(CepRepository cepRepository, JsonParser jsonParser) {
+        super(jsonParser);
+        this.cepRepository = cepRepository;
+    }
+
+    /**
+     * Gets the time the data of the repository was published, which no page can be newer than.
+     *
+     * @param request the HTTP request
+     * @return the load time of the current data
+     */
+    @Override
+    public Instant getLastModified(HttpRequest request) {
+        return cepRepository.getLoadedAt();
+    }
+
+    /**
+     * Handles GET requests for a range or a prefix of CEPs.
+     *
+     * @param request the HTTP request
+     * @return the HTTP response, streamed
+     */
+    @Override
+    public HttpResponse handleGet(HttpRequest request) {
+        CepPage page;
+        try {
+            int limit = _limit(request.getQueryParam("limit"));
+            String after = request.getQueryParam("after");
+            String prefix = request.getPathParam("prefix");
+            if (prefix != null) {
+                page = cepRepository.findByPrefix(prefix, after, limit);
+            } else {
+                String from = request.getQueryParam("from");
+                String to = request.getQueryParam("to");
+                if (from == null || to == null) {
+                    return _sendError("Parâmetros 'from' e 'to' obrigatórios", HttpStatus.BAD_REQUEST);
+                }
+                page = cepRepository.findRange(from, to, after, limit);
+            }
+        } catch (IllegalArgumentException e) {
+            return _sendError(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+        return new StreamingHttpResponse(HttpStatus.OK, JSON_HEADERS, out -> _writePage(page, out));
+    }
+
+    private void _writePage(CepPage page, OutputStream connection) throws IOException {
+        OutputStream out = new BufferedOutputStream(connection, 16 * 1024);
+        String next = page.getNext();
+        out.write(("{\"next\":" + (next != null ? "\"" + next + "\"" : "null")
+                + ",\"size\":" + page.size() + ",\"items\":[").getBytes(StandardCharsets.UTF_8));
+        boolean first = true;
+        for (Endereco endereco : page) {
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+            out.write(_toJsonBytes(endereco).orElseThrow(() -> new IOException("Error serializing CEP " + endereco.getCep())));
+        }
+        out.write("]}".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static int _limit(String limit) {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        try {
+            int value = Integer.parseInt(limit);
+            if (value > 0 && value <= MAX_LIMIT) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid limit (1 to " + MAX_LIMIT + "): " + limit);
+    }
+}
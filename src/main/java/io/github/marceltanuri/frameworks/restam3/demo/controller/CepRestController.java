@@ -7,6 +7,9 @@ import io.github.marceltanuri.frameworks.restam3.http.HttpStatus;
 import io.github.marceltanuri.frameworks.restam3.json.JsonParser; 
 import io.github.marceltanuri.frameworks.restam3.controller.RestController;
 
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,6 +24,8 @@ public class CepRestController extends RestController {
     
     private static final Logger LOGGER = LoggerFactory.getLogger(CepRestController.class);
 
+    private static final Map<String, String> JSON_HEADERS = Collections.singletonMap("Content-Type", "application/json");
+
     private final CepRepository cepRepository;
 
     /**
@@ -34,6 +39,17 @@ public class CepRestController extends RestController {
         this.cepRepository = cepRepository;
     }
 
+    /**
+     * Gets the time the data of the repository was published, which no address can be newer than.
+     *
+     * @param request the HTTP request
+     * @return the load time of the current data
+     */
+    @Override
+    public Instant getLastModified(HttpRequest request) {
+        return cepRepository.getLoadedAt();
+    }
+
     /**
      * Handles GET requests for CEPs.
      *
@@ -42,11 +58,11 @@ public class CepRestController extends RestController {
      */
     @Override
     public HttpResponse handleGet(HttpRequest request) {
-        String cep = request.getPath().substring(5);
+        String cep = request.getPathParam("cep");
         
         return Optional.ofNullable(cepRepository.findByCep(cep))
-                .flatMap(this::_toJson)
-                .map(json -> new HttpResponse(json, HttpStatus.OK))
+                .flatMap(this::_toJsonBytes)
+                .map(json -> new HttpResponse(json, HttpStatus.OK, JSON_HEADERS))
                 .orElse(_sendError("CEP não encontrado", HttpStatus.NOT_FOUND));
     }
 }
\ No newline at end of file
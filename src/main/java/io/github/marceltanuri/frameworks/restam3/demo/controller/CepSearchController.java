@@ -0,0 +1,90 @@
+package io.github.marceltanuri.frameworks.restam3.demo.controller;
+
+import io.github.marceltanuri.frameworks.restam3.controller.RestController;
+import io.github.marceltanuri.frameworks.restam3.demo.repository.CepRepository;
+import io.github.marceltanuri.frameworks.restam3.http.HttpRequest;
+import io.github.marceltanuri.frameworks.restam3.http.HttpResponse;
+import io.github.marceltanuri.frameworks.restam3.http.HttpStatus;
+import io.github.marceltanuri.frameworks.restam3.json.JsonParser;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A REST controller for searching addresses by name, meant to be routed under
+ * {@code /address/search?q=praca da se sao paulo&limit=10}: {@code q} holds words of the street,
+ * neighborhood or city, in any case, with or without accents and with a typo or two, the last of which
+ * may be partly typed, and {@code limit} (up to {@value #MAX_LIMIT}, by default {@value #DEFAULT_LIMIT})
+ * bounds the number of addresses. The addresses are listed best match first, each with its score.
+ *
+ * @author Marcel Tanuri
+ */
+public class CepSearchController extends RestController {
+
+    /**
+     * The number of addresses when the request does not set one.
+     */
+    public static final int DEFAULT_LIMIT = 10;
+
+    /**
+     * The largest number of addresses a request may ask for.
+     */
+    public static final int MAX_LIMIT = 100;
+
+    private static final Map<String, String> JSON_HEADERS = Collections.singletonMap("Content-Type", "application/json");
+
+    private final CepRepository cepRepository;
+
+    /**
+     * Creates a new CepSearchController.
+     *
+     * @param cepRepository the repository to search
+     * @param jsonParser the JSON parser
+     */
+    public CepSearchController(CepRepository cepRepository, JsonParser jsonParser) {
+        super(jsonParser);
+        this.cepRepository = cepRepository;
+    }
+
+    /**
+     * Gets the time the data of the repository was published, which no result can be newer than.
+     *
+     * @param request the HTTP request
+     * @return the load time of the current data
+     */
+    @Override
+    public Instant getLastModified(HttpRequest request) {
+        return cepRepository.getLoadedAt();
+    }
+
+    /**
+     * Handles GET requests for the addresses matching a query.
+     *
+     * @param request the HTTP request
+     * @return the HTTP response
+     */
+    @Override
+    public HttpResponse handleGet(HttpRequest request) {
+        List<CepRepository.Match> matches;
+        try {
+            String query = request.getQueryParam("q");
+            if (query == null || query.isBlank()) {
+                return _sendError("Parâmetro 'q' obrigatório", HttpStatus.BAD_REQUEST);
+            }
+            String limit = request.getQueryParam("limit");
+            int count = limit != null ? Integer.parseInt(limit) : DEFAULT_LIMIT;
+            if (count > MAX_LIMIT) {
+                return _sendError("Parâmetro 'limit' deve ser no máximo " + MAX_LIMIT, HttpStatus.BAD_REQUEST);
+            }
+            matches = cepRepository.search(query, count);
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException included
+            return _sendError(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+        return _toJsonBytes(matches)
+                .map(json -> new HttpResponse(json, HttpStatus.OK, JSON_HEADERS))
+                .orElse(_sendError(HttpStatus.INTERNAL_SERVER_ERROR));
+    }
+}
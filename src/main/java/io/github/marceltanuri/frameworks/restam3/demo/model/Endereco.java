@@ -1,10 +1,13 @@
 package io.github.marceltanuri.frameworks.restam3.demo.model;
 
+import io.github.marceltanuri.frameworks.restam3.json.codec.JsonModel;
+
 /**
  * Represents an address.
  *
  * @author Marcel Tanuri
  */
+@JsonModel
 public class Endereco {
     private String cep;
     private String logradouro;
@@ -1,14 +1,23 @@
 package io.github.marceltanuri.frameworks.restam3.demo.model;
 
+import io.github.marceltanuri.frameworks.restam3.json.codec.JsonModel;
+
 /**
  * Represents a geolocation with latitude and longitude.
  *
  * @author Marcel Tanuri
  */
+@JsonModel
 public class Geolocalizacao{
     private String lat;
     private String lng;
 
+    /**
+     * Creates a new empty geolocation.
+     */
+    public Geolocalizacao() {
+    }
+
     /**
      * Creates a new geolocation.
      *
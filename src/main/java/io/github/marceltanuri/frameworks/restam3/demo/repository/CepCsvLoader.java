@@ -0,0 +1,214 @@
+package io.github.marceltanuri.frameworks.restam3.demo.repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads a {@link CepTable} from CSV data in the format of {@code cep.csv}, header included, parsing
+ * it in parallel.
+ * <p>
+ * The data is cut into pieces small enough to share the work between the threads of the fork/join
+ * pool; each piece is parsed by a {@link CsvTokenizer} into a {@link CepTable.Builder} of its own,
+ * and the builders are merged back in the order of the data, so that the table is the same as if it
+ * had been loaded on a single thread. The pieces are first cut after line feeds, then each is scanned
+ * in parallel for the quoted fields left open at its end: a piece following one whose last line feed
+ * is inside a quoted field (a multi-line field) does not start a record, and is joined to it. A file
+ * is mapped rather than read, so the pieces are parsed straight from the page cache.
+ * <p>
+ * The load runs in the fork/join pool of the calling thread, or in the common pool. Lines that do not
+ * hold an address are skipped with a warning.
+ *
+ * @author Marcel Tanuri
+ */
+final class CepCsvLoader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CepCsvLoader.class);
+
+    static final int FIELDS = 15;
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int BYTES_PER_ROW = 128;
+
+    private CepCsvLoader() {
+    }
+
+    /**
+     * Loads a CSV file.
+     *
+     * @param csv the CSV file
+     * @return the table
+     * @throws IOException if the file cannot be read
+     */
+    static CepTable load(Path csv) throws IOException {
+        try (FileChannel channel = FileChannel.open(csv, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("CSV file too large to load (" + channel.size() + " bytes): " + csv);
+            }
+            return load(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Loads CSV data from a stream, which is read to its end but not closed.
+     *
+     * @param csv the CSV data
+     * @return the table
+     * @throws IOException if the stream cannot be read
+     */
+    static CepTable load(InputStream csv) throws IOException {
+        return load(ByteBuffer.wrap(csv.readAllBytes()));
+    }
+
+    /**
+     * Loads CSV data.
+     *
+     * @param csv the CSV data, from index 0 to its limit
+     * @return the table
+     */
+    static CepTable load(ByteBuffer csv) {
+        int end = csv.limit();
+        int start = CsvTokenizer.nextLine(csv, 0, end); // Skip header
+        int parallelism = ForkJoinTask.inForkJoinPool()
+                ? ForkJoinTask.getPool().getParallelism()
+                : ForkJoinPool.getCommonPoolParallelism();
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, (end - start) / (parallelism * CHUNKS_PER_THREAD));
+        int[] bounds = _recordBounds(csv, start, end, chunkSize);
+        return new ChunkTask(csv, bounds, 0, bounds.length - 1).invoke().build();
+    }
+
+    /**
+     * Cuts the data into pieces of about the chunk size that each start with a record.
+     *
+     * @return the start of each piece, followed by the end of the data
+     */
+    private static int[] _recordBounds(ByteBuffer csv, int start, int end, int chunkSize) {
+        IntStream.Builder lines = IntStream.builder().add(start);
+        for (int line = CsvTokenizer.nextLine(csv, start + chunkSize - 1, end); line < end;
+                line = CsvTokenizer.nextLine(csv, line + chunkSize - 1, end)) {
+            lines.add(line);
+        }
+        int[] starts = lines.add(end).build().toArray();
+        int pieces = starts.length - 1;
+        // Whether each piece, entered at the start of a record, ends inside a quoted field.
+        boolean[] open = new boolean[pieces];
+        IntStream.range(0, pieces).parallel()
+                .forEach(i -> open[i] = CsvTokenizer.endsInQuotes(csv, starts[i], starts[i + 1], false));
+
+        int count = 1;
+        boolean inQuotes = open[0];
+        for (int i = 1; i < pieces; i++) {
+            if (inQuotes) {
+                // The piece continues the last record of the previous one: join them. This is rare
+                // enough to scan it again, from inside the quoted field.
+                inQuotes = CsvTokenizer.endsInQuotes(csv, starts[i], starts[i + 1], true);
+            } else {
+                starts[count++] = starts[i];
+                inQuotes = open[i];
+            }
+        }
+        starts[count++] = end;
+        return Arrays.copyOf(starts, count);
+    }
+
+    /**
+     * Adds the address of the current record of a tokenizer to a builder.
+     *
+     * @param builder the builder
+     * @param tokenizer the tokenizer, on a record of at least {@value #FIELDS} fields
+     * @throws IllegalArgumentException if the CEP is not eight digits, with or without a hyphen
+     */
+    static void addRecord(CepTable.Builder builder, CsvTokenizer tokenizer) {
+        builder.add(
+                cep(tokenizer.field(0)),
+                tokenizer.field(1),
+                tokenizer.field(2),
+                tokenizer.field(3),
+                tokenizer.field(4),
+                tokenizer.field(5),
+                tokenizer.field(6),
+                tokenizer.field(7),
+                tokenizer.field(8),
+                tokenizer.field(9),
+                tokenizer.field(10),
+                tokenizer.field(11),
+                tokenizer.field(12),
+                tokenizer.field(13),
+                tokenizer.field(14));
+    }
+
+    /**
+     * Removes the hyphen of a CEP written as {@code 01001-000}.
+     */
+    static String cep(String field) {
+        return field.indexOf('-') >= 0 ? field.replace("-", "") : field;
+    }
+
+    /**
+     * Parses a run of pieces of the data, split in halves until it is a single piece.
+     */
+    private static final class ChunkTask extends RecursiveTask<CepTable.Builder> {
+
+        private static final long serialVersionUID = 1L;
+
+        // Never serialized: the task only lives for the duration of a load.
+        private final transient ByteBuffer csv;
+        private final int[] bounds;
+        private final int from;
+        private final int to;
+
+        /**
+         * Creates a task parsing the pieces from {@code bounds[from]} to {@code bounds[to]}.
+         */
+        ChunkTask(ByteBuffer csv, int[] bounds, int from, int to) {
+            this.csv = csv;
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected CepTable.Builder compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                ChunkTask first = new ChunkTask(csv, bounds, from, middle);
+                first.fork();
+                CepTable.Builder second = new ChunkTask(csv, bounds, middle, to).compute();
+                return first.join().addAll(second);
+            }
+            return _parse();
+        }
+
+        private CepTable.Builder _parse() {
+            int start = bounds[from];
+            int end = bounds[to];
+            CepTable.Builder builder = CepTable.builder((end - start) / BYTES_PER_ROW);
+            CsvTokenizer tokenizer = new CsvTokenizer(csv, start, end);
+            while (tokenizer.next()) {
+                if (tokenizer.isBlank()) {
+                    continue;
+                }
+                if (tokenizer.fieldCount() < FIELDS) {
+                    LOGGER.warn("Skipping malformed cep.csv line: {}", tokenizer.record());
+                    continue;
+                }
+                try {
+                    addRecord(builder, tokenizer);
+                } catch (IllegalArgumentException e) {
+                    LOGGER.warn("Skipping malformed cep.csv line: {}", tokenizer.record());
+                }
+            }
+            return builder;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package io.github.marceltanuri.frameworks.restam3.demo.repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The changes of a delta file: CSV data in the format of {@code cep.csv}, header included, where a
+ * full line adds or replaces the address of its CEP and a line holding only a CEP removes it.
+ * <p>
+ * Since a {@link CepTable} is immutable, a delta is applied by building a new table: the rows of the
+ * base table that the delta does not touch are copied column by column, without parsing anything,
+ * then the addresses of the delta are appended. Lines that are neither an address nor a CEP are
+ * skipped with a warning.
+ *
+ * @author Marcel Tanuri
+ */
+final class CepDelta {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CepDelta.class);
+
+    private final CepTable upserts;
+    private final int[] deletions;
+    private final Set<String> ceps;
+
+    private CepDelta(CepTable upserts, int[] deletions, Set<String> ceps) {
+        this.upserts = upserts;
+        this.deletions = deletions;
+        this.ceps = ceps;
+    }
+
+    /**
+     * Reads a delta from a stream, which is read to its end but not closed.
+     *
+     * @param csv the delta data
+     * @return the delta
+     * @throws IOException if the stream cannot be read
+     */
+    static CepDelta read(InputStream csv) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(csv.readAllBytes());
+        CepTable.Builder builder = CepTable.builder(16);
+        int[] deletions = new int[16];
+        int deletionCount = 0;
+        CsvTokenizer tokenizer = new CsvTokenizer(data, CsvTokenizer.nextLine(data, 0, data.limit()), data.limit());
+        while (tokenizer.next()) {
+            if (tokenizer.isBlank()) {
+                continue;
+            }
+            try {
+                if (tokenizer.fieldCount() >= CepCsvLoader.FIELDS) {
+                    CepCsvLoader.addRecord(builder, tokenizer);
+                    continue;
+                }
+                int key = tokenizer.fieldCount() == 1 ? CepTable.parseCep(CepCsvLoader.cep(tokenizer.field(0))) : -1;
+                if (key >= 0) {
+                    if (deletionCount == deletions.length) {
+                        deletions = Arrays.copyOf(deletions, deletionCount * 2);
+                    }
+                    deletions[deletionCount++] = key;
+                    continue;
+                }
+            } catch (IllegalArgumentException e) {
+                // Malformed CEP, reported below
+            }
+            LOGGER.warn("Skipping malformed CEP delta line: {}", tokenizer.record());
+        }
+        CepTable upserts = builder.build();
+        deletions = Arrays.copyOf(deletions, deletionCount);
+        Arrays.sort(deletions);
+
+        Set<String> ceps = new LinkedHashSet<>();
+        for (int row = 0; row < upserts.size(); row++) {
+            ceps.add(CepTable.formatCep(upserts.key(row)));
+        }
+        for (int key : deletions) {
+            ceps.add(CepTable.formatCep(key));
+        }
+        return new CepDelta(upserts, deletions, Collections.unmodifiableSet(ceps));
+    }
+
+    /**
+     * Gets the CEPs the delta adds, replaces or removes.
+     *
+     * @return the CEPs, as eight digits
+     */
+    Set<String> ceps() {
+        return ceps;
+    }
+
+    /**
+     * Applies the delta to a table. A CEP both added and removed by the delta is added.
+     *
+     * @param base the table
+     * @return a new table, holding the addresses of the base table as changed by the delta
+     */
+    CepTable applyTo(CepTable base) {
+        CepTable.Builder builder = CepTable.builder(base.size() + upserts.size());
+        for (int row = 0; row < base.size(); row++) {
+            int key = base.key(row);
+            if (base.isLive(row) && upserts.rowOf(key) < 0 && Arrays.binarySearch(deletions, key) < 0) {
+                builder.addRow(base, row);
+            }
+        }
+        for (int row = 0; row < upserts.size(); row++) {
+            if (upserts.isLive(row)) {
+                builder.addRow(upserts, row);
+            }
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,359 @@
+package io.github.marceltanuri.frameworks.restam3.demo.repository;
+
+import java.util.Arrays;
+
+/**
+ * A spatial index of the coordinates of a {@link CepTable}, for nearest-neighbor searches: a k-d tree
+ * of the points, laid out implicitly in parallel arrays, where the node of a slice is its middle
+ * element and its children are the halves on each side. Only the current row of each CEP is indexed,
+ * and only if it has valid coordinates.
+ * <p>
+ * Points are indexed by their position on the unit sphere ({@code x}, {@code y}, {@code z}) rather
+ * than by latitude and longitude, so that the straight-line distance between two points grows with
+ * their distance on the surface, with no special case at the antimeridian or the poles. Each node
+ * splits on the axis along which its slice is the most spread, so the tree adapts to the addresses
+ * clustering in cities.
+ * <p>
+ * Many addresses share their coordinates (often those of their street or city), so rows within a
+ * centimeter of each other are indexed as a single point holding a group of rows: a search would
+ * otherwise have to visit every one of the ties. A search walks the nearer half first, keeping the
+ * best points in a bounded max-heap, and skips every half whose bounding box is farther than the
+ * worst of them, tracking the distance to the box as it goes down the tree.
+ *
+ * @author Marcel Tanuri
+ */
+final class CepGeoIndex {
+
+    /**
+     * The mean radius of the Earth, in kilometers.
+     */
+    static final double EARTH_RADIUS_KM = 6371.0088;
+
+    /**
+     * Coordinates are grouped in steps of 10<sup>-7</sup> degrees, about a centimeter.
+     */
+    private static final double STEPS_PER_DEGREE = 1e7;
+
+    private final double[][] coordinates;
+    private final int[] groups;
+    private final int[] groupStarts;
+    private final int[] rows;
+    private final byte[] axes;
+
+    private CepGeoIndex(double[][] coordinates, int[] groupStarts, int[] rows) {
+        this.coordinates = coordinates;
+        this.groupStarts = groupStarts;
+        this.rows = rows;
+        this.groups = new int[groupStarts.length - 1];
+        for (int group = 0; group < groups.length; group++) {
+            groups[group] = group;
+        }
+        this.axes = new byte[groups.length];
+    }
+
+    /**
+     * Builds the index of a table.
+     *
+     * @param table the table
+     * @return the index
+     */
+    static CepGeoIndex build(CepTable table) {
+        long[] locations = new long[table.size()];
+        int[] indexed = new int[table.size()];
+        int count = 0;
+        for (int row = 0; row < table.size(); row++) {
+            double latitude = table.latitude(row);
+            double longitude = table.longitude(row);
+            if (latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180 && table.isLive(row)) {
+                locations[count] = _location(latitude, longitude);
+                indexed[count++] = row;
+            }
+        }
+
+        // Group the rows by location: sort the distinct locations, then bucket the rows in their order.
+        long[] distinct = Arrays.copyOf(locations, count);
+        Arrays.parallelSort(distinct);
+        int groupCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (groupCount == 0 || distinct[i] != distinct[groupCount - 1]) {
+                distinct[groupCount++] = distinct[i];
+            }
+        }
+        int[] groupOf = new int[count];
+        int[] groupStarts = new int[groupCount + 1];
+        for (int i = 0; i < count; i++) {
+            groupOf[i] = Arrays.binarySearch(distinct, 0, groupCount, locations[i]);
+            groupStarts[groupOf[i] + 1]++;
+        }
+        for (int group = 0; group < groupCount; group++) {
+            groupStarts[group + 1] += groupStarts[group];
+        }
+        int[] rows = new int[count];
+        int[] next = Arrays.copyOf(groupStarts, groupCount);
+        for (int i = 0; i < count; i++) {
+            rows[next[groupOf[i]]++] = indexed[i];
+        }
+
+        double[][] coordinates = new double[3][groupCount];
+        for (int group = 0; group < groupCount; group++) {
+            double phi = Math.toRadians((distinct[group] >>> 32) / STEPS_PER_DEGREE - 90);
+            double lambda = Math.toRadians((distinct[group] & 0xFFFFFFFFL) / STEPS_PER_DEGREE - 180);
+            coordinates[0][group] = Math.cos(phi) * Math.cos(lambda);
+            coordinates[1][group] = Math.cos(phi) * Math.sin(lambda);
+            coordinates[2][group] = Math.sin(phi);
+        }
+        CepGeoIndex index = new CepGeoIndex(coordinates, groupStarts, rows);
+        index._build(0, groupCount);
+        return index;
+    }
+
+    /**
+     * Gets the number of rows indexed.
+     *
+     * @return the number of rows with coordinates
+     */
+    int size() {
+        return rows.length;
+    }
+
+    /**
+     * Finds the rows nearest to a point. Rows at the same distance, to the centimeter, may come in any
+     * order.
+     *
+     * @param latitude the latitude of the point, in decimal degrees
+     * @param longitude the longitude of the point, in decimal degrees
+     * @param k the maximum number of rows
+     * @param radiusKm the maximum distance, in kilometers, or {@link Double#POSITIVE_INFINITY}
+     * @return the rows, nearest first
+     */
+    int[] nearest(double latitude, double longitude, int k, double radiusKm) {
+        double phi = Math.toRadians(latitude);
+        double lambda = Math.toRadians(longitude);
+        double[] point = {Math.cos(phi) * Math.cos(lambda), Math.cos(phi) * Math.sin(lambda), Math.sin(phi)};
+        // The straight-line distance across the unit sphere of two points radiusKm apart on its surface.
+        double chord = radiusKm >= Math.PI * EARTH_RADIUS_KM
+                ? Double.POSITIVE_INFINITY
+                : 2 * Math.sin(radiusKm / (2 * EARTH_RADIUS_KM));
+        Neighbors neighbors = new Neighbors(Math.min(k, rows.length), chord * chord);
+        if (groups.length > 0) {
+            _search(0, groups.length, point, new double[3], 0, neighbors);
+        }
+        return neighbors._rows();
+    }
+
+    /**
+     * Computes the great-circle distance between two points with the haversine formula.
+     *
+     * @return the distance in kilometers
+     */
+    static double haversineKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double sinHalfPhi = Math.sin(Math.toRadians(latitude2 - latitude1) / 2);
+        double sinHalfLambda = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+        double h = sinHalfPhi * sinHalfPhi
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2)) * sinHalfLambda * sinHalfLambda;
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(h)));
+    }
+
+    /**
+     * Encodes coordinates to the centimeter: the latitude in the upper 32 bits, the longitude in the lower.
+     */
+    private static long _location(double latitude, double longitude) {
+        return Math.round((latitude + 90) * STEPS_PER_DEGREE) << 32 | Math.round((longitude + 180) * STEPS_PER_DEGREE);
+    }
+
+    private void _build(int low, int high) {
+        while (high - low > 1) {
+            int axis = _widestAxis(low, high);
+            int middle = (low + high) >>> 1;
+            _select(low, high, middle, axis);
+            axes[middle] = (byte) axis;
+            _build(low, middle);
+            low = middle + 1;
+        }
+    }
+
+    private int _widestAxis(int low, int high) {
+        int widest = 0;
+        double widestSpread = -1;
+        for (int axis = 0; axis < 3; axis++) {
+            double[] values = coordinates[axis];
+            double min = values[low];
+            double max = values[low];
+            for (int i = low + 1; i < high; i++) {
+                min = Math.min(min, values[i]);
+                max = Math.max(max, values[i]);
+            }
+            if (max - min > widestSpread) {
+                widest = axis;
+                widestSpread = max - min;
+            }
+        }
+        return widest;
+    }
+
+    /**
+     * Moves the point of rank {@code target} along an axis to that position, the lower points before
+     * it and the higher ones after. The three-way partition keeps points aligned on the axis, such as
+     * those of a street, from degrading the selection.
+     */
+    private void _select(int low, int high, int target, int axis) {
+        double[] values = coordinates[axis];
+        while (high - low > 1) {
+            double pivot = values[(low + high) >>> 1];
+            int lower = low;
+            int i = low;
+            int upper = high;
+            while (i < upper) {
+                if (values[i] < pivot) {
+                    _swap(lower++, i++);
+                } else if (values[i] > pivot) {
+                    _swap(i, --upper);
+                } else {
+                    i++;
+                }
+            }
+            if (target < lower) {
+                high = lower;
+            } else if (target >= upper) {
+                low = upper;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void _swap(int i, int j) {
+        for (double[] values : coordinates) {
+            double value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+        int group = groups[i];
+        groups[i] = groups[j];
+        groups[j] = group;
+    }
+
+    /**
+     * Searches a slice of the tree. The offsets are the distances, along each axis, from the point to
+     * the box bounding the slice, whose squared distance to the point is {@code boxDistance}; the
+     * far half of a node is skipped when its box is farther than the bound.
+     */
+    private void _search(int low, int high, double[] point, double[] offsets, double boxDistance, Neighbors neighbors) {
+        int middle = (low + high) >>> 1;
+        double dx = point[0] - coordinates[0][middle];
+        double dy = point[1] - coordinates[1][middle];
+        double dz = point[2] - coordinates[2][middle];
+        neighbors._offer(dx * dx + dy * dy + dz * dz, groups[middle]);
+        int axis = axes[middle];
+        double offset = point[axis] - coordinates[axis][middle];
+        int nearLow = offset < 0 ? low : middle + 1;
+        int nearHigh = offset < 0 ? middle : high;
+        int farLow = offset < 0 ? middle + 1 : low;
+        int farHigh = offset < 0 ? high : middle;
+        if (nearLow < nearHigh) {
+            _search(nearLow, nearHigh, point, offsets, boxDistance, neighbors);
+        }
+        double previous = offsets[axis];
+        double farDistance = boxDistance - previous * previous + offset * offset;
+        if (farLow < farHigh && farDistance <= neighbors._bound()) {
+            offsets[axis] = offset;
+            _search(farLow, farHigh, point, offsets, farDistance, neighbors);
+            offsets[axis] = previous;
+        }
+    }
+
+    /**
+     * The groups of rows nearest to a point: a max-heap of the fewest groups that hold {@code k} rows,
+     * whose root is dropped as soon as the others hold enough rows without it.
+     */
+    private final class Neighbors {
+
+        private final int k;
+        private final double maxDistance;
+        private final double[] distances;
+        private final int[] heapGroups;
+        private int size;
+        private int count;
+
+        Neighbors(int k, double maxDistance) {
+            this.k = k;
+            this.maxDistance = maxDistance;
+            this.distances = new double[k + 1];
+            this.heapGroups = new int[k + 1];
+        }
+
+        /**
+         * The squared distance a point must not exceed to be a candidate.
+         */
+        private double _bound() {
+            return count < k ? maxDistance : distances[0];
+        }
+
+        private void _offer(double distance, int group) {
+            if (count < k ? distance > maxDistance : distance >= distances[0]) {
+                return;
+            }
+            int i = size++;
+            while (i > 0 && distances[(i - 1) >>> 1] < distance) {
+                int parent = (i - 1) >>> 1;
+                distances[i] = distances[parent];
+                heapGroups[i] = heapGroups[parent];
+                i = parent;
+            }
+            distances[i] = distance;
+            heapGroups[i] = group;
+            count += _rowCount(group);
+            while (count - _rowCount(heapGroups[0]) >= k) {
+                count -= _rowCount(heapGroups[0]);
+                size--;
+                _siftDown(size, distances[size], heapGroups[size]);
+            }
+        }
+
+        private void _siftDown(int length, double distance, int group) {
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= length) {
+                    break;
+                }
+                if (child + 1 < length && distances[child + 1] > distances[child]) {
+                    child++;
+                }
+                if (distances[child] <= distance) {
+                    break;
+                }
+                distances[i] = distances[child];
+                heapGroups[i] = heapGroups[child];
+                i = child;
+            }
+            distances[i] = distance;
+            heapGroups[i] = group;
+        }
+
+        private int _rowCount(int group) {
+            return groupStarts[group + 1] - groupStarts[group];
+        }
+
+        /**
+         * Sorts the groups nearest first, and lists their rows up to {@code k}.
+         */
+        private int[] _rows() {
+            for (int end = size - 1; end > 0; end--) {
+                double distance = distances[end];
+                int group = heapGroups[end];
+                distances[end] = distances[0];
+                heapGroups[end] = heapGroups[0];
+                _siftDown(end, distance, group);
+            }
+            int[] nearest = new int[Math.min(k, count)];
+            int n = 0;
+            for (int i = 0; i < size && n < nearest.length; i++) {
+                for (int j = groupStarts[heapGroups[i]]; j < groupStarts[heapGroups[i] + 1] && n < nearest.length; j++) {
+                    nearest[n++] = rows[j];
+                }
+            }
+            return nearest;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package io.github.marceltanuri.frameworks.restam3.demo.repository;
+
+import io.github.marceltanuri.frameworks.restam3.demo.model.Endereco;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A page of the addresses of a range of CEPs, in ascending order of CEP.
+ * <p>
+ * A page is a view of the data the repository held when it was asked for, and stays consistent if
+ * the data is reloaded meanwhile. Its addresses are only built while it is iterated, one at a time,
+ * so that a large page can be streamed without being held in memory. The next page is asked for
+ * with the {@linkplain #getNext() cursor} of this one, which stays valid across reloads.
+ *
+ * @author Marcel Tanuri
+ */
+public final class CepPage implements Iterable<Endereco> {
+
+    private final CepTable table;
+    private final CepSortedIndex index;
+    private final int start;
+    private final int end;
+    private final boolean hasNext;
+
+    CepPage(CepTable table, CepSortedIndex index, int start, int end, boolean hasNext) {
+        this.table = table;
+        this.index = index;
+        this.start = start;
+        this.end = end;
+        this.hasNext = hasNext;
+    }
+
+    /**
+     * Gets the number of addresses in the page.
+     *
+     * @return the number of addresses
+     */
+    public int size() {
+        return end - start;
+    }
+
+    /**
+     * Gets the cursor of the next page: the last CEP of this one.
+     *
+     * @return the cursor, or null if this is the last page of the range
+     */
+    public String getNext() {
+        return hasNext ? CepTable.formatCep(index.key(end - 1)) : null;
+    }
+
+    /**
+     * Iterates over the addresses of the page, building each one as it is reached.
+     *
+     * @return an iterator over new addresses
+     */
+    @Override
+    public Iterator<Endereco> iterator() {
+        return new Iterator<>() {
+
+            private int position = start;
+
+            @Override
+            public boolean hasNext() {
+                return position < end;
+            }
+
+            @Override
+            public Endereco next() {
+                if (position >= end) {
+                    throw new NoSuchElementException();
+                }
+                return table.endereco(index.row(position++));
+            }
+        };
+    }
+}
@@ -1,17 +1,52 @@
 package io.github.marceltanuri.frameworks.restam3.demo.repository;
 
 import io.github.marceltanuri.frameworks.restam3.demo.model.Endereco;
-import io.github.marceltanuri.frameworks.restam3.demo.model.Geolocalizacao;
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * A repository for CEPs.
+ * <p>
+ * The addresses are held in a {@link CepTable}, a columnar layout that takes a fraction of the memory
+ * of one object per address; each lookup builds a new {@link Endereco}. They are loaded either from
+ * a CSV file in the format of {@code cep.csv}, parsed in parallel into the heap, or from a snapshot compiled by
+ * {@link CepSnapshotCompiler}, which is mapped in memory and opens instantly whatever its size (its
+ * checksum is only checked when {@value #VERIFY_PROPERTY} is set to true).
+ * <p>
+ * The data can be replaced while the repository is in use: {@link #reload()} reads its source again,
+ * {@link #applyDelta(InputStream)} applies the changes of a delta file, and {@link #watch()} reloads
+ * the source whenever its file changes. Each update builds a new, immutable table in the background
+ * with the indexes the current one uses, and publishes it with a single reference swap, so lookups never wait for an update and always see
+ * either the old data or the new one, never a mix. Updates are serialized; listeners registered with
+ * {@link #addChangeListener(Consumer)} are told about each one, for instance to invalidate caches.
+ * <p>
+ * A repository is thread-safe: a single instance can be shared by all the controllers.
  *
  * @author Marcel Tanuri
  */
@@ -19,37 +54,87 @@ public class CepRepository {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CepRepository.class);
 
-    private Map<String, Endereco> enderecos = new HashMap<>();
+    /**
+     * The system property naming the data the {@linkplain #CepRepository() default repository}
+     * loads, as accepted by {@link #load(String)}.
+     */
+    public static final String DATA_PROPERTY = "cep.data";
 
     /**
-     * Creates a new CepRepository and loads the CEPs from the CSV file.
+     * The system property that, set to {@code true}, makes the repository check snapshots against
+     * their checksum when it opens them, which reads the whole file instead of mapping it lazily.
+     */
+    public static final String VERIFY_PROPERTY = "cep.verify";
+
+    /**
+     * Where the default repository looks for its data, in order, when {@value #DATA_PROPERTY} is not
+     * set: the snapshot the build compiles into the classes, then the CSV it is compiled from.
+     */
+    private static final List<String> DEFAULT_LOCATIONS = List.of("cep.idx", "cep.csv");
+
+    /**
+     * How long the source file must stay unchanged before {@link #watch()} reloads it, so that a file
+     * being written is not read halfway.
+     */
+    private static final long QUIET_PERIOD_MILLIS = 500;
+
+    private final String source;
+    private final AtomicReference<Snapshot> snapshot;
+    private final ReentrantLock updateLock = new ReentrantLock();
+    private final List<Consumer<Change>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates a new CepRepository and loads the CEPs from the location named by the
+     * {@value #DATA_PROPERTY} system property or, if it is not set, from the {@code cep.idx} snapshot
+     * or the {@code cep.csv} file on the class path. If nothing can be loaded, the repository is empty.
      */
     public CepRepository() {
-        try (BufferedReader br = new BufferedReader(new FileReader("src/main/resources/cep.csv"))) {
-            String line;
-            br.readLine(); // Skip header
-            while ((line = br.readLine()) != null) {
-                String[] values = line.split(";");
-                Endereco endereco = new Endereco();
-                endereco.setCep(values[0].replaceAll("\"", "").replaceAll("-", ""));
-                endereco.setLogradouro(values[1].replaceAll("\"", ""));
-                endereco.setComplemento(values[2].replaceAll("\"", ""));
-                endereco.setUnidade(values[3].replaceAll("\"", ""));
-                endereco.setBairro(values[4].replaceAll("\"", ""));
-                endereco.setLocalidade(values[5].replaceAll("\"", ""));
-                endereco.setUf(values[6].replaceAll("\"", ""));
-                endereco.setEstado(values[7].replaceAll("\"", ""));
-                endereco.setRegiao(values[8].replaceAll("\"", ""));
-                endereco.setIbge(values[9].replaceAll("\"", ""));
-                endereco.setGia(values[10].replaceAll("\"", ""));
-                endereco.setDdd(values[11].replaceAll("\"", ""));
-                endereco.setSiafi(values[12].replaceAll("\"", ""));
-                endereco.setGeolocalizacao(new Geolocalizacao(values[13].replaceAll("\"", ""), values[14].replaceAll("\"", "")));
-                enderecos.put(endereco.getCep(),endereco);
-            }
-        } catch (IOException e) {
-            LOGGER.error("Error reading cep.csv", e);
-        }
+        this(_loadDefault());
+    }
+
+    /**
+     * Creates a new CepRepository and loads the CEPs from UTF-8 CSV data in the format of
+     * {@code cep.csv}, header included, parsed in parallel. The stream is read to its end but not
+     * closed.
+     *
+     * @param csv the CSV data
+     * @throws IOException if the data cannot be read
+     */
+    public CepRepository(InputStream csv) throws IOException {
+        this(CepCsvLoader.load(csv));
+    }
+
+    /**
+     * Creates a new CepRepository holding the addresses of a table.
+     *
+     * @param table the table
+     */
+    public CepRepository(CepTable table) {
+        this(table, null);
+    }
+
+    private CepRepository(CepRepository loaded) {
+        this(loaded.getTable(), loaded.source);
+    }
+
+    private CepRepository(CepTable table, String source) {
+        this.source = source;
+        this.snapshot = new AtomicReference<>(new Snapshot(table, 1, Instant.now()));
+    }
+
+    /**
+     * Loads a repository from a CSV file or a snapshot, told apart by their contents.
+     * <p>
+     * The location is looked up first as a file path, then as a class path resource, so that the
+     * data can be packaged with the application. A snapshot is mapped in memory; one packaged in a
+     * jar is first copied to a temporary file, since it cannot be mapped from inside the archive.
+     *
+     * @param location the path or the class path resource name of the data
+     * @return the repository
+     * @throws IOException if the data cannot be found or read
+     */
+    public static CepRepository load(String location) throws IOException {
+        return new CepRepository(_read(location), location);
     }
 
     /**
@@ -59,6 +144,468 @@ public class CepRepository {
      * @return the address, or null if not found
      */
     public Endereco findByCep(String cep) {
-        return enderecos.get(cep);
+        CepTable table = snapshot.get().table();
+        int row = table.rowOf(cep);
+        return row >= 0 ? table.endereco(row) : null;
+    }
+
+    /**
+     * Finds a page of the addresses of a range of CEPs, in ascending order of CEP.
+     *
+     * @param from the first CEP of the range, as eight digits with or without a hyphen
+     * @param to the last CEP of the range, included
+     * @param after the {@linkplain CepPage#getNext() cursor} of the previous page, or null for the
+     *              first page
+     * @param limit the maximum number of addresses in the page
+     * @return the page, which holds no address if the range is empty or reversed
+     * @throws IllegalArgumentException if a CEP or the cursor is malformed, or the limit is not positive
+     */
+    public CepPage findRange(String from, String to, String after, int limit) {
+        return _page(_parseCep(from), _parseCep(to), after, limit);
+    }
+
+    /**
+     * Finds a page of the addresses whose CEP starts with a prefix, in ascending order of CEP.
+     *
+     * @param prefix up to eight digits, with or without the hyphen of {@code 01001-000}; an empty
+     *               prefix matches every CEP
+     * @param after the {@linkplain CepPage#getNext() cursor} of the previous page, or null for the
+     *              first page
+     * @param limit the maximum number of addresses in the page
+     * @return the page
+     * @throws IllegalArgumentException if the prefix or the cursor is malformed, or the limit is not positive
+     */
+    public CepPage findByPrefix(String prefix, String after, int limit) {
+        String digits = CepCsvLoader.cep(prefix);
+        if (digits.length() > 8 || !digits.chars().allMatch(c -> c >= '0' && c <= '9')) {
+            throw new IllegalArgumentException("Invalid CEP prefix: " + prefix);
+        }
+        int span = 1;
+        for (int i = digits.length(); i < 8; i++) {
+            span *= 10;
+        }
+        int first = digits.isEmpty() ? 0 : Integer.parseInt(digits) * span;
+        return _page(first, first + span - 1, after, limit);
+    }
+
+    /**
+     * Finds the addresses nearest to a point, by great-circle distance. Addresses without coordinates
+     * are never found.
+     *
+     * @param latitude the latitude of the point, in decimal degrees
+     * @param longitude the longitude of the point, in decimal degrees
+     * @param k the maximum number of addresses
+     * @param radiusKm the maximum distance from the point, in kilometers, or
+     *                 {@link Double#POSITIVE_INFINITY} for no limit
+     * @return the addresses, nearest first
+     * @throws IllegalArgumentException if the point is not on Earth, or k or the radius is not positive
+     */
+    public List<Neighbor> findNearest(double latitude, double longitude, int k, double radiusKm) {
+        if (!(latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180)) {
+            throw new IllegalArgumentException("Invalid coordinates: " + latitude + ", " + longitude);
+        }
+        if (k <= 0 || !(radiusKm > 0)) {
+            throw new IllegalArgumentException("Invalid k or radius: " + k + ", " + radiusKm);
+        }
+        CepTable table = snapshot.get().table();
+        int[] rows = table.geoIndex().nearest(latitude, longitude, k, radiusKm);
+        List<Neighbor> nearest = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            double distanceKm = CepGeoIndex.haversineKm(latitude, longitude, table.latitude(row), table.longitude(row));
+            nearest.add(new Neighbor(table.endereco(row), distanceKm));
+        }
+        // The index ranks rows to the centimeter; the exact distances settle the order of near ties.
+        nearest.sort(Comparator.comparingDouble(Neighbor::distanceKm));
+        return nearest;
+    }
+
+    /**
+     * Searches the addresses by the words of their street, neighborhood and city names, ignoring case
+     * and accents and tolerating a typo or two in each word. The last word is also matched as the
+     * start of a longer one, unless the query ends with a space, so that a query can be searched as it
+     * is typed. The full-text index is built on the first search of each version of the data.
+     *
+     * @param query the words to search
+     * @param limit the maximum number of addresses
+     * @return the addresses, those matching the most words of the query first, or none if the query
+     *         holds no searchable word
+     * @throws IllegalArgumentException if the query is null or the limit is not positive
+     */
+    public List<Match> search(String query, int limit) {
+        if (query == null || limit <= 0) {
+            throw new IllegalArgumentException("Invalid query or limit: " + query + ", " + limit);
+        }
+        CepTable table = snapshot.get().table();
+        List<CepTextIndex.Hit> hits = table.textIndex().search(query, limit);
+        List<Match> matches = new ArrayList<>(hits.size());
+        for (CepTextIndex.Hit hit : hits) {
+            matches.add(new Match(table.endereco(hit.row()), hit.words(), hit.score()));
+        }
+        return matches;
+    }
+
+    /**
+     * Gets the current data, with its version and publication time, read together: the separate
+     * getters below may each see a different version while the data is being updated.
+     *
+     * @return the current snapshot
+     */
+    public Snapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Gets the table holding the addresses.
+     *
+     * @return the current table
+     */
+    public CepTable getTable() {
+        return snapshot.get().table();
+    }
+
+    /**
+     * Gets the version of the data, which starts at 1 and is incremented by each update.
+     *
+     * @return the version of the current table
+     */
+    public long getVersion() {
+        return snapshot.get().version();
+    }
+
+    /**
+     * Gets when the current data was published.
+     *
+     * @return the instant the current table replaced the previous one, or was first loaded
+     */
+    public Instant getLoadedAt() {
+        return snapshot.get().loadedAt();
+    }
+
+    /**
+     * Registers a listener told about each update, on the thread that made it, once the new data is
+     * visible to lookups.
+     *
+     * @param listener the listener
+     */
+    public void addChangeListener(Consumer<Change> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Replaces all the addresses.
+     *
+     * @param table the new table
+     */
+    public void replace(CepTable table) {
+        updateLock.lock();
+        try {
+            _publish(table, null);
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the source of the repository again and replaces all the addresses with its contents. If
+     * the source cannot be read, the current addresses are kept.
+     *
+     * @throws IOException if the source cannot be found or read
+     * @throws IllegalStateException if the repository was not loaded from a location
+     */
+    public void reload() throws IOException {
+        if (source == null) {
+            throw new IllegalStateException("The repository was not loaded from a location");
+        }
+        updateLock.lock();
+        try {
+            long start = System.nanoTime();
+            Snapshot published = _publish(_read(source), null);
+            LOGGER.info("Reloaded {} CEPs from {} in {} ms (version {})", published.table().size(), source,
+                    (System.nanoTime() - start) / 1_000_000, published.version());
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Applies a delta file: CSV data in the format of {@code cep.csv}, header included, where a full
+     * line adds or replaces the address of its CEP and a line holding only a CEP removes it. The
+     * other addresses are kept as they are.
+     *
+     * @param delta the delta file
+     * @return the CEPs the delta changed
+     * @throws IOException if the file cannot be read
+     */
+    public Set<String> applyDelta(Path delta) throws IOException {
+        try (InputStream in = Files.newInputStream(delta)) {
+            return applyDelta(in);
+        }
+    }
+
+    /**
+     * Applies delta data, in the format described by {@link #applyDelta(Path)}. The stream is read to
+     * its end but not closed.
+     *
+     * @param delta the delta data
+     * @return the CEPs the delta changed
+     * @throws IOException if the data cannot be read
+     */
+    public Set<String> applyDelta(InputStream delta) throws IOException {
+        CepDelta parsed = CepDelta.read(delta);
+        updateLock.lock();
+        try {
+            long start = System.nanoTime();
+            Snapshot published = _publish(parsed.applyTo(snapshot.get().table()), parsed.ceps());
+            LOGGER.info("Applied a delta of {} CEPs in {} ms (version {})", parsed.ceps().size(),
+                    (System.nanoTime() - start) / 1_000_000, published.version());
+            return parsed.ceps();
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Tells whether the source of the repository is a file that {@link #watch()} can watch.
+     *
+     * @return whether the repository was loaded from a file, or from a class path resource that is one
+     */
+    public boolean isWatchable() {
+        return _sourceFile() != null;
+    }
+
+    /**
+     * Watches the source file of the repository, and reloads it whenever it changes, once it has been
+     * left alone for half a second. The file is watched on a background thread until the returned
+     * handle is closed; failed reloads are logged and keep the current addresses.
+     * <p>
+     * A snapshot is mapped in memory, so it must be replaced by moving a new file over it, as
+     * {@link CepSnapshotCompiler} does, rather than rewritten in place.
+     *
+     * @return the handle that stops watching
+     * @throws IOException if the directory of the file cannot be watched
+     * @throws IllegalStateException if the repository was not {@linkplain #isWatchable() loaded from a file}
+     */
+    public Closeable watch() throws IOException {
+        Path file = _sourceFile();
+        if (file == null) {
+            throw new IllegalStateException("The repository was not loaded from a file: " + source);
+        }
+        WatchService watcher = file.getFileSystem().newWatchService();
+        try {
+            file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            watcher.close();
+            throw e;
+        }
+        Thread.ofVirtual().name("cep-watcher").start(() -> _watch(watcher, file));
+        LOGGER.info("Watching {} for changes", file);
+        return watcher;
+    }
+
+    private void _watch(WatchService watcher, Path file) {
+        try {
+            while (true) {
+                if (!_changed(watcher.take(), file)) {
+                    continue;
+                }
+                // Wait for the writer to be done with the file.
+                WatchKey key;
+                while ((key = watcher.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    _changed(key, file);
+                }
+                try {
+                    reload();
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.error("Error reloading " + file + ", keeping version " + getVersion(), e);
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            LOGGER.info("Stopped watching {}", file);
+        }
+    }
+
+    private static boolean _changed(WatchKey key, Path file) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context());
+        }
+        key.reset();
+        return changed;
+    }
+
+    /**
+     * Publishes a new table, after building the indexes the current one has built. The caller holds
+     * the update lock.
+     */
+    private Snapshot _publish(CepTable table, Set<String> ceps) {
+        Snapshot current = snapshot.get();
+        if (table != current.table()) {
+            table.buildIndexesOf(current.table());
+        }
+        Snapshot published = new Snapshot(table, current.version() + 1, Instant.now());
+        snapshot.set(published);
+        Change change = new Change(published.version(), ceps);
+        for (Consumer<Change> listener : listeners) {
+            try {
+                listener.accept(change);
+            } catch (RuntimeException e) {
+                LOGGER.error("Error notifying a CEP change listener", e);
+            }
+        }
+        return published;
+    }
+
+    private CepPage _page(int from, int to, String after, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Invalid page size: " + limit);
+        }
+        if (after != null) {
+            from = Math.max(from, _parseCep(after) + 1);
+        }
+        CepTable table = snapshot.get().table();
+        CepSortedIndex index = table.sortedIndex();
+        int start = index.lowerBound(from);
+        int stop = from <= to ? Math.max(start, index.lowerBound(to + 1)) : start;
+        int end = (int) Math.min(stop, (long) start + limit);
+        return new CepPage(table, index, start, end, end < stop);
+    }
+
+    private static int _parseCep(String cep) {
+        int key = CepTable.parseCep(cep != null ? CepCsvLoader.cep(cep) : null);
+        if (key < 0) {
+            throw new IllegalArgumentException("Invalid CEP: " + cep);
+        }
+        return key;
+    }
+
+    private static CepRepository _loadDefault() {
+        String property = System.getProperty(DATA_PROPERTY);
+        for (String location : property != null ? List.of(property) : DEFAULT_LOCATIONS) {
+            try {
+                long start = System.nanoTime();
+                CepRepository repository = load(location);
+                LOGGER.info("Loaded {} CEPs from {} in {} ms", repository.getTable().size(), location, (System.nanoTime() - start) / 1_000_000);
+                return repository;
+            } catch (NoSuchFileException e) {
+                LOGGER.debug("No CEP data at {}", location);
+            } catch (IOException e) {
+                LOGGER.error("Error reading " + location, e);
+            }
+        }
+        LOGGER.error("No CEP data found at {}", property != null ? property : DEFAULT_LOCATIONS);
+        return new CepRepository(CepTable.builder(0).build());
+    }
+
+    private static CepTable _read(String location) throws IOException {
+        Path path = _asPath(location);
+        if (path != null && Files.isRegularFile(path)) {
+            return _open(path);
+        }
+        URL resource = CepRepository.class.getClassLoader().getResource(location);
+        if (resource == null) {
+            throw new NoSuchFileException(location);
+        }
+        if ("file".equals(resource.getProtocol())) {
+            return _open(_toPath(resource));
+        }
+        try (InputStream in = new BufferedInputStream(resource.openStream())) {
+            if (!CepSnapshot.isSnapshot(in)) {
+                return CepCsvLoader.load(in);
+            }
+            Path copy = Files.createTempFile("cep", ".idx");
+            copy.toFile().deleteOnExit();
+            Files.copy(in, copy, StandardCopyOption.REPLACE_EXISTING);
+            return CepTable.open(copy, Boolean.getBoolean(VERIFY_PROPERTY));
+        }
+    }
+
+    private static CepTable _open(Path path) throws IOException {
+        if (CepSnapshot.isSnapshot(path)) {
+            return CepTable.open(path, Boolean.getBoolean(VERIFY_PROPERTY));
+        }
+        return CepCsvLoader.load(path);
+    }
+
+    private Path _sourceFile() {
+        if (source == null) {
+            return null;
+        }
+        Path path = _asPath(source);
+        if (path != null && Files.isRegularFile(path)) {
+            return path.toAbsolutePath();
+        }
+        URL resource = CepRepository.class.getClassLoader().getResource(source);
+        if (resource == null || !"file".equals(resource.getProtocol())) {
+            return null;
+        }
+        try {
+            return _toPath(resource);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static Path _toPath(URL resource) throws IOException {
+        try {
+            return Path.of(resource.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid resource URL: " + resource, e);
+        }
+    }
+
+    private static Path _asPath(String location) {
+        try {
+            return Path.of(location);
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The data published at a given time.
+     *
+     * @param table the table holding the addresses
+     * @param version the version of the data
+     * @param loadedAt when the table was published
+     */
+    public record Snapshot(CepTable table, long version, Instant loadedAt) {
+    }
+
+    /**
+     * An address found near a point.
+     *
+     * @param endereco the address
+     * @param distanceKm its distance from the point, in kilometers
+     */
+    public record Neighbor(Endereco endereco, double distanceKm) {
+    }
+
+    /**
+     * An address found by a text search.
+     *
+     * @param endereco the address
+     * @param words the number of words of the query it matches, which ranks addresses first
+     * @param score how well it matches them, which ranks addresses matching as many words
+     */
+    public record Match(Endereco endereco, int words, double score) {
+    }
+
+    /**
+     * An update of the data of a repository.
+     *
+     * @param version the version of the data after the update
+     * @param ceps the CEPs the update added, replaced or removed, or null if it replaced all the
+     *             addresses
+     */
+    public record Change(long version, Set<String> ceps) {
+
+        /**
+         * Tells whether the update replaced all the addresses, rather than the given CEPs only.
+         *
+         * @return whether any CEP may have changed
+         */
+        public boolean isFull() {
+            return ceps == null;
+        }
     }
 }
@@ -0,0 +1,191 @@
+package io.github.marceltanuri.frameworks.restam3.demo.repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * The binary snapshot format of a {@link CepTable}, and the helpers its columns use to lay
+ * themselves out in it.
+ * <p>
+ * A snapshot is a 32-byte header followed by the payload: the sections of the table's columns, one
+ * after the other, each starting on an 8-byte boundary, in little-endian byte order. The header holds
+ * a magic number, the format version, the payload length and its CRC32C checksum:
+ * <pre>
+ * offset  size
+ *      0     8  magic "R3CEPIDX"
+ *      8     4  format version
+ *     12     4  reserved (0)
+ *     16     8  payload length
+ *     24     4  payload CRC32C
+ *     28     4  reserved (0)
+ * </pre>
+ * The payload is the same whether the table lives in the heap or in a mapped file, so that a table
+ * opened from a snapshot reads its columns straight from the mapped pages.
+ * <p>
+ * Opening a snapshot only checks its header, and its table the bounds of its sections, so that it
+ * takes the same time whatever the size of the file. The checksum, whose computation reads every
+ * page, is checked on request: {@link CepSnapshotCompiler} checks each snapshot it writes.
+ *
+ * @author Marcel Tanuri
+ */
+final class CepSnapshot {
+
+    static final int VERSION = 1;
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    private static final byte[] MAGIC = {'R', '3', 'C', 'E', 'P', 'I', 'D', 'X'};
+    private static final int HEADER_SIZE = 32;
+
+    private CepSnapshot() {
+    }
+
+    /**
+     * Maps a snapshot file and checks its header.
+     *
+     * @param path the snapshot file
+     * @param verifyChecksum whether to also check the checksum of the payload, reading all of it
+     * @return the payload, read-only, positioned at its start
+     * @throws IOException if the file cannot be read, or is not a valid snapshot
+     */
+    static ByteBuffer map(Path path, boolean verifyChecksum) throws IOException {
+        MappedByteBuffer file;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping outlives the channel.
+            file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        file.order(ORDER);
+        if (file.limit() < HEADER_SIZE || !_hasMagic(file)) {
+            throw new IOException("Not a CEP snapshot: " + path);
+        }
+        int version = file.getInt(8);
+        if (version != VERSION) {
+            throw new IOException("Unsupported CEP snapshot version " + version + " (expected " + VERSION + "): " + path);
+        }
+        long length = file.getLong(16);
+        if (length != file.limit() - HEADER_SIZE) {
+            throw new IOException("Truncated CEP snapshot: " + path);
+        }
+        ByteBuffer payload = file.slice(HEADER_SIZE, (int) length).order(ORDER);
+        if (verifyChecksum && _checksum(payload) != file.getInt(24)) {
+            throw new IOException("Corrupted CEP snapshot (checksum mismatch): " + path);
+        }
+        return payload;
+    }
+
+    /**
+     * Writes a snapshot file. The file is written beside the target and then moved over it, so that
+     * readers never see a partial snapshot.
+     *
+     * @param payload the payload, from its position to its limit
+     * @param path the snapshot file
+     * @throws IOException if the file cannot be written
+     */
+    static void write(ByteBuffer payload, Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ORDER);
+        header.put(MAGIC).putInt(VERSION).putInt(0).putLong(payload.remaining()).putInt(_checksum(payload)).putInt(0);
+        header.flip();
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer body = payload.duplicate();
+                while (header.hasRemaining() || body.hasRemaining()) {
+                    channel.write(new ByteBuffer[] {header, body});
+                }
+                channel.force(true);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Tells whether a file is a snapshot, from its magic number.
+     *
+     * @param path the file
+     * @return whether the file starts like a snapshot
+     * @throws IOException if the file cannot be read
+     */
+    static boolean isSnapshot(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return Arrays.equals(in.readNBytes(MAGIC.length), MAGIC);
+        }
+    }
+
+    /**
+     * Tells whether a stream holds a snapshot, from its magic number. The stream must support marks,
+     * and is reset to where it was.
+     *
+     * @param in the stream
+     * @return whether the stream starts like a snapshot
+     * @throws IOException if the stream cannot be read
+     */
+    static boolean isSnapshot(InputStream in) throws IOException {
+        in.mark(MAGIC.length);
+        try {
+            return Arrays.equals(in.readNBytes(MAGIC.length), MAGIC);
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * Rounds a section length up to the 8-byte alignment of sections.
+     */
+    static int align(int length) {
+        return (length + 7) & ~7;
+    }
+
+    /**
+     * Pads a payload being written up to the start of the next section.
+     */
+    static void pad(ByteBuffer out) {
+        while ((out.position() & 7) != 0) {
+            out.put((byte) 0);
+        }
+    }
+
+    /**
+     * Takes the next section of a payload being read.
+     *
+     * @param in the payload, positioned at the section; moved to the next one
+     * @param length the length of the section
+     * @return the section, indexed from 0
+     * @throws IllegalArgumentException if the section does not fit in the payload
+     */
+    static ByteBuffer section(ByteBuffer in, int length) {
+        if (length < 0 || length > in.remaining()) {
+            throw new IllegalArgumentException("Section of " + length + " bytes out of bounds");
+        }
+        ByteBuffer section = in.slice(in.position(), length).order(ORDER);
+        in.position(in.position() + align(length));
+        return section;
+    }
+
+    private static boolean _hasMagic(ByteBuffer file) {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (file.get(i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int _checksum(ByteBuffer payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,59 @@
+package io.github.marceltanuri.frameworks.restam3.demo.repository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Compiles a CSV file in the format of {@code cep.csv} into a snapshot that {@link CepRepository}
+ * can map in memory instead of parsing the CSV at each start:
+ * <pre>
+ * java -cp restam3.jar io.github.marceltanuri.frameworks.restam3.demo.repository.CepSnapshotCompiler cep.csv cep.idx
+ * </pre>
+ * The build runs it on {@code src/main/resources/cep.csv}, so that the classes (and the jar) carry a
+ * {@code cep.idx} snapshot.
+ *
+ * @author Marcel Tanuri
+ */
+public final class CepSnapshotCompiler {
+
+    private CepSnapshotCompiler() {
+    }
+
+    /**
+     * Compiles a CSV file into a snapshot, and checks the written file against its checksum, which
+     * opening the snapshot later does not do.
+     *
+     * @param csv the CSV file
+     * @param snapshot the snapshot file, replaced if it exists
+     * @return the compiled table
+     * @throws IOException if the CSV file cannot be read, or the snapshot cannot be written or fails its checksum
+     */
+    public static CepTable compile(Path csv, Path snapshot) throws IOException {
+        CepTable table = CepCsvLoader.load(csv);
+        Path directory = snapshot.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        table.write(snapshot);
+        CepTable.open(snapshot, true);
+        return table;
+    }
+
+    /**
+     * The main method.
+     *
+     * @param args the CSV file and the snapshot file
+     * @throws IOException if the CSV file cannot be read or the snapshot cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: CepSnapshotCompiler <cep.csv> <cep.idx>");
+            System.exit(2);
+        }
+        long start = System.nanoTime();
+        CepTable table = compile(Path.of(args[0]), Path.of(args[1]));
+        System.out.printf("Compiled %,d CEPs into %s (%,d bytes) in %d ms%n", table.size(), args[1],
+                Files.size(Path.of(args[1])), (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.marceltanuri.frameworks.restam3.demo.repository;
+
+import java.util.Arrays;
+
+/**
+ * The CEPs of a {@link CepTable} in ascending order, for range and prefix scans: a sorted array of
+ * the CEPs, encoded as integers, and a parallel array of their rows. Only the current row of each
+ * CEP is indexed.
+ * <p>
+ * A range of CEPs maps to a contiguous slice of the arrays, found with two binary searches, so a
+ * scan reads no more than the rows it returns.
+ *
+ * @author Marcel Tanuri
+ */
+final class CepSortedIndex {
+
+    private final int[] keys;
+    private final int[] rows;
+
+    private CepSortedIndex(int[] keys, int[] rows) {
+        this.keys = keys;
+        this.rows = rows;
+    }
+
+    /**
+     * Builds the index of a table.
+     *
+     * @param table the table
+     * @return the index
+     */
+    static CepSortedIndex build(CepTable table) {
+        // CEPs are positive and below 2^31: sorting them with their row in the low bits keeps the pairs together.
+        long[] entries = new long[table.size()];
+        int count = 0;
+        for (int row = 0; row < table.size(); row++) {
+            if (table.isLive(row)) {
+                entries[count++] = (long) table.key(row) << 32 | row;
+            }
+        }
+        Arrays.parallelSort(entries, 0, count);
+        int[] keys = new int[count];
+        int[] rows = new int[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = (int) (entries[i] >>> 32);
+            rows[i] = (int) entries[i];
+        }
+        return new CepSortedIndex(keys, rows);
+    }
+
+    /**
+     * Gets the number of CEPs.
+     *
+     * @return the number of CEPs
+     */
+    int size() {
+        return keys.length;
+    }
+
+    /**
+     * Gets the CEP at a position.
+     *
+     * @param position the position, in ascending order of CEP
+     * @return the CEP as an integer
+     */
+    int key(int position) {
+        return keys[position];
+    }
+
+    /**
+     * Gets the row of the CEP at a position.
+     *
+     * @param position the position, in ascending order of CEP
+     * @return the row in the table
+     */
+    int row(int position) {
+        return rows[position];
+    }
+
+    /**
+     * Finds the position of the first CEP not lower than a given one.
+     *
+     * @param key the CEP as an integer
+     * @return the position, or {@link #size()} if every CEP is lower
+     */
+    int lowerBound(int key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,718 @@
+package io.github.marceltanuri.frameworks.restam3.demo.repository;
+
+import io.github.marceltanuri.frameworks.restam3.demo.model.Endereco;
+import io.github.marceltanuri.frameworks.restam3.demo.model.Geolocalizacao;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An immutable, column-oriented table of addresses, indexed by CEP.
+ * <p>
+ * Instead of one {@link Endereco} object (and some fifteen strings) per address, each attribute is
+ * stored in a column shared by all the rows: CEPs as {@code int}s, attributes with few distinct values
+ * (neighborhoods, cities, states...) as dictionary codes, street names packed as UTF-8 and coordinates
+ * as {@code double}s. CEPs are looked up in an open-addressing hash table of row numbers; range scans
+ * use a {@link CepSortedIndex}, nearest-neighbor searches a {@link CepGeoIndex} and text searches a
+ * {@link CepTextIndex}, all built in the heap on first use, once however many threads ask for them.
+ * An {@link Endereco} is only built when a row is read, and belongs to the caller.
+ * <p>
+ * The columns are all laid out in a single buffer, in the {@link CepSnapshot} format: a table built
+ * from rows keeps it in the heap, while a table {@linkplain #open(Path) opened} from a snapshot file
+ * reads it straight from the mapped file, so that opening it takes the same time and heap whatever
+ * the number of rows. {@link #write(Path)} saves a table as a snapshot.
+ * <p>
+ * Coordinates are kept as numbers, along with the number of decimal places they were written with, so
+ * that they read back as they were given; a missing coordinate reads as an empty string.
+ *
+ * @author Marcel Tanuri
+ */
+public final class CepTable {
+
+    private static final int MAX_SCALE = 9;
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L};
+
+    private final ByteBuffer payload;
+    private final int size;
+    private final int slotMask;
+    private final ByteBuffer ceps;
+    private final ByteBuffer slots;
+    private final ByteBuffer latitudes;
+    private final ByteBuffer longitudes;
+    private final ByteBuffer latitudeScales;
+    private final ByteBuffer longitudeScales;
+    private final Utf8Column logradouro;
+    private final DictionaryColumn complemento;
+    private final DictionaryColumn unidade;
+    private final DictionaryColumn bairro;
+    private final DictionaryColumn localidade;
+    private final DictionaryColumn uf;
+    private final DictionaryColumn estado;
+    private final DictionaryColumn regiao;
+    private final DictionaryColumn ibge;
+    private final DictionaryColumn gia;
+    private final DictionaryColumn ddd;
+    private final DictionaryColumn siafi;
+    // Each index is built once, by the first caller, while the others wait for it. Not monitors:
+    // the callers may be Virtual Threads, which would pin their carrier while waiting.
+    private final ReentrantLock sortedIndexLock = new ReentrantLock();
+    private final ReentrantLock geoIndexLock = new ReentrantLock();
+    private final ReentrantLock textIndexLock = new ReentrantLock();
+    private volatile CepSortedIndex sortedIndex;
+    private volatile CepGeoIndex geoIndex;
+    private volatile CepTextIndex textIndex;
+
+    private CepTable(ByteBuffer payload) {
+        this.payload = payload.asReadOnlyBuffer().order(CepSnapshot.ORDER);
+        ByteBuffer in = payload.duplicate().order(CepSnapshot.ORDER);
+        this.size = in.getInt();
+        int slotCount = in.getInt();
+        // Bounds the products below: each row takes more than a double, and each slot an int.
+        if (size < 0 || size > payload.limit() / Double.BYTES
+                || Integer.bitCount(slotCount) != 1 || slotCount > payload.limit() / Integer.BYTES) {
+            throw new IllegalArgumentException("Invalid table size " + size + " or slot count " + slotCount);
+        }
+        this.slotMask = slotCount - 1;
+        this.ceps = CepSnapshot.section(in, size * Integer.BYTES);
+        this.slots = CepSnapshot.section(in, slotCount * Integer.BYTES);
+        this.latitudes = CepSnapshot.section(in, size * Double.BYTES);
+        this.longitudes = CepSnapshot.section(in, size * Double.BYTES);
+        this.latitudeScales = CepSnapshot.section(in, size);
+        this.longitudeScales = CepSnapshot.section(in, size);
+        this.logradouro = Utf8Column.read(in, size);
+        this.complemento = DictionaryColumn.read(in, size);
+        this.unidade = DictionaryColumn.read(in, size);
+        this.bairro = DictionaryColumn.read(in, size);
+        this.localidade = DictionaryColumn.read(in, size);
+        this.uf = DictionaryColumn.read(in, size);
+        this.estado = DictionaryColumn.read(in, size);
+        this.regiao = DictionaryColumn.read(in, size);
+        this.ibge = DictionaryColumn.read(in, size);
+        this.gia = DictionaryColumn.read(in, size);
+        this.ddd = DictionaryColumn.read(in, size);
+        this.siafi = DictionaryColumn.read(in, size);
+    }
+
+    /**
+     * Opens a table saved with {@link #write(Path)}. The file is mapped in memory rather than read:
+     * the rows stay out of the heap, and are paged in by the operating system as they are looked up.
+     * Only the header and the bounds of the sections are checked, not the checksum.
+     *
+     * @param snapshot the snapshot file
+     * @return the table
+     * @throws IOException if the file cannot be read, is not a snapshot, is of another version of the
+     *         format or has sections out of bounds
+     */
+    public static CepTable open(Path snapshot) throws IOException {
+        return open(snapshot, false);
+    }
+
+    /**
+     * Opens a table saved with {@link #write(Path)}, optionally checking the checksum of the file,
+     * which reads all of it.
+     *
+     * @param snapshot the snapshot file
+     * @param verifyChecksum whether to check the checksum
+     * @return the table
+     * @throws IOException if the file cannot be read, is not a snapshot, is of another version of the
+     *         format, has sections out of bounds or fails its checksum
+     */
+    public static CepTable open(Path snapshot, boolean verifyChecksum) throws IOException {
+        ByteBuffer payload = CepSnapshot.map(snapshot, verifyChecksum);
+        try {
+            return new CepTable(payload);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new IOException("Corrupted CEP snapshot (" + e.getMessage() + "): " + snapshot, e);
+        }
+    }
+
+    /**
+     * Saves the table as a snapshot file, to be {@linkplain #open(Path) opened} later. An existing
+     * file is replaced atomically.
+     *
+     * @param snapshot the snapshot file
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path snapshot) throws IOException {
+        CepSnapshot.write(payload.duplicate().clear(), snapshot);
+    }
+
+    /**
+     * Creates a builder.
+     *
+     * @param expectedRows the expected number of rows, to size the columns
+     * @return the builder
+     */
+    public static Builder builder(int expectedRows) {
+        return new Builder(expectedRows);
+    }
+
+    /**
+     * Gets the number of rows.
+     *
+     * @return the number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the row of a CEP.
+     *
+     * @param cep the CEP, as eight digits
+     * @return the row, or -1 if the CEP is not in the table or is malformed
+     */
+    public int rowOf(String cep) {
+        int key = parseCep(cep);
+        return key >= 0 ? rowOf(key) : -1;
+    }
+
+    /**
+     * Finds the row of a CEP encoded as an integer.
+     *
+     * @param key the CEP as an integer
+     * @return the row, or -1 if the CEP is not in the table
+     */
+    int rowOf(int key) {
+        return slots.getInt(_slotOf(key) * Integer.BYTES) - 1;
+    }
+
+    /**
+     * Gets the CEP of a row, encoded as an integer.
+     *
+     * @param row the row
+     * @return the CEP as an integer
+     */
+    int key(int row) {
+        return ceps.getInt(row * Integer.BYTES);
+    }
+
+    /**
+     * Tells whether a row holds the current address of its CEP, rather than one replaced by a later
+     * row with the same CEP.
+     *
+     * @param row the row
+     * @return whether looking up the CEP of the row finds it
+     */
+    boolean isLive(int row) {
+        return rowOf(key(row)) == row;
+    }
+
+    /**
+     * Gets the latitude of a row.
+     *
+     * @param row the row
+     * @return the latitude in decimal degrees, or {@code NaN} if it is missing
+     */
+    double latitude(int row) {
+        return latitudes.getDouble(row * Double.BYTES);
+    }
+
+    /**
+     * Gets the longitude of a row.
+     *
+     * @param row the row
+     * @return the longitude in decimal degrees, or {@code NaN} if it is missing
+     */
+    double longitude(int row) {
+        return longitudes.getDouble(row * Double.BYTES);
+    }
+
+    /**
+     * Gets the street name of a row.
+     *
+     * @param row the row
+     * @return the logradouro
+     */
+    String logradouro(int row) {
+        return logradouro.get(row);
+    }
+
+    /**
+     * Gets the neighborhood of a row.
+     *
+     * @param row the row
+     * @return the bairro
+     */
+    String bairro(int row) {
+        return bairro.get(row);
+    }
+
+    /**
+     * Gets the city of a row.
+     *
+     * @param row the row
+     * @return the localidade
+     */
+    String localidade(int row) {
+        return localidade.get(row);
+    }
+
+    /**
+     * Builds the indexes that another table has already built, typically the table this one
+     * replaces, so that the requests using them do not pay for the build once this one is published.
+     *
+     * @param previous the table whose built indexes are to be built for this one
+     */
+    void buildIndexesOf(CepTable previous) {
+        if (previous.sortedIndex != null) {
+            sortedIndex();
+        }
+        if (previous.geoIndex != null) {
+            geoIndex();
+        }
+        if (previous.textIndex != null) {
+            textIndex();
+        }
+    }
+
+    /**
+     * Gets the full-text index of the table, building it on first use.
+     *
+     * @return the full-text index
+     */
+    CepTextIndex textIndex() {
+        CepTextIndex index = textIndex;
+        if (index != null) {
+            return index;
+        }
+        textIndexLock.lock();
+        try {
+            index = textIndex;
+            if (index == null) {
+                index = CepTextIndex.build(this);
+                textIndex = index;
+            }
+            return index;
+        } finally {
+            textIndexLock.unlock();
+        }
+    }
+
+    /**
+     * Gets the spatial index of the table, building it on first use.
+     *
+     * @return the spatial index
+     */
+    CepGeoIndex geoIndex() {
+        CepGeoIndex index = geoIndex;
+        if (index != null) {
+            return index;
+        }
+        geoIndexLock.lock();
+        try {
+            index = geoIndex;
+            if (index == null) {
+                index = CepGeoIndex.build(this);
+                geoIndex = index;
+            }
+            return index;
+        } finally {
+            geoIndexLock.unlock();
+        }
+    }
+
+    /**
+     * Gets the CEPs of the table in ascending order, building the index on first use.
+     *
+     * @return the sorted index
+     */
+    CepSortedIndex sortedIndex() {
+        CepSortedIndex index = sortedIndex;
+        if (index != null) {
+            return index;
+        }
+        sortedIndexLock.lock();
+        try {
+            index = sortedIndex;
+            if (index == null) {
+                index = CepSortedIndex.build(this);
+                sortedIndex = index;
+            }
+            return index;
+        } finally {
+            sortedIndexLock.unlock();
+        }
+    }
+
+    /**
+     * Builds the address of a row.
+     *
+     * @param row the row
+     * @return a new address
+     */
+    public Endereco endereco(int row) {
+        Endereco endereco = new Endereco();
+        endereco.setCep(formatCep(ceps.getInt(row * Integer.BYTES)));
+        endereco.setLogradouro(logradouro(row));
+        endereco.setComplemento(complemento.get(row));
+        endereco.setUnidade(unidade.get(row));
+        endereco.setBairro(bairro(row));
+        endereco.setLocalidade(localidade(row));
+        endereco.setUf(uf.get(row));
+        endereco.setEstado(estado.get(row));
+        endereco.setRegiao(regiao.get(row));
+        endereco.setIbge(ibge.get(row));
+        endereco.setGia(gia.get(row));
+        endereco.setDdd(ddd.get(row));
+        endereco.setSiafi(siafi.get(row));
+        endereco.setGeolocalizacao(new Geolocalizacao(
+                formatCoordinate(latitude(row), latitudeScales.get(row)),
+                formatCoordinate(longitude(row), longitudeScales.get(row))));
+        return endereco;
+    }
+
+    /**
+     * Encodes a CEP as an integer.
+     *
+     * @param cep the CEP, as eight digits
+     * @return the CEP as an integer, or -1 if it is not eight digits
+     */
+    public static int parseCep(String cep) {
+        if (cep == null || cep.length() != 8) {
+            return -1;
+        }
+        int key = 0;
+        for (int i = 0; i < 8; i++) {
+            int digit = cep.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            key = key * 10 + digit;
+        }
+        return key;
+    }
+
+    /**
+     * Formats a CEP encoded as an integer.
+     *
+     * @param key the CEP as an integer
+     * @return the CEP, as eight digits
+     */
+    public static String formatCep(int key) {
+        byte[] digits = new byte[8];
+        for (int i = 7; i >= 0; i--) {
+            digits[i] = (byte) ('0' + key % 10);
+            key /= 10;
+        }
+        return new String(digits, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Parses a coordinate.
+     *
+     * @param text the coordinate in decimal degrees, or an empty string
+     * @return the coordinate, or {@code NaN} if it is missing or malformed
+     */
+    static double parseCoordinate(String text) {
+        if (text == null || text.isEmpty()) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Counts the decimal places of a coordinate, up to {@value #MAX_SCALE}.
+     *
+     * @param text the coordinate in decimal degrees, or an empty string
+     * @return the number of digits after the decimal point
+     */
+    static byte scaleOf(String text) {
+        int point = text != null ? text.indexOf('.') : -1;
+        return (byte) (point < 0 ? 0 : Math.min(MAX_SCALE, text.length() - point - 1));
+    }
+
+    /**
+     * Formats a coordinate.
+     *
+     * @param value the coordinate, or {@code NaN}
+     * @param scale the number of decimal places, up to {@value #MAX_SCALE}
+     * @return the coordinate in decimal degrees, or an empty string if it is missing
+     */
+    static String formatCoordinate(double value, int scale) {
+        if (Double.isNaN(value)) {
+            return "";
+        }
+        long scaled = Math.round(Math.abs(value) * POWERS_OF_TEN[scale]);
+        byte[] digits = new byte[32];
+        int pos = digits.length;
+        for (int i = 0; i < scale; i++) {
+            digits[--pos] = (byte) ('0' + scaled % 10);
+            scaled /= 10;
+        }
+        if (scale > 0) {
+            digits[--pos] = '.';
+        }
+        do {
+            digits[--pos] = (byte) ('0' + scaled % 10);
+            scaled /= 10;
+        } while (scaled > 0);
+        if (value < 0 && Math.round(value * POWERS_OF_TEN[scale]) != 0) {
+            digits[--pos] = '-';
+        }
+        return new String(digits, pos, digits.length - pos, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Finds the slot of a CEP: the one holding its row, or the empty one where it would go.
+     */
+    private int _slotOf(int key) {
+        int slot = _hash(key) & slotMask;
+        int row;
+        while ((row = slots.getInt(slot * Integer.BYTES)) != 0 && ceps.getInt((row - 1) * Integer.BYTES) != key) {
+            slot = (slot + 1) & slotMask;
+        }
+        return slot;
+    }
+
+    private static int _hash(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Accumulates the rows of a {@link CepTable}.
+     */
+    public static final class Builder {
+
+        private int size;
+        private int[] ceps;
+        private double[] latitudes;
+        private double[] longitudes;
+        private byte[] latitudeScales;
+        private byte[] longitudeScales;
+        private final Utf8Column.Builder logradouro;
+        private final DictionaryColumn.Builder complemento;
+        private final DictionaryColumn.Builder unidade;
+        private final DictionaryColumn.Builder bairro;
+        private final DictionaryColumn.Builder localidade;
+        private final DictionaryColumn.Builder uf;
+        private final DictionaryColumn.Builder estado;
+        private final DictionaryColumn.Builder regiao;
+        private final DictionaryColumn.Builder ibge;
+        private final DictionaryColumn.Builder gia;
+        private final DictionaryColumn.Builder ddd;
+        private final DictionaryColumn.Builder siafi;
+
+        private Builder(int expectedRows) {
+            int capacity = Math.max(16, expectedRows);
+            this.ceps = new int[capacity];
+            this.latitudes = new double[capacity];
+            this.longitudes = new double[capacity];
+            this.latitudeScales = new byte[capacity];
+            this.longitudeScales = new byte[capacity];
+            this.logradouro = new Utf8Column.Builder(capacity);
+            this.complemento = new DictionaryColumn.Builder(capacity);
+            this.unidade = new DictionaryColumn.Builder(capacity);
+            this.bairro = new DictionaryColumn.Builder(capacity);
+            this.localidade = new DictionaryColumn.Builder(capacity);
+            this.uf = new DictionaryColumn.Builder(capacity);
+            this.estado = new DictionaryColumn.Builder(capacity);
+            this.regiao = new DictionaryColumn.Builder(capacity);
+            this.ibge = new DictionaryColumn.Builder(capacity);
+            this.gia = new DictionaryColumn.Builder(capacity);
+            this.ddd = new DictionaryColumn.Builder(capacity);
+            this.siafi = new DictionaryColumn.Builder(capacity);
+        }
+
+        /**
+         * Adds an address.
+         *
+         * @param endereco the address
+         * @return this builder
+         * @throws IllegalArgumentException if the CEP of the address is not eight digits
+         */
+        public Builder add(Endereco endereco) {
+            Geolocalizacao geolocalizacao = endereco.getGeolocalizacao();
+            return add(endereco.getCep(), endereco.getLogradouro(), endereco.getComplemento(), endereco.getUnidade(),
+                    endereco.getBairro(), endereco.getLocalidade(), endereco.getUf(), endereco.getEstado(),
+                    endereco.getRegiao(), endereco.getIbge(), endereco.getGia(), endereco.getDdd(), endereco.getSiafi(),
+                    geolocalizacao != null ? geolocalizacao.getLat() : null,
+                    geolocalizacao != null ? geolocalizacao.getLng() : null);
+        }
+
+        /**
+         * Adds an address from its attributes, in the order of the columns of {@code cep.csv}.
+         *
+         * @throws IllegalArgumentException if the CEP is not eight digits
+         */
+        Builder add(String cep, String logradouro, String complemento, String unidade, String bairro,
+                    String localidade, String uf, String estado, String regiao, String ibge, String gia,
+                    String ddd, String siafi, String latitude, String longitude) {
+            int key = parseCep(cep);
+            if (key < 0) {
+                throw new IllegalArgumentException("Malformed CEP: " + cep);
+            }
+            _ensureCapacity(size + 1);
+            ceps[size] = key;
+            latitudes[size] = parseCoordinate(latitude);
+            longitudes[size] = parseCoordinate(longitude);
+            latitudeScales[size] = scaleOf(latitude);
+            longitudeScales[size] = scaleOf(longitude);
+            size++;
+            this.logradouro.add(logradouro);
+            this.complemento.add(complemento);
+            this.unidade.add(unidade);
+            this.bairro.add(bairro);
+            this.localidade.add(localidade);
+            this.uf.add(uf);
+            this.estado.add(estado);
+            this.regiao.add(regiao);
+            this.ibge.add(ibge);
+            this.gia.add(gia);
+            this.ddd.add(ddd);
+            this.siafi.add(siafi);
+            return this;
+        }
+
+        /**
+         * Copies a row of a table.
+         *
+         * @param table the table
+         * @param row the row
+         * @return this builder
+         */
+        Builder addRow(CepTable table, int row) {
+            _ensureCapacity(size + 1);
+            ceps[size] = table.key(row);
+            latitudes[size] = table.latitudes.getDouble(row * Double.BYTES);
+            longitudes[size] = table.longitudes.getDouble(row * Double.BYTES);
+            latitudeScales[size] = table.latitudeScales.get(row);
+            longitudeScales[size] = table.longitudeScales.get(row);
+            size++;
+            logradouro.add(table.logradouro.get(row));
+            complemento.add(table.complemento.get(row));
+            unidade.add(table.unidade.get(row));
+            bairro.add(table.bairro.get(row));
+            localidade.add(table.localidade.get(row));
+            uf.add(table.uf.get(row));
+            estado.add(table.estado.get(row));
+            regiao.add(table.regiao.get(row));
+            ibge.add(table.ibge.get(row));
+            gia.add(table.gia.get(row));
+            ddd.add(table.ddd.get(row));
+            siafi.add(table.siafi.get(row));
+            return this;
+        }
+
+        /**
+         * Appends the rows of another builder, as if they had been added to this one.
+         *
+         * @param other the other builder, which must not be used afterwards
+         * @return this builder
+         */
+        Builder addAll(Builder other) {
+            _ensureCapacity(size + other.size);
+            System.arraycopy(other.ceps, 0, ceps, size, other.size);
+            System.arraycopy(other.latitudes, 0, latitudes, size, other.size);
+            System.arraycopy(other.longitudes, 0, longitudes, size, other.size);
+            System.arraycopy(other.latitudeScales, 0, latitudeScales, size, other.size);
+            System.arraycopy(other.longitudeScales, 0, longitudeScales, size, other.size);
+            size += other.size;
+            logradouro.addAll(other.logradouro);
+            complemento.addAll(other.complemento);
+            unidade.addAll(other.unidade);
+            bairro.addAll(other.bairro);
+            localidade.addAll(other.localidade);
+            uf.addAll(other.uf);
+            estado.addAll(other.estado);
+            regiao.addAll(other.regiao);
+            ibge.addAll(other.ibge);
+            gia.addAll(other.gia);
+            ddd.addAll(other.ddd);
+            siafi.addAll(other.siafi);
+            return this;
+        }
+
+        /**
+         * Builds the table, in the heap. The builder must not be used afterwards.
+         *
+         * @return the table
+         */
+        public CepTable build() {
+            int[] slots = _slots();
+            int[] sizes = {
+                    complemento.encodedSize(), unidade.encodedSize(), bairro.encodedSize(), localidade.encodedSize(),
+                    uf.encodedSize(), estado.encodedSize(), regiao.encodedSize(), ibge.encodedSize(),
+                    gia.encodedSize(), ddd.encodedSize(), siafi.encodedSize()};
+            long length = 2L * Integer.BYTES
+                    + CepSnapshot.align(size * Integer.BYTES)
+                    + CepSnapshot.align(slots.length * Integer.BYTES)
+                    + 2L * CepSnapshot.align(size * Double.BYTES)
+                    + 2L * CepSnapshot.align(size)
+                    + logradouro.encodedSize()
+                    + Arrays.stream(sizes).asLongStream().sum();
+            if (length > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Too many rows for a single table: " + size);
+            }
+
+            ByteBuffer out = ByteBuffer.allocate((int) length).order(CepSnapshot.ORDER);
+            out.putInt(size).putInt(slots.length);
+            out.asIntBuffer().put(ceps, 0, size);
+            out.position(out.position() + CepSnapshot.align(size * Integer.BYTES));
+            out.asIntBuffer().put(slots);
+            out.position(out.position() + CepSnapshot.align(slots.length * Integer.BYTES));
+            out.asDoubleBuffer().put(latitudes, 0, size);
+            out.position(out.position() + CepSnapshot.align(size * Double.BYTES));
+            out.asDoubleBuffer().put(longitudes, 0, size);
+            out.position(out.position() + CepSnapshot.align(size * Double.BYTES));
+            out.put(latitudeScales, 0, size);
+            CepSnapshot.pad(out);
+            out.put(longitudeScales, 0, size);
+            CepSnapshot.pad(out);
+            logradouro.encode(out);
+            complemento.encode(out);
+            unidade.encode(out);
+            bairro.encode(out);
+            localidade.encode(out);
+            uf.encode(out);
+            estado.encode(out);
+            regiao.encode(out);
+            ibge.encode(out);
+            gia.encode(out);
+            ddd.encode(out);
+            siafi.encode(out);
+            return new CepTable(out.flip());
+        }
+
+        private void _ensureCapacity(int capacity) {
+            if (capacity > ceps.length) {
+                int length = Math.max(capacity, ceps.length * 2);
+                ceps = Arrays.copyOf(ceps, length);
+                latitudes = Arrays.copyOf(latitudes, length);
+                longitudes = Arrays.copyOf(longitudes, length);
+                latitudeScales = Arrays.copyOf(latitudeScales, length);
+                longitudeScales = Arrays.copyOf(longitudeScales, length);
+            }
+        }
+
+        /**
+         * Builds the hash table of rows by CEP, at most half full so that probe sequences stay short.
+         */
+        private int[] _slots() {
+            int capacity = Integer.highestOneBit(Math.max(2, size) * 2 - 1) * 2;
+            int[] slots = new int[capacity];
+            int mask = capacity - 1;
+            for (int row = 0; row < size; row++) {
+                int key = ceps[row];
+                int slot = _hash(key) & mask;
+                while (slots[slot] != 0 && ceps[slots[slot] - 1] != key) {
+                    slot = (slot + 1) & mask;
+                }
+                // A CEP that appears again replaces the previous row, as in a map.
+                slots[slot] = row + 1;
+            }
+            return slots;
+        }
+    }
+}
@@ -0,0 +1,965 @@
+package io.github.marceltanuri.frameworks.restam3.demo.repository;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A full-text index of the street, neighborhood and city names of a {@link CepTable}, for free-text
+ * and autocomplete searches. Only the current row of each CEP is indexed.
+ * <p>
+ * Names are folded before being split into words: lowercased, with accents removed and anything but
+ * letters and digits treated as a space, so {@code "Praça da Sé"} matches {@code "praca da se"}. Each
+ * word of the sorted vocabulary has a posting list per field of the rows it appears in, encoded as
+ * variable-length deltas in a single byte array and cut into blocks of {@value #BLOCK_SIZE} rows whose
+ * last row is kept aside, so that a list can skip to a given row without decoding the blocks before
+ * it. A second set of posting lists, from each trigram of the padded words to the words
+ * holding it, finds the words within an edit or two of a misspelled one.
+ * <p>
+ * A query word matches its exact word in the vocabulary, or, when it is the last word of a query
+ * still being typed, the words it is a prefix of; when neither is found, it matches the words within
+ * a small edit distance. Rows are ranked first by the number of query words they match, then by the
+ * sum of the scores of their best match of each: rarer words weigh more, and street names more than
+ * neighborhoods, and neighborhoods more than cities. The top rows are found with the MaxScore
+ * algorithm: once k rows are known, the posting lists that could not lift a row above the worst of
+ * them on their own no longer bring in rows, and are only looked up in the rows brought by the
+ * others, skipping the blocks in between. As the rows matching every word rank first, this soon
+ * leaves the rarest word alone to bring in rows.
+ *
+ * @author Marcel Tanuri
+ */
+final class CepTextIndex {
+
+    private static final int LOGRADOURO = 0;
+    private static final int BAIRRO = 1;
+    private static final int LOCALIDADE = 2;
+    private static final int FIELDS = 3;
+
+    /**
+     * The weight of a match in each field, by field number.
+     */
+    private static final double[] FIELD_WEIGHTS = {1.0, 0.6, 0.4};
+
+    private static final double EXACT_WEIGHT = 1.0;
+    private static final double PREFIX_WEIGHT = 0.8;
+    private static final double ONE_EDIT_WEIGHT = 0.7;
+    private static final double TWO_EDITS_WEIGHT = 0.5;
+
+    /**
+     * Added to the score of each query word a row matches, above any sum of the scores of words, so
+     * that rows matching more words rank first.
+     */
+    private static final double WORD_BONUS = 1000;
+
+    /**
+     * Words too common to tell addresses apart, neither indexed nor searched.
+     */
+    private static final Set<String> STOP_WORDS = Set.of("a", "o", "e", "da", "de", "do", "das", "dos");
+
+    private static final int BLOCK_SIZE = 64;
+    private static final int MAX_QUERY_WORDS = 8;
+    private static final int MAX_EXPANSIONS = 16;
+    private static final int MIN_PREFIX = 2;
+    private static final int SEED_ROWS = 1024;
+    private static final int EXHAUSTED = Integer.MAX_VALUE;
+
+    /**
+     * Added to the partial scores of rows, which are summed in another order than their full scores,
+     * so that rounding never prunes a row reaching the top.
+     */
+    private static final double SLACK = 1e-9;
+
+    /**
+     * Trigram characters: 0 pads the words, 1 to 26 are letters, 27 to 36 digits, and 37 anything else.
+     */
+    private static final int ALPHABET = 38;
+
+    /**
+     * The folded form of the characters of the Latin-1 and Latin Extended blocks.
+     */
+    private static final char[] FOLDED = new char[0x250];
+
+    static {
+        for (char c = 0; c < FOLDED.length; c++) {
+            char base = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD).charAt(0);
+            FOLDED[c] = Character.isLetterOrDigit(base) ? Character.toLowerCase(base) : ' ';
+        }
+    }
+
+    private final int rowCount;
+    private final String[] words;
+    private final int[] counts;
+    private final int[] frequencies;
+    private final int[] postingStarts;
+    private final byte[] postings;
+    private final int[] blockStarts;
+    private final int[] blockOffsets;
+    private final int[] blockLasts;
+    private final int[] trigramStarts;
+    private final byte[] trigramPostings;
+
+    private CepTextIndex(int rowCount, String[] words, int[] counts, int[] postingStarts, byte[] postings,
+                         int[] blockStarts, int[] blockOffsets, int[] blockLasts, int[] trigramStarts, byte[] trigramPostings) {
+        this.rowCount = rowCount;
+        this.words = words;
+        this.counts = counts;
+        this.frequencies = new int[words.length];
+        for (int list = 0; list < counts.length; list++) {
+            frequencies[list / FIELDS] += counts[list];
+        }
+        this.postingStarts = postingStarts;
+        this.postings = postings;
+        this.blockStarts = blockStarts;
+        this.blockOffsets = blockOffsets;
+        this.blockLasts = blockLasts;
+        this.trigramStarts = trigramStarts;
+        this.trigramPostings = trigramPostings;
+    }
+
+    /**
+     * Builds the index of a table.
+     *
+     * @param table the table
+     * @return the index
+     */
+    static CepTextIndex build(CepTable table) {
+        // Collect (word, field, row) entries, with words numbered as they are first seen.
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> vocabulary = new ArrayList<>();
+        // Neighborhoods and cities repeat over many rows: split each distinct name once.
+        Map<String, int[]> names = new HashMap<>();
+        long[] entries = new long[Math.max(16, table.size() * 4)];
+        int count = 0;
+        int rowCount = 0;
+        for (int row = 0; row < table.size(); row++) {
+            if (!table.isLive(row)) {
+                continue;
+            }
+            rowCount++;
+            for (int field = LOGRADOURO; field <= LOCALIDADE; field++) {
+                String name = field == LOGRADOURO ? table.logradouro(row) : field == BAIRRO ? table.bairro(row) : table.localidade(row);
+                if (name == null || name.isEmpty()) {
+                    continue;
+                }
+                int[] wordIds = field == LOGRADOURO ? _wordIds(name, ids, vocabulary)
+                        : names.computeIfAbsent(name, n -> _wordIds(n, ids, vocabulary));
+                if (count + wordIds.length > entries.length) {
+                    entries = Arrays.copyOf(entries, Math.max(count + wordIds.length, entries.length + (entries.length >> 1)));
+                }
+                for (int id : wordIds) {
+                    entries[count++] = (long) (id * FIELDS + field) << 32 | row;
+                }
+            }
+        }
+
+        // Number the words in alphabetical order, with one posting list per word and field, some empty.
+        String[] words = vocabulary.toArray(new String[0]);
+        Arrays.parallelSort(words);
+        int[] renumbered = new int[words.length];
+        for (int id = 0; id < renumbered.length; id++) {
+            renumbered[id] = Arrays.binarySearch(words, vocabulary.get(id));
+        }
+        int lists = words.length * FIELDS;
+        int[] starts = new int[lists + 1];
+        for (int i = 0; i < count; i++) {
+            int list = (int) (entries[i] >>> 32);
+            list = renumbered[list / FIELDS] * FIELDS + list % FIELDS;
+            entries[i] = (long) list << 32 | entries[i] & 0xFFFFFFFFL;
+            starts[list + 1]++;
+        }
+        // Bucket the rows by list: the entries are in ascending order of row, which each bucket keeps.
+        for (int list = 0; list < lists; list++) {
+            starts[list + 1] += starts[list];
+        }
+        int[] rows = new int[count];
+        int[] next = Arrays.copyOf(starts, lists);
+        for (int i = 0; i < count; i++) {
+            rows[next[(int) (entries[i] >>> 32)]++] = (int) entries[i];
+        }
+        entries = null;
+
+        int[] counts = new int[lists];
+        int[] postingStarts = new int[lists + 1];
+        int[] blockStarts = new int[lists + 1];
+        int[] blockOffsets = new int[count / BLOCK_SIZE + lists];
+        int[] blockLasts = new int[blockOffsets.length];
+        Bytes postings = new Bytes(count * 2);
+        int blockCount = 0;
+        for (int list = 0; list < lists; list++) {
+            postingStarts[list] = postings.size;
+            blockStarts[list] = blockCount;
+            int previous = -1;
+            for (int i = starts[list]; i < starts[list + 1]; i++) {
+                int row = rows[i];
+                if (row == previous) {
+                    // The word appears twice in the same name.
+                    continue;
+                }
+                if (counts[list]++ % BLOCK_SIZE == 0) {
+                    // Blocks start with an absolute row, so that they can be decoded on their own.
+                    blockOffsets[blockCount++] = postings.size;
+                    postings.writeVarint(row);
+                } else {
+                    postings.writeVarint(row - previous);
+                }
+                blockLasts[blockCount - 1] = row;
+                previous = row;
+            }
+        }
+        postingStarts[lists] = postings.size;
+        blockStarts[lists] = blockCount;
+
+        // Index the trigrams of the words, but for those holding digits, such as numbers, never misspelled.
+        long[] trigrams = new long[16];
+        int trigramCount = 0;
+        for (int word = 0; word < words.length; word++) {
+            if (_hasDigit(words[word])) {
+                continue;
+            }
+            for (int trigram : _trigrams(words[word])) {
+                if (trigramCount == trigrams.length) {
+                    trigrams = Arrays.copyOf(trigrams, trigrams.length * 2);
+                }
+                trigrams[trigramCount++] = (long) trigram << 32 | word;
+            }
+        }
+        Arrays.parallelSort(trigrams, 0, trigramCount);
+        int[] trigramStarts = new int[ALPHABET * ALPHABET * ALPHABET + 1];
+        Bytes trigramPostings = new Bytes(trigramCount * 2);
+        int j = 0;
+        for (int trigram = 0; trigram < trigramStarts.length - 1; trigram++) {
+            trigramStarts[trigram] = trigramPostings.size;
+            int previous = -1;
+            for (; j < trigramCount && (int) (trigrams[j] >>> 32) == trigram; j++) {
+                int word = (int) trigrams[j];
+                trigramPostings.writeVarint(word - previous);
+                previous = word;
+            }
+        }
+        trigramStarts[trigramStarts.length - 1] = trigramPostings.size;
+
+        return new CepTextIndex(rowCount, words, counts, postingStarts, postings.toArray(), blockStarts,
+                Arrays.copyOf(blockOffsets, blockCount), Arrays.copyOf(blockLasts, blockCount), trigramStarts, trigramPostings.toArray());
+    }
+
+    /**
+     * Searches the rows best matching a query.
+     *
+     * @param query the words to search, the last of which is taken as a prefix unless followed by a
+     *              space
+     * @param k the maximum number of rows
+     * @return the rows, best first
+     */
+    List<Hit> search(String query, int k) {
+        List<String> queryWords = words(query);
+        if (queryWords.isEmpty()) {
+            return List.of();
+        }
+        String lastWord = queryWords.get(queryWords.size() - 1);
+        queryWords = queryWords.stream().distinct().limit(MAX_QUERY_WORDS).toList();
+        boolean typing = !Character.isWhitespace(query.charAt(query.length() - 1));
+        List<Term> terms = new ArrayList<>(queryWords.size());
+        for (int i = 0; i < queryWords.size(); i++) {
+            String word = queryWords.get(i);
+            Term term = _expand(word, typing && i == queryWords.size() - 1 && word.equals(lastWord));
+            if (term != null) {
+                terms.add(term);
+            }
+        }
+        return terms.isEmpty() ? List.of() : _top(terms, k);
+    }
+
+    /**
+     * Splits a text into folded words, leaving out the stop words.
+     *
+     * @param text the text
+     * @return the words, in order
+     */
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? _fold(text.charAt(i)) : ' ';
+            if (c != ' ') {
+                word.append(c);
+            } else if (!word.isEmpty()) {
+                String folded = word.toString();
+                if (!STOP_WORDS.contains(folded)) {
+                    words.add(folded);
+                }
+                word.setLength(0);
+            }
+        }
+        return words;
+    }
+
+    private static char _fold(char c) {
+        if (c < FOLDED.length) {
+            return FOLDED[c];
+        }
+        return Character.isLetterOrDigit(c) ? Character.toLowerCase(c) : ' ';
+    }
+
+    private static int[] _wordIds(String name, Map<String, Integer> ids, List<String> vocabulary) {
+        List<String> words = words(name);
+        int[] wordIds = new int[words.size()];
+        for (int i = 0; i < wordIds.length; i++) {
+            wordIds[i] = ids.computeIfAbsent(words.get(i), word -> {
+                vocabulary.add(word);
+                return vocabulary.size() - 1;
+            });
+        }
+        return wordIds;
+    }
+
+    private Term _expand(String word, boolean typing) {
+        // The words matched, and the score of each.
+        List<Integer> matches = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        int exact = Arrays.binarySearch(words, word);
+        if (exact >= 0) {
+            matches.add(exact);
+            weights.add(EXACT_WEIGHT * _idf(frequencies[exact]));
+        }
+        if (typing && word.length() >= MIN_PREFIX) {
+            // The most common completions, which the typed prefix is the likeliest to be the start of.
+            int from = _lowerBound(word);
+            int to = _lowerBound(word + Character.MAX_VALUE);
+            int[] completions = _mostCommon(from + (exact >= 0 ? 1 : 0), to);
+            // Weighed as a whole, so that a short prefix does not weigh as much as its rarest completion.
+            long frequency = exact >= 0 ? frequencies[exact] : 0;
+            for (int completion : completions) {
+                frequency += frequencies[completion];
+            }
+            for (int completion : completions) {
+                matches.add(completion);
+                weights.add(PREFIX_WEIGHT * _idf(frequency));
+            }
+        }
+        if (matches.isEmpty()) {
+            int maxEdits = _maxEdits(word);
+            if (maxEdits > 0 && !_hasDigit(word)) {
+                _similar(word, maxEdits, matches, weights);
+            }
+        }
+        if (matches.isEmpty()) {
+            return null;
+        }
+        List<Integer> lists = new ArrayList<>();
+        List<Double> scores = new ArrayList<>();
+        for (int m = 0; m < matches.size(); m++) {
+            for (int field = LOGRADOURO; field <= LOCALIDADE; field++) {
+                int list = matches.get(m) * FIELDS + field;
+                if (counts[list] > 0) {
+                    lists.add(list);
+                    scores.add(weights.get(m) * FIELD_WEIGHTS[field]);
+                }
+            }
+        }
+        return new Term(lists.stream().mapToInt(Integer::intValue).toArray(), scores.stream().mapToDouble(Double::doubleValue).toArray());
+    }
+
+    private int[] _mostCommon(int from, int to) {
+        // Keep the most common words of the range in descending order of count, by insertion.
+        int[] common = new int[Math.min(MAX_EXPANSIONS, Math.max(0, to - from))];
+        int size = 0;
+        for (int word = from; word < to; word++) {
+            if (size == common.length && frequencies[word] <= frequencies[common[size - 1]]) {
+                continue;
+            }
+            int i = size < common.length ? size++ : size - 1;
+            for (; i > 0 && frequencies[common[i - 1]] < frequencies[word]; i--) {
+                common[i] = common[i - 1];
+            }
+            common[i] = word;
+        }
+        return common;
+    }
+
+    /**
+     * Finds the words within a given edit distance of a word: the words sharing enough trigrams with
+     * it, as each edit changes at most three, checked with their actual distance.
+     */
+    private void _similar(String word, int maxEdits, List<Integer> matches, List<Double> weights) {
+        int[] trigrams = _trigrams(word);
+        IntCounter shared = new IntCounter();
+        for (int trigram : trigrams) {
+            int position = trigramStarts[trigram];
+            int end = trigramStarts[trigram + 1];
+            int candidate = -1;
+            while (position < end) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = trigramPostings[position++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                candidate += delta;
+                shared.increment(candidate);
+            }
+        }
+        int minShared = Math.max(1, trigrams.length - 3 * maxEdits);
+        List<int[]> found = new ArrayList<>();
+        for (int slot = 0; slot < shared.keys.length; slot++) {
+            int candidate = shared.keys[slot] - 1;
+            if (candidate >= 0 && shared.values[slot] >= minShared
+                    && Math.abs(words[candidate].length() - word.length()) <= maxEdits) {
+                int edits = _distance(word, words[candidate], maxEdits);
+                if (edits <= maxEdits) {
+                    found.add(new int[]{candidate, edits});
+                }
+            }
+        }
+        // The closest words first, and of those the most common.
+        found.sort(Comparator.<int[]>comparingInt(match -> match[1]).thenComparing(match -> -frequencies[match[0]]));
+        for (int[] match : found.subList(0, Math.min(found.size(), MAX_EXPANSIONS))) {
+            matches.add(match[0]);
+            weights.add((match[1] == 1 ? ONE_EDIT_WEIGHT : TWO_EDITS_WEIGHT) * _idf(frequencies[match[0]]));
+        }
+    }
+
+    /**
+     * Finds the top rows with MaxScore, over the posting lists of the terms from the most common term
+     * to the rarest, and in ascending order of score for each: the first lists, whose scores, the best
+     * of each term, add up to less than the k-th best row so far, only score the rows the other lists
+     * bring in. The k-th best score starts from that of the first rows of the last list, so that the
+     * common words are left out from the start.
+     */
+    private List<Hit> _top(List<Term> terms, int k) {
+        List<int[]> order = new ArrayList<>();
+        for (int term = 0; term < terms.size(); term++) {
+            for (int i = 0; i < terms.get(term).lists().length; i++) {
+                order.add(new int[]{term, i});
+            }
+        }
+        // Common words first, so that the lists left to bring in rows are those of the rarest.
+        long[] sizes = terms.stream().mapToLong(term -> Arrays.stream(term.lists()).mapToLong(list -> counts[list]).sum()).toArray();
+        order.sort(Comparator.<int[]>comparingLong(list -> -sizes[list[0]]).thenComparingInt(list -> list[0])
+                .thenComparingDouble(list -> terms.get(list[0]).scores()[list[1]]));
+        int m = order.size();
+        int[] lists = new int[m];
+        int[] owners = new int[m];
+        double[] scores = new double[m];
+        for (int i = 0; i < m; i++) {
+            Term term = terms.get(order.get(i)[0]);
+            lists[i] = term.lists()[order.get(i)[1]];
+            owners[i] = order.get(i)[0];
+            scores[i] = WORD_BONUS + term.scores()[order.get(i)[1]];
+        }
+        // The most the lists before each one can add to a row: the sum of the best score of each term,
+        // added up as the scores of a row are, so that no row can score more even by rounding.
+        double[] bounds = new double[m + 1];
+        double[] best = new double[terms.size()];
+        for (int i = 0; i < m; i++) {
+            best[owners[i]] = Math.max(best[owners[i]], scores[i]);
+            bounds[i + 1] = _sum(best);
+        }
+
+        double[] termScores = new double[terms.size()];
+        // Until k rows are found, rows scoring the seeded threshold or more are taken.
+        double threshold = _seed(lists, owners, scores, k, termScores);
+        boolean full = false;
+        PostingCursor[] cursors = _open(lists);
+        // A min-heap of the best rows, the worst on top; of equal scores, the later row is the worse.
+        int[] heapRows = new int[k];
+        double[] heapScores = new double[k];
+        int size = 0;
+        int essential = _essential(bounds, threshold, full);
+        // The lists bringing in rows, in a min-heap by current row.
+        int[] queue = new int[m];
+        int queued = _queue(queue, cursors, essential);
+        while (queued > 0) {
+            int row = cursors[queue[0]].row();
+            Arrays.fill(termScores, 0);
+            double score = 0;
+            while (queued > 0 && cursors[queue[0]].row() == row) {
+                int i = queue[0];
+                score += _match(termScores, owners[i], scores[i]);
+                cursors[i].next();
+                if (cursors[i].row() == EXHAUSTED) {
+                    queue[0] = queue[--queued];
+                }
+                _sink(queue, queued, cursors, 0);
+            }
+            int probed = essential;
+            for (; probed > 0 && !_below(score + bounds[probed] + SLACK, threshold, full); probed--) {
+                PostingCursor cursor = cursors[probed - 1];
+                cursor.advance(row);
+                if (cursor.row() == row) {
+                    score += _match(termScores, owners[probed - 1], scores[probed - 1]);
+                }
+            }
+            if (probed > 0) {
+                // Even its best scores in the remaining lists would not lift the row into the top.
+                continue;
+            }
+            score = _sum(termScores);
+            if (_below(score, threshold, full)) {
+                continue;
+            }
+            if (!full) {
+                heapRows[size] = row;
+                heapScores[size] = score;
+                _siftUp(heapRows, heapScores, size++);
+                full = size == k;
+            } else {
+                heapRows[0] = row;
+                heapScores[0] = score;
+                _siftDown(heapRows, heapScores, size);
+            }
+            if (full) {
+                threshold = heapScores[0];
+                int previous = essential;
+                essential = _essential(bounds, threshold, full);
+                if (essential > previous) {
+                    queued = _queue(queue, cursors, essential);
+                }
+            }
+        }
+        Integer[] top = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            top[i] = i;
+        }
+        Arrays.sort(top, Comparator.comparingDouble((Integer i) -> -heapScores[i]).thenComparingInt(i -> heapRows[i]));
+        List<Hit> hits = new ArrayList<>(size);
+        for (int i : top) {
+            int matched = (int) (heapScores[i] / WORD_BONUS);
+            hits.add(new Hit(heapRows[i], matched, heapScores[i] - matched * WORD_BONUS));
+        }
+        return hits;
+    }
+
+    /**
+     * Scores the first rows of the last list in full, for a first lower bound of the k-th best score.
+     *
+     * @return the k-th best score of these rows, or a negative number if there are fewer than k rows
+     */
+    private double _seed(int[] lists, int[] owners, double[] scores, int k, double[] termScores) {
+        PostingCursor[] cursors = _open(lists);
+        PostingCursor seed = cursors[cursors.length - 1];
+        double[] heap = new double[k];
+        int size = 0;
+        for (int seeded = 0; seeded < SEED_ROWS && seed.row() != EXHAUSTED; seeded++) {
+            int row = seed.row();
+            Arrays.fill(termScores, 0);
+            for (int i = 0; i < cursors.length; i++) {
+                cursors[i].advance(row);
+                if (cursors[i].row() == row) {
+                    _match(termScores, owners[i], scores[i]);
+                }
+            }
+            seed.next();
+            double score = _sum(termScores);
+            if (size < k) {
+                heap[size++] = score;
+                if (size == k) {
+                    Arrays.sort(heap);
+                }
+            } else if (score > heap[0]) {
+                // A sorted array is fast enough for the few rows seeded.
+                int i = 1;
+                for (; i < k && heap[i] < score; i++) {
+                    heap[i - 1] = heap[i];
+                }
+                heap[i - 1] = score;
+            }
+        }
+        return size == k ? heap[0] : -1;
+    }
+
+    /**
+     * Fills a min-heap of the lists from a given one on that have rows left.
+     *
+     * @return the size of the heap
+     */
+    private static int _queue(int[] queue, PostingCursor[] cursors, int from) {
+        int size = 0;
+        for (int i = from; i < cursors.length; i++) {
+            if (cursors[i].row() != EXHAUSTED) {
+                queue[size++] = i;
+            }
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            _sink(queue, size, cursors, i);
+        }
+        return size;
+    }
+
+    private static void _sink(int[] queue, int size, PostingCursor[] cursors, int i) {
+        while (true) {
+            int least = i;
+            for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+                if (cursors[queue[child]].row() < cursors[queue[least]].row()) {
+                    least = child;
+                }
+            }
+            if (least == i) {
+                return;
+            }
+            int swapped = queue[i];
+            queue[i] = queue[least];
+            queue[least] = swapped;
+            i = least;
+        }
+    }
+
+    private PostingCursor[] _open(int[] lists) {
+        PostingCursor[] cursors = new PostingCursor[lists.length];
+        for (int i = 0; i < lists.length; i++) {
+            cursors[i] = new PostingCursor(lists[i]);
+        }
+        return cursors;
+    }
+
+    /**
+     * Records a match of a term in a row, which scores the best of its matches.
+     *
+     * @return how much the match adds to the score of the row
+     */
+    private static double _match(double[] termScores, int term, double score) {
+        double added = Math.max(0, score - termScores[term]);
+        termScores[term] += added;
+        return added;
+    }
+
+    /**
+     * Tells whether a score falls short of the top: below the threshold while the top is not full,
+     * and no higher than the worst row of it once it is, as ties go to the earlier rows.
+     */
+    private static boolean _below(double score, double threshold, boolean full) {
+        return full ? score <= threshold : score < threshold;
+    }
+
+    /**
+     * Counts the lists that cannot bring a row into the top on their own, those at the start.
+     */
+    private static int _essential(double[] bounds, double threshold, boolean full) {
+        int essential = 0;
+        while (essential + 1 < bounds.length && _below(bounds[essential + 1], threshold, full)) {
+            essential++;
+        }
+        return essential;
+    }
+
+    /**
+     * Adds up the scores of a row in the order of the terms, so that it scores the same to the last
+     * bit however it was found.
+     */
+    private static double _sum(double[] termScores) {
+        double score = 0;
+        for (double termScore : termScores) {
+            score += termScore;
+        }
+        return score;
+    }
+
+    private static boolean _worse(int[] rows, double[] scores, int i, int j) {
+        return scores[i] < scores[j] || scores[i] == scores[j] && rows[i] > rows[j];
+    }
+
+    private static void _siftUp(int[] rows, double[] scores, int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!_worse(rows, scores, i, parent)) {
+                return;
+            }
+            _swap(rows, scores, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void _siftDown(int[] rows, double[] scores, int size) {
+        int i = 0;
+        while (true) {
+            int worst = i;
+            for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+                if (_worse(rows, scores, child, worst)) {
+                    worst = child;
+                }
+            }
+            if (worst == i) {
+                return;
+            }
+            _swap(rows, scores, i, worst);
+            i = worst;
+        }
+    }
+
+    private static void _swap(int[] rows, double[] scores, int i, int j) {
+        int row = rows[i];
+        rows[i] = rows[j];
+        rows[j] = row;
+        double score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+
+    private double _idf(long frequency) {
+        return Math.log(1 + rowCount / (double) frequency);
+    }
+
+    private int _lowerBound(String word) {
+        int low = 0;
+        int high = words.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (words[middle].compareTo(word) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int _maxEdits(String word) {
+        return word.length() < 4 ? 0 : word.length() < 8 ? 1 : 2;
+    }
+
+    private static boolean _hasDigit(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (Character.isDigit(word.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the distinct trigrams of a word padded on both sides, as numbers below {@code ALPHABET^3}.
+     */
+    private static int[] _trigrams(String word) {
+        int[] trigrams = new int[word.length()];
+        int previous = 0;
+        int current = _code(word.charAt(0));
+        for (int i = 0; i < trigrams.length; i++) {
+            int next = i + 1 < word.length() ? _code(word.charAt(i + 1)) : 0;
+            trigrams[i] = (previous * ALPHABET + current) * ALPHABET + next;
+            previous = current;
+            current = next;
+        }
+        return Arrays.stream(trigrams).distinct().toArray();
+    }
+
+    private static int _code(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 1;
+        }
+        if (c >= '0' && c <= '9') {
+            return c - '0' + 27;
+        }
+        return ALPHABET - 1;
+    }
+
+    /**
+     * Computes the edit distance between two words, counting transpositions of adjacent characters
+     * as one edit, or any number above the maximum once it is exceeded.
+     */
+    private static int _distance(String a, String b, int max) {
+        int[] previous2 = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int best = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int distance = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    distance = Math.min(distance, previous2[j - 2] + 1);
+                }
+                current[j] = distance;
+                best = Math.min(best, distance);
+            }
+            if (best > max) {
+                return max + 1;
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[b.length()];
+    }
+
+    /**
+     * A row found by a search.
+     *
+     * @param row the row
+     * @param words the number of query words it matches
+     * @param score how well it matches them
+     */
+    record Hit(int row, int words, double score) {
+    }
+
+    /**
+     * The rows matching a query word: the posting lists of the words it matches in each field, each
+     * with its score. A row scores the best of the lists it is in.
+     *
+     * @param lists the posting lists
+     * @param scores the score of each
+     */
+    private record Term(int[] lists, double[] scores) {
+    }
+
+    /**
+     * Reads a posting list one row at a time.
+     */
+    private final class PostingCursor {
+
+        private final int blockEnd;
+        private final int end;
+        private int block;
+        private int position;
+        private int blockStop;
+        private int row;
+
+        PostingCursor(int list) {
+            this.blockEnd = blockStarts[list + 1];
+            this.end = postingStarts[list + 1];
+            _open(blockStarts[list]);
+        }
+
+        int row() {
+            return row;
+        }
+
+        void next() {
+            if (position < blockStop) {
+                row += _read();
+            } else {
+                _open(block + 1);
+            }
+        }
+
+        /**
+         * Moves to a row or the first one after it, skipping the blocks ending before it.
+         */
+        void advance(int target) {
+            if (row >= target) {
+                return;
+            }
+            if (blockLasts[block] < target) {
+                int next = block + 1;
+                while (next < blockEnd && blockLasts[next] < target) {
+                    next++;
+                }
+                _open(next);
+            }
+            while (row < target) {
+                next();
+            }
+        }
+
+        private void _open(int block) {
+            if (block >= blockEnd) {
+                row = EXHAUSTED;
+                return;
+            }
+            this.block = block;
+            position = blockOffsets[block];
+            blockStop = block + 1 < blockEnd ? blockOffsets[block + 1] : end;
+            row = _read();
+        }
+
+        private int _read() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = postings[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+
+    /**
+     * A growable array of bytes written as variable-length integers.
+     */
+    private static final class Bytes {
+
+        private byte[] data;
+        private int size;
+
+        Bytes(int capacity) {
+            this.data = new byte[Math.max(16, capacity)];
+        }
+
+        void writeVarint(int value) {
+            if (size + 5 > data.length) {
+                data = Arrays.copyOf(data, data.length + (data.length >> 1) + 5);
+            }
+            while ((value & ~0x7F) != 0) {
+                data[size++] = (byte) (value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+
+        byte[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+
+    /**
+     * Counts occurrences of non-negative integers, in an open-addressing hash table.
+     */
+    private static final class IntCounter {
+
+        private int[] keys = new int[256];
+        private int[] values = new int[256];
+        private int size;
+
+        void increment(int key) {
+            if (2 * (size + 1) > keys.length) {
+                _grow();
+            }
+            int mask = keys.length - 1;
+            int slot = _slot(key + 1, mask);
+            // Keys are stored plus one, so that zero marks an empty slot.
+            while (keys[slot] != 0 && keys[slot] != key + 1) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == 0) {
+                keys[slot] = key + 1;
+                size++;
+            }
+            values[slot]++;
+        }
+
+        private static int _slot(int key, int mask) {
+            int hash = key * 0x9E3779B9;
+            return (hash ^ hash >>> 16) & mask;
+        }
+
+        private void _grow() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = _slot(oldKeys[i], mask);
+                    while (keys[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package io.github.marceltanuri.frameworks.restam3.demo.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits a range of UTF-8 CSV data into records and fields, working on the bytes: fields are only
+ * decoded into strings when they are asked for.
+ * <p>
+ * Fields are separated by {@code ;} and records by line feeds, optionally preceded by a carriage
+ * return. A field may be enclosed in double quotes, in which case it may contain separators, line
+ * breaks and doubled quotes ({@code ""}), which stand for one quote.
+ *
+ * @author Marcel Tanuri
+ */
+final class CsvTokenizer {
+
+    private static final byte SEPARATOR = ';';
+    private static final byte QUOTE = '"';
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+
+    private final ByteBuffer data;
+    private final int end;
+    private int position;
+    private int recordStart;
+    private int fieldCount;
+    private int[] fieldStarts = new int[16];
+    private int[] fieldEnds = new int[16];
+    private boolean[] escaped = new boolean[16];
+    private byte[] scratch = new byte[256];
+
+    /**
+     * Creates a tokenizer.
+     *
+     * @param data the CSV data
+     * @param start the index of the first byte of the range, at the start of a record
+     * @param end the index after the last byte of the range, at the end of a record
+     */
+    CsvTokenizer(ByteBuffer data, int start, int end) {
+        this.data = data;
+        this.position = start;
+        this.end = end;
+    }
+
+    /**
+     * Finds the start of the line after an index.
+     *
+     * @param data the CSV data
+     * @param from the index to search from
+     * @param end the index after the last byte to search
+     * @return the index after the next line feed, or {@code end} if there is none
+     */
+    static int nextLine(ByteBuffer data, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (data.get(i) == LF) {
+                return i + 1;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Tells whether a range of the data ends inside a quoted field, that is, whether a line feed
+     * ending the range is part of a field rather than the end of a record.
+     *
+     * @param data the CSV data
+     * @param from the index to scan from, at the start of a line
+     * @param end the index after the last byte to scan
+     * @param inQuotes whether {@code from} is inside a quoted field rather than at the start of a record
+     * @return whether the range ends inside a quoted field
+     */
+    static boolean endsInQuotes(ByteBuffer data, int from, int end, boolean inQuotes) {
+        boolean fieldStart = !inQuotes;
+        for (int i = from; i < end; i++) {
+            byte b = data.get(i);
+            if (inQuotes) {
+                if (b == QUOTE) {
+                    if (i + 1 < end && data.get(i + 1) == QUOTE) {
+                        i++;
+                    } else {
+                        inQuotes = false;
+                    }
+                }
+            } else if (b == QUOTE && fieldStart) {
+                // As in next(), a quote only opens a quoted field at the start of the field.
+                inQuotes = true;
+                fieldStart = false;
+            } else {
+                fieldStart = b == SEPARATOR || b == LF;
+            }
+        }
+        return inQuotes;
+    }
+
+    /**
+     * Moves to the next record.
+     *
+     * @return whether there is one
+     */
+    boolean next() {
+        if (position >= end) {
+            return false;
+        }
+        recordStart = position;
+        fieldCount = 0;
+        int p = position;
+        while (true) {
+            int start;
+            int stop;
+            boolean quotes = false;
+            if (p < end && data.get(p) == QUOTE) {
+                start = ++p;
+                while (p < end) {
+                    if (data.get(p) == QUOTE) {
+                        if (p + 1 < end && data.get(p + 1) == QUOTE) {
+                            quotes = true;
+                            p += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    p++;
+                }
+                stop = p;
+                // Anything between the closing quote and the separator is dropped, carriage return included.
+                while (p < end && data.get(p) != SEPARATOR && data.get(p) != LF) {
+                    p++;
+                }
+            } else {
+                start = p;
+                while (p < end && data.get(p) != SEPARATOR && data.get(p) != LF) {
+                    p++;
+                }
+                stop = p > start && data.get(p - 1) == CR && (p == end || data.get(p) == LF) ? p - 1 : p;
+            }
+            _addField(start, stop, quotes);
+            if (p < end && data.get(p) == SEPARATOR) {
+                p++;
+                continue;
+            }
+            position = p < end ? p + 1 : end;
+            return true;
+        }
+    }
+
+    /**
+     * Gets the number of fields of the current record.
+     *
+     * @return the number of fields
+     */
+    int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Tells whether the current record is a blank line.
+     *
+     * @return whether the record has a single, empty field
+     */
+    boolean isBlank() {
+        return fieldCount == 1 && fieldStarts[0] == fieldEnds[0];
+    }
+
+    /**
+     * Gets a field of the current record.
+     *
+     * @param index the index of the field
+     * @return the field, without its quotes
+     */
+    String field(int index) {
+        int start = fieldStarts[index];
+        int length = fieldEnds[index] - start;
+        if (!escaped[index] && data.hasArray()) {
+            return new String(data.array(), data.arrayOffset() + start, length, StandardCharsets.UTF_8);
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        data.get(start, scratch, 0, length);
+        if (escaped[index]) {
+            // Collapses each doubled quote into one.
+            int count = 0;
+            for (int i = 0; i < length; i++) {
+                scratch[count++] = scratch[i];
+                if (scratch[i] == QUOTE) {
+                    i++;
+                }
+            }
+            length = count;
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the current record as it is in the data, for error messages.
+     *
+     * @return the record, without its line break
+     */
+    String record() {
+        int stop = position;
+        while (stop > recordStart && (data.get(stop - 1) == LF || data.get(stop - 1) == CR)) {
+            stop--;
+        }
+        byte[] bytes = new byte[stop - recordStart];
+        data.get(recordStart, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void _addField(int start, int stop, boolean quotes) {
+        if (fieldCount == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+            escaped = Arrays.copyOf(escaped, fieldCount * 2);
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = stop;
+        escaped[fieldCount] = quotes;
+        fieldCount++;
+    }
+}
@@ -0,0 +1,186 @@
+package io.github.marceltanuri.frameworks.restam3.demo.repository;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A column of strings with few distinct values, such as cities or states: each distinct value is
+ * kept once, and each row holds the code of its value in the narrowest width that fits the number
+ * of distinct values (one byte per row up to 256 values, two up to 65,536, four beyond).
+ * <p>
+ * In a {@link CepSnapshot}, the column is laid out as the number of distinct values and the width of
+ * the codes, then the codes, and the distinct values as a {@link Utf8Column}. The values of
+ * dictionaries of up to 65,536 values are decoded once, when first read.
+ *
+ * @author Marcel Tanuri
+ */
+final class DictionaryColumn {
+
+    private static final int MAX_CACHED_VALUES = 1 << 16;
+
+    private final int cardinality;
+    private final int width;
+    private final ByteBuffer codes;
+    private final Utf8Column values;
+    private final String[] decoded;
+
+    private DictionaryColumn(int cardinality, int width, ByteBuffer codes, Utf8Column values) {
+        this.cardinality = cardinality;
+        this.width = width;
+        this.codes = codes;
+        this.values = values;
+        this.decoded = cardinality <= MAX_CACHED_VALUES ? new String[cardinality] : null;
+    }
+
+    /**
+     * Reads a column from a payload.
+     *
+     * @param in the payload, positioned at the column; moved past it
+     * @param rows the number of rows
+     * @return the column, backed by the payload
+     */
+    static DictionaryColumn read(ByteBuffer in, int rows) {
+        int cardinality = in.getInt();
+        int width = in.getInt();
+        // Each value takes at least its offset in the payload, which bounds the cache allocated for them.
+        if (cardinality < 0 || cardinality > in.remaining() / Integer.BYTES
+                || (width != Byte.BYTES && width != Short.BYTES && width != Integer.BYTES)) {
+            throw new IllegalArgumentException("Invalid dictionary of " + cardinality + " values of width " + width);
+        }
+        ByteBuffer codes = CepSnapshot.section(in, rows * width);
+        return new DictionaryColumn(cardinality, width, codes, Utf8Column.read(in, cardinality));
+    }
+
+    /**
+     * Gets the value of a row.
+     *
+     * @param row the row
+     * @return the value
+     */
+    String get(int row) {
+        int code = code(row);
+        if (decoded == null) {
+            return values.get(code);
+        }
+        // Racy but benign: strings are immutable, and a value decoded twice is equal.
+        String value = decoded[code];
+        if (value == null) {
+            value = values.get(code);
+            decoded[code] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Gets the code of the value of a row.
+     *
+     * @param row the row
+     * @return the code, between 0 and {@link #cardinality()} (exclusive)
+     */
+    int code(int row) {
+        return switch (width) {
+            case Byte.BYTES -> codes.get(row) & 0xFF;
+            case Short.BYTES -> codes.getShort(row * Short.BYTES) & 0xFFFF;
+            default -> codes.getInt(row * Integer.BYTES);
+        };
+    }
+
+    /**
+     * Gets the number of distinct values.
+     *
+     * @return the number of distinct values, null included
+     */
+    int cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * Accumulates the rows of a dictionary column.
+     */
+    static final class Builder {
+
+        private final Map<String, Integer> codesByValue = new HashMap<>();
+        private final List<String> valuesByCode = new ArrayList<>();
+        private final Utf8Column.Builder values = new Utf8Column.Builder(16);
+        private int[] codes;
+        private int size;
+
+        Builder(int expectedRows) {
+            this.codes = new int[Math.max(16, expectedRows)];
+        }
+
+        void add(String value) {
+            int code = _codeOf(value);
+            if (size == codes.length) {
+                codes = Arrays.copyOf(codes, size * 2);
+            }
+            codes[size++] = code;
+        }
+
+        /**
+         * Appends the rows of another builder, as if they had been added to this one: the values the
+         * other builder saw first get their codes in the same order as they would have here.
+         */
+        void addAll(Builder other) {
+            int[] recoded = new int[other.valuesByCode.size()];
+            for (int code = 0; code < recoded.length; code++) {
+                recoded[code] = _codeOf(other.valuesByCode.get(code));
+            }
+            if (size + other.size > codes.length) {
+                codes = Arrays.copyOf(codes, Math.max(codes.length * 2, size + other.size));
+            }
+            for (int row = 0; row < other.size; row++) {
+                codes[size + row] = recoded[other.codes[row]];
+            }
+            size += other.size;
+        }
+
+        private int _codeOf(String value) {
+            Integer code = codesByValue.get(value);
+            if (code == null) {
+                code = valuesByCode.size();
+                codesByValue.put(value, code);
+                valuesByCode.add(value);
+                values.add(value);
+            }
+            return code;
+        }
+
+        /**
+         * Gets the size of the column in a payload.
+         *
+         * @return the size in bytes
+         */
+        int encodedSize() {
+            return 2 * Integer.BYTES + CepSnapshot.align(size * _width()) + values.encodedSize();
+        }
+
+        /**
+         * Writes the column into a payload.
+         *
+         * @param out the payload, positioned at the column; moved past it
+         */
+        void encode(ByteBuffer out) {
+            int width = _width();
+            out.putInt(valuesByCode.size()).putInt(width);
+            for (int row = 0; row < size; row++) {
+                switch (width) {
+                    case Byte.BYTES -> out.put((byte) codes[row]);
+                    case Short.BYTES -> out.putShort((short) codes[row]);
+                    default -> out.putInt(codes[row]);
+                }
+            }
+            CepSnapshot.pad(out);
+            values.encode(out);
+        }
+
+        private int _width() {
+            int cardinality = valuesByCode.size();
+            return cardinality <= 1 << 8 ? Byte.BYTES : cardinality <= 1 << 16 ? Short.BYTES : Integer.BYTES;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package io.github.marceltanuri.frameworks.restam3.demo.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A column of strings that are mostly distinct, such as street names: the values of all rows are
+ * packed, UTF-8 encoded, in a single section, and decoded when a row is read.
+ * <p>
+ * In a {@link CepSnapshot}, the column is laid out as the length of the packed values and a flag
+ * telling whether there are nulls, then the {@code rows + 1} offsets of the values, the values, and
+ * a bitmap of the null rows if there are any.
+ *
+ * @author Marcel Tanuri
+ */
+final class Utf8Column {
+
+    private final ByteBuffer offsets;
+    private final ByteBuffer bytes;
+    private final ByteBuffer nulls;
+
+    private Utf8Column(ByteBuffer offsets, ByteBuffer bytes, ByteBuffer nulls) {
+        this.offsets = offsets;
+        this.bytes = bytes;
+        this.nulls = nulls;
+    }
+
+    /**
+     * Reads a column from a payload.
+     *
+     * @param in the payload, positioned at the column; moved past it
+     * @param rows the number of rows
+     * @return the column, backed by the payload
+     */
+    static Utf8Column read(ByteBuffer in, int rows) {
+        int length = in.getInt();
+        boolean hasNulls = in.getInt() != 0;
+        ByteBuffer offsets = CepSnapshot.section(in, (rows + 1) * Integer.BYTES);
+        ByteBuffer bytes = CepSnapshot.section(in, length);
+        ByteBuffer nulls = hasNulls ? CepSnapshot.section(in, (rows + 7) >>> 3) : null;
+        return new Utf8Column(offsets, bytes, nulls);
+    }
+
+    /**
+     * Gets the value of a row.
+     *
+     * @param row the row
+     * @return the value, decoded into a new string
+     */
+    String get(int row) {
+        if (nulls != null && (nulls.get(row >>> 3) & (1 << (row & 7))) != 0) {
+            return null;
+        }
+        int start = offsets.getInt(row * Integer.BYTES);
+        int length = offsets.getInt((row + 1) * Integer.BYTES) - start;
+        if (bytes.hasArray()) {
+            return new String(bytes.array(), bytes.arrayOffset() + start, length, StandardCharsets.UTF_8);
+        }
+        byte[] value = new byte[length];
+        bytes.get(start, value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Accumulates the rows of a column.
+     */
+    static final class Builder {
+
+        private byte[] bytes;
+        private int[] offsets;
+        private BitSet nulls;
+        private int length;
+        private int size;
+
+        Builder(int expectedRows) {
+            this.bytes = new byte[Math.max(256, expectedRows * 16)];
+            this.offsets = new int[Math.max(16, expectedRows) + 1];
+        }
+
+        void add(String value) {
+            byte[] encoded = value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+            _ensureCapacity(length + (encoded != null ? encoded.length : 0), size + 1);
+            if (encoded == null) {
+                if (nulls == null) {
+                    nulls = new BitSet();
+                }
+                nulls.set(size);
+            } else {
+                System.arraycopy(encoded, 0, bytes, length, encoded.length);
+                length += encoded.length;
+            }
+            offsets[++size] = length;
+        }
+
+        /**
+         * Appends the rows of another builder, as if they had been added to this one.
+         */
+        void addAll(Builder other) {
+            _ensureCapacity(length + other.length, size + other.size);
+            System.arraycopy(other.bytes, 0, bytes, length, other.length);
+            for (int row = 1; row <= other.size; row++) {
+                offsets[size + row] = length + other.offsets[row];
+            }
+            if (other.nulls != null) {
+                if (nulls == null) {
+                    nulls = new BitSet();
+                }
+                for (int row = other.nulls.nextSetBit(0); row >= 0; row = other.nulls.nextSetBit(row + 1)) {
+                    nulls.set(size + row);
+                }
+            }
+            length += other.length;
+            size += other.size;
+        }
+
+        private void _ensureCapacity(int byteCount, int rows) {
+            if (byteCount > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, byteCount));
+            }
+            if (rows >= offsets.length) {
+                offsets = Arrays.copyOf(offsets, Math.max(offsets.length * 2, rows + 1));
+            }
+        }
+
+        /**
+         * Gets the size of the column in a payload.
+         *
+         * @return the size in bytes
+         */
+        int encodedSize() {
+            return 2 * Integer.BYTES
+                    + CepSnapshot.align((size + 1) * Integer.BYTES)
+                    + CepSnapshot.align(length)
+                    + (nulls != null ? CepSnapshot.align((size + 7) >>> 3) : 0);
+        }
+
+        /**
+         * Writes the column into a payload.
+         *
+         * @param out the payload, positioned at the column; moved past it
+         */
+        void encode(ByteBuffer out) {
+            out.putInt(length).putInt(nulls != null ? 1 : 0);
+            for (int row = 0; row <= size; row++) {
+                out.putInt(offsets[row]);
+            }
+            CepSnapshot.pad(out);
+            out.put(bytes, 0, length);
+            CepSnapshot.pad(out);
+            if (nulls != null) {
+                out.put(Arrays.copyOf(nulls.toByteArray(), (size + 7) >>> 3));
+                CepSnapshot.pad(out);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package io.github.marceltanuri.frameworks.restam3.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes everything written to it with {@code Transfer-Encoding: chunked}, emitting one chunk
+ * each time its fixed-size buffer fills up, so the memory used does not depend on the body size.
+ * <p>
+ * {@link #close()} writes the terminating zero-length chunk but leaves the underlying stream open,
+ * since the connection may be reused for further responses.
+ *
+ * @author Marcel Tanuri
+ */
+final class ChunkedOutputStream extends OutputStream {
+
+    private static final int CHUNK_SIZE = 8 * 1024;
+    private static final byte[] CRLF = "\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[CHUNK_SIZE];
+    private final byte[] sizeLine = new byte[10];
+    private int count;
+    private boolean closed;
+
+    ChunkedOutputStream(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buffer.length) {
+            _writeChunk(buffer, 0, count);
+            count = 0;
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (len >= buffer.length) {
+            // Large writes become a chunk of their own, after whatever is buffered.
+            _flushBuffer();
+            _writeChunk(b, off, len);
+            return;
+        }
+        if (count + len > buffer.length) {
+            _flushBuffer();
+        }
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+    }
+
+    /**
+     * Sends the buffered bytes as a chunk and flushes the connection, so a slow producer still
+     * delivers data progressively.
+     */
+    @Override
+    public void flush() throws IOException {
+        _flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            _flushBuffer();
+            out.write(LAST_CHUNK);
+            closed = true;
+        }
+    }
+
+    private void _flushBuffer() throws IOException {
+        if (count > 0) {
+            _writeChunk(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    private void _writeChunk(byte[] b, int off, int len) throws IOException {
+        int position = sizeLine.length - 2;
+        sizeLine[position] = '\r';
+        sizeLine[position + 1] = '\n';
+        int size = len;
+        do {
+            sizeLine[--position] = HEX[size & 0xF];
+            size >>>= 4;
+        } while (size != 0);
+        out.write(sizeLine, position, sizeLine.length - position);
+        out.write(b, off, len);
+        out.write(CRLF);
+    }
+}
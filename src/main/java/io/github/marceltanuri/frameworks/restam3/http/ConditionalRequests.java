@@ -0,0 +1,241 @@
+package io.github.marceltanuri.frameworks.restam3.http;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Entity tags and the evaluation of conditional GET requests ({@code If-None-Match} and
+ * {@code If-Modified-Since}, RFC 9110 section 13), answered with a bodyless
+ * {@code 304 Not Modified} when the client already holds the current representation.
+ * <p>
+ * Strong entity tags computed from a body combine its CRC32C, which the JVM computes with
+ * dedicated CPU instructions, with its length. A compressed representation gets the tag of the
+ * identity body suffixed with its content coding (see {@link ResponseCompressor}), so that each
+ * representation keeps a distinct strong tag.
+ *
+ * @author Marcel Tanuri
+ */
+public final class ConditionalRequests {
+
+    private static final String[] CODING_SUFFIXES = {"-gzip", "-deflate"};
+
+    /** The response headers a {@code 304} must repeat from the {@code 200} it stands for (RFC 9110 section 15.4.5). */
+    private static final String[] NOT_MODIFIED_HEADERS = {
+            "ETag", "Last-Modified", "Cache-Control", "Content-Location", "Date", "Expires", "Vary"};
+
+    /** The preferred HTTP date format (IMF-fixdate, RFC 9110 section 5.6.7), with a two-digit day. */
+    private static final DateTimeFormatter HTTP_DATE =
+            DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+
+    private ConditionalRequests() {
+    }
+
+    /**
+     * Computes the strong entity tag of a body.
+     *
+     * @param body the encoded body
+     * @return the quoted entity tag
+     */
+    public static String strongTag(byte[] body) {
+        CRC32C crc = new CRC32C();
+        crc.update(body, 0, body.length);
+        return '"' + Long.toHexString((long) body.length << 32 | crc.getValue()) + '"';
+    }
+
+    /**
+     * Builds the strong entity tag of a version supplied by a controller.
+     *
+     * @param version an opaque version token, without double quotes
+     * @return the quoted entity tag
+     */
+    public static String versionTag(String version) {
+        return '"' + version + '"';
+    }
+
+    /**
+     * Formats an instant as an HTTP date (e.g., {@code Sun, 06 Nov 1994 08:49:37 GMT}).
+     *
+     * @param instant the instant, truncated to seconds
+     * @return the HTTP date
+     */
+    public static String httpDate(Instant instant) {
+        return HTTP_DATE.format(instant.truncatedTo(ChronoUnit.SECONDS));
+    }
+
+    /**
+     * Evaluates the conditions of a GET request against the current representation.
+     * {@code If-Modified-Since} is only considered when the request has no {@code If-None-Match}.
+     *
+     * @param request      the request
+     * @param etag         the entity tag of the current representation, or null
+     * @param lastModified the modification time of the resource, or null
+     * @return true if the client's copy is current and a {@code 304} should be sent
+     */
+    public static boolean isNotModified(HttpRequest request, String etag, Instant lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            return etag != null && matchingTag(ifNoneMatch, etag, false) != null;
+        }
+        return _notModifiedSince(request.getHeader("If-Modified-Since"), lastModified);
+    }
+
+    /**
+     * Finds the entity tag of an {@code If-None-Match} header that matches the current one, using
+     * the weak comparison required for this header.
+     *
+     * @param ifNoneMatch       the header value: {@code *} or a list of entity tags
+     * @param etag              the entity tag of the current representation
+     * @param ignoreCodingSuffix whether tags the client received for a compressed representation
+     *                          also match the tag of the identity one
+     * @return the matching tag as sent by the client, or null if none matches
+     */
+    public static String matchingTag(String ifNoneMatch, String etag, boolean ignoreCodingSuffix) {
+        String opaque = _opaque(etag);
+        for (String element : ifNoneMatch.split(",")) {
+            String candidate = element.trim();
+            if (candidate.equals("*")) {
+                return etag;
+            }
+            String candidateOpaque = _opaque(candidate);
+            if (ignoreCodingSuffix) {
+                candidateOpaque = _stripCodingSuffix(candidateOpaque);
+            }
+            if (candidateOpaque.equals(opaque)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Builds the {@code 304 Not Modified} response standing for a full response.
+     *
+     * @param response the response the client already holds
+     * @return a bodyless response repeating the validator and caching headers of the response
+     */
+    public static HttpResponse notModified(HttpResponse response) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        Map<String, String> original = response.getHeaders();
+        if (original != null) {
+            for (Map.Entry<String, String> header : original.entrySet()) {
+                for (String name : NOT_MODIFIED_HEADERS) {
+                    if (header.getKey().equalsIgnoreCase(name)) {
+                        headers.put(name, header.getValue());
+                    }
+                }
+            }
+        }
+        return notModified(headers);
+    }
+
+    /**
+     * Builds a {@code 304 Not Modified} response.
+     *
+     * @param headers the headers of the response (typically {@code ETag} and {@code Last-Modified})
+     * @return a bodyless response
+     */
+    public static HttpResponse notModified(Map<String, String> headers) {
+        return new HttpResponse((byte[]) null, HttpStatus.NOT_MODIFIED, headers);
+    }
+
+    /**
+     * Gets the value of a response header.
+     *
+     * @param response the response
+     * @param name     the header name, matched case-insensitively
+     * @return the value, or null if the response does not have the header
+     */
+    public static String header(HttpResponse response, String name) {
+        Map<String, String> headers = response.getHeaders();
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                if (header.getKey().equalsIgnoreCase(name)) {
+                    return header.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Copies a response with additional headers, which replace existing ones of the same name.
+     *
+     * @param response the response
+     * @param added    the headers to add
+     * @return the new response, streaming if the original was
+     */
+    public static HttpResponse withHeaders(HttpResponse response, Map<String, String> added) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        Map<String, String> original = response.getHeaders();
+        if (original != null) {
+            for (Map.Entry<String, String> header : original.entrySet()) {
+                if (!_containsIgnoreCase(added, header.getKey())) {
+                    headers.put(header.getKey(), header.getValue());
+                }
+            }
+        }
+        headers.putAll(added);
+        if (response instanceof StreamingHttpResponse streaming) {
+            return new StreamingHttpResponse(streaming.getStatus(), headers, streaming.getContentLength(),
+                    streaming.getBodyWriter());
+        }
+        return new HttpResponse(response.getBodyBytes(), response.getStatus(), headers);
+    }
+
+    /**
+     * Appends a content coding to an entity tag, keeping its weakness.
+     *
+     * @param etag     the entity tag of the identity representation
+     * @param encoding the content coding (e.g., {@code gzip})
+     * @return the entity tag of the encoded representation
+     */
+    static String withCoding(String etag, String encoding) {
+        int closingQuote = etag.lastIndexOf('"');
+        if (closingQuote <= 0) {
+            return etag;
+        }
+        return etag.substring(0, closingQuote) + '-' + encoding + '"';
+    }
+
+    private static boolean _notModifiedSince(String ifModifiedSince, Instant lastModified) {
+        if (ifModifiedSince == null || lastModified == null) {
+            return false;
+        }
+        try {
+            Instant since = ZonedDateTime.parse(ifModifiedSince.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return !lastModified.truncatedTo(ChronoUnit.SECONDS).isAfter(since);
+        } catch (DateTimeParseException e) {
+            return false; // an invalid date is ignored (RFC 9110 section 13.1.3)
+        }
+    }
+
+    private static String _opaque(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private static String _stripCodingSuffix(String opaque) {
+        for (String suffix : CODING_SUFFIXES) {
+            if (opaque.endsWith(suffix + '"')) {
+                return opaque.substring(0, opaque.length() - suffix.length() - 1) + '"';
+            }
+        }
+        return opaque;
+    }
+
+    private static boolean _containsIgnoreCase(Map<String, String> headers, String name) {
+        for (String key : headers.keySet()) {
+            if (key.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,47 @@
+package io.github.marceltanuri.frameworks.restam3.http;
+
+import java.time.Duration;
+
+/**
+ * The limits a server enforces on each connection to protect itself from oversized requests and
+ * from slow clients that would otherwise hold a socket, a thread and a buffer indefinitely.
+ * <p>
+ * Timeouts are deadlines per phase of a request rather than per read, so a client trickling one
+ * byte at a time cannot extend them: the request line must arrive within {@code requestLineTimeout}
+ * of its first byte, the headers within {@code headersTimeout} of the request line, and the body
+ * within {@code bodyTimeout} of the headers. A response write that makes no progress for
+ * {@code writeTimeout} closes the connection.
+ *
+ * @param maxBodySize          the maximum request body size in bytes, answered with {@code 413}
+ * @param maxRequestLineLength the maximum length of the request line, answered with {@code 414}
+ * @param maxHeaderCount       the maximum number of header fields, answered with {@code 431}
+ * @param maxHeaderSize        the maximum size of the request line and headers together, answered with {@code 431}
+ * @param idleTimeout          how long a persistent connection may wait for the first byte of its next request
+ * @param requestLineTimeout   how long the request line may take to arrive once its first byte was received
+ * @param headersTimeout       how long the headers may take to arrive after the request line
+ * @param bodyTimeout          how long the body may take to arrive after the headers
+ * @param writeTimeout         how long writing a response may stall before the connection is closed
+ * @author Marcel Tanuri
+ */
+public record ConnectionLimits(long maxBodySize, int maxRequestLineLength, int maxHeaderCount, int maxHeaderSize,
+                               Duration idleTimeout, Duration requestLineTimeout, Duration headersTimeout,
+                               Duration bodyTimeout, Duration writeTimeout) {
+
+    /**
+     * The limits used when none are configured.
+     */
+    public static final ConnectionLimits DEFAULT = new ConnectionLimits(10L * 1024 * 1024, 8 * 1024, 100, 32 * 1024,
+            Duration.ofSeconds(5), Duration.ofSeconds(10), Duration.ofSeconds(10),
+            Duration.ofSeconds(30), Duration.ofSeconds(30));
+
+    /**
+     * Returns a copy of these limits with another maximum body size.
+     *
+     * @param maxBodySize the maximum request body size in bytes
+     * @return the new limits
+     */
+    public ConnectionLimits withMaxBodySize(long maxBodySize) {
+        return new ConnectionLimits(maxBodySize, maxRequestLineLength, maxHeaderCount, maxHeaderSize,
+                idleTimeout, requestLineTimeout, headersTimeout, bodyTimeout, writeTimeout);
+    }
+}
@@ -0,0 +1,256 @@
+package io.github.marceltanuri.frameworks.restam3.http;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The headers of an HTTP request, kept as slices of the raw request bytes.
+ * <p>
+ * Names and values are only turned into Strings when they are accessed, and name lookups
+ * are case-insensitive and allocation-free. The slices point into the parser's buffer, so
+ * they are only valid while the request is being handled.
+ *
+ * @author Marcel Tanuri
+ */
+public final class HttpHeaders {
+
+    private static final int SLOTS = 4; // nameStart, nameEnd, valueStart, valueEnd
+
+    private final byte[] data;
+    private int[] offsets;
+    private int count;
+    private Map<String, String> map;
+
+    /**
+     * Creates an empty header set over the given buffer.
+     *
+     * @param data the buffer holding the raw request head
+     */
+    HttpHeaders(byte[] data) {
+        this.data = data;
+        this.offsets = new int[8 * SLOTS];
+    }
+
+    /**
+     * Records a header as offsets into the buffer.
+     */
+    void add(int nameStart, int nameEnd, int valueStart, int valueEnd) {
+        int slot = count * SLOTS;
+        if (slot + SLOTS > offsets.length) {
+            int[] grown = new int[offsets.length * 2];
+            System.arraycopy(offsets, 0, grown, 0, offsets.length);
+            offsets = grown;
+        }
+        offsets[slot] = nameStart;
+        offsets[slot + 1] = nameEnd;
+        offsets[slot + 2] = valueStart;
+        offsets[slot + 3] = valueEnd;
+        count++;
+    }
+
+    /**
+     * Gets the number of header fields.
+     *
+     * @return the number of header fields
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Gets the name of the header field at the given position.
+     *
+     * @param index the position, from 0 to {@link #size()} - 1
+     * @return the header name as sent by the client
+     */
+    public String name(int index) {
+        int slot = index * SLOTS;
+        return new String(data, offsets[slot], offsets[slot + 1] - offsets[slot], StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Gets the value of the header field at the given position.
+     *
+     * @param index the position, from 0 to {@link #size()} - 1
+     * @return the header value, without surrounding whitespace
+     */
+    public String value(int index) {
+        int slot = index * SLOTS;
+        return new String(data, offsets[slot + 2], offsets[slot + 3] - offsets[slot + 2], StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Gets the value of the first header with the given name, matched case-insensitively.
+     *
+     * @param name the header name
+     * @return the header value, or null if the header is not present
+     */
+    public String get(String name) {
+        int index = _indexOf(name);
+        return index < 0 ? null : value(index);
+    }
+
+    /**
+     * Tells whether a header with the given name is present.
+     *
+     * @param name the header name, matched case-insensitively
+     * @return true if the header is present
+     */
+    public boolean contains(String name) {
+        return _indexOf(name) >= 0;
+    }
+
+    /**
+     * Parses the value of the given header as a non-negative decimal number without creating a String.
+     * <p>
+     * A number that frames the message, such as {@code Content-Length}, must not be ambiguous
+     * (RFC 9112 section 6.3): the header may not be repeated, and a comma-separated list is only
+     * accepted when all its values are the same.
+     *
+     * @param name the header name, matched case-insensitively
+     * @return the numeric value, or -1 if the header is absent
+     * @throws IllegalArgumentException if the value is not a valid non-negative number, the header
+     *                                  is repeated or it lists different values
+     */
+    public long getLong(String name) {
+        int index = _indexOf(name, 0);
+        if (index < 0) {
+            return -1;
+        }
+        if (_indexOf(name, index + 1) >= 0) {
+            throw new IllegalArgumentException("Repeated " + name + " header");
+        }
+        int slot = index * SLOTS;
+        int position = offsets[slot + 2];
+        int end = offsets[slot + 3];
+        long value = -1;
+        while (true) {
+            int elementEnd = position;
+            while (elementEnd < end && data[elementEnd] != ',') {
+                elementEnd++;
+            }
+            long element = _parseLong(name, position, elementEnd);
+            if (value >= 0 && element != value) {
+                throw new IllegalArgumentException("Conflicting " + name + " values");
+            }
+            value = element;
+            if (elementEnd == end) {
+                return value;
+            }
+            position = elementEnd + 1;
+        }
+    }
+
+    /**
+     * Checks whether a comma-separated header value contains the given token, ignoring case,
+     * without creating any String.
+     *
+     * @param name  the header name, matched case-insensitively
+     * @param token the token to look for (e.g., {@code close})
+     * @return true if the header is present and lists the token
+     */
+    public boolean containsToken(String name, String token) {
+        int index = _indexOf(name);
+        if (index < 0) {
+            return false;
+        }
+        int slot = index * SLOTS;
+        int position = offsets[slot + 2];
+        int end = offsets[slot + 3];
+        while (position < end) {
+            int elementEnd = position;
+            while (elementEnd < end && data[elementEnd] != ',') {
+                elementEnd++;
+            }
+            int from = position;
+            int to = elementEnd;
+            while (from < to && _isWhitespace(data[from])) {
+                from++;
+            }
+            while (to > from && _isWhitespace(data[to - 1])) {
+                to--;
+            }
+            if (_equalsIgnoreCase(from, to, token)) {
+                return true;
+            }
+            position = elementEnd + 1;
+        }
+        return false;
+    }
+
+    /**
+     * Materializes the headers as a map (built once, on first access).
+     * If a header is repeated, the first occurrence wins.
+     *
+     * @return an unmodifiable map from header name to value
+     */
+    public Map<String, String> asMap() {
+        if (map == null) {
+            Map<String, String> headers = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                headers.putIfAbsent(name(i), value(i));
+            }
+            map = Collections.unmodifiableMap(headers);
+        }
+        return map;
+    }
+
+    private long _parseLong(String name, int from, int to) {
+        while (from < to && _isWhitespace(data[from])) {
+            from++;
+        }
+        while (to > from && _isWhitespace(data[to - 1])) {
+            to--;
+        }
+        if (from == to || to - from > 18) {
+            throw new IllegalArgumentException("Invalid " + name + " header");
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            byte b = data[i];
+            if (b < '0' || b > '9') {
+                throw new IllegalArgumentException("Invalid " + name + " header");
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private int _indexOf(String name) {
+        return _indexOf(name, 0);
+    }
+
+    private int _indexOf(String name, int from) {
+        for (int i = from; i < count; i++) {
+            int slot = i * SLOTS;
+            if (_equalsIgnoreCase(offsets[slot], offsets[slot + 1], name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean _equalsIgnoreCase(int start, int end, String text) {
+        if (end - start != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            int a = data[start + i];
+            int b = text.charAt(i);
+            if (a != b && _toLowerCase(a) != _toLowerCase(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int _toLowerCase(int c) {
+        return c >= 'A' && c <= 'Z' ? c + 32 : c;
+    }
+
+    private static boolean _isWhitespace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+}
@@ -1,5 +1,8 @@
 package io.github.marceltanuri.frameworks.restam3.http;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 /**
  * Represents an HTTP method.
  *
@@ -41,5 +44,31 @@ public enum HttpMethod {
     /**
      * CONNECT method.
      */
-    CONNECT
+    CONNECT;
+
+    private final byte[] token = name().getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Looks up the method whose name is spelled by the given bytes (case-sensitive, as required
+     * by RFC 9110), without creating a String.
+     *
+     * @param data   the buffer holding the request line
+     * @param offset the offset of the method token
+     * @param length the length of the method token
+     * @return the matching method, or null if the token is not a known method
+     */
+    public static HttpMethod lookup(byte[] data, int offset, int length) {
+        HttpMethod candidate;
+        switch (length) {
+            case 3 -> candidate = data[offset] == 'G' ? GET : PUT;
+            case 4 -> candidate = data[offset] == 'P' ? POST : HEAD;
+            case 5 -> candidate = data[offset] == 'P' ? PATCH : TRACE;
+            case 6 -> candidate = DELETE;
+            case 7 -> candidate = data[offset] == 'O' ? OPTIONS : CONNECT;
+            default -> {
+                return null;
+            }
+        }
+        return Arrays.equals(data, offset, offset + length, candidate.token, 0, length) ? candidate : null;
+    }
 }
@@ -1,88 +1,139 @@
 package io.github.marceltanuri.frameworks.restam3.http;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.util.HashMap;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * Represents an HTTP request.
+ * <p>
+ * Requests are produced by {@link HttpRequestParser} and keep their headers as slices of the
+ * parser's buffer; Strings are only created when a value is accessed. The body is either a slice
+ * of a fully received message or a stream read from the connection on demand, see
+ * {@link #getBodyStream()}.
  *
  * @author Marcel Tanuri
  */
 public class HttpRequest {
 
-    private HttpMethod method;
-    private String path;
-    private String httpVersion;
-    private Map<String, String> headers;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final HttpMethod method;
+    private final String path;
+    private final String queryString;
+    private final String httpVersion;
+    private final HttpHeaders headers;
+    private byte[] bodyData = EMPTY;
+    private int bodyOffset;
+    private int bodyLength;
+    private InputStream bodyStream;
+    private long contentLength;
+    private boolean bodyConsumed;
+    private HttpStatusException bodyFailure;
     private String body;
+    private PathParameters pathParameters = PathParameters.EMPTY;
+    private Map<String, String> queryParameters;
+    private long receivedNanos;
 
     /**
      * Creates a new HTTP request.
      *
      * @param method      the HTTP method
-     * @param path        the path of the request
+     * @param path        the path of the request, without query string
+     * @param queryString the query string (after {@code ?}), or null if absent
      * @param httpVersion the HTTP version
      * @param headers     the headers of the request
-     * @param body        the body of the request
      */
-    private HttpRequest(HttpMethod method, String path, String httpVersion, Map<String, String> headers, String body) {
+    HttpRequest(HttpMethod method, String path, String queryString, String httpVersion, HttpHeaders headers) {
         this.method = method;
         this.path = path;
+        this.queryString = queryString;
         this.httpVersion = httpVersion;
         this.headers = headers;
-        this.body = body;
     }
 
     /**
-     * Creates a new HTTP request from a BufferedReader.
+     * Parses a single HTTP request from an input stream.
+     * <p>
+     * Servers handling several requests per connection should keep one {@link HttpRequestParser}
+     * per connection instead, so that its buffer is reused.
      *
-     * @param reader the reader to read the request from
+     * @param in the stream to read the request from
      * @return the new HTTP request
-     * @throws IOException if an I/O error occurs
+     * @throws EOFException if the stream ends before a request line is received
+     * @throws IOException if an I/O error occurs or the request is malformed
      */
-    public static HttpRequest from(BufferedReader reader) throws IOException {
-        String requestLine = reader.readLine();
-        if (requestLine == null || requestLine.isEmpty()) {
-            throw new IOException("Invalid request: empty request line");
-        }
+    public static HttpRequest from(InputStream in) throws IOException {
+        return new HttpRequestParser(in).next();
+    }
 
-        String[] requestParts = requestLine.split(" ");
-        if (requestParts.length < 2) {
-            throw new IOException("Invalid request line: " + requestLine);
-        }
-        HttpMethod method = HttpMethod.valueOf(requestParts[0]);
-        String path = requestParts[1];
-        String httpVersion = (requestParts.length == 3) ? requestParts[2] : "HTTP/1.1";
-
-        Map<String, String> headers = new HashMap<>();
-        String headerLine;
-        while ((headerLine = reader.readLine()) != null && !headerLine.isEmpty()) {
-            String[] headerParts = headerLine.split(": ", 2);
-            if (headerParts.length == 2) {
-                headers.put(headerParts[0], headerParts[1]);
-            }
-        }
+    /**
+     * Sets the slice of the buffer holding the body.
+     */
+    void setBody(byte[] data, int offset, int length) {
+        this.bodyData = data;
+        this.bodyOffset = offset;
+        this.bodyLength = length;
+        this.contentLength = length;
+    }
 
-        StringBuilder bodyBuilder = new StringBuilder();
-        if (headers.containsKey("Content-Length")) {
-            int contentLength = Integer.parseInt(headers.get("Content-Length"));
-            char[] buffer = new char[1024];
-            int bytesRead = 0;
-            while (bytesRead < contentLength) {
-                int read = reader.read(buffer, 0, Math.min(buffer.length, contentLength - bytesRead));
-                if (read == -1) {
-                    break;
-                }
-                bodyBuilder.append(buffer, 0, read);
-                bytesRead += read;
-            }
-        }
+    /**
+     * Sets the stream the body is read from, for bodies not yet received.
+     *
+     * @param stream        the bounded body stream
+     * @param contentLength the declared length, or -1 for a chunked body
+     */
+    void setBodyStream(InputStream stream, long contentLength) {
+        this.bodyStream = stream;
+        this.contentLength = contentLength;
+    }
 
-        return new HttpRequest(method, path, httpVersion, headers, bodyBuilder.toString());
+    /**
+     * Records that reading the body failed in a way that leaves the connection unusable, e.g. the
+     * body exceeded the server's maximum body size or was not received in time.
+     */
+    void markBodyFailed(HttpStatusException failure) {
+        this.bodyFailure = failure;
+    }
+
+    /**
+     * Gets the error that interrupted the reading of the body, if any. The router answers such
+     * requests with the status of the error, whatever the controller returned, and closes the connection.
+     *
+     * @return the error, or null if the body was read normally or not read at all
+     */
+    public HttpStatusException getBodyFailure() {
+        return bodyFailure;
+    }
+
+    /**
+     * Tells whether reading the body failed because it exceeded the server's maximum body size.
+     * The router answers such requests with {@code 413 Payload Too Large}.
+     *
+     * @return true if the body was too large
+     */
+    public boolean isBodyTooLarge() {
+        return bodyFailure != null && bodyFailure.getStatus() == HttpStatus.PAYLOAD_TOO_LARGE;
     }
 
+    /**
+     * Gets the declared length of the body.
+     *
+     * @return the body length in bytes, or -1 if the body is chunked and its length is unknown
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
     /**
      * Gets the HTTP method.
      *
@@ -93,7 +144,7 @@ public class HttpRequest {
     }
 
     /**
-     * Gets the path of the request.
+     * Gets the path of the request, without the query string.
      *
      * @return the path of the request
      */
@@ -101,6 +152,118 @@ public class HttpRequest {
         return path;
     }
 
+    /**
+     * Gets the raw query string of the request (the part of the target after {@code ?}).
+     *
+     * @return the query string, or null if the request has none
+     */
+    public String getQueryString() {
+        return queryString;
+    }
+
+    /**
+     * Gets the decoded value of a query parameter. If the parameter is repeated, the first value wins.
+     *
+     * @param name the parameter name
+     * @return the parameter value, or null if absent
+     */
+    public String getQueryParam(String name) {
+        return getQueryParams().get(name);
+    }
+
+    /**
+     * Gets all query parameters, parsed and decoded on first access.
+     *
+     * @return an unmodifiable map from parameter name to its first value
+     */
+    public Map<String, String> getQueryParams() {
+        if (queryParameters == null) {
+            if (queryString == null || queryString.isEmpty()) {
+                queryParameters = Collections.emptyMap();
+            } else {
+                Map<String, String> params = new LinkedHashMap<>();
+                for (String pair : queryString.split("&")) {
+                    if (pair.isEmpty()) {
+                        continue;
+                    }
+                    int equals = pair.indexOf('=');
+                    String name = percentDecode(equals < 0 ? pair : pair.substring(0, equals), true);
+                    String value = equals < 0 ? "" : percentDecode(pair.substring(equals + 1), true);
+                    params.putIfAbsent(name, value);
+                }
+                queryParameters = Collections.unmodifiableMap(params);
+            }
+        }
+        return queryParameters;
+    }
+
+    /**
+     * Gets the value captured by the matched route for a path parameter (e.g., {@code cep} in {@code /cep/{cep}}).
+     *
+     * @param name the parameter name
+     * @return the decoded value, or null if the matched route does not declare it
+     */
+    public String getPathParam(String name) {
+        return pathParameters.get(name);
+    }
+
+    /**
+     * Gets a path parameter declared as {@code {name:int}} (or any numeric segment) as a number.
+     *
+     * @param name the parameter name
+     * @return the numeric value
+     * @throws IllegalArgumentException if the parameter is absent or not a valid number
+     */
+    public long getPathParamAsLong(String name) {
+        String value = pathParameters.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing path parameter: " + name);
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid path parameter " + name + ": " + value);
+        }
+    }
+
+    /**
+     * Gets all path parameters captured by the matched route.
+     *
+     * @return the path parameters
+     */
+    public PathParameters getPathParams() {
+        return pathParameters;
+    }
+
+    /**
+     * Gets the time at which the request head was completely received, as given by
+     * {@link System#nanoTime()}. The router measures request latency from this point.
+     *
+     * @return the reception time, or 0 if the transport did not record it
+     */
+    public long getReceivedNanos() {
+        return receivedNanos;
+    }
+
+    /**
+     * Sets the time at which the request head was completely received. Called by the transports,
+     * which already read the clock at that point.
+     *
+     * @param receivedNanos the reception time, as given by {@link System#nanoTime()}
+     */
+    public void setReceivedNanos(long receivedNanos) {
+        this.receivedNanos = receivedNanos;
+    }
+
+    /**
+     * Sets the path parameters captured by the matched route. Called by the router before dispatching.
+     *
+     * @param pathParameters the captured parameters
+     */
+    public void setPathParams(PathParameters pathParameters) {
+        this.pathParameters = pathParameters != null ? pathParameters : PathParameters.EMPTY;
+    }
+
     /**
      * Gets the HTTP version.
      *
@@ -111,20 +274,148 @@ public class HttpRequest {
     }
 
     /**
-     * Gets the headers of the request.
+     * Gets the headers of the request as a map.
+     * <p>
+     * The map is materialized on first access; prefer {@link #getHeader(String)} for single lookups.
      *
      * @return the headers of the request
      */
     public Map<String, String> getHeaders() {
+        return headers.asMap();
+    }
+
+    /**
+     * Gets the raw, lazily decoded headers of the request.
+     *
+     * @return the headers of the request
+     */
+    public HttpHeaders headers() {
         return headers;
     }
 
     /**
-     * Gets the body of the request.
+     * Gets the value of a header, matching its name case-insensitively.
+     *
+     * @param name the header name
+     * @return the header value, or null if the header is not present
+     */
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    /**
+     * Tells whether the client wants the connection kept open after this request.
+     * <p>
+     * HTTP/1.1 connections are persistent unless the client sends {@code Connection: close};
+     * HTTP/1.0 connections are closed unless the client sends {@code Connection: keep-alive}.
+     *
+     * @return true if the connection should be kept alive
+     */
+    public boolean isKeepAlive() {
+        if ("HTTP/1.0".equals(httpVersion)) {
+            return headers.containsToken("Connection", "keep-alive");
+        }
+        return !headers.containsToken("Connection", "close");
+    }
+
+    /**
+     * Gets the body of the request, decoded as UTF-8.
+     * <p>
+     * The first call reads the whole body into memory; use {@link #getBodyReader()} or
+     * {@link #getBodyStream()} to process large bodies incrementally.
      *
      * @return the body of the request
+     * @throws UncheckedIOException if the body cannot be read or is larger than the server allows
      */
     public String getBody() {
+        if (body == null) {
+            _bufferBody();
+            body = new String(bodyData, bodyOffset, bodyLength, StandardCharsets.UTF_8);
+        }
         return body;
     }
+
+    /**
+     * Gets a copy of the raw body bytes, reading the whole body into memory on first access.
+     *
+     * @return the body of the request
+     * @throws UncheckedIOException if the body cannot be read or is larger than the server allows
+     */
+    public byte[] getBodyBytes() {
+        _bufferBody();
+        return Arrays.copyOfRange(bodyData, bodyOffset, bodyOffset + bodyLength);
+    }
+
+    /**
+     * Gets the body as a stream.
+     * <p>
+     * When the body has not been received yet, the stream reads it from the connection as it is
+     * consumed, never past its end; it can only be consumed once. Parts left unread are skipped
+     * by the server before the next request.
+     *
+     * @return a stream of the body bytes
+     */
+    public InputStream getBodyStream() {
+        if (bodyStream != null && !bodyConsumed) {
+            bodyConsumed = true;
+            return bodyStream;
+        }
+        return new ByteArrayInputStream(bodyData, bodyOffset, bodyLength);
+    }
+
+    /**
+     * Gets the body as a UTF-8 character stream, suitable for
+     * {@link io.github.marceltanuri.frameworks.restam3.json.JsonParser#fromJson(java.io.Reader, java.lang.reflect.Type)}.
+     *
+     * @return a reader over the body
+     */
+    public Reader getBodyReader() {
+        return new InputStreamReader(getBodyStream(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a streamed body into memory so that it can be accessed more than once.
+     */
+    private void _bufferBody() {
+        if (bodyStream == null || bodyConsumed) {
+            return;
+        }
+        try (InputStream in = getBodyStream()) {
+            byte[] bytes = in.readAllBytes();
+            setBody(bytes, 0, bytes.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Decodes {@code %XX} escapes (as UTF-8) and, for query strings, {@code +} as a space.
+     * Malformed escapes are kept verbatim.
+     *
+     * @param value      the encoded text
+     * @param plusAsSpace whether {@code +} stands for a space
+     * @return the decoded text (the same instance when nothing needs decoding)
+     */
+    static String percentDecode(String value, boolean plusAsSpace) {
+        if (value.indexOf('%') < 0 && (!plusAsSpace || value.indexOf('+') < 0)) {
+            return value;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '%' && i + 2 < value.length() && Character.digit(value.charAt(i + 1), 16) >= 0
+                    && Character.digit(value.charAt(i + 2), 16) >= 0) {
+                out.write(Character.digit(value.charAt(i + 1), 16) * 16 + Character.digit(value.charAt(i + 2), 16));
+                i += 2;
+            } else if (c == '+' && plusAsSpace) {
+                out.write(' ');
+            } else if (c <= 0xFF) {
+                out.write(c); // the request target is read as ISO-8859-1, one char per received byte
+            } else {
+                byte[] bytes = String.valueOf(c).getBytes(StandardCharsets.UTF_8);
+                out.write(bytes, 0, bytes.length);
+            }
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
 }
@@ -0,0 +1,765 @@
+package io.github.marceltanuri.frameworks.restam3.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses HTTP/1.1 requests directly from raw bytes.
+ * <p>
+ * A parser is bound to one connection and reads into a single reusable buffer: CRLF boundaries
+ * are located byte by byte, the method is resolved without {@code valueOf}, and headers are kept
+ * as slices of the buffer (see {@link HttpHeaders}). The only Strings created per request are the
+ * path, the query string when present and, when unusual, the protocol version. Bytes that follow a request (pipelining) stay in
+ * the buffer for the next call to {@link #next()}.
+ * <p>
+ * Bodies are not buffered: the request exposes them as a stream bounded by {@code Content-Length}
+ * or decoded from {@code Transfer-Encoding: chunked}, reading the socket only as the controller
+ * consumes it. A declared length above the maximum body size is rejected before any body byte is
+ * read, and chunked bodies are cut off as soon as they exceed it. Whatever the controller leaves
+ * unread is skipped before the next request is parsed.
+ * <p>
+ * Header lines without a colon, or whose name is not a token (whitespace before the colon
+ * included), are rejected rather than skipped, so that no header is read differently by another
+ * server on the way.
+ * <p>
+ * The parser enforces the {@link ConnectionLimits} of the connection: oversized request lines and
+ * headers are rejected while they are still arriving, and when given a {@link TimeoutControl} it
+ * turns the deadline of the current phase (request line, headers, body) into the read timeout of
+ * the socket before every read.
+ * <p>
+ * A request returned by this parser references the buffer, so it is only valid until the next
+ * request is parsed from the same connection.
+ *
+ * @author Marcel Tanuri
+ */
+public final class HttpRequestParser {
+
+    /**
+     * Applies a read timeout to the underlying connection, e.g. {@code socket::setSoTimeout}.
+     */
+    @FunctionalInterface
+    public interface TimeoutControl {
+
+        /**
+         * Sets the read timeout of the connection.
+         *
+         * @param millis the timeout in milliseconds, greater than zero
+         * @throws IOException if the timeout cannot be applied
+         */
+        void setReadTimeout(int millis) throws IOException;
+    }
+
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+    private static final String HTTP_1_1 = "HTTP/1.1";
+    private static final String HTTP_1_0 = "HTTP/1.0";
+    private static final byte[] HTTP_1_PREFIX = "HTTP/1.".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The characters allowed in header names (the {@code tchar}s of RFC 9110 section 5.6.2).
+     */
+    private static final boolean[] TOKEN = new boolean[128];
+
+    static {
+        for (char c = '0'; c <= '9'; c++) {
+            TOKEN[c] = true;
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            TOKEN[c] = true;
+            TOKEN[Character.toUpperCase(c)] = true;
+        }
+        for (char c : "!#$%&'*+-.^_`|~".toCharArray()) {
+            TOKEN[c] = true;
+        }
+    }
+
+    private final InputStream in;
+    private final ConnectionLimits limits;
+    private final TimeoutControl timeouts;
+    private long deadline;
+    private HttpRequest current;
+    private BodyInputStream body;
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    /**
+     * Creates a parser reading from the given connection stream, without a body size limit.
+     *
+     * @param in the input stream of the client connection
+     */
+    public HttpRequestParser(InputStream in) {
+        this(in, Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a parser reading from the given connection stream, with the default limits.
+     *
+     * @param in          the input stream of the client connection
+     * @param maxBodySize the maximum accepted body size in bytes
+     */
+    public HttpRequestParser(InputStream in, long maxBodySize) {
+        this(in, ConnectionLimits.DEFAULT.withMaxBodySize(maxBodySize), null);
+    }
+
+    /**
+     * Creates a parser reading from the given connection stream.
+     *
+     * @param in       the input stream of the client connection
+     * @param limits   the size limits and timeouts to enforce
+     * @param timeouts applies read timeouts to the connection, or null if the stream cannot time out
+     */
+    public HttpRequestParser(InputStream in, ConnectionLimits limits, TimeoutControl timeouts) {
+        this.in = in;
+        this.limits = limits;
+        this.timeouts = timeouts;
+    }
+
+    /**
+     * Parses the next request head from the connection, blocking until it is fully received.
+     * The body is read later, through the request's body stream.
+     *
+     * @return the parsed request
+     * @throws EOFException if the stream ends before the first byte of a request, or while skipping
+     * the unread body of the previous request
+     * @throws java.net.SocketTimeoutException if no byte of a new request arrives within the idle timeout
+     * @throws HttpStatusException if the request exceeds a limit or a phase deadline, with the status to answer
+     * @throws IOException if an I/O error occurs or the request is malformed
+     */
+    public HttpRequest next() throws IOException {
+        if (body != null) {
+            try {
+                body.discardRemaining();
+            } catch (IOException e) {
+                throw new EOFException("Could not skip the unread body of the previous request: " + e.getMessage());
+            }
+            body = null;
+        }
+        current = null;
+        _compact();
+        int headEnd;
+        int scanFrom = position;
+        boolean requestLineReceived = false;
+        deadline = 0;
+        while ((headEnd = _findHeadEnd(buffer, scanFrom, limit)) < 0) {
+            scanFrom = Math.max(position, limit - 3);
+            if (position < limit) {
+                if (deadline == 0) {
+                    deadline = System.nanoTime() + limits.requestLineTimeout().toNanos();
+                }
+                if (!requestLineReceived) {
+                    int lineStart = _skipEmptyLines(buffer, position, limit);
+                    int lineEnd = _findLineEnd(buffer, lineStart, limit);
+                    if (lineEnd < limit) {
+                        _checkRequestLine(lineEnd - lineStart);
+                        requestLineReceived = true;
+                        deadline = System.nanoTime() + limits.headersTimeout().toNanos();
+                    } else {
+                        _checkRequestLine(limit - lineStart);
+                    }
+                }
+            }
+            if (limit - position >= limits.maxHeaderSize()) {
+                throw new HttpStatusException(HttpStatus.REQUEST_HEADER_FIELDS_TOO_LARGE,
+                        "Request head exceeds " + limits.maxHeaderSize() + " bytes");
+            }
+            int read;
+            try {
+                read = _fill(position + limits.maxHeaderSize());
+            } catch (SocketTimeoutException e) {
+                if (limit == position) {
+                    throw e; // idle keep-alive connection
+                }
+                throw new HttpStatusException(HttpStatus.REQUEST_TIMEOUT, "Request head not received in time");
+            }
+            if (read < 0) {
+                if (limit == position) {
+                    throw new EOFException("Connection closed before a request line was received");
+                }
+                throw new EOFException("Connection closed in the middle of a request");
+            }
+        }
+
+        HttpRequest request = _parseHead(buffer, position, headEnd, limits);
+        position = headEnd;
+        current = request;
+        long now = System.nanoTime();
+        request.setReceivedNanos(now);
+        deadline = now + limits.bodyTimeout().toNanos();
+        if (isChunked(request)) {
+            body = new ChunkedBody(new ConnectionInput(), request, limits.maxBodySize());
+            request.setBodyStream(body, -1);
+        } else {
+            long contentLength = contentLength(request, limits.maxBodySize());
+            if (contentLength > 0) {
+                body = new ContentLengthBody(new ConnectionInput(), contentLength);
+                request.setBodyStream(body, contentLength);
+            }
+        }
+        return request;
+    }
+
+    private void _checkRequestLine(int length) throws HttpStatusException {
+        if (length > limits.maxRequestLineLength()) {
+            throw new HttpStatusException(HttpStatus.URI_TOO_LONG,
+                    "Request line exceeds " + limits.maxRequestLineLength() + " bytes");
+        }
+    }
+
+    /**
+     * Tells whether the request body uses chunked transfer encoding.
+     * <p>
+     * Only {@code chunked} is supported. A body whose final transfer coding is another one cannot
+     * be delimited (RFC 9112 section 6.3), and is rejected rather than read as the next request.
+     *
+     * @param request the parsed request
+     * @return true if the body is chunked
+     * @throws HttpStatusException if {@code chunked} is applied over another transfer coding, which is not implemented
+     * @throws IOException if {@code chunked} is not the final transfer coding, or if the request also
+     * declares a Content-Length, which is ambiguous framing
+     */
+    static boolean isChunked(HttpRequest request) throws IOException {
+        HttpHeaders headers = request.headers();
+        if (!headers.contains("Transfer-Encoding")) {
+            return false;
+        }
+        String last = null;
+        int codings = 0;
+        for (int i = 0; i < headers.size(); i++) {
+            if (!headers.name(i).equalsIgnoreCase("Transfer-Encoding")) {
+                continue;
+            }
+            for (String coding : headers.value(i).split(",")) {
+                coding = coding.trim();
+                if (!coding.isEmpty()) {
+                    last = coding;
+                    codings++;
+                }
+            }
+        }
+        if (!"chunked".equalsIgnoreCase(last)) {
+            throw new IOException("Transfer-Encoding without chunked as the final coding");
+        }
+        if (codings > 1) {
+            throw new HttpStatusException(HttpStatus.NOT_IMPLEMENTED, "Unsupported transfer coding");
+        }
+        if (headers.contains("Content-Length")) {
+            throw new IOException("Both Transfer-Encoding and Content-Length were sent");
+        }
+        return true;
+    }
+
+    /**
+     * Reads the declared body length of a request and checks it against the limit.
+     *
+     * @param request     the parsed request
+     * @param maxBodySize the maximum accepted body size in bytes
+     * @return the body length, or 0 when no Content-Length is declared
+     * @throws HttpStatusException if the body is larger than {@code maxBodySize}
+     */
+    static long contentLength(HttpRequest request, long maxBodySize) throws IOException {
+        long contentLength;
+        try {
+            contentLength = request.headers().getLong("Content-Length");
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+        if (contentLength > maxBodySize) {
+            throw new HttpStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "Request body of " + contentLength + " bytes exceeds the limit of " + maxBodySize);
+        }
+        return Math.max(contentLength, 0);
+    }
+
+    /**
+     * Tells whether bytes of a further (pipelined) request are already available, either in the
+     * parser's buffer or in the connection stream, so a response flush can be deferred.
+     *
+     * @return true if more request bytes can be read without blocking
+     * @throws IOException if an I/O error occurs
+     */
+    public boolean hasBufferedInput() throws IOException {
+        if (body != null && !body.isFinished()) {
+            return false; // the bytes available belong to the body the controller did not read
+        }
+        return position < limit || in.available() > 0;
+    }
+
+    /**
+     * Parses a request whose bytes (head and body) have already been fully received, with the
+     * {@linkplain ConnectionLimits#DEFAULT default limits}.
+     *
+     * @param data   the buffer holding the request
+     * @param offset the offset of the first byte of the request
+     * @param length the total length of the request
+     * @return the parsed request, referencing {@code data}
+     * @throws IOException if the request is malformed or exceeds the limits
+     */
+    public static HttpRequest parse(byte[] data, int offset, int length) throws IOException {
+        return parse(data, offset, length, ConnectionLimits.DEFAULT);
+    }
+
+    /**
+     * Parses a request whose bytes (head and body) have already been fully received.
+     * A chunked body is decoded into a new array; any other body is referenced in place.
+     *
+     * @param data   the buffer holding the request
+     * @param offset the offset of the first byte of the request
+     * @param length the total length of the request
+     * @param limits the limits on the request line and headers
+     * @return the parsed request, referencing {@code data}
+     * @throws HttpStatusException if the request line or headers exceed the limits
+     * @throws IOException if the request is malformed
+     */
+    public static HttpRequest parse(byte[] data, int offset, int length, ConnectionLimits limits) throws IOException {
+        int end = offset + length;
+        int headEnd = _findHeadEnd(data, offset, end);
+        if (headEnd < 0) {
+            throw new IOException("Incomplete request head");
+        }
+        HttpRequest request = _parseHead(data, offset, headEnd, limits);
+        if (isChunked(request)) {
+            ChunkedBody decoder = new ChunkedBody(new ByteArrayInputStream(data, headEnd, end - headEnd), request, Long.MAX_VALUE);
+            byte[] decoded = decoder.readAllBytes();
+            request.setBody(decoded, 0, decoded.length);
+        } else {
+            request.setBody(data, headEnd, end - headEnd);
+        }
+        return request;
+    }
+
+    /**
+     * Parses the request line and headers.
+     *
+     * @param data    the buffer
+     * @param start   the offset of the request (leading empty lines are skipped)
+     * @param headEnd the offset right after the blank line that ends the head
+     * @param limits  the limits on the request line and headers
+     */
+    private static HttpRequest _parseHead(byte[] data, int start, int headEnd, ConnectionLimits limits) throws IOException {
+        if (headEnd - start > limits.maxHeaderSize()) {
+            throw new HttpStatusException(HttpStatus.REQUEST_HEADER_FIELDS_TOO_LARGE,
+                    "Request head exceeds " + limits.maxHeaderSize() + " bytes");
+        }
+        int lineStart = _skipEmptyLines(data, start, headEnd);
+        int lineEnd = _findLineEnd(data, lineStart, headEnd);
+        if (lineEnd == lineStart) {
+            throw new IOException("Invalid request: empty request line");
+        }
+        if (lineEnd - lineStart > limits.maxRequestLineLength()) {
+            throw new HttpStatusException(HttpStatus.URI_TOO_LONG,
+                    "Request line exceeds " + limits.maxRequestLineLength() + " bytes");
+        }
+
+        int methodEnd = _indexOf(data, lineStart, lineEnd, (byte) ' ');
+        if (methodEnd < 0) {
+            throw new IOException("Invalid request line: " + _ascii(data, lineStart, lineEnd));
+        }
+        HttpMethod method = HttpMethod.lookup(data, lineStart, methodEnd - lineStart);
+        if (method == null) {
+            throw new IllegalArgumentException("Unsupported method: " + _ascii(data, lineStart, methodEnd));
+        }
+        int pathStart = methodEnd + 1;
+        int pathEnd = _indexOf(data, pathStart, lineEnd, (byte) ' ');
+        String httpVersion = HTTP_1_1;
+        if (pathEnd < 0) {
+            pathEnd = lineEnd;
+        } else {
+            httpVersion = _version(data, pathEnd + 1, lineEnd);
+        }
+        if (pathEnd == pathStart) {
+            throw new IOException("Invalid request line: " + _ascii(data, lineStart, lineEnd));
+        }
+        int queryStart = _indexOf(data, pathStart, pathEnd, (byte) '?');
+        String path = _ascii(data, pathStart, queryStart < 0 ? pathEnd : queryStart);
+        String queryString = queryStart < 0 ? null : _ascii(data, queryStart + 1, pathEnd);
+
+        HttpHeaders headers = new HttpHeaders(data);
+        int position = lineEnd + 2;
+        int headerCount = 0;
+        while (position < headEnd - 2) {
+            if (++headerCount > limits.maxHeaderCount()) {
+                throw new HttpStatusException(HttpStatus.REQUEST_HEADER_FIELDS_TOO_LARGE,
+                        "More than " + limits.maxHeaderCount() + " header fields");
+            }
+            int end = _findLineEnd(data, position, headEnd);
+            int colon = _indexOf(data, position, end, (byte) ':');
+            _checkHeaderName(data, position, colon);
+            int valueStart = colon + 1;
+            int valueEnd = end;
+            while (valueStart < valueEnd && (data[valueStart] == ' ' || data[valueStart] == '\t')) {
+                valueStart++;
+            }
+            while (valueEnd > valueStart && (data[valueEnd - 1] == ' ' || data[valueEnd - 1] == '\t')) {
+                valueEnd--;
+            }
+            headers.add(position, colon, valueStart, valueEnd);
+            position = end + 2;
+        }
+        return new HttpRequest(method, path, queryString, httpVersion, headers);
+    }
+
+    /**
+     * Rejects a header line without a colon or whose name is not a token, such as one followed by
+     * whitespace before the colon (RFC 9112 section 5.1): another server could read the line
+     * differently, and take a header ignored here for the length of the body.
+     */
+    private static void _checkHeaderName(byte[] data, int start, int colon) throws IOException {
+        if (colon < 0) {
+            throw new IOException("Invalid header line: no colon");
+        }
+        if (colon == start) {
+            throw new IOException("Empty header name");
+        }
+        if (data[colon - 1] == ' ' || data[colon - 1] == '\t') {
+            throw new IOException("Whitespace before the colon of a header");
+        }
+        for (int i = start; i < colon; i++) {
+            if (data[i] < 0 || !TOKEN[data[i]]) {
+                throw new IOException("Invalid character in header name");
+            }
+        }
+    }
+
+    private static String _version(byte[] data, int start, int end) {
+        if (end - start == 8 && Arrays.equals(data, start, start + 7, HTTP_1_PREFIX, 0, 7)) {
+            if (data[start + 7] == '1') {
+                return HTTP_1_1;
+            }
+            if (data[start + 7] == '0') {
+                return HTTP_1_0;
+            }
+        }
+        return _ascii(data, start, end);
+    }
+
+    /**
+     * Skips the empty lines a client may send before the request line (RFC 9112 2.2).
+     */
+    private static int _skipEmptyLines(byte[] data, int start, int end) {
+        while (start + 1 < end && data[start] == '\r' && data[start + 1] == '\n') {
+            start += 2;
+        }
+        return start;
+    }
+
+    /**
+     * Finds the offset right after the first {@code CRLF CRLF} in the range, or -1.
+     */
+    private static int _findHeadEnd(byte[] data, int from, int end) {
+        for (int i = from + 3; i < end; i++) {
+            if (data[i] == '\n' && data[i - 1] == '\r' && data[i - 2] == '\n' && data[i - 3] == '\r') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the offset of the CR that ends the line starting at {@code from}.
+     */
+    private static int _findLineEnd(byte[] data, int from, int end) {
+        for (int i = from; i < end - 1; i++) {
+            if (data[i] == '\r' && data[i + 1] == '\n') {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static int _indexOf(byte[] data, int from, int end, byte value) {
+        for (int i = from; i < end; i++) {
+            if (data[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String _ascii(byte[] data, int start, int end) {
+        return new String(data, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Moves unread bytes to the start of the buffer; free when the previous request consumed everything.
+     */
+    private void _compact() {
+        if (position == limit) {
+            position = 0;
+            limit = 0;
+            if (buffer.length > INITIAL_BUFFER_SIZE * 8) {
+                buffer = new byte[INITIAL_BUFFER_SIZE]; // do not hold on to a buffer grown for one large request
+            }
+        } else if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+    }
+
+    /**
+     * Reads more bytes from the stream, doubling the buffer (up to {@code required} bytes) when it is full.
+     *
+     * @return the number of bytes read, or -1 at the end of the stream
+     */
+    private int _fill(int required) throws IOException {
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, (int) Math.min(buffer.length * 2L, required));
+        }
+        _applyTimeout(position == limit);
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read > 0) {
+            limit += read;
+        }
+        return read;
+    }
+
+    /**
+     * Sets the read timeout for the next read: the idle timeout while waiting for a new request,
+     * otherwise the time left before the deadline of the current phase.
+     *
+     * @param idle whether no byte of the next request was received yet
+     * @throws HttpStatusException if the deadline has already passed
+     */
+    private void _applyTimeout(boolean idle) throws IOException {
+        if (timeouts == null) {
+            return;
+        }
+        long millis;
+        if (idle && deadline == 0) {
+            millis = limits.idleTimeout().toMillis();
+        } else {
+            millis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (millis <= 0) {
+                throw new HttpStatusException(HttpStatus.REQUEST_TIMEOUT, "Request not received in time");
+            }
+        }
+        timeouts.setReadTimeout((int) Math.min(Math.max(millis, 1), Integer.MAX_VALUE));
+    }
+
+    /**
+     * Reads the bytes that follow the current request head: first those already in the buffer,
+     * then straight from the connection. The buffer is never refilled, so the head slices of the
+     * current request stay valid while its body is read.
+     */
+    private final class ConnectionInput extends InputStream {
+
+        @Override
+        public int read() throws IOException {
+            if (position < limit) {
+                return buffer[position++] & 0xFF;
+            }
+            try {
+                _applyTimeout(false);
+                return in.read();
+            } catch (SocketTimeoutException | HttpStatusException e) {
+                throw _bodyTimedOut();
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position < limit) {
+                int n = Math.min(len, limit - position);
+                System.arraycopy(buffer, position, b, off, n);
+                position += n;
+                return n;
+            }
+            try {
+                _applyTimeout(false);
+                return in.read(b, off, len);
+            } catch (SocketTimeoutException | HttpStatusException e) {
+                throw _bodyTimedOut();
+            }
+        }
+
+        private HttpStatusException _bodyTimedOut() {
+            HttpStatusException timeout = new HttpStatusException(HttpStatus.REQUEST_TIMEOUT, "Request body not received in time");
+            if (current != null) {
+                current.markBodyFailed(timeout);
+            }
+            return timeout;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (limit - position) + in.available();
+        }
+    }
+
+    /**
+     * Base class of the request body streams. Closing a body only discards what is left of it;
+     * the connection stays open.
+     */
+    private abstract static class BodyInputStream extends InputStream {
+
+        final InputStream source;
+
+        BodyInputStream(InputStream source) {
+            this.source = source;
+        }
+
+        /**
+         * Tells whether the whole body has been consumed from the connection.
+         */
+        abstract boolean isFinished();
+
+        /**
+         * Reads and drops the rest of the body, leaving the connection at the next request.
+         */
+        void discardRemaining() throws IOException {
+            byte[] scratch = new byte[4096];
+            while (read(scratch, 0, scratch.length) >= 0) {
+                // discard
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public void close() throws IOException {
+            discardRemaining();
+        }
+    }
+
+    /**
+     * A body framed by {@code Content-Length}.
+     */
+    private static final class ContentLengthBody extends BodyInputStream {
+
+        private long remaining;
+
+        ContentLengthBody(InputStream source, long length) {
+            super(source);
+            this.remaining = length;
+        }
+
+        @Override
+        boolean isFinished() {
+            return remaining == 0;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            int read = source.read(b, off, (int) Math.min(len, remaining));
+            if (read < 0) {
+                throw new EOFException("Connection closed before the request body was received");
+            }
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(source.available(), remaining);
+        }
+    }
+
+    /**
+     * A body sent with {@code Transfer-Encoding: chunked}, decoded as it is read. Chunk data is
+     * read in bulk and size lines byte by byte, so the stream never consumes bytes past the body.
+     */
+    private static final class ChunkedBody extends BodyInputStream {
+
+        private static final int MAX_LINE_LENGTH = 4096;
+
+        private final HttpRequest request;
+        private final long maxBodySize;
+        private long chunkRemaining;
+        private long total;
+        private boolean finished;
+
+        ChunkedBody(InputStream source, HttpRequest request, long maxBodySize) {
+            super(source);
+            this.request = request;
+            this.maxBodySize = maxBodySize;
+        }
+
+        @Override
+        boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (finished) {
+                return -1;
+            }
+            if (chunkRemaining == 0) {
+                _nextChunk();
+                if (finished) {
+                    return -1;
+                }
+            }
+            int read = source.read(b, off, (int) Math.min(len, chunkRemaining));
+            if (read < 0) {
+                throw new EOFException("Connection closed in the middle of a chunk");
+            }
+            chunkRemaining -= read;
+            if (chunkRemaining == 0 && !_readLine().isEmpty()) {
+                throw new IOException("Missing CRLF after chunk data");
+            }
+            return read;
+        }
+
+        private void _nextChunk() throws IOException {
+            String sizeLine = _readLine();
+            int extension = sizeLine.indexOf(';');
+            String size = (extension < 0 ? sizeLine : sizeLine.substring(0, extension)).trim();
+            try {
+                chunkRemaining = Long.parseLong(size, 16);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid chunk size: " + sizeLine);
+            }
+            if (chunkRemaining < 0) {
+                throw new IOException("Invalid chunk size: " + sizeLine);
+            }
+            if (chunkRemaining == 0) {
+                while (!_readLine().isEmpty()) {
+                    // trailer fields are ignored
+                }
+                finished = true;
+                return;
+            }
+            total += chunkRemaining;
+            if (total > maxBodySize) {
+                HttpStatusException tooLarge = new HttpStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                        "Chunked request body exceeds the limit of " + maxBodySize + " bytes");
+                request.markBodyFailed(tooLarge);
+                throw tooLarge;
+            }
+        }
+
+        private String _readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = source.read()) != '\n') {
+                if (c < 0) {
+                    throw new EOFException("Connection closed in the middle of a chunked body");
+                }
+                if (c != '\r') {
+                    if (line.length() == MAX_LINE_LENGTH) {
+                        throw new IOException("Chunk size line too long");
+                    }
+                    line.append((char) c);
+                }
+            }
+            return line.toString();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package io.github.marceltanuri.frameworks.restam3.http;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.Map;
 
@@ -9,7 +10,11 @@ import java.util.Map;
  * @author Marcel Tanuri
  */
 public class HttpResponse {
-    private final String body;
+
+    static final byte[] EMPTY_BODY = new byte[0];
+
+    private String body;
+    private byte[] bodyBytes;
     private final HttpStatus status;
     private final Map<String, String> headers;
 
@@ -26,6 +31,19 @@ public class HttpResponse {
         this.headers = headers;
     }
 
+    /**
+     * Creates a new HTTP response whose body is already encoded (e.g., serialized straight to bytes).
+     *
+     * @param body    the encoded body of the response
+     * @param status  the status of the response
+     * @param headers the headers of the response
+     */
+    public HttpResponse(byte[] body, HttpStatus status, Map<String, String> headers) {
+        this.bodyBytes = body != null ? body : EMPTY_BODY;
+        this.status = status;
+        this.headers = headers;
+    }
+
     /**
      * Creates a new HTTP response with default headers (Content-Type: application/json).
      *
@@ -52,9 +70,24 @@ public class HttpResponse {
      * @return the body of the response
      */
     public String getBody() {
+        if (body == null) {
+            body = bodyBytes != null ? new String(bodyBytes, StandardCharsets.UTF_8) : "";
+        }
         return body;
     }
 
+    /**
+     * Gets the body of the response encoded as UTF-8. The encoding is done once and cached.
+     *
+     * @return the body bytes; callers must not modify the returned array
+     */
+    public byte[] getBodyBytes() {
+        if (bodyBytes == null) {
+            bodyBytes = body != null ? body.getBytes(StandardCharsets.UTF_8) : EMPTY_BODY;
+        }
+        return bodyBytes;
+    }
+
     /**
      * Gets the status of the response.
      *
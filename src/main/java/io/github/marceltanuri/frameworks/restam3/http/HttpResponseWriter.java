@@ -0,0 +1,364 @@
+package io.github.marceltanuri.frameworks.restam3.http;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Serializes {@link HttpResponse}s to the wire with as little allocation as possible.
+ * <p>
+ * Status lines for every {@link HttpStatus} and the framework-managed header lines are encoded
+ * once, when the class is loaded. The head of each response is assembled in a buffer reused by
+ * the connection, custom headers set on the response are written as-is, and the body is encoded
+ * to UTF-8 only once (see {@link HttpResponse#getBodyBytes()}).
+ * <p>
+ * A custom header whose name is not a token, or whose value holds a CR, LF or NUL, would let a
+ * value echoed from a request forge further headers or a whole response: it is rejected with an
+ * {@link IllegalArgumentException} before anything is written, so that another response can be
+ * sent instead.
+ * <p>
+ * {@link StreamingHttpResponse}s are written straight to the connection, chunked when their length
+ * is unknown.
+ *
+ * @author Marcel Tanuri
+ */
+public final class HttpResponseWriter {
+
+    private static final byte[][] STATUS_LINES = new byte[HttpStatus.values().length][];
+
+    static {
+        for (HttpStatus status : HttpStatus.values()) {
+            STATUS_LINES[status.ordinal()] = _ascii("HTTP/1.1 " + status.getCode() + " " + status.getMessage() + "\r\n");
+        }
+    }
+
+    private static final byte[] CRLF = _ascii("\r\n");
+    private static final byte[] HEADER_SEPARATOR = _ascii(": ");
+    private static final byte[] DEFAULT_CONTENT_TYPE = _ascii("Content-Type: application/json\r\n");
+    private static final byte[] CONTENT_LENGTH = _ascii("Content-Length: ");
+    private static final byte[] CONNECTION_KEEP_ALIVE = _ascii("Connection: keep-alive\r\n");
+    private static final byte[] CONNECTION_CLOSE = _ascii("Connection: close\r\n");
+    private static final byte[] TRANSFER_ENCODING_CHUNKED = _ascii("Transfer-Encoding: chunked\r\n");
+    private static final byte[] CONTINUE = _ascii("HTTP/1.1 100 Continue\r\n\r\n");
+
+    /**
+     * The characters allowed in header names (the {@code tchar}s of RFC 9110 section 5.6.2).
+     */
+    private static final boolean[] TOKEN = new boolean[128];
+
+    static {
+        for (char c = '0'; c <= '9'; c++) {
+            TOKEN[c] = true;
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            TOKEN[c] = true;
+            TOKEN[Character.toUpperCase(c)] = true;
+        }
+        for (char c : "!#$%&'*+-.^_`|~".toCharArray()) {
+            TOKEN[c] = true;
+        }
+    }
+
+    private final OutputStream out;
+    private byte[] head = new byte[512];
+    private int headLength;
+
+    /**
+     * Creates a writer for a blocking connection.
+     *
+     * @param out the (buffered) output stream of the client connection
+     */
+    public HttpResponseWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Creates a writer that only encodes responses into buffers (see {@link #encode(HttpResponse, boolean)}).
+     */
+    public HttpResponseWriter() {
+        this(null);
+    }
+
+    /**
+     * Writes a response to the connection stream without flushing it, assuming an HTTP/1.1 client.
+     *
+     * @param response  the response to write
+     * @param keepAlive whether the connection stays open after this response
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if a header cannot be sent; nothing was written then
+     */
+    public void write(HttpResponse response, boolean keepAlive) throws IOException {
+        _write(response, true, keepAlive);
+    }
+
+    /**
+     * Writes the response to a request to the connection stream without flushing it.
+     * <p>
+     * A streaming response of unknown length is chunked, except for HTTP/1.0 clients, which do not
+     * support chunking: the body is then delimited by closing the connection.
+     *
+     * @param response  the response to write
+     * @param request   the request being answered
+     * @param keepAlive whether the connection may stay open after this response
+     * @return whether the connection can actually be kept open
+     * @throws IOException if an I/O error occurs, or the body writer of a streaming response
+     *                     fails; the connection must then be closed
+     * @throws IllegalArgumentException if a header cannot be sent; nothing was written then
+     */
+    public boolean write(HttpResponse response, HttpRequest request, boolean keepAlive) throws IOException {
+        return _write(response, !"HTTP/1.0".equals(request.getHttpVersion()), keepAlive);
+    }
+
+    /**
+     * Sends the interim {@code 100 Continue} response to a client that asked for it with
+     * {@code Expect: 100-continue}, so that it starts sending the request body.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeContinue() throws IOException {
+        out.write(CONTINUE);
+        out.flush();
+    }
+
+    /**
+     * Encodes the interim {@code 100 Continue} response for a non-blocking connection.
+     *
+     * @return a buffer holding the interim response
+     */
+    public static ByteBuffer encodeContinue() {
+        return ByteBuffer.wrap(CONTINUE);
+    }
+
+    /**
+     * Flushes the responses written so far.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Encodes a response as a head buffer followed by a body buffer, ready for a gathering write
+     * ({@link java.nio.channels.GatheringByteChannel#write(ByteBuffer[])}). The body buffer wraps
+     * the response's encoded body without copying it.
+     * <p>
+     * A {@link StreamingHttpResponse} is not encoded, since that would hold its whole body in
+     * memory: it must be written, with {@link #write(HttpResponse, HttpRequest, boolean)}, to a
+     * stream sending the bytes as they come.
+     *
+     * @param response  the response to encode
+     * @param keepAlive whether the connection stays open after this response
+     * @return the head and body buffers
+     * @throws IllegalArgumentException if the response is a streaming response, or a header
+     *                                  cannot be sent
+     */
+    public ByteBuffer[] encode(HttpResponse response, boolean keepAlive) {
+        if (response instanceof StreamingHttpResponse) {
+            throw new IllegalArgumentException("Streaming responses must be written, not encoded");
+        }
+        byte[] body = _bodyAllowed(response.getStatus()) ? response.getBodyBytes() : HttpResponse.EMPTY_BODY;
+        _encodeHead(response, body.length, false, keepAlive);
+        return new ByteBuffer[] {ByteBuffer.wrap(Arrays.copyOf(head, headLength)), ByteBuffer.wrap(body)};
+    }
+
+    private boolean _write(HttpResponse response, boolean chunkedSupported, boolean keepAlive) throws IOException {
+        boolean bodyAllowed = _bodyAllowed(response.getStatus());
+        if (!(response instanceof StreamingHttpResponse streaming)) {
+            byte[] body = bodyAllowed ? response.getBodyBytes() : HttpResponse.EMPTY_BODY;
+            _encodeHead(response, body.length, false, keepAlive);
+            out.write(head, 0, headLength);
+            if (body.length > 0) {
+                out.write(body);
+            }
+            return keepAlive;
+        }
+
+        long contentLength = streaming.getContentLength();
+        boolean chunked = bodyAllowed && contentLength < 0 && chunkedSupported;
+        if (bodyAllowed && contentLength < 0 && !chunked) {
+            keepAlive = false;
+        }
+        _encodeHead(response, contentLength, chunked, keepAlive);
+        out.write(head, 0, headLength);
+        if (!bodyAllowed) {
+            return keepAlive;
+        }
+        if (chunked) {
+            ChunkedOutputStream body = new ChunkedOutputStream(new ShieldedOutputStream(out));
+            _writeBody(streaming, body);
+            body.close();
+        } else {
+            ShieldedOutputStream body = new ShieldedOutputStream(out);
+            _writeBody(streaming, body);
+            if (contentLength >= 0 && body.written != contentLength) {
+                throw new IOException("Streaming response declared " + contentLength + " bytes but wrote " + body.written);
+            }
+        }
+        return keepAlive;
+    }
+
+    /**
+     * Runs the body writer of a streaming response. Once the head is sent, any failure can only
+     * abort the connection, so it is reported as an I/O error, like those of the connection.
+     */
+    private static void _writeBody(StreamingHttpResponse streaming, OutputStream body) throws IOException {
+        try {
+            streaming.getBodyWriter().writeTo(body);
+        } catch (RuntimeException e) {
+            throw new IOException("Error writing the streaming response body", e);
+        }
+    }
+
+    /**
+     * Assembles the status line and headers into {@link #head}.
+     *
+     * @param contentLength the body length, or -1 if unknown
+     * @param chunked       whether the body is sent with chunked transfer encoding
+     */
+    private void _encodeHead(HttpResponse response, long contentLength, boolean chunked, boolean keepAlive) {
+        HttpStatus status = response.getStatus();
+        headLength = 0;
+        _put(STATUS_LINES[status.ordinal()]);
+
+        boolean hasContentType = false;
+        Map<String, String> headers = response.getHeaders();
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                String name = header.getKey();
+                if (_isManaged(name) || header.getValue() == null) {
+                    continue;
+                }
+                hasContentType |= name.equalsIgnoreCase("Content-Type");
+                _putName(name);
+                _put(HEADER_SEPARATOR);
+                _putValue(name, header.getValue());
+                _put(CRLF);
+            }
+        }
+        if (!hasContentType && contentLength != 0 && _bodyAllowed(status)) {
+            _put(DEFAULT_CONTENT_TYPE);
+        }
+        if (_bodyAllowed(status)) {
+            if (chunked) {
+                _put(TRANSFER_ENCODING_CHUNKED);
+            } else if (contentLength >= 0) {
+                _put(CONTENT_LENGTH);
+                _putDecimal(contentLength);
+                _put(CRLF);
+            }
+        }
+        _put(keepAlive ? CONNECTION_KEEP_ALIVE : CONNECTION_CLOSE);
+        _put(CRLF);
+    }
+
+    /**
+     * Headers describing the message framing are always computed by the writer.
+     */
+    private static boolean _isManaged(String name) {
+        return name.equalsIgnoreCase("Content-Length")
+                || name.equalsIgnoreCase("Connection")
+                || name.equalsIgnoreCase("Transfer-Encoding");
+    }
+
+    /**
+     * Responses with these status codes never carry a body (RFC 9110 section 6.4.1).
+     */
+    private static boolean _bodyAllowed(HttpStatus status) {
+        int code = status.getCode();
+        return code >= 200 && code != 204 && code != 304;
+    }
+
+    private void _put(byte[] bytes) {
+        _ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, head, headLength, bytes.length);
+        headLength += bytes.length;
+    }
+
+    private void _putName(String name) {
+        int length = name.length();
+        if (length == 0) {
+            throw new IllegalArgumentException("Empty header name");
+        }
+        _ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            char c = name.charAt(i);
+            if (c >= TOKEN.length || !TOKEN[c]) {
+                throw new IllegalArgumentException("Invalid character in header name: " + name);
+            }
+            head[headLength++] = (byte) c;
+        }
+    }
+
+    private void _putValue(String name, String value) {
+        int length = value.length();
+        _ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '\r' || c == '\n' || c == 0) {
+                throw new IllegalArgumentException("Invalid character in the value of header " + name);
+            }
+            head[headLength++] = (byte) (c <= 0xFF ? c : '?');
+        }
+    }
+
+    private void _putDecimal(long value) {
+        _ensureCapacity(19);
+        if (value == 0) {
+            head[headLength++] = '0';
+            return;
+        }
+        int digits = 0;
+        for (long v = value; v > 0; v /= 10) {
+            digits++;
+        }
+        for (int i = headLength + digits - 1; i >= headLength; i--) {
+            head[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        headLength += digits;
+    }
+
+    private void _ensureCapacity(int additional) {
+        if (headLength + additional > head.length) {
+            head = Arrays.copyOf(head, Math.max(head.length * 2, headLength + additional));
+        }
+    }
+
+    private static byte[] _ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Gives body writers access to the connection without letting them close it, and counts the
+     * bytes they write.
+     */
+    private static final class ShieldedOutputStream extends FilterOutputStream {
+        long written;
+
+        ShieldedOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            written++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            written += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -19,7 +19,11 @@ public enum HttpStatus{
     ACCEPTED(202, "Accepted"),
     /** 204 No Content - The server successfully processed the request, and is not returning any content. */
     NO_CONTENT(204, "No Content"),
-    
+
+    // 3xx Redirection
+    /** 304 Not Modified - The resource has not been modified since the version specified by the request conditions. */
+    NOT_MODIFIED(304, "Not Modified"),
+
     // 4xx Client Error
     /** 400 Bad Request - The server cannot process the request due to client error (e.g., malformed syntax). */
     BAD_REQUEST(400, "Bad Request"),
@@ -65,6 +69,8 @@ public enum HttpStatus{
     PRECONDITION_REQUIRED(428, "Precondition Required"),
     /** 429 Too Many Requests - The user has sent too many requests in a given amount of time. */
     TOO_MANY_REQUESTS(429, "Too Many Requests"),
+    /** 431 Request Header Fields Too Large - The server is unwilling to process the request because its header fields are too large. */
+    REQUEST_HEADER_FIELDS_TOO_LARGE(431, "Request Header Fields Too Large"),
     /** 451 Unavailable For Legal Reasons - The server is denying access to the resource as a consequence of a legal demand. */
     UNAVAILABLE_FOR_LEGAL_REASONS(451, "Unavailable For Legal Reasons"),
 
@@ -113,4 +119,14 @@ public enum HttpStatus{
         return message;
     }
 
+    /**
+     * Retrieves the class of the status code, i.e. its first digit (2 for 2xx Success, 4 for 4xx
+     * Client Error, and so on).
+     *
+     * @return The status class, from 1 to 5.
+     */
+    public int getStatusClass() {
+        return code / 100;
+    }
+
 }
\ No newline at end of file
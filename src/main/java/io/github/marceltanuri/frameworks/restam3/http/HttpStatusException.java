@@ -0,0 +1,36 @@
+package io.github.marceltanuri.frameworks.restam3.http;
+
+import java.io.IOException;
+
+/**
+ * Signals that a request cannot be accepted and must be answered with a specific status
+ * (e.g., {@link HttpStatus#PAYLOAD_TOO_LARGE}) before the connection is closed.
+ *
+ * @author Marcel Tanuri
+ */
+public class HttpStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final HttpStatus status;
+
+    /**
+     * Creates a new exception.
+     *
+     * @param status  the status the request must be answered with
+     * @param message the detail message
+     */
+    public HttpStatusException(HttpStatus status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    /**
+     * Gets the status the request must be answered with.
+     *
+     * @return the HTTP status
+     */
+    public HttpStatus getStatus() {
+        return status;
+    }
+}
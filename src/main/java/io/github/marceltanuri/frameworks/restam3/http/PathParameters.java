@@ -0,0 +1,67 @@
+package io.github.marceltanuri.frameworks.restam3.http;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The values captured from the request path by a route pattern such as {@code /cep/{cep}}.
+ * <p>
+ * Values are kept as offsets into the path and only extracted (and percent-decoded) on access.
+ *
+ * @author Marcel Tanuri
+ */
+public final class PathParameters {
+
+    /**
+     * Parameters of a route without captures.
+     */
+    public static final PathParameters EMPTY = new PathParameters("", new String[0], new int[0]);
+
+    private final String path;
+    private final String[] names;
+    private final int[] bounds;
+
+    /**
+     * Creates the parameters captured from a path.
+     *
+     * @param path   the request path
+     * @param names  the parameter names, in path order
+     * @param bounds the start and end offset of each value in the path (two entries per name)
+     */
+    public PathParameters(String path, String[] names, int[] bounds) {
+        this.path = path;
+        this.names = names;
+        this.bounds = bounds;
+    }
+
+    /**
+     * Gets the value of a parameter.
+     *
+     * @param name the parameter name, as written in the route pattern ({@code *} and {@code **} for wildcards)
+     * @return the decoded value, or null if the route does not declare this parameter
+     */
+    public String get(String name) {
+        int count = Math.min(names.length, bounds.length / 2);
+        for (int i = 0; i < count; i++) {
+            if (names[i].equals(name)) {
+                return HttpRequest.percentDecode(path.substring(bounds[i * 2], bounds[i * 2 + 1]), false);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets all parameters as a map.
+     *
+     * @return an unmodifiable map from parameter name to decoded value
+     */
+    public Map<String, String> asMap() {
+        Map<String, String> map = new LinkedHashMap<>();
+        int count = Math.min(names.length, bounds.length / 2);
+        for (int i = 0; i < count; i++) {
+            map.put(names[i], HttpRequest.percentDecode(path.substring(bounds[i * 2], bounds[i * 2 + 1]), false));
+        }
+        return Collections.unmodifiableMap(map);
+    }
+}
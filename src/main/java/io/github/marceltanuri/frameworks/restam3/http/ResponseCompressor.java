@@ -0,0 +1,408 @@
+package io.github.marceltanuri.frameworks.restam3.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses response bodies with {@code gzip} or {@code deflate}, as negotiated from the
+ * {@code Accept-Encoding} header of the request. It uses a Fluent Interface design for configuration.
+ * <p>
+ * A response is compressed only when its body is at least {@link #minSize(int)} bytes long, its
+ * content type is not excluded (already-compressed media such as images, audio, video and
+ * archives are excluded by default), and it does not already carry a {@code Content-Encoding}.
+ * Such responses get {@code Vary: Accept-Encoding} whatever the client accepted, so that shared
+ * caches keep the compressed and identity representations apart. Streaming responses of unknown
+ * length are compressed on the fly and sent chunked. A compressed body that turns out no smaller
+ * than the original is discarded and the original is sent instead. The {@code ETag} of a compressed
+ * response is suffixed with its content coding, so that each representation keeps its own strong tag.
+ * <p>
+ * {@link Deflater}s hold a native zlib context of a few hundred kilobytes that is costly to set up,
+ * so they are kept in a bounded pool and reset between responses instead of being created for
+ * each one. The gzip header and trailer (RFC 1952) are written around a raw deflate stream,
+ * which lets both encodings share the same code path.
+ *
+ * @author Marcel Tanuri
+ */
+public final class ResponseCompressor {
+
+    /** The default minimum body size worth compressing: below that, headers and framing dominate. */
+    public static final int DEFAULT_MIN_SIZE = 1024;
+
+    private static final List<String> DEFAULT_EXCLUDED_CONTENT_TYPES = List.of(
+            "image/", "audio/", "video/", "font/woff",
+            "application/zip", "application/gzip", "application/x-gzip", "application/x-bzip2",
+            "application/x-7z-compressed", "application/x-rar-compressed", "application/zstd");
+
+    private static final int GZIP_HEADER_LENGTH = 10;
+    private static final byte[] GZIP_HEADER = {
+            0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private static final String GZIP = "gzip";
+    private static final String DEFLATE = "deflate";
+
+    private int minSize = DEFAULT_MIN_SIZE;
+    private int level = Deflater.DEFAULT_COMPRESSION;
+    private final List<String> excludedContentTypes = new ArrayList<>(DEFAULT_EXCLUDED_CONTENT_TYPES);
+    private ArrayBlockingQueue<Deflater> gzipPool = _newPool();
+    private ArrayBlockingQueue<Deflater> deflatePool = _newPool();
+
+    // Private constructor to enforce the use of the static factory method 'create()'.
+    private ResponseCompressor() {
+    }
+
+    /**
+     * Creates a compressor with the default settings: bodies of at least {@value #DEFAULT_MIN_SIZE}
+     * bytes, zlib's default compression level, already-compressed media types excluded.
+     *
+     * @return a new ResponseCompressor instance
+     */
+    public static ResponseCompressor create() {
+        return new ResponseCompressor();
+    }
+
+    /**
+     * Sets the minimum body size to compress.
+     *
+     * @param minSize the minimum body size in bytes
+     * @return this compressor, for method chaining
+     */
+    public ResponseCompressor minSize(int minSize) {
+        if (minSize < 0) {
+            throw new IllegalArgumentException("minSize must not be negative");
+        }
+        this.minSize = minSize;
+        return this;
+    }
+
+    /**
+     * Sets the compression level, trading CPU time for smaller bodies.
+     *
+     * @param level from {@link Deflater#BEST_SPEED} (1) to {@link Deflater#BEST_COMPRESSION} (9),
+     *              or {@link Deflater#DEFAULT_COMPRESSION} (-1)
+     * @return this compressor, for method chaining
+     */
+    public ResponseCompressor level(int level) {
+        if ((level < 1 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("level must be between 1 and 9, or -1 for the default");
+        }
+        this.level = level;
+        // Deflaters pooled with the previous level are simply left to the garbage collector.
+        this.gzipPool = _newPool();
+        this.deflatePool = _newPool();
+        return this;
+    }
+
+    /**
+     * Excludes content types from compression, in addition to the default ones.
+     *
+     * @param contentTypes media types (e.g., {@code application/pdf}) or prefixes of media types
+     *                     (e.g., {@code image/}), matched case-insensitively
+     * @return this compressor, for method chaining
+     */
+    public ResponseCompressor exclude(String... contentTypes) {
+        for (String contentType : contentTypes) {
+            excludedContentTypes.add(contentType.toLowerCase(Locale.ROOT));
+        }
+        return this;
+    }
+
+    /**
+     * Compresses a response if the request accepts a supported encoding and the response is
+     * worth compressing.
+     *
+     * @param request  the request being answered
+     * @param response the response produced for it
+     * @return the compressed response, the response with a {@code Vary} header added, or the
+     * response itself if it is not eligible for compression
+     */
+    public HttpResponse compress(HttpRequest request, HttpResponse response) {
+        if (!_isEligible(response)) {
+            return response;
+        }
+        Map<String, String> headers = _withVary(response.getHeaders());
+        String encoding = negotiate(request.getHeader("Accept-Encoding"));
+
+        if (response instanceof StreamingHttpResponse streaming) {
+            if (encoding == null) {
+                return new StreamingHttpResponse(streaming.getStatus(), headers, streaming.getContentLength(),
+                        streaming.getBodyWriter());
+            }
+            _encode(headers, encoding);
+            return new StreamingHttpResponse(streaming.getStatus(), headers, out -> {
+                try (CompressingOutputStream compressed = new CompressingOutputStream(out, encoding)) {
+                    streaming.getBodyWriter().writeTo(compressed);
+                }
+            });
+        }
+
+        byte[] body = response.getBodyBytes();
+        if (encoding != null) {
+            byte[] compressed = _compress(body, encoding);
+            if (compressed.length < body.length) {
+                _encode(headers, encoding);
+                return new HttpResponse(compressed, response.getStatus(), headers);
+            }
+        }
+        return new HttpResponse(body, response.getStatus(), headers);
+    }
+
+    /**
+     * Picks the content coding to use from an {@code Accept-Encoding} header (RFC 9110 section
+     * 12.5.3), preferring gzip over deflate when the client weighs them equally.
+     *
+     * @param acceptEncoding the header value, or null if the request did not send one
+     * @return {@code gzip}, {@code deflate}, or null if the body must be sent uncompressed
+     */
+    public static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return null;
+        }
+        double gzip = -1;
+        double deflate = -1;
+        double wildcard = -1;
+        for (String element : acceptEncoding.split(",")) {
+            int semicolon = element.indexOf(';');
+            String coding = (semicolon < 0 ? element : element.substring(0, semicolon)).trim();
+            double quality = semicolon < 0 ? 1 : _quality(element.substring(semicolon + 1));
+            if (coding.equalsIgnoreCase(GZIP) || coding.equalsIgnoreCase("x-gzip")) {
+                gzip = Math.max(gzip, quality);
+            } else if (coding.equalsIgnoreCase(DEFLATE)) {
+                deflate = Math.max(deflate, quality);
+            } else if (coding.equals("*")) {
+                wildcard = quality;
+            }
+        }
+        // Codings not listed get the weight of "*", if present.
+        if (gzip < 0) {
+            gzip = wildcard;
+        }
+        if (deflate < 0) {
+            deflate = wildcard;
+        }
+        if (gzip <= 0 && deflate <= 0) {
+            return null;
+        }
+        return gzip >= deflate ? GZIP : DEFLATE;
+    }
+
+    private static double _quality(String parameters) {
+        for (String parameter : parameters.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.length() > 2 && (trimmed.charAt(0) == 'q' || trimmed.charAt(0) == 'Q') && trimmed.charAt(1) == '=') {
+                try {
+                    return Double.parseDouble(trimmed.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private boolean _isEligible(HttpResponse response) {
+        int code = response.getStatus().getCode();
+        if (code < 200 || code == 204 || code == 304) {
+            return false;
+        }
+        Map<String, String> headers = response.getHeaders();
+        String contentType = "application/json"; // the writer's default
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                if (header.getKey().equalsIgnoreCase("Content-Encoding")) {
+                    return false;
+                }
+                if (header.getKey().equalsIgnoreCase("Content-Type") && header.getValue() != null) {
+                    contentType = header.getValue();
+                }
+            }
+        }
+        if (_isExcluded(contentType)) {
+            return false;
+        }
+        if (response instanceof StreamingHttpResponse streaming) {
+            return streaming.getContentLength() < 0 || streaming.getContentLength() >= minSize;
+        }
+        return response.getBodyBytes().length >= minSize;
+    }
+
+    private boolean _isExcluded(String contentType) {
+        String mediaType = contentType.toLowerCase(Locale.ROOT).trim();
+        for (String excluded : excludedContentTypes) {
+            if (mediaType.startsWith(excluded)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Marks the headers of a compressed representation, giving it its own entity tag.
+     */
+    private static void _encode(Map<String, String> headers, String encoding) {
+        headers.put("Content-Encoding", encoding);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (header.getKey().equalsIgnoreCase("ETag") && header.getValue() != null) {
+                header.setValue(ConditionalRequests.withCoding(header.getValue(), encoding));
+            }
+        }
+    }
+
+    private static Map<String, String> _withVary(Map<String, String> original) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        String vary = null;
+        if (original != null) {
+            for (Map.Entry<String, String> header : original.entrySet()) {
+                if (header.getKey().equalsIgnoreCase("Vary")) {
+                    vary = header.getValue();
+                } else {
+                    headers.put(header.getKey(), header.getValue());
+                }
+            }
+        }
+        if (vary == null || vary.isBlank()) {
+            vary = "Accept-Encoding";
+        } else if (!vary.trim().equals("*") && !_listsToken(vary, "Accept-Encoding")) {
+            vary = vary + ", Accept-Encoding";
+        }
+        headers.put("Vary", vary);
+        return headers;
+    }
+
+    private static boolean _listsToken(String list, String token) {
+        for (String element : list.split(",")) {
+            if (element.trim().equalsIgnoreCase(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private byte[] _compress(byte[] body, String encoding) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (CompressingOutputStream compressed = new CompressingOutputStream(buffer, encoding)) {
+            compressed.write(body, 0, body.length);
+        } catch (IOException e) {
+            throw new IllegalStateException("In-memory compression failed", e); // cannot happen
+        }
+        return buffer.toByteArray();
+    }
+
+    private static ArrayBlockingQueue<Deflater> _newPool() {
+        return new ArrayBlockingQueue<>(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+    }
+
+    private Deflater _borrow(boolean gzip) {
+        Deflater deflater = (gzip ? gzipPool : deflatePool).poll();
+        // gzip wraps a raw deflate stream itself; deflate is the zlib format (RFC 1950).
+        return deflater != null ? deflater : new Deflater(level, gzip);
+    }
+
+    private void _release(Deflater deflater, boolean gzip) {
+        deflater.reset();
+        if (!(gzip ? gzipPool : deflatePool).offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Compresses what is written to it with a pooled {@link Deflater}, which is given back when
+     * the stream is closed. Flushing sends everything written so far with a zlib sync flush, so
+     * streamed bodies reach the client progressively.
+     */
+    private final class CompressingOutputStream extends FilterOutputStream {
+        private final boolean gzip;
+        private final byte[] buffer = new byte[8192];
+        private final CRC32 crc;
+        private Deflater deflater;
+        private long size;
+
+        CompressingOutputStream(OutputStream out, String encoding) throws IOException {
+            super(out);
+            this.gzip = encoding.equals(GZIP);
+            this.crc = gzip ? new CRC32() : null;
+            this.deflater = _borrow(gzip);
+            if (gzip) {
+                out.write(GZIP_HEADER, 0, GZIP_HEADER_LENGTH);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (deflater == null) {
+                throw new IOException("Stream closed");
+            }
+            if (len == 0) {
+                return;
+            }
+            if (crc != null) {
+                crc.update(b, off, len);
+            }
+            size += len;
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                _drain(Deflater.NO_FLUSH);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (deflater != null) {
+                _drain(Deflater.SYNC_FLUSH);
+            }
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (deflater == null) {
+                return;
+            }
+            try {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    _drain(Deflater.NO_FLUSH);
+                }
+                if (gzip) {
+                    _writeIntLE(crc.getValue());
+                    _writeIntLE(size);
+                }
+                out.flush();
+            } finally {
+                _release(deflater, gzip);
+                deflater = null;
+            }
+        }
+
+        private void _drain(int flush) throws IOException {
+            int length;
+            do {
+                length = deflater.deflate(buffer, 0, buffer.length, flush);
+                if (length > 0) {
+                    out.write(buffer, 0, length);
+                }
+            } while (length == buffer.length);
+        }
+
+        private void _writeIntLE(long value) throws IOException {
+            for (int i = 0; i < 4; i++) {
+                buffer[i] = (byte) (value >>> (8 * i));
+            }
+            out.write(buffer, 0, 4);
+        }
+    }
+}
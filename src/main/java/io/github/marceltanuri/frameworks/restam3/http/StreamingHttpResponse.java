@@ -0,0 +1,103 @@
+package io.github.marceltanuri.frameworks.restam3.http;
+
+import io.github.marceltanuri.frameworks.restam3.json.JsonParser;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * An HTTP response whose body is produced while it is being sent, instead of being held in memory.
+ * <p>
+ * The body writer receives a stream that goes straight to the connection. When the length is not
+ * known in advance the body is sent with {@code Transfer-Encoding: chunked} (or, for HTTP/1.0
+ * clients, delimited by closing the connection). Once the head has been sent the status can no
+ * longer change: if the body writer fails, the connection is aborted so the client sees a
+ * truncated response rather than a complete one.
+ *
+ * @author Marcel Tanuri
+ */
+public class StreamingHttpResponse extends HttpResponse {
+
+    /**
+     * Produces the body of a streaming response.
+     */
+    @FunctionalInterface
+    public interface BodyWriter {
+        /**
+         * Writes the body. Closing the given stream only flushes it; the connection stays open.
+         *
+         * @param out the stream to write the body to
+         * @throws IOException if an I/O error occurs
+         */
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private final BodyWriter bodyWriter;
+    private final long contentLength;
+
+    /**
+     * Creates a streaming response of unknown length.
+     *
+     * @param status     the status of the response
+     * @param headers    the headers of the response
+     * @param bodyWriter the producer of the body
+     */
+    public StreamingHttpResponse(HttpStatus status, Map<String, String> headers, BodyWriter bodyWriter) {
+        this(status, headers, -1, bodyWriter);
+    }
+
+    /**
+     * Creates a streaming response.
+     *
+     * @param status        the status of the response
+     * @param headers       the headers of the response
+     * @param contentLength the exact body length in bytes, or -1 if unknown
+     * @param bodyWriter    the producer of the body
+     */
+    public StreamingHttpResponse(HttpStatus status, Map<String, String> headers, long contentLength, BodyWriter bodyWriter) {
+        super(EMPTY_BODY, status, headers);
+        this.bodyWriter = bodyWriter;
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * Creates a response that serializes an object as JSON directly to the connection, through
+     * {@link JsonParser#writeTo(Object, java.io.OutputStream)}.
+     *
+     * @param jsonParser the parser used to serialize the object
+     * @param src        the object to serialize
+     * @param status     the status of the response
+     * @return the streaming response
+     */
+    public static StreamingHttpResponse json(JsonParser jsonParser, Object src, HttpStatus status) {
+        return new StreamingHttpResponse(status, Collections.singletonMap("Content-Type", "application/json"), out -> {
+            try {
+                jsonParser.writeTo(src, out);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("Error serializing response body", e);
+            }
+        });
+    }
+
+    /**
+     * Gets the producer of the body.
+     *
+     * @return the body writer
+     */
+    public BodyWriter getBodyWriter() {
+        return bodyWriter;
+    }
+
+    /**
+     * Gets the body length declared by the controller.
+     *
+     * @return the body length in bytes, or -1 if unknown
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+}
@@ -0,0 +1,187 @@
+package io.github.marceltanuri.frameworks.restam3.json;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.github.marceltanuri.frameworks.restam3.json.codec.JsonCodec;
+import io.github.marceltanuri.frameworks.restam3.json.codec.JsonModel;
+import io.github.marceltanuri.frameworks.restam3.json.codec.JsonReader;
+import io.github.marceltanuri.frameworks.restam3.json.codec.JsonWriter;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * Implementation of the JsonParser interface that serializes the classes annotated with
+ * {@link JsonModel} through the codecs generated for them at compile time, without reflection, and
+ * delegates every other type to a fallback parser.
+ * <p>
+ * The codecs are discovered with {@link ServiceLoader}. When the fallback is a
+ * {@link ConfigurableJacksonParser}, the codecs follow its {@code INDENT_OUTPUT} and
+ * {@code FAIL_ON_UNKNOWN_PROPERTIES} settings, so the output does not depend on which of the two
+ * handles a type; other Jackson settings do not apply to generated codecs.
+ *
+ * @author Marcel Tanuri
+ */
+public class CodecJsonParser implements JsonParser {
+
+    private final JsonParser fallback;
+    private final Map<Class<?>, JsonCodec<?>> codecs;
+    private final boolean indent;
+    private final boolean failOnUnknownProperties;
+
+    /**
+     * Creates a parser falling back to a {@link ConfigurableJacksonParser} with the default configuration.
+     */
+    public CodecJsonParser() {
+        this(new ConfigurableJacksonParser());
+    }
+
+    /**
+     * Creates a parser with the codecs visible from the context class loader.
+     *
+     * @param fallback the parser of the types without a generated codec
+     */
+    public CodecJsonParser(JsonParser fallback) {
+        this(fallback, Thread.currentThread().getContextClassLoader());
+    }
+
+    /**
+     * Creates a parser.
+     *
+     * @param fallback    the parser of the types without a generated codec
+     * @param classLoader the class loader from which the codecs are loaded
+     */
+    public CodecJsonParser(JsonParser fallback, ClassLoader classLoader) {
+        this.fallback = fallback;
+        Map<Class<?>, JsonCodec<?>> loaded = new HashMap<>();
+        for (JsonCodec<?> codec : ServiceLoader.load(JsonCodec.class, classLoader)) {
+            loaded.put(codec.type(), codec);
+        }
+        this.codecs = Map.copyOf(loaded);
+        if (fallback instanceof ConfigurableJacksonParser jackson) {
+            this.indent = jackson.isEnabled(SerializationFeature.INDENT_OUTPUT);
+            this.failOnUnknownProperties = jackson.isEnabled(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        } else {
+            this.indent = false;
+            this.failOnUnknownProperties = true;
+        }
+    }
+
+    /**
+     * Tells whether a type is serialized by a generated codec rather than by the fallback parser.
+     *
+     * @param type the type
+     * @return true if a codec was generated for the type
+     */
+    public boolean hasCodec(Type type) {
+        return type instanceof Class<?> && codecs.containsKey(type);
+    }
+
+    @Override
+    public <T> T fromJson(String json, Type typeOfT) throws Exception {
+        JsonCodec<T> codec = _codec(typeOfT);
+        if (codec == null) {
+            return fallback.fromJson(json, typeOfT);
+        }
+        return codec.read(new JsonReader(json.getBytes(StandardCharsets.UTF_8), failOnUnknownProperties));
+    }
+
+    @Override
+    public <T> T fromJson(Reader reader, Type typeOfT) throws Exception {
+        JsonCodec<T> codec = _codec(typeOfT);
+        if (codec == null) {
+            return fallback.fromJson(reader, typeOfT);
+        }
+        StringWriter json = new StringWriter();
+        reader.transferTo(json);
+        return fromJson(json.toString(), typeOfT);
+    }
+
+    @Override
+    public <T> T fromJson(byte[] json, Type typeOfT) throws Exception {
+        JsonCodec<T> codec = _codec(typeOfT);
+        if (codec == null) {
+            return fallback.fromJson(json, typeOfT);
+        }
+        return codec.read(new JsonReader(json, failOnUnknownProperties));
+    }
+
+    @Override
+    public <T> T fromJson(InputStream in, Type typeOfT) throws Exception {
+        JsonCodec<T> codec = _codec(typeOfT);
+        if (codec == null) {
+            return fallback.fromJson(in, typeOfT);
+        }
+        return codec.read(new JsonReader(in.readAllBytes(), failOnUnknownProperties));
+    }
+
+    @Override
+    public String toJson(Object src) throws Exception {
+        JsonWriter writer = _write(src);
+        if (writer == null) {
+            return fallback.toJson(src);
+        }
+        return new String(writer.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void toJson(Object src, Appendable writer) throws Exception {
+        if (_codecOf(src) == null) {
+            fallback.toJson(src, writer);
+            return;
+        }
+        writer.append(toJson(src));
+    }
+
+    @Override
+    public byte[] toJsonBytes(Object src) throws Exception {
+        JsonWriter writer = _write(src);
+        if (writer == null) {
+            return fallback.toJsonBytes(src);
+        }
+        return writer.toByteArray();
+    }
+
+    @Override
+    public void writeTo(Object src, OutputStream out) throws Exception {
+        JsonWriter writer = _write(src);
+        if (writer == null) {
+            fallback.writeTo(src, out);
+            return;
+        }
+        writer.writeTo(out);
+        out.flush();
+    }
+
+    /**
+     * Serializes an object with its codec.
+     *
+     * @return the writer holding the document, or null if the object has no codec
+     */
+    private JsonWriter _write(Object src) {
+        JsonCodec<Object> codec = _codecOf(src);
+        if (codec == null) {
+            return null;
+        }
+        JsonWriter writer = new JsonWriter(indent);
+        codec.write(src, writer);
+        return writer;
+    }
+
+    @SuppressWarnings("unchecked")
+    private JsonCodec<Object> _codecOf(Object src) {
+        return src != null ? (JsonCodec<Object>) codecs.get(src.getClass()) : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> JsonCodec<T> _codec(Type type) {
+        return type instanceof Class<?> ? (JsonCodec<T>) codecs.get(type) : null;
+    }
+}
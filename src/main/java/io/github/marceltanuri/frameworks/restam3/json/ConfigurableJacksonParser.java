@@ -1,22 +1,37 @@
 package io.github.marceltanuri.frameworks.restam3.json;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser.Feature;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JavaType;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
 /**
  * Implementation of the JsonParser interface using Jackson, allowing
  * configuration of the ObjectMapper via a Consumer in the constructor.
+ * <p>
+ * An {@link ObjectReader} and an {@link ObjectWriter} are built once per type and kept, so that
+ * each call skips resolving the type and looking up its (de)serializer. The byte-oriented methods
+ * let Jackson encode and decode UTF-8 itself, without an intermediate {@code String}.
+ * Configurations applied to the ObjectMapper must therefore all be made by the configurer.
  */
 public class ConfigurableJacksonParser implements JsonParser {
 
     private final ObjectMapper objectMapper;
+    private final Map<Type, ObjectReader> readers = new ConcurrentHashMap<>();
+    private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
 
     /**
      * Constructor that allows configuring the Jackson ObjectMapper.
@@ -26,9 +41,9 @@ public class ConfigurableJacksonParser implements JsonParser {
      */
     public ConfigurableJacksonParser(Consumer<ObjectMapper> configurer) {
         this.objectMapper = new ObjectMapper();
-        
+
         this.objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-        
+
         if (configurer != null) {
             configurer.accept(this.objectMapper);
         }
@@ -42,35 +57,88 @@ public class ConfigurableJacksonParser implements JsonParser {
     }
 
 
-    private JavaType getJavaType(Type typeOfT) {
-        return objectMapper.getTypeFactory().constructType(typeOfT);
+    /**
+     * Tells whether a serialization feature is enabled, so that {@link CodecJsonParser} can produce
+     * the same output.
+     */
+    boolean isEnabled(SerializationFeature feature) {
+        return objectMapper.isEnabled(feature);
+    }
+
+    /**
+     * Tells whether a deserialization feature is enabled, so that {@link CodecJsonParser} can apply
+     * the same rules.
+     */
+    boolean isEnabled(DeserializationFeature feature) {
+        return objectMapper.isEnabled(feature);
+    }
+
+    private ObjectReader getReader(Type typeOfT) {
+        ObjectReader reader = readers.get(typeOfT);
+        if (reader == null) {
+            // The caller owns the streams it passes in: reading a document must not close them.
+            reader = readers.computeIfAbsent(typeOfT, type -> objectMapper
+                    .readerFor(objectMapper.getTypeFactory().constructType(type))
+                    .without(Feature.AUTO_CLOSE_SOURCE));
+        }
+        return reader;
+    }
+
+    private ObjectWriter getWriter(Object src) {
+        Class<?> type = src != null ? src.getClass() : Object.class;
+        ObjectWriter writer = writers.get(type);
+        if (writer == null) {
+            writer = writers.computeIfAbsent(type, t -> objectMapper.writerFor(t)
+                    .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET));
+        }
+        return writer;
     }
 
 
     @Override
     public <T> T fromJson(String json, Type typeOfT) throws IOException {
-        JavaType javaType = getJavaType(typeOfT);
-        return objectMapper.readValue(json, javaType);
+        return getReader(typeOfT).readValue(json);
     }
 
     @Override
     public <T> T fromJson(Reader reader, Type typeOfT) throws IOException {
-        JavaType javaType = getJavaType(typeOfT);
-        return objectMapper.readValue(reader, javaType);
+        return getReader(typeOfT).readValue(reader);
+    }
+
+    @Override
+    public <T> T fromJson(byte[] json, Type typeOfT) throws IOException {
+        return getReader(typeOfT).readValue(json);
+    }
+
+    @Override
+    public <T> T fromJson(InputStream in, Type typeOfT) throws IOException {
+        return getReader(typeOfT).readValue(in);
     }
 
     @Override
     public String toJson(Object src) throws JsonProcessingException {
-        return objectMapper.writeValueAsString(src);
+        return getWriter(src).writeValueAsString(src);
+    }
+
+    @Override
+    public byte[] toJsonBytes(Object src) throws JsonProcessingException {
+        return getWriter(src).writeValueAsBytes(src);
+    }
+
+    @Override
+    public void writeTo(Object src, OutputStream out) throws IOException {
+        getWriter(src).writeValue(out, src);
+        out.flush();
     }
 
     @Override
     public void toJson(Object src, Appendable writer) throws IOException {
         if (writer instanceof java.io.Writer) {
-            objectMapper.writeValue((java.io.Writer) writer, src);
+            getWriter(src).writeValue((java.io.Writer) writer, src);
+            ((java.io.Writer) writer).flush();
         } else {
             String json = toJson(src);
             writer.append(json);
         }
     }
-}
\ No newline at end of file
+}
@@ -1,11 +1,24 @@
 package io.github.marceltanuri.frameworks.restam3.json;
 
+import java.io.BufferedWriter;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.Writer;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Interface for serialization (object -> JSON) and deserialization (JSON -> object)
  * that can be implemented using libraries like Gson or Jackson.
+ * <p>
+ * The byte-oriented methods ({@link #toJsonBytes(Object)}, {@link #writeTo(Object, OutputStream)},
+ * {@link #fromJson(byte[], Type)} and {@link #fromJson(InputStream, Type)}) read and write UTF-8
+ * directly, which is what travels on the connection. Their default implementations go through the
+ * character-based methods; implementations backed by a library able to work on bytes should
+ * override them to skip the intermediate {@code String}.
  */
 public interface JsonParser {
 
@@ -52,4 +65,56 @@ public interface JsonParser {
      * @throws Exception If an error occurs during serialization.
      */
     void toJson(Object src, Appendable writer) throws Exception;
-}
\ No newline at end of file
+
+    /**
+     * Deserializes a UTF-8 encoded JSON document to an object of the specified type.
+     *
+     * @param <T> The type of the object to be returned.
+     * @param json The UTF-8 encoded JSON document.
+     * @param typeOfT The target object's type.
+     * @return The deserialized object of type T.
+     * @throws Exception If an error occurs during deserialization.
+     */
+    default <T> T fromJson(byte[] json, Type typeOfT) throws Exception {
+        return fromJson(new String(json, StandardCharsets.UTF_8), typeOfT);
+    }
+
+    /**
+     * Deserializes a UTF-8 encoded JSON document from a byte stream to an object of the specified
+     * type. The stream is not closed.
+     *
+     * @param <T> The type of the object to be returned.
+     * @param in The stream from which to read the JSON document.
+     * @param typeOfT The target object's type.
+     * @return The deserialized object of type T.
+     * @throws Exception If an error occurs during deserialization.
+     */
+    default <T> T fromJson(InputStream in, Type typeOfT) throws Exception {
+        return fromJson(new InputStreamReader(in, StandardCharsets.UTF_8), typeOfT);
+    }
+
+    /**
+     * Serializes an object to its UTF-8 encoded JSON representation.
+     *
+     * @param src The object to be serialized.
+     * @return The UTF-8 encoded JSON document.
+     * @throws Exception If an error occurs during serialization.
+     */
+    default byte[] toJsonBytes(Object src) throws Exception {
+        return toJson(src).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Serializes an object as UTF-8 encoded JSON to a byte stream. The stream is flushed, but not
+     * closed.
+     *
+     * @param src The object to be serialized.
+     * @param out The stream where the JSON document will be written.
+     * @throws Exception If an error occurs during serialization.
+     */
+    default void writeTo(Object src, OutputStream out) throws Exception {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        toJson(src, writer);
+        writer.flush();
+    }
+}
@@ -0,0 +1,38 @@
+package io.github.marceltanuri.frameworks.restam3.json.codec;
+
+import java.io.IOException;
+
+/**
+ * Serializes and deserializes one model class as JSON without reflection. Implementations are
+ * generated for the classes annotated with {@link JsonModel} and discovered through
+ * {@link java.util.ServiceLoader}; they must be stateless and have a public no-argument constructor.
+ *
+ * @param <T> the model type
+ * @author Marcel Tanuri
+ */
+public interface JsonCodec<T> {
+
+    /**
+     * Gets the model class handled by the codec.
+     *
+     * @return the model class
+     */
+    Class<T> type();
+
+    /**
+     * Writes a model as a JSON object.
+     *
+     * @param value the model, not null
+     * @param out   the writer
+     */
+    void write(T value, JsonWriter out);
+
+    /**
+     * Reads a model from a JSON object, or a JSON {@code null}.
+     *
+     * @param in the reader, positioned before the value
+     * @return the model, or null
+     * @throws IOException if the document is malformed or does not match the model
+     */
+    T read(JsonReader in) throws IOException;
+}
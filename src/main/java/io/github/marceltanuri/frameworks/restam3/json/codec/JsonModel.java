@@ -0,0 +1,26 @@
+package io.github.marceltanuri.frameworks.restam3.json.codec;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a model class for which a {@link JsonCodec} is generated at compile time, named after the
+ * class with a {@code JsonCodec} suffix (e.g., {@code EnderecoJsonCodec}) and registered as a
+ * service, so that {@link io.github.marceltanuri.frameworks.restam3.json.CodecJsonParser} serializes
+ * it without reflection.
+ * <p>
+ * The model needs a public no-argument constructor. Its properties are its public fields and its
+ * getter/setter pairs, in the order the fields are declared, and may be strings, primitives and their
+ * wrappers, enums or other {@code @JsonModel} classes. Jackson's {@code @JsonProperty} (for the
+ * name) and {@code @JsonIgnore} are honored.
+ *
+ * @author Marcel Tanuri
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface JsonModel {
+}
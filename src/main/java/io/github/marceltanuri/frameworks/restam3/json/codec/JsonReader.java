@@ -0,0 +1,539 @@
+package io.github.marceltanuri.frameworks.restam3.json.codec;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads a UTF-8 encoded JSON document from a byte array, for {@link JsonCodec}s.
+ * <p>
+ * Property names are matched against the encoded names of the model ({@link #nextField(byte[][])})
+ * without creating strings, and values are read in the type of the property, with the scalar
+ * coercions Jackson applies by default (e.g., a number for a string property, a numeric string
+ * for a number property, {@code null} for a primitive).
+ *
+ * @author Marcel Tanuri
+ */
+public final class JsonReader {
+
+    /** Returned by {@link #nextField(byte[][])} when the current object has no more properties. */
+    public static final int END_OBJECT = -1;
+
+    /** Returned by {@link #nextField(byte[][])} for a property the model does not have. */
+    public static final int UNKNOWN_FIELD = -2;
+
+    private final byte[] buffer;
+    private final int end;
+    private final boolean failOnUnknownProperties;
+    private int pos;
+    private boolean afterBegin;
+    private int nameStart;
+    private int nameEnd;
+
+    /**
+     * Creates a reader.
+     *
+     * @param json                    the UTF-8 encoded document
+     * @param failOnUnknownProperties whether properties the model does not have are an error (as in
+     *                                Jackson by default) rather than skipped
+     */
+    public JsonReader(byte[] json, boolean failOnUnknownProperties) {
+        this.buffer = json;
+        this.end = json.length;
+        this.failOnUnknownProperties = failOnUnknownProperties;
+    }
+
+    /**
+     * Consumes a JSON {@code null} if it is the next value.
+     *
+     * @return true if the next value was {@code null}
+     * @throws IOException if the document ends
+     */
+    public boolean readNull() throws IOException {
+        if (_peek() == 'n') {
+            _literal("null");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Starts reading a JSON object.
+     *
+     * @throws IOException if the next value is not an object
+     */
+    public void beginObject() throws IOException {
+        _expect('{');
+        afterBegin = true;
+    }
+
+    /**
+     * Moves to the next property of the current object and reads its name.
+     *
+     * @param encodedNames the names of the model properties, as returned by {@link JsonWriter#encodeName(String)}
+     * @return the index of the property in the given names, {@link #UNKNOWN_FIELD} or {@link #END_OBJECT}
+     * @throws IOException if the document is malformed
+     */
+    public int nextField(byte[][] encodedNames) throws IOException {
+        int c = _peek();
+        if (c == '}') {
+            pos++;
+            afterBegin = false;
+            return END_OBJECT;
+        }
+        if (!afterBegin) {
+            _expect(',');
+            c = _peek();
+        }
+        afterBegin = false;
+        if (c != '"') {
+            throw _error("Expected a property name");
+        }
+        nameStart = pos;
+        _skipString();
+        nameEnd = pos;
+        _expect(':');
+        return _match(encodedNames);
+    }
+
+    /**
+     * Skips the value of a property the model does not have, or fails if unknown properties are
+     * not allowed.
+     *
+     * @throws IOException if unknown properties are not allowed or the value is malformed
+     */
+    public void skipUnknown() throws IOException {
+        if (failOnUnknownProperties) {
+            String name = new String(buffer, nameStart, nameEnd - nameStart, StandardCharsets.UTF_8);
+            throw _error("Unrecognized field " + name);
+        }
+        skipValue();
+    }
+
+    /**
+     * Skips the next value, whatever its type.
+     *
+     * @throws IOException if the value is malformed
+     */
+    public void skipValue() throws IOException {
+        int c = _peek();
+        switch (c) {
+            case '"' -> _skipString();
+            case '{', '[' -> _skipContainer();
+            case 't' -> _literal("true");
+            case 'f' -> _literal("false");
+            case 'n' -> _literal("null");
+            default -> _number();
+        }
+    }
+
+    /**
+     * Reads a string, or {@code null}. Numbers and booleans are read as their text.
+     *
+     * @return the string, or null
+     * @throws IOException if the value is not a string or a scalar
+     */
+    public String readString() throws IOException {
+        int c = _peek();
+        if (c != '"') {
+            return switch (c) {
+                case 'n' -> {
+                    _literal("null");
+                    yield null;
+                }
+                case 't' -> {
+                    _literal("true");
+                    yield "true";
+                }
+                case 'f' -> {
+                    _literal("false");
+                    yield "false";
+                }
+                case '{', '[' -> throw _error("Expected a string");
+                default -> {
+                    int start = pos;
+                    _number();
+                    yield new String(buffer, start, pos - start, StandardCharsets.US_ASCII);
+                }
+            };
+        }
+        int start = ++pos;
+        boolean ascii = true;
+        while (pos < end) {
+            byte b = buffer[pos];
+            if (b == '"') {
+                String value = new String(buffer, start, pos - start, ascii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+                pos++;
+                return value;
+            }
+            if (b == '\\') {
+                return _readEscapedString(start);
+            }
+            ascii &= b >= 0;
+            pos++;
+        }
+        throw _error("Unterminated string");
+    }
+
+    /**
+     * Reads a boolean; {@code null} reads as false.
+     *
+     * @return the boolean
+     * @throws IOException if the value is not a boolean
+     */
+    public boolean readBoolean() throws IOException {
+        Boolean value = readNullableBoolean();
+        return value != null && value;
+    }
+
+    /**
+     * Reads a boolean, or {@code null}.
+     *
+     * @return the boolean, or null
+     * @throws IOException if the value is not a boolean
+     */
+    public Boolean readNullableBoolean() throws IOException {
+        int c = _peek();
+        if (c == '"') {
+            String text = readString();
+            if (text.equals("true") || text.equals("false")) {
+                return Boolean.valueOf(text);
+            }
+            throw _error("Expected a boolean");
+        }
+        return switch (c) {
+            case 't' -> {
+                _literal("true");
+                yield Boolean.TRUE;
+            }
+            case 'f' -> {
+                _literal("false");
+                yield Boolean.FALSE;
+            }
+            case 'n' -> {
+                _literal("null");
+                yield null;
+            }
+            default -> throw _error("Expected a boolean");
+        };
+    }
+
+    /**
+     * Reads an integer; {@code null} reads as 0.
+     *
+     * @return the integer
+     * @throws IOException if the value is not an integer in range
+     */
+    public int readInt() throws IOException {
+        Long value = readNullableLong();
+        return value != null ? _toInt(value) : 0;
+    }
+
+    /**
+     * Reads an integer, or {@code null}.
+     *
+     * @return the integer, or null
+     * @throws IOException if the value is not an integer in range
+     */
+    public Integer readNullableInt() throws IOException {
+        Long value = readNullableLong();
+        return value != null ? _toInt(value) : null;
+    }
+
+    /**
+     * Reads an integer; {@code null} reads as 0.
+     *
+     * @return the integer
+     * @throws IOException if the value is not an integer
+     */
+    public long readLong() throws IOException {
+        Long value = readNullableLong();
+        return value != null ? value : 0L;
+    }
+
+    /**
+     * Reads an integer, or {@code null}.
+     *
+     * @return the integer, or null
+     * @throws IOException if the value is not an integer
+     */
+    public Long readNullableLong() throws IOException {
+        String text = _numberText();
+        if (text == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            try {
+                // Like Jackson, a floating-point number is truncated when an integer is expected.
+                return (long) Double.parseDouble(text);
+            } catch (NumberFormatException notANumber) {
+                throw _error("Expected an integer but found " + text);
+            }
+        }
+    }
+
+    /**
+     * Reads a floating-point number; {@code null} reads as 0.
+     *
+     * @return the number
+     * @throws IOException if the value is not a number
+     */
+    public double readDouble() throws IOException {
+        Double value = readNullableDouble();
+        return value != null ? value : 0.0;
+    }
+
+    /**
+     * Reads a floating-point number, or {@code null}.
+     *
+     * @return the number, or null
+     * @throws IOException if the value is not a number
+     */
+    public Double readNullableDouble() throws IOException {
+        String text = _numberText();
+        if (text == null) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw _error("Expected a number but found " + text);
+        }
+    }
+
+    /**
+     * Reads a floating-point number; {@code null} reads as 0.
+     *
+     * @return the number
+     * @throws IOException if the value is not a number
+     */
+    public float readFloat() throws IOException {
+        Double value = readNullableDouble();
+        return value != null ? value.floatValue() : 0f;
+    }
+
+    /**
+     * Reads a floating-point number, or {@code null}.
+     *
+     * @return the number, or null
+     * @throws IOException if the value is not a number
+     */
+    public Float readNullableFloat() throws IOException {
+        Double value = readNullableDouble();
+        return value != null ? value.floatValue() : null;
+    }
+
+    /**
+     * Reads the constant of an enum from its name, or {@code null}.
+     *
+     * @param <E>  the enum type
+     * @param type the enum class
+     * @return the constant, or null
+     * @throws IOException if the value is not the name of a constant
+     */
+    public <E extends Enum<E>> E readEnum(Class<E> type) throws IOException {
+        String name = readString();
+        if (name == null) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            throw _error("Not one of the values of " + type.getSimpleName() + ": " + name);
+        }
+    }
+
+    /**
+     * Reads the text of a number, unquoting a string holding one, or returns null for {@code null}.
+     */
+    private String _numberText() throws IOException {
+        int c = _peek();
+        if (c == 'n') {
+            _literal("null");
+            return null;
+        }
+        if (c == '"') {
+            String text = readString().trim();
+            return text.isEmpty() ? null : text;
+        }
+        int start = pos;
+        _number();
+        return new String(buffer, start, pos - start, StandardCharsets.US_ASCII);
+    }
+
+    private String _readEscapedString(int start) throws IOException {
+        StringBuilder value = new StringBuilder(new String(buffer, start, pos - start, StandardCharsets.UTF_8));
+        while (pos < end) {
+            byte b = buffer[pos];
+            if (b == '"') {
+                pos++;
+                return value.toString();
+            }
+            if (b != '\\') {
+                int segment = pos;
+                while (pos < end && buffer[pos] != '"' && buffer[pos] != '\\') {
+                    pos++;
+                }
+                value.append(new String(buffer, segment, pos - segment, StandardCharsets.UTF_8));
+                continue;
+            }
+            if (pos + 1 >= end) {
+                break;
+            }
+            byte escaped = buffer[pos + 1];
+            pos += 2;
+            switch (escaped) {
+                case '"', '\\', '/' -> value.append((char) escaped);
+                case 'b' -> value.append('\b');
+                case 'f' -> value.append('\f');
+                case 'n' -> value.append('\n');
+                case 'r' -> value.append('\r');
+                case 't' -> value.append('\t');
+                case 'u' -> {
+                    if (pos + 4 > end) {
+                        throw _error("Truncated unicode escape");
+                    }
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(buffer[pos++], 16);
+                        if (digit < 0) {
+                            throw _error("Invalid unicode escape");
+                        }
+                        code = code << 4 | digit;
+                    }
+                    value.append((char) code);
+                }
+                default -> throw _error("Invalid escape \\" + (char) escaped);
+            }
+        }
+        throw _error("Unterminated string");
+    }
+
+    private int _match(byte[][] encodedNames) {
+        int length = nameEnd - nameStart;
+        for (int i = 0; i < encodedNames.length; i++) {
+            byte[] name = encodedNames[i];
+            if (name.length == length && Arrays.equals(buffer, nameStart, nameEnd, name, 0, length)) {
+                return i;
+            }
+        }
+        // A name spelled with escapes in the document does not match its encoded form byte for byte.
+        for (int i = nameStart; i < nameEnd; i++) {
+            if (buffer[i] == '\\') {
+                return _matchDecoded(encodedNames);
+            }
+        }
+        return UNKNOWN_FIELD;
+    }
+
+    private int _matchDecoded(byte[][] encodedNames) {
+        int resume = pos;
+        try {
+            pos = nameStart;
+            String name = readString();
+            for (int i = 0; i < encodedNames.length; i++) {
+                if (name.equals(new String(encodedNames[i], 1, encodedNames[i].length - 2, StandardCharsets.UTF_8))) {
+                    return i;
+                }
+            }
+            return UNKNOWN_FIELD;
+        } catch (IOException e) {
+            return UNKNOWN_FIELD;
+        } finally {
+            pos = resume;
+        }
+    }
+
+    private void _skipString() throws IOException {
+        pos++; // the opening quote
+        while (pos < end) {
+            byte b = buffer[pos++];
+            if (b == '"') {
+                return;
+            }
+            if (b == '\\') {
+                pos++;
+            }
+        }
+        throw _error("Unterminated string");
+    }
+
+    private void _skipContainer() throws IOException {
+        int nesting = 0;
+        do {
+            int c = _peek();
+            if (c == '"') {
+                _skipString();
+                continue;
+            }
+            if (c == '{' || c == '[') {
+                nesting++;
+            } else if (c == '}' || c == ']') {
+                nesting--;
+            }
+            pos++;
+        } while (nesting > 0);
+    }
+
+    private void _number() throws IOException {
+        int start = pos;
+        while (pos < end) {
+            byte b = buffer[pos];
+            if ((b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E') {
+                pos++;
+            } else {
+                break;
+            }
+        }
+        if (pos == start) {
+            throw _error("Unexpected character '" + (char) buffer[pos] + "'");
+        }
+    }
+
+    private void _literal(String literal) throws IOException {
+        int length = literal.length();
+        if (pos + length > end) {
+            throw _error("Unexpected end of document");
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer[pos + i] != literal.charAt(i)) {
+                throw _error("Expected " + literal);
+            }
+        }
+        pos += length;
+    }
+
+    private void _expect(char expected) throws IOException {
+        if (_peek() != expected) {
+            throw _error("Expected '" + expected + "'");
+        }
+        pos++;
+    }
+
+    /**
+     * Skips whitespace and returns the next character without consuming it.
+     */
+    private int _peek() throws IOException {
+        while (pos < end) {
+            byte b = buffer[pos];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return b;
+            }
+            pos++;
+        }
+        throw _error("Unexpected end of document");
+    }
+
+    private int _toInt(long value) throws IOException {
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw _error("Integer out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    private IOException _error(String message) {
+        return new IOException(message + " at offset " + pos);
+    }
+}
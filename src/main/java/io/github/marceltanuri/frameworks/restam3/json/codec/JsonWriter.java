@@ -0,0 +1,300 @@
+package io.github.marceltanuri.frameworks.restam3.json.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes a JSON document as UTF-8 into a growable buffer, for {@link JsonCodec}s.
+ * <p>
+ * Property names are written from constants the codecs encode once ({@link #encodeName(String)}),
+ * and strings are escaped and encoded in a single pass. The output is the same as Jackson's with the
+ * default settings, including, when indentation is enabled, the layout of Jackson's default pretty
+ * printer ({@code SerializationFeature.INDENT_OUTPUT}).
+ *
+ * @author Marcel Tanuri
+ */
+public final class JsonWriter {
+
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final boolean indent;
+    private byte[] buffer;
+    private int count;
+    private int depth;
+    private boolean firstEntry;
+
+    /**
+     * Creates a writer.
+     *
+     * @param indent whether to indent the output as Jackson's default pretty printer does
+     */
+    public JsonWriter(boolean indent) {
+        this.indent = indent;
+        this.buffer = new byte[512];
+    }
+
+    /**
+     * Encodes a property name once, as a quoted and escaped JSON string, so that codecs can write
+     * it with {@link #name(byte[])} without encoding it again.
+     *
+     * @param name the property name
+     * @return the encoded name
+     */
+    public static byte[] encodeName(String name) {
+        JsonWriter writer = new JsonWriter(false);
+        writer.value(name);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Starts a JSON object.
+     */
+    public void beginObject() {
+        _write('{');
+        depth++;
+        firstEntry = true;
+    }
+
+    /**
+     * Writes the name of the next property of the current object.
+     *
+     * @param encodedName the name, as returned by {@link #encodeName(String)}
+     */
+    public void name(byte[] encodedName) {
+        if (!firstEntry) {
+            _write(',');
+        }
+        firstEntry = false;
+        if (indent) {
+            _newLine();
+            _write(encodedName);
+            _ensure(3);
+            buffer[count++] = ' ';
+            buffer[count++] = ':';
+            buffer[count++] = ' ';
+        } else {
+            _write(encodedName);
+            _write(':');
+        }
+    }
+
+    /**
+     * Ends the current JSON object.
+     */
+    public void endObject() {
+        depth--;
+        if (indent) {
+            if (firstEntry) {
+                _write(' ');
+            } else {
+                _newLine();
+            }
+        }
+        _write('}');
+        firstEntry = false;
+    }
+
+    /**
+     * Writes a JSON {@code null}.
+     */
+    public void nullValue() {
+        _write(NULL);
+    }
+
+    /**
+     * Writes a string, or {@code null}.
+     *
+     * @param value the string, or null
+     */
+    public void value(String value) {
+        if (value == null) {
+            nullValue();
+            return;
+        }
+        int length = value.length();
+        // Worst case: every char is a \\u00XX escape (6 bytes) or 3 UTF-8 bytes, plus the quotes.
+        _ensure(length * 6 + 2);
+        byte[] buf = buffer;
+        int pos = count;
+        buf[pos++] = '"';
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    buf[pos++] = (byte) c;
+                } else {
+                    pos = _escape(buf, pos, c);
+                }
+            } else if (c < 0x800) {
+                buf[pos++] = (byte) (0xC0 | (c >> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buf[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                buf[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buf[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buf[pos++] = '?'; // an unpaired surrogate cannot be encoded, as in String.getBytes
+            } else {
+                buf[pos++] = (byte) (0xE0 | (c >> 12));
+                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        buf[pos++] = '"';
+        count = pos;
+    }
+
+    /**
+     * Writes a boolean.
+     *
+     * @param value the boolean
+     */
+    public void value(boolean value) {
+        _write(value ? TRUE : FALSE);
+    }
+
+    /**
+     * Writes an integer.
+     *
+     * @param value the integer
+     */
+    public void value(int value) {
+        value((long) value);
+    }
+
+    /**
+     * Writes an integer.
+     *
+     * @param value the integer
+     */
+    public void value(long value) {
+        if (value == Long.MIN_VALUE) {
+            _write(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        _ensure(20);
+        if (value < 0) {
+            buffer[count++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        int pos = count + digits;
+        count = pos;
+        do {
+            buffer[--pos] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+    }
+
+    /**
+     * Writes a floating-point number; like Jackson, quotes {@code NaN} and the infinities.
+     *
+     * @param value the number
+     */
+    public void value(double value) {
+        String text = Double.toString(value);
+        if (Double.isFinite(value)) {
+            _write(text.getBytes(StandardCharsets.US_ASCII));
+        } else {
+            value(text);
+        }
+    }
+
+    /**
+     * Writes a floating-point number; like Jackson, quotes {@code NaN} and the infinities.
+     *
+     * @param value the number
+     */
+    public void value(float value) {
+        String text = Float.toString(value);
+        if (Float.isFinite(value)) {
+            _write(text.getBytes(StandardCharsets.US_ASCII));
+        } else {
+            value(text);
+        }
+    }
+
+    /**
+     * Gets the size of the document written so far.
+     *
+     * @return the size in bytes
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Copies the document written so far.
+     *
+     * @return the UTF-8 encoded document
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, count);
+    }
+
+    /**
+     * Writes the document written so far to a stream.
+     *
+     * @param out the stream
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, count);
+    }
+
+    private static int _escape(byte[] buf, int pos, char c) {
+        buf[pos++] = '\\';
+        switch (c) {
+            case '"', '\\' -> buf[pos++] = (byte) c;
+            case '\b' -> buf[pos++] = 'b';
+            case '\t' -> buf[pos++] = 't';
+            case '\n' -> buf[pos++] = 'n';
+            case '\f' -> buf[pos++] = 'f';
+            case '\r' -> buf[pos++] = 'r';
+            default -> {
+                buf[pos++] = 'u';
+                buf[pos++] = '0';
+                buf[pos++] = '0';
+                buf[pos++] = HEX[c >> 4];
+                buf[pos++] = HEX[c & 0xF];
+            }
+        }
+        return pos;
+    }
+
+    private void _newLine() {
+        _write(LINE_SEPARATOR);
+        int spaces = depth * 2;
+        _ensure(spaces);
+        Arrays.fill(buffer, count, count + spaces, (byte) ' ');
+        count += spaces;
+    }
+
+    private void _write(int b) {
+        _ensure(1);
+        buffer[count++] = (byte) b;
+    }
+
+    private void _write(byte[] bytes) {
+        _ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, count, bytes.length);
+        count += bytes.length;
+    }
+
+    private void _ensure(int length) {
+        if (count + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + length));
+        }
+    }
+}
@@ -0,0 +1,489 @@
+package io.github.marceltanuri.frameworks.restam3.json.codec.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Generates a {@code JsonCodec} for each class annotated with {@code @JsonModel}, and the
+ * {@code META-INF/services} entry through which {@code CodecJsonParser} discovers them.
+ * <p>
+ * The generated codec writes each property name from a constant encoded once, reads properties by
+ * matching those constants, and calls the model's getters and setters directly. The processor only
+ * refers to the framework types by name, so that it can be compiled before them (see the
+ * {@code compile-codec-processor} execution in the POM).
+ *
+ * @author Marcel Tanuri
+ */
+@SupportedAnnotationTypes(JsonCodecProcessor.JSON_MODEL)
+public class JsonCodecProcessor extends AbstractProcessor {
+
+    static final String JSON_MODEL = "io.github.marceltanuri.frameworks.restam3.json.codec.JsonModel";
+    private static final String CODEC_PACKAGE = "io.github.marceltanuri.frameworks.restam3.json.codec";
+    private static final String JSON_CODEC = CODEC_PACKAGE + ".JsonCodec";
+    private static final String JSON_PROPERTY = "com.fasterxml.jackson.annotation.JsonProperty";
+    private static final String JSON_IGNORE = "com.fasterxml.jackson.annotation.JsonIgnore";
+
+    private final Set<String> generatedCodecs = new TreeSet<>();
+
+    /** How a property value is written and read. */
+    private enum Kind {
+        STRING, BOOLEAN, INT, LONG, FLOAT, DOUBLE, ENUM, MODEL
+    }
+
+    /** A property of a model, with the Java expressions to access it. */
+    private static final class Property {
+        String name;
+        Element origin;
+        TypeMirror type;
+        Kind kind;
+        boolean nullable;
+        boolean ignored;
+        String getter;
+        String setter;
+        boolean setterIsField;
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement jsonModel = processingEnv.getElementUtils().getTypeElement(JSON_MODEL);
+        if (jsonModel != null) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(jsonModel)) {
+                if (element.getKind() != ElementKind.CLASS) {
+                    _error(element, "@JsonModel only applies to classes");
+                    continue;
+                }
+                _generate((TypeElement) element);
+            }
+        }
+        if (roundEnv.processingOver() && !generatedCodecs.isEmpty()) {
+            _writeServiceFile();
+        }
+        return true;
+    }
+
+    private void _generate(TypeElement model) {
+        if (model.getModifiers().contains(Modifier.ABSTRACT) || model.getModifiers().contains(Modifier.PRIVATE)
+                || (model.getNestingKind() == NestingKind.MEMBER && !model.getModifiers().contains(Modifier.STATIC))) {
+            _error(model, "A @JsonModel class must be concrete, not private, and static if nested");
+            return;
+        }
+        boolean hasConstructor = ElementFilter.constructorsIn(model.getEnclosedElements()).stream()
+                .anyMatch(c -> c.getParameters().isEmpty() && !c.getModifiers().contains(Modifier.PRIVATE));
+        if (!hasConstructor) {
+            _error(model, "A @JsonModel class needs a no-argument constructor");
+            return;
+        }
+        List<Property> properties = _properties(model);
+        if (properties == null) {
+            return;
+        }
+
+        String packageName = processingEnv.getElementUtils().getPackageOf(model).getQualifiedName().toString();
+        String codecName = _codecSimpleName(model);
+        String modelName = model.getQualifiedName().toString();
+        String qualifiedCodecName = packageName.isEmpty() ? codecName : packageName + "." + codecName;
+        try (PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(qualifiedCodecName, model).openWriter())) {
+            _writeCodec(out, packageName, codecName, modelName, properties);
+        } catch (IOException e) {
+            _error(model, "Could not write " + qualifiedCodecName + ": " + e.getMessage());
+            return;
+        }
+        generatedCodecs.add(qualifiedCodecName);
+    }
+
+    /**
+     * Collects the properties of a model, superclass properties first, each in the order its field
+     * is declared (properties without a field come after those with one).
+     *
+     * @return the properties, or null if one of them is not supported (an error was reported)
+     */
+    private List<Property> _properties(TypeElement model) {
+        List<TypeElement> hierarchy = new ArrayList<>();
+        for (TypeElement type = model; type != null && !type.getQualifiedName().contentEquals("java.lang.Object"); ) {
+            hierarchy.add(0, type);
+            TypeMirror superclass = type.getSuperclass();
+            type = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+        }
+
+        Map<String, Property> byJavaName = new LinkedHashMap<>();
+        for (TypeElement type : hierarchy) {
+            for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+                Set<Modifier> modifiers = field.getModifiers();
+                if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+                    continue;
+                }
+                String javaName = field.getSimpleName().toString();
+                Property property = byJavaName.computeIfAbsent(javaName, n -> new Property());
+                property.type = field.asType();
+                property.origin = field;
+                _applyAnnotations(property, field);
+                if (modifiers.contains(Modifier.PUBLIC)) {
+                    property.getter = javaName;
+                    if (!modifiers.contains(Modifier.FINAL)) {
+                        property.setter = javaName;
+                        property.setterIsField = true;
+                    }
+                }
+            }
+        }
+        for (TypeElement type : hierarchy) {
+            for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+                Set<Modifier> modifiers = method.getModifiers();
+                if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC)) {
+                    continue;
+                }
+                String methodName = method.getSimpleName().toString();
+                int parameters = method.getParameters().size();
+                TypeMirror returnType = method.getReturnType();
+                String javaName;
+                boolean getter;
+                if (parameters == 0 && methodName.startsWith("get") && methodName.length() > 3
+                        && returnType.getKind() != TypeKind.VOID && !methodName.equals("getClass")) {
+                    javaName = _propertyName(methodName.substring(3));
+                    getter = true;
+                } else if (parameters == 0 && methodName.startsWith("is") && methodName.length() > 2
+                        && returnType.getKind() == TypeKind.BOOLEAN) {
+                    javaName = _propertyName(methodName.substring(2));
+                    getter = true;
+                } else if (parameters == 1 && methodName.startsWith("set") && methodName.length() > 3) {
+                    javaName = _propertyName(methodName.substring(3));
+                    getter = false;
+                } else {
+                    continue;
+                }
+                Property property = byJavaName.computeIfAbsent(javaName, n -> new Property());
+                _applyAnnotations(property, method);
+                if (getter) {
+                    property.getter = methodName + "()";
+                    property.type = returnType;
+                    property.origin = method;
+                } else {
+                    property.setter = methodName;
+                    property.setterIsField = false;
+                    if (property.type == null) {
+                        property.type = method.getParameters().get(0).asType();
+                        property.origin = method;
+                    }
+                }
+            }
+        }
+
+        List<Property> properties = new ArrayList<>();
+        boolean supported = true;
+        for (Map.Entry<String, Property> entry : byJavaName.entrySet()) {
+            Property property = entry.getValue();
+            if (property.ignored || (property.getter == null && property.setter == null)) {
+                continue;
+            }
+            if (property.name == null) {
+                property.name = entry.getKey();
+            }
+            supported &= _resolveKind(property);
+            properties.add(property);
+        }
+        return supported ? properties : null;
+    }
+
+    private void _applyAnnotations(Property property, Element element) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            String name = ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().toString();
+            if (name.equals(JSON_IGNORE)) {
+                property.ignored = !Boolean.FALSE.equals(_annotationValue(annotation, "value"));
+            } else if (name.equals(JSON_PROPERTY)) {
+                Object value = _annotationValue(annotation, "value");
+                if (value instanceof String renamed && !renamed.isEmpty()) {
+                    property.name = renamed;
+                }
+            }
+        }
+    }
+
+    private static Object _annotationValue(AnnotationMirror annotation, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue().getValue();
+            }
+        }
+        return null;
+    }
+
+    private boolean _resolveKind(Property property) {
+        TypeMirror type = property.type;
+        switch (type.getKind()) {
+            case BOOLEAN -> property.kind = Kind.BOOLEAN;
+            case INT -> property.kind = Kind.INT;
+            case LONG -> property.kind = Kind.LONG;
+            case FLOAT -> property.kind = Kind.FLOAT;
+            case DOUBLE -> property.kind = Kind.DOUBLE;
+            case DECLARED -> {
+                TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+                property.nullable = true;
+                switch (element.getQualifiedName().toString()) {
+                    case "java.lang.String" -> property.kind = Kind.STRING;
+                    case "java.lang.Boolean" -> property.kind = Kind.BOOLEAN;
+                    case "java.lang.Integer" -> property.kind = Kind.INT;
+                    case "java.lang.Long" -> property.kind = Kind.LONG;
+                    case "java.lang.Float" -> property.kind = Kind.FLOAT;
+                    case "java.lang.Double" -> property.kind = Kind.DOUBLE;
+                    default -> {
+                        if (element.getKind() == ElementKind.ENUM) {
+                            property.kind = Kind.ENUM;
+                        } else if (_isJsonModel(element)) {
+                            property.kind = Kind.MODEL;
+                        }
+                    }
+                }
+            }
+            default -> {
+            }
+        }
+        if (property.kind == null) {
+            _error(property.origin, "Property '" + property.name + "' of type " + type
+                    + " is not supported by generated codecs: use a string, a primitive, an enum or a @JsonModel class");
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean _isJsonModel(TypeElement element) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(JSON_MODEL)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void _writeCodec(PrintWriter out, String packageName, String codecName, String modelName,
+                             List<Property> properties) {
+        if (!packageName.isEmpty()) {
+            out.println("package " + packageName + ";");
+            out.println();
+        }
+        out.println("import " + JSON_CODEC + ";");
+        out.println("import " + CODEC_PACKAGE + ".JsonReader;");
+        out.println("import " + CODEC_PACKAGE + ".JsonWriter;");
+        out.println("import java.io.IOException;");
+        out.println("import javax.annotation.processing.Generated;");
+        out.println();
+        out.println("/**");
+        out.println(" * JSON codec of {@link " + modelName + "}, generated from its {@code @JsonModel} annotation. Do not edit.");
+        out.println(" */");
+        out.println("@Generated(\"" + JsonCodecProcessor.class.getName() + "\")");
+        out.println("public final class " + codecName + " implements JsonCodec<" + modelName + "> {");
+        out.println();
+        out.println("    /** The codec, shared by the codecs of the models that contain this one. */");
+        out.println("    public static final " + codecName + " INSTANCE = new " + codecName + "();");
+        out.println();
+        List<Property> readable = new ArrayList<>();
+        for (Property property : properties) {
+            out.println("    private static final byte[] " + _constant(property) + " = JsonWriter.encodeName(\""
+                    + _escapeJava(property.name) + "\");");
+            if (property.setter != null) {
+                readable.add(property);
+            }
+        }
+        out.print("    private static final byte[][] READABLE_NAMES = {");
+        for (int i = 0; i < readable.size(); i++) {
+            out.print((i > 0 ? ", " : "") + _constant(readable.get(i)));
+        }
+        out.println("};");
+        out.println();
+        out.println("    @Override");
+        out.println("    public Class<" + modelName + "> type() {");
+        out.println("        return " + modelName + ".class;");
+        out.println("    }");
+        out.println();
+        out.println("    @Override");
+        out.println("    public void write(" + modelName + " value, JsonWriter out) {");
+        out.println("        out.beginObject();");
+        for (Property property : properties) {
+            if (property.getter != null) {
+                out.println("        out.name(" + _constant(property) + ");");
+                _writeValue(out, property, "value." + property.getter);
+            }
+        }
+        out.println("        out.endObject();");
+        out.println("    }");
+        out.println();
+        out.println("    @Override");
+        out.println("    public " + modelName + " read(JsonReader in) throws IOException {");
+        out.println("        if (in.readNull()) {");
+        out.println("            return null;");
+        out.println("        }");
+        out.println("        " + modelName + " value = new " + modelName + "();");
+        out.println("        in.beginObject();");
+        out.println("        for (int field = in.nextField(READABLE_NAMES); field != JsonReader.END_OBJECT; field = in.nextField(READABLE_NAMES)) {");
+        out.println("            switch (field) {");
+        for (int i = 0; i < readable.size(); i++) {
+            Property property = readable.get(i);
+            String read = _readExpression(property);
+            String assignment = property.setterIsField
+                    ? "value." + property.setter + " = " + read
+                    : "value." + property.setter + "(" + read + ")";
+            out.println("                case " + i + " -> " + assignment + ";");
+        }
+        out.println("                default -> in.skipUnknown();");
+        out.println("            }");
+        out.println("        }");
+        out.println("        return value;");
+        out.println("    }");
+        out.println("}");
+    }
+
+    private void _writeValue(PrintWriter out, Property property, String expression) {
+        switch (property.kind) {
+            case STRING -> out.println("        out.value(" + expression + ");");
+            case ENUM -> {
+                out.println("        {");
+                out.println("            " + _typeName(property) + " v = " + expression + ";");
+                out.println("            out.value(v != null ? v.name() : null);");
+                out.println("        }");
+            }
+            case MODEL -> {
+                TypeElement element = (TypeElement) ((DeclaredType) property.type).asElement();
+                out.println("        {");
+                out.println("            " + _typeName(property) + " v = " + expression + ";");
+                out.println("            if (v != null) {");
+                out.println("                " + _qualifiedCodecName(element) + ".INSTANCE.write(v, out);");
+                out.println("            } else {");
+                out.println("                out.nullValue();");
+                out.println("            }");
+                out.println("        }");
+            }
+            default -> {
+                if (property.nullable) {
+                    out.println("        {");
+                    out.println("            " + _typeName(property) + " v = " + expression + ";");
+                    out.println("            if (v != null) {");
+                    out.println("                out.value(v." + property.kind.name().toLowerCase(Locale.ROOT) + "Value());");
+                    out.println("            } else {");
+                    out.println("                out.nullValue();");
+                    out.println("            }");
+                    out.println("        }");
+                } else {
+                    out.println("        out.value(" + expression + ");");
+                }
+            }
+        }
+    }
+
+    private String _readExpression(Property property) {
+        return switch (property.kind) {
+            case STRING -> "in.readString()";
+            case ENUM -> "in.readEnum(" + _typeName(property) + ".class)";
+            case MODEL -> _qualifiedCodecName((TypeElement) ((DeclaredType) property.type).asElement()) + ".INSTANCE.read(in)";
+            default -> {
+                String kind = property.kind.name().charAt(0) + property.kind.name().substring(1).toLowerCase(Locale.ROOT);
+                yield property.nullable ? "in.readNullable" + kind + "()" : "in.read" + kind + "()";
+            }
+        };
+    }
+
+    /**
+     * Gets the qualified name of the class of a property, without the type annotations
+     * {@link TypeMirror#toString()} would include.
+     */
+    private static String _typeName(Property property) {
+        return ((TypeElement) ((DeclaredType) property.type).asElement()).getQualifiedName().toString();
+    }
+
+    private void _writeServiceFile() {
+        try {
+            FileObject file = processingEnv.getFiler()
+                    .createResource(StandardLocation.CLASS_OUTPUT, "", "META-INF/services/" + JSON_CODEC);
+            try (Writer out = file.openWriter()) {
+                for (String codec : generatedCodecs) {
+                    out.write(codec);
+                    out.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Could not write the JsonCodec service file: " + e.getMessage());
+        }
+    }
+
+    private String _qualifiedCodecName(TypeElement model) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(model).getQualifiedName().toString();
+        return packageName.isEmpty() ? _codecSimpleName(model) : packageName + "." + _codecSimpleName(model);
+    }
+
+    /**
+     * Names the codec of a model after the model and the classes enclosing it (e.g., {@code Outer_InnerJsonCodec}).
+     */
+    private static String _codecSimpleName(TypeElement model) {
+        StringBuilder name = new StringBuilder(model.getSimpleName());
+        for (Element enclosing = model.getEnclosingElement(); enclosing instanceof TypeElement type;
+             enclosing = enclosing.getEnclosingElement()) {
+            name.insert(0, type.getSimpleName() + "_");
+        }
+        return name.append("JsonCodec").toString();
+    }
+
+    /**
+     * Derives a property name from the part of an accessor name after its prefix, as Jackson does
+     * by default: the leading upper-case letters are lower-cased ({@code getURL} is {@code url}).
+     */
+    private static String _propertyName(String suffix) {
+        StringBuilder name = new StringBuilder(suffix);
+        for (int i = 0; i < name.length() && Character.isUpperCase(name.charAt(i)); i++) {
+            name.setCharAt(i, Character.toLowerCase(name.charAt(i)));
+        }
+        return name.toString();
+    }
+
+    private static String _constant(Property property) {
+        StringBuilder constant = new StringBuilder("NAME_");
+        String name = property.name;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c) && i > 0 && Character.isLowerCase(name.charAt(i - 1))) {
+                constant.append('_');
+            }
+            constant.append(Character.isJavaIdentifierPart(c) ? Character.toUpperCase(c) : '_');
+        }
+        return constant.toString();
+    }
+
+    private static String _escapeJava(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private void _error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
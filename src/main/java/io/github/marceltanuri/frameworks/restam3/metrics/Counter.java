@@ -0,0 +1,39 @@
+package io.github.marceltanuri.frameworks.restam3.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count, striped over a {@link LongAdder} so that threads updating it
+ * at the same time do not contend on a single memory location.
+ *
+ * @author Marcel Tanuri
+ */
+public final class Counter {
+
+    private final LongAdder value = new LongAdder();
+
+    /**
+     * Adds one to the count.
+     */
+    public void increment() {
+        value.increment();
+    }
+
+    /**
+     * Adds to the count.
+     *
+     * @param amount the non-negative amount to add
+     */
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    /**
+     * Gets the current count.
+     *
+     * @return the sum of all increments so far
+     */
+    public long get() {
+        return value.sum();
+    }
+}
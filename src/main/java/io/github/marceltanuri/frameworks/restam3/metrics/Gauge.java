@@ -0,0 +1,38 @@
+package io.github.marceltanuri.frameworks.restam3.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A value that goes up and down, such as the number of open connections. Like {@link Counter},
+ * it is striped over a {@link LongAdder}; a read taken while updates are in progress may be off
+ * by those updates, which is acceptable for monitoring.
+ *
+ * @author Marcel Tanuri
+ */
+public final class Gauge {
+
+    private final LongAdder value = new LongAdder();
+
+    /**
+     * Adds one to the value.
+     */
+    public void increment() {
+        value.increment();
+    }
+
+    /**
+     * Subtracts one from the value.
+     */
+    public void decrement() {
+        value.decrement();
+    }
+
+    /**
+     * Gets the current value.
+     *
+     * @return the value
+     */
+    public long get() {
+        return value.sum();
+    }
+}
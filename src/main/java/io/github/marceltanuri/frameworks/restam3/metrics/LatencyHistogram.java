@@ -0,0 +1,134 @@
+package io.github.marceltanuri.frameworks.restam3.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram with log-linear buckets, in the spirit of HdrHistogram.
+ * <p>
+ * Latencies are recorded in microseconds. Values below 64 get a bucket each; above that, every
+ * power of two is split into 32 equal buckets, so any recorded value is known within about 3% of
+ * its true value while the whole range, from 1 microsecond to more than an hour, fits in 896
+ * buckets. Longer latencies are counted in the last bucket.
+ * <p>
+ * Recording is a couple of shifts and one atomic increment, with no allocation. To keep threads on
+ * different cores from contending on the buckets of a popular latency, the bucket array is
+ * replicated into a few stripes picked by thread id; reads sum the stripes.
+ *
+ * @author Marcel Tanuri
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final long MAX_MICROS = (1L << 32) - 1;
+
+    /** The number of buckets of one stripe. */
+    static final int BUCKET_COUNT = _index(MAX_MICROS) + 1;
+
+    private static final int STRIPES =
+            Math.min(4, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT * STRIPES);
+    private final LongAdder sumNanos = new LongAdder();
+
+    /**
+     * Records one latency.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = Math.min(Math.max(nanos, 0) / 1000, MAX_MICROS);
+        int stripe = (int) Thread.currentThread().threadId() & (STRIPES - 1);
+        buckets.getAndIncrement(stripe * BUCKET_COUNT + _index(micros));
+        sumNanos.add(nanos);
+    }
+
+    /**
+     * Gets the number of recorded latencies.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Gets the sum of the recorded latencies.
+     *
+     * @return the sum in nanoseconds
+     */
+    public long getSumNanos() {
+        return sumNanos.sum();
+    }
+
+    /**
+     * Estimates a percentile of the recorded latencies.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the highest value of the bucket holding the percentile, in nanoseconds, or 0 if
+     * nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] counts = snapshot();
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(percentile, 100) / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBoundMicros(i) * 1000;
+            }
+        }
+        return upperBoundMicros(counts.length - 1) * 1000;
+    }
+
+    /**
+     * Copies the bucket counts, summed over the stripes.
+     *
+     * @return one count per bucket
+     */
+    long[] snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < buckets.length(); i++) {
+            counts[i % BUCKET_COUNT] += buckets.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the highest value counted in a bucket.
+     *
+     * @param index the bucket index
+     * @return the inclusive upper bound of the bucket, in microseconds
+     */
+    static long upperBoundMicros(int index) {
+        return index == BUCKET_COUNT - 1 ? MAX_MICROS : _lowerBound(index + 1) - 1;
+    }
+
+    private static int _index(long micros) {
+        if (micros < 2 * SUB_BUCKET_COUNT) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (micros >>> shift);
+    }
+
+    private static long _lowerBound(int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        return (long) ((index & (SUB_BUCKET_COUNT - 1)) + SUB_BUCKET_COUNT) << shift;
+    }
+}
@@ -0,0 +1,126 @@
+package io.github.marceltanuri.frameworks.restam3.metrics;
+
+import io.github.marceltanuri.frameworks.restam3.controller.RestController;
+import io.github.marceltanuri.frameworks.restam3.http.HttpMethod;
+import io.github.marceltanuri.frameworks.restam3.http.HttpRequest;
+import io.github.marceltanuri.frameworks.restam3.http.HttpResponse;
+import io.github.marceltanuri.frameworks.restam3.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Serves {@link ServerMetrics} in the Prometheus text exposition format, for scraping by
+ * Prometheus or any compatible agent. Registered with
+ * {@link io.github.marceltanuri.frameworks.restam3.Router#addMetricsRoute(String)}.
+ * <p>
+ * Latencies are exported as Prometheus histograms with a fixed set of {@code le} boundaries,
+ * computed from the finer buckets of {@link LatencyHistogram}; a boundary falling inside one of
+ * those buckets counts it only if the whole bucket is below the boundary.
+ *
+ * @author Marcel Tanuri
+ */
+public class MetricsController extends RestController {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /** The {@code le} boundaries of the exported latency histograms, in seconds. */
+    private static final String[] BOUNDARIES_SECONDS = {"0.0001", "0.00025", "0.0005", "0.001", "0.0025",
+            "0.005", "0.01", "0.025", "0.05", "0.1", "0.25", "0.5", "1", "2.5", "5", "10"};
+
+    private static final HttpMethod[] METHODS = HttpMethod.values();
+
+    private final ServerMetrics metrics;
+
+    /**
+     * Creates a controller exporting the given metrics.
+     *
+     * @param metrics the metrics to export
+     */
+    public MetricsController(ServerMetrics metrics) {
+        super(null); // the exposition format is plain text, no JSON involved
+        this.metrics = metrics;
+    }
+
+    @Override
+    public HttpResponse handleGet(HttpRequest request) {
+        return new HttpResponse(render().getBytes(StandardCharsets.UTF_8), HttpStatus.OK,
+                Map.of("Content-Type", CONTENT_TYPE));
+    }
+
+    /**
+     * Renders all metrics in the Prometheus text exposition format.
+     *
+     * @return the exposition text
+     */
+    public String render() {
+        StringBuilder out = new StringBuilder(4096);
+
+        _header(out, "restam3_http_request_duration_seconds", "histogram",
+                "Time from receiving a request head until its controller returns, by route and method.");
+        for (RouteMetrics route : metrics.getRoutes()) {
+            _histograms(out, route);
+        }
+        _histograms(out, metrics.getUnmatchedRoute());
+
+        _header(out, "restam3_http_responses_total", "counter", "Responses sent, by status class.");
+        for (int statusClass = 1; statusClass <= 5; statusClass++) {
+            out.append("restam3_http_responses_total{status_class=\"").append(statusClass).append("xx\"} ")
+                    .append(metrics.getResponses(statusClass)).append('\n');
+        }
+
+        _gauge(out, "restam3_http_requests_in_flight", "Requests being handled by a controller.",
+                metrics.getInFlightRequests());
+        _gauge(out, "restam3_open_connections", "Open client connections.",
+                metrics.getOpenConnections().get());
+        _header(out, "restam3_received_bytes_total", "counter", "Bytes read from clients.");
+        out.append("restam3_received_bytes_total ").append(metrics.getBytesReceived().get()).append('\n');
+        _header(out, "restam3_sent_bytes_total", "counter", "Bytes written to clients.");
+        out.append("restam3_sent_bytes_total ").append(metrics.getBytesSent().get()).append('\n');
+        return out.toString();
+    }
+
+    private static void _histograms(StringBuilder out, RouteMetrics route) {
+        for (HttpMethod method : METHODS) {
+            LatencyHistogram latency = route.getLatency(method);
+            if (latency == null) {
+                continue;
+            }
+            String labels = "route=\"" + _escape(route.getRoute()) + "\",method=\"" + method.name() + "\"";
+            long[] counts = latency.snapshot();
+            long cumulative = 0;
+            int bucket = 0;
+            for (String boundary : BOUNDARIES_SECONDS) {
+                long boundaryMicros = Math.round(Double.parseDouble(boundary) * 1_000_000);
+                while (bucket < counts.length && LatencyHistogram.upperBoundMicros(bucket) <= boundaryMicros) {
+                    cumulative += counts[bucket++];
+                }
+                out.append("restam3_http_request_duration_seconds_bucket{").append(labels)
+                        .append(",le=\"").append(boundary).append("\"} ").append(cumulative).append('\n');
+            }
+            while (bucket < counts.length) {
+                cumulative += counts[bucket++];
+            }
+            out.append("restam3_http_request_duration_seconds_bucket{").append(labels)
+                    .append(",le=\"+Inf\"} ").append(cumulative).append('\n');
+            out.append("restam3_http_request_duration_seconds_sum{").append(labels).append("} ")
+                    .append(latency.getSumNanos() / 1e9).append('\n');
+            out.append("restam3_http_request_duration_seconds_count{").append(labels).append("} ")
+                    .append(cumulative).append('\n');
+        }
+    }
+
+    private static void _gauge(StringBuilder out, String name, String help, long value) {
+        _header(out, name, "gauge", help);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void _header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String _escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,82 @@
+package io.github.marceltanuri.frameworks.restam3.metrics;
+
+import io.github.marceltanuri.frameworks.restam3.http.HttpMethod;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The latency histograms of one route, one per HTTP method. The count of each histogram is the
+ * number of requests served with that method.
+ * <p>
+ * A histogram is created the first time its method is used on the route, so routes only pay for
+ * the methods they actually serve.
+ *
+ * @author Marcel Tanuri
+ */
+public final class RouteMetrics {
+
+    private static final HttpMethod[] METHODS = HttpMethod.values();
+
+    private final String route;
+    private final AtomicReferenceArray<LatencyHistogram> latencies = new AtomicReferenceArray<>(METHODS.length);
+
+    /**
+     * Creates the metrics of a route.
+     *
+     * @param route the route pattern, used as the route label when the metrics are exported
+     */
+    public RouteMetrics(String route) {
+        this.route = route;
+    }
+
+    /**
+     * Records the latency of a request served by the route.
+     *
+     * @param method the request method
+     * @param nanos  the time spent handling the request, in nanoseconds
+     */
+    public void record(HttpMethod method, long nanos) {
+        int slot = method.ordinal();
+        LatencyHistogram latency = latencies.get(slot);
+        if (latency == null) {
+            latencies.compareAndSet(slot, null, new LatencyHistogram());
+            latency = latencies.get(slot);
+        }
+        latency.record(nanos);
+    }
+
+    /**
+     * Gets the route pattern.
+     *
+     * @return the route pattern
+     */
+    public String getRoute() {
+        return route;
+    }
+
+    /**
+     * Gets the number of requests served by the route, all methods together.
+     *
+     * @return the request count
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < latencies.length(); i++) {
+            LatencyHistogram latency = latencies.get(i);
+            if (latency != null) {
+                count += latency.getCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the latency histogram of a method.
+     *
+     * @param method the request method
+     * @return the histogram, or null if no request with that method was served yet
+     */
+    public LatencyHistogram getLatency(HttpMethod method) {
+        return latencies.get(method.ordinal());
+    }
+}
@@ -0,0 +1,140 @@
+package io.github.marceltanuri.frameworks.restam3.metrics;
+
+import io.github.marceltanuri.frameworks.restam3.http.HttpStatus;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The metrics of a server: per-route latency histograms, responses by status class, requests in
+ * flight, open connections and bytes transferred.
+ * <p>
+ * Everything is updated on the request path without locks or allocation: counters and gauges are
+ * striped {@link java.util.concurrent.atomic.LongAdder}s and histograms are arrays of atomic
+ * counts. The {@link io.github.marceltanuri.frameworks.restam3.Router Router} owns one instance,
+ * which the transports update and {@link MetricsController} exports.
+ *
+ * @author Marcel Tanuri
+ */
+public final class ServerMetrics {
+
+    /** The route label of requests that matched no route. */
+    public static final String UNMATCHED_ROUTE = "unmatched";
+
+    private final List<RouteMetrics> routes = new CopyOnWriteArrayList<>();
+    private final RouteMetrics unmatched = new RouteMetrics(UNMATCHED_ROUTE);
+    private final Counter[] responsesByStatusClass = new Counter[5];
+    private final Counter startedRequests = new Counter();
+    private final Gauge openConnections = new Gauge();
+    private final Counter bytesReceived = new Counter();
+    private final Counter bytesSent = new Counter();
+
+    /**
+     * Creates an empty set of metrics.
+     */
+    public ServerMetrics() {
+        for (int i = 0; i < responsesByStatusClass.length; i++) {
+            responsesByStatusClass[i] = new Counter();
+        }
+    }
+
+    /**
+     * Creates the metrics of a newly registered route.
+     *
+     * @param route the route pattern
+     * @return the metrics of the route, included in every export from now on
+     */
+    public RouteMetrics register(String route) {
+        RouteMetrics metrics = new RouteMetrics(route);
+        routes.add(metrics);
+        return metrics;
+    }
+
+    /**
+     * Counts a request handed to a controller. Its completion is counted when its latency is
+     * recorded in a {@link RouteMetrics}, so no second update is needed to track requests in flight.
+     */
+    public void recordRequestStarted() {
+        startedRequests.increment();
+    }
+
+    /**
+     * Counts a response sent to a client.
+     *
+     * @param status the status of the response
+     */
+    public void recordResponse(HttpStatus status) {
+        responsesByStatusClass[status.getStatusClass() - 1].increment();
+    }
+
+    /**
+     * Gets the metrics of every registered route, in registration order.
+     *
+     * @return an unmodifiable view of the route metrics
+     */
+    public List<RouteMetrics> getRoutes() {
+        return Collections.unmodifiableList(routes);
+    }
+
+    /**
+     * Gets the metrics of the requests that matched no route.
+     *
+     * @return the metrics of unmatched requests
+     */
+    public RouteMetrics getUnmatchedRoute() {
+        return unmatched;
+    }
+
+    /**
+     * Gets the number of responses sent with a status of the given class.
+     *
+     * @param statusClass the status class, from 1 (1xx) to 5 (5xx)
+     * @return the response count
+     */
+    public long getResponses(int statusClass) {
+        return responsesByStatusClass[statusClass - 1].get();
+    }
+
+    /**
+     * Gets the number of requests being handled by a controller, i.e. started but not recorded yet.
+     *
+     * @return the number of requests in flight
+     */
+    public long getInFlightRequests() {
+        long completed = 0;
+        for (RouteMetrics route : routes) {
+            completed += route.getCount();
+        }
+        completed += unmatched.getCount();
+        // Read after the completions, so that a request finishing meanwhile is not counted twice.
+        return Math.max(0, startedRequests.get() - completed);
+    }
+
+    /**
+     * Gets the gauge of open client connections.
+     *
+     * @return the open connections gauge
+     */
+    public Gauge getOpenConnections() {
+        return openConnections;
+    }
+
+    /**
+     * Gets the counter of bytes read from clients.
+     *
+     * @return the bytes received counter
+     */
+    public Counter getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Gets the counter of bytes written to clients.
+     *
+     * @return the bytes sent counter
+     */
+    public Counter getBytesSent() {
+        return bytesSent;
+    }
+}
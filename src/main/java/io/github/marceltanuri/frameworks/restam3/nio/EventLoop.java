@@ -0,0 +1,505 @@
+package io.github.marceltanuri.frameworks.restam3.nio;
+
+import io.github.marceltanuri.frameworks.restam3.AdmissionController;
+import io.github.marceltanuri.frameworks.restam3.Router;
+import io.github.marceltanuri.frameworks.restam3.http.ConnectionLimits;
+import io.github.marceltanuri.frameworks.restam3.http.HttpRequest;
+import io.github.marceltanuri.frameworks.restam3.http.HttpRequestParser;
+import io.github.marceltanuri.frameworks.restam3.http.HttpResponse;
+import io.github.marceltanuri.frameworks.restam3.http.HttpResponseWriter;
+import io.github.marceltanuri.frameworks.restam3.http.HttpStatus;
+import io.github.marceltanuri.frameworks.restam3.http.HttpStatusException;
+import io.github.marceltanuri.frameworks.restam3.http.StreamingHttpResponse;
+import io.github.marceltanuri.frameworks.restam3.metrics.ServerMetrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single-threaded event loop multiplexing many non-blocking connections on one {@link Selector}.
+ * <p>
+ * Reads go into one buffer shared by every connection of the loop; only the bytes of a request
+ * that is still incomplete are copied aside. Complete requests are handed to the {@link Router} on
+ * worker threads, so that slow controllers, admission queues and large response bodies never stall
+ * the other connections of the loop. Each worker adds the bytes of its response to a
+ * {@link PendingResponse} as it produces them; the loop sends the responses of a connection in the
+ * order their requests arrived, those already produced together with a single gathering write, and
+ * streamed bodies a chunk at a time as the client reads them. A connection stops being read while
+ * {@value #MAX_PIPELINED_REQUESTS} of its requests are in progress.
+ * <p>
+ * A periodic sweep enforces the timeouts of {@link ConnectionLimits}: a partial request must
+ * complete each phase (request line, headers, body) before that phase's deadline, however slowly
+ * its bytes keep trickling in, queued responses must make progress within the write timeout, and
+ * connections with nothing in progress are closed after the idle timeout.
+ * <p>
+ * Once asked to drain, the loop answers further requests with {@code Connection: close}, closes
+ * connections as soon as they are idle and ends when none is left.
+ *
+ * @author Marcel Tanuri
+ */
+final class EventLoop implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventLoop.class);
+
+    static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final long MIN_SWEEP_INTERVAL_MILLIS = 10;
+    private static final long MAX_SWEEP_INTERVAL_MILLIS = 1000;
+    static final int MAX_PIPELINED_REQUESTS = 16;
+
+    private final Router router;
+    private final int maxRequestsPerConnection;
+    private final ConnectionLimits limits;
+    private final long sweepIntervalMillis;
+    private final AdmissionController admission;
+    private final ServerMetrics metrics;
+    private final Executor workers;
+    private final Selector selector;
+    private final Queue<SocketChannel> registrations = new ConcurrentLinkedQueue<>();
+    private final Queue<NioConnection> ready = new ConcurrentLinkedQueue<>();
+    private final List<NioConnection> connections = new ArrayList<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private final HttpResponseWriter responseWriter = new HttpResponseWriter();
+    private final List<ByteBuffer> outgoing = new ArrayList<>();
+    private volatile boolean draining;
+
+    EventLoop(Router router, int maxRequestsPerConnection, ConnectionLimits limits, AdmissionController admission,
+              Executor workers) throws IOException {
+        this.router = router;
+        this.maxRequestsPerConnection = maxRequestsPerConnection;
+        this.limits = limits;
+        this.sweepIntervalMillis = _sweepInterval(limits);
+        this.admission = admission;
+        this.metrics = router.getMetrics();
+        this.workers = workers;
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Asks the loop to close its connections as they become idle and to end once all are closed.
+     * Safe to call from any thread.
+     */
+    void drain() {
+        draining = true;
+        selector.wakeup();
+    }
+
+    /**
+     * Hands an accepted connection over to this loop. Safe to call from any thread.
+     */
+    void register(SocketChannel channel) {
+        registrations.add(channel);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        long nextSweep = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sweepIntervalMillis);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                selector.select(sweepIntervalMillis);
+                _registerPending();
+                _sendReady();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    NioConnection connection = (NioConnection) key.attachment();
+                    try {
+                        if (key.isValid() && key.isWritable()) {
+                            _onWritable(connection);
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            _onReadable(connection);
+                        }
+                    } catch (IOException e) {
+                        LOGGER.debug("Closing connection after I/O error", e);
+                        _close(connection);
+                    }
+                }
+
+                long now = System.nanoTime();
+                if (now - nextSweep >= 0) {
+                    _closeExpiredConnections(now);
+                    nextSweep = now + TimeUnit.MILLISECONDS.toNanos(sweepIntervalMillis);
+                }
+                if (draining && _closeDrainedConnections()) {
+                    break;
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            LOGGER.error("Event loop stopped", e);
+        } finally {
+            // Reached when drained, or when interrupted because the grace period is over.
+            connections.forEach(NioConnection::close);
+            connections.clear();
+            try {
+                selector.close();
+            } catch (IOException e) {
+                LOGGER.debug("Error closing selector", e);
+            }
+        }
+    }
+
+    private void _registerPending() throws IOException {
+        SocketChannel channel;
+        while ((channel = registrations.poll()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(java.net.StandardSocketOptions.TCP_NODELAY, true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            NioConnection connection = new NioConnection(channel, key, metrics);
+            key.attach(connection);
+            connections.add(connection);
+        }
+    }
+
+    private void _onReadable(NioConnection connection) throws IOException {
+        readBuffer.clear();
+        int read = connection.channel.read(readBuffer);
+        if (read < 0) {
+            _close(connection);
+            return;
+        }
+        if (read == 0) {
+            return;
+        }
+        connection.lastActivityNanos = System.nanoTime();
+        metrics.getBytesReceived().add(read);
+
+        if (connection.pendingLength == 0) {
+            _parse(connection, readBuffer.array(), read);
+        } else {
+            connection.append(readBuffer.array(), 0, read);
+            _parse(connection, connection.pending, connection.pendingLength);
+        }
+        _send(connection);
+    }
+
+    /**
+     * Hands the complete requests found in the received bytes to the workers, and keeps the rest
+     * for the next read.
+     */
+    private void _parse(NioConnection connection, byte[] data, int end) {
+        int position = 0;
+        connection.parsePaused = false;
+        while (position < end && !connection.closeAfterFlush) {
+            if (connection.responses.size() >= MAX_PIPELINED_REQUESTS) {
+                connection.parsePaused = true;
+                break;
+            }
+            int length;
+            try {
+                length = HttpFraming.messageLength(data, position, end, limits);
+            } catch (HttpStatusException e) {
+                _reply(connection, router.error(e.getStatus(), e));
+                connection.closeAfterFlush = true;
+                break;
+            } catch (IOException e) {
+                _reply(connection, router.badRequest(e));
+                connection.closeAfterFlush = true;
+                break;
+            }
+            if (length < 0) {
+                if (HttpFraming.expectsContinue(data, position, end)) {
+                    connection.responses.add(PendingResponse.completed(HttpResponseWriter.encodeContinue()));
+                }
+                break;
+            }
+            _handle(connection, data, position, length);
+            position += length;
+        }
+        connection.retain(data, position, connection.closeAfterFlush ? position : end);
+        _trackPhase(connection);
+    }
+
+    /**
+     * Starts the deadline of the phase the partial request just entered. The deadline is not
+     * pushed back while more bytes of the same phase arrive, so trickling a byte at a time does
+     * not keep a connection open. No deadline runs while earlier requests are in progress, since
+     * the client may be waiting for their responses.
+     */
+    private void _trackPhase(NioConnection connection) {
+        if (connection.pendingLength == 0 || !connection.responses.isEmpty()) {
+            connection.phase = -1;
+            return;
+        }
+        int phase = HttpFraming.phase(connection.pending, 0, connection.pendingLength);
+        if (phase != connection.phase) {
+            Duration timeout = switch (phase) {
+                case HttpFraming.PHASE_REQUEST_LINE -> limits.requestLineTimeout();
+                case HttpFraming.PHASE_HEADERS -> limits.headersTimeout();
+                default -> limits.bodyTimeout();
+            };
+            connection.phase = phase;
+            connection.phaseDeadlineNanos = connection.lastActivityNanos + timeout.toNanos();
+        }
+    }
+
+    private void _handle(NioConnection connection, byte[] data, int offset, int length) {
+        HttpRequest request;
+        try {
+            // The request references the bytes it is parsed from, which later reads will overwrite.
+            request = HttpRequestParser.parse(Arrays.copyOfRange(data, offset, offset + length), 0, length, limits);
+        } catch (HttpStatusException e) {
+            _reply(connection, router.error(e.getStatus(), e));
+            connection.closeAfterFlush = true;
+            return;
+        } catch (IOException | IllegalArgumentException e) {
+            _reply(connection, router.badRequest(e));
+            connection.closeAfterFlush = true;
+            return;
+        }
+        request.setReceivedNanos(connection.lastActivityNanos);
+        connection.served++;
+        boolean keepAlive = connection.served < maxRequestsPerConnection && request.isKeepAlive() && !draining;
+        connection.closeAfterFlush = !keepAlive;
+        PendingResponse response = new PendingResponse(() -> _schedule(connection));
+        connection.responses.add(response);
+        workers.execute(() -> _serve(request, response, keepAlive));
+    }
+
+    /**
+     * Answers a request on the loop itself, after the responses to the requests before it.
+     */
+    private void _reply(NioConnection connection, HttpResponse response) {
+        metrics.recordResponse(response.getStatus());
+        connection.responses.add(PendingResponse.completed(responseWriter.encode(response, false)));
+    }
+
+    /**
+     * Runs on a worker thread: waits for admission, dispatches the request and produces the response.
+     */
+    private void _serve(HttpRequest request, PendingResponse pending, boolean keepAlive) {
+        if (admission != null && !admission.acquire()) {
+            _produce(request, admission.rejection(), pending, false);
+            return;
+        }
+        try {
+            _produce(request, router.dispatch(request), pending, keepAlive);
+        } catch (RuntimeException e) {
+            LOGGER.error("Error handling client request", e);
+            pending.complete(true);
+        } finally {
+            if (admission != null) {
+                admission.release();
+            }
+        }
+    }
+
+    private void _produce(HttpRequest request, HttpResponse response, PendingResponse pending, boolean keepAlive) {
+        try {
+            try {
+                keepAlive = _write(request, response, pending, keepAlive);
+            } catch (IllegalArgumentException e) {
+                // A header the writer refuses to send (such as a value with a line break); nothing was written yet.
+                response = router.error(HttpStatus.INTERNAL_SERVER_ERROR, e);
+                keepAlive = _write(request, response, pending, false);
+            }
+            metrics.recordResponse(response.getStatus());
+        } catch (IOException e) {
+            // Once the head is sent, the client can only tell a failed response by the connection closing.
+            LOGGER.debug("Aborting a response that could not be produced", e);
+            keepAlive = false;
+        }
+        pending.complete(!keepAlive);
+    }
+
+    private static boolean _write(HttpRequest request, HttpResponse response, PendingResponse pending, boolean keepAlive)
+            throws IOException {
+        if (response instanceof StreamingHttpResponse) {
+            OutputStream out = pending.output();
+            keepAlive = new HttpResponseWriter(out).write(response, request, keepAlive);
+            out.flush();
+            return keepAlive;
+        }
+        for (ByteBuffer buffer : new HttpResponseWriter().encode(response, keepAlive)) {
+            if (buffer.hasRemaining()) {
+                pending.add(buffer);
+            }
+        }
+        return keepAlive;
+    }
+
+    /**
+     * Called by the workers when a response of the connection has new bytes or is complete.
+     */
+    private void _schedule(NioConnection connection) {
+        if (connection.scheduled.compareAndSet(false, true)) {
+            ready.add(connection);
+            selector.wakeup();
+        }
+    }
+
+    private void _sendReady() {
+        NioConnection connection;
+        while ((connection = ready.poll()) != null) {
+            connection.scheduled.set(false);
+            if (!connection.key.isValid()) {
+                continue;
+            }
+            try {
+                _send(connection);
+            } catch (IOException e) {
+                LOGGER.debug("Closing connection after I/O error", e);
+                _close(connection);
+            }
+        }
+    }
+
+    /**
+     * Sends what the responses at the head of the connection's pipeline have produced, and goes on
+     * parsing the requests left aside once fewer are in progress.
+     */
+    private void _send(NioConnection connection) throws IOException {
+        while (true) {
+            boolean drained = !connection.hasQueuedWrites();
+            if (drained) {
+                _collect(connection);
+                if (!outgoing.isEmpty()) {
+                    connection.lastActivityNanos = System.nanoTime();
+                    drained = connection.write(outgoing.toArray(new ByteBuffer[0]));
+                    outgoing.clear();
+                }
+                // Once the last response is sent, a partial request left behind gets its deadline.
+                _trackPhase(connection);
+            }
+            if (drained && connection.parsePaused && connection.responses.size() < MAX_PIPELINED_REQUESTS) {
+                _parse(connection, connection.pending, connection.pendingLength);
+                continue;
+            }
+            _afterWrite(connection, drained);
+            return;
+        }
+    }
+
+    /**
+     * Gathers the bytes produced by the responses at the head of the pipeline, up to the first one
+     * still in progress.
+     */
+    private void _collect(NioConnection connection) {
+        PendingResponse response;
+        while ((response = connection.responses.peek()) != null && response.takeInto(outgoing)) {
+            connection.responses.poll();
+            if (response.closesConnection()) {
+                connection.closeAfterFlush = true;
+                connection.abortResponses(); // the requests after it are not answered
+                break;
+            }
+        }
+    }
+
+    private void _onWritable(NioConnection connection) throws IOException {
+        connection.lastActivityNanos = System.nanoTime();
+        if (connection.flushQueue()) {
+            _send(connection);
+        } else {
+            _afterWrite(connection, false);
+        }
+    }
+
+    private void _afterWrite(NioConnection connection, boolean drained) {
+        if (!drained) {
+            // Stop reading until the client catches up with the responses already produced.
+            connection.key.interestOps(SelectionKey.OP_WRITE);
+        } else if (connection.closeAfterFlush && connection.responses.isEmpty()) {
+            _close(connection);
+        } else if (connection.closeAfterFlush || connection.responses.size() >= MAX_PIPELINED_REQUESTS) {
+            // Wait for the workers, without reading further requests.
+            connection.key.interestOps(0);
+        } else {
+            connection.key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private void _closeExpiredConnections(long now) {
+        long writeTimeoutNanos = limits.writeTimeout().toNanos();
+        long idleTimeoutNanos = limits.idleTimeout().toNanos();
+        Iterator<NioConnection> iterator = connections.iterator();
+        while (iterator.hasNext()) {
+            NioConnection connection = iterator.next();
+            if (!connection.key.isValid()) {
+                iterator.remove();
+            } else if (connection.writeStalledSinceNanos != 0) {
+                if (now - connection.writeStalledSinceNanos > writeTimeoutNanos) {
+                    LOGGER.debug("Closing connection stalled on a response write");
+                    connection.close();
+                    iterator.remove();
+                }
+            } else if (!connection.responses.isEmpty()) {
+                // Requests in progress: the connection is not idle, whatever the client does.
+            } else if (connection.pendingLength > 0) {
+                if (now - connection.phaseDeadlineNanos > 0) {
+                    _sendTimeout(connection);
+                    iterator.remove();
+                }
+            } else if (now - connection.lastActivityNanos > idleTimeoutNanos) {
+                connection.close();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Answers a request that missed its phase deadline with {@code 408 Request Timeout}, on a best
+     * effort basis since the client may not be reading, and closes the connection.
+     */
+    private void _sendTimeout(NioConnection connection) {
+        LOGGER.debug("Closing connection whose request missed its deadline");
+        try {
+            HttpStatusException timeout = new HttpStatusException(HttpStatus.REQUEST_TIMEOUT, "Request not received in time");
+            HttpResponse response = router.error(timeout.getStatus(), timeout);
+            metrics.recordResponse(response.getStatus());
+            metrics.getBytesSent().add(connection.channel.write(responseWriter.encode(response, false)));
+        } catch (IOException e) {
+            LOGGER.debug("Could not send the timeout response", e);
+        }
+        connection.close();
+    }
+
+    private static long _sweepInterval(ConnectionLimits limits) {
+        long shortest = Math.min(Math.min(limits.idleTimeout().toMillis(), limits.requestLineTimeout().toMillis()),
+                Math.min(Math.min(limits.headersTimeout().toMillis(), limits.bodyTimeout().toMillis()),
+                        limits.writeTimeout().toMillis()));
+        return Math.max(MIN_SWEEP_INTERVAL_MILLIS, Math.min(MAX_SWEEP_INTERVAL_MILLIS, shortest / 4));
+    }
+
+    /**
+     * Closes the connections that have neither a partial request, nor requests in progress, nor
+     * unsent responses.
+     *
+     * @return true if no connection is left
+     */
+    private boolean _closeDrainedConnections() {
+        Iterator<NioConnection> iterator = connections.iterator();
+        while (iterator.hasNext()) {
+            NioConnection connection = iterator.next();
+            if (!connection.key.isValid()) {
+                iterator.remove();
+            } else if (connection.pendingLength == 0 && connection.responses.isEmpty() && !connection.hasQueuedWrites()) {
+                connection.close();
+                iterator.remove();
+            }
+        }
+        return connections.isEmpty() && registrations.isEmpty();
+    }
+
+    private void _close(NioConnection connection) {
+        connection.close();
+    }
+}
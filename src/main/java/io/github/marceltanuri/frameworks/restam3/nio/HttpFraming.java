@@ -0,0 +1,376 @@
+package io.github.marceltanuri.frameworks.restam3.nio;
+
+import io.github.marceltanuri.frameworks.restam3.http.ConnectionLimits;
+import io.github.marceltanuri.frameworks.restam3.http.HttpStatus;
+import io.github.marceltanuri.frameworks.restam3.http.HttpStatusException;
+
+import java.io.IOException;
+
+/**
+ * Finds the boundaries of complete HTTP/1.1 request messages in a byte buffer, so the
+ * event loop can parse requests incrementally as bytes arrive from a non-blocking channel.
+ * <p>
+ * Bodies are framed by {@code Content-Length} or by {@code Transfer-Encoding: chunked}, the only
+ * transfer coding supported. Since a message is only dispatched once it is complete, the size
+ * limits are enforced here, as soon as the request line, the head, the declared length or the
+ * chunk sizes received so far exceed them.
+ *
+ * @author Marcel Tanuri
+ */
+final class HttpFraming {
+
+    private static final byte[] CONTENT_LENGTH = "content-length:".getBytes();
+    private static final byte[] TRANSFER_ENCODING = "transfer-encoding:".getBytes();
+    private static final byte[] EXPECT = "expect:".getBytes();
+    private static final byte[] CHUNKED = "chunked".getBytes();
+    private static final byte[] CONTINUE = "100-continue".getBytes();
+
+    /** The request line is not complete yet. */
+    static final int PHASE_REQUEST_LINE = 0;
+    /** The request line was received but the headers are not complete yet. */
+    static final int PHASE_HEADERS = 1;
+    /** The head was received but the body is not complete yet. */
+    static final int PHASE_BODY = 2;
+
+    private HttpFraming() {
+    }
+
+    /**
+     * Computes the length of the first complete request message in the given range.
+     *
+     * @param data        the buffer holding the received bytes
+     * @param start       the offset of the first byte of the message
+     * @param end         the offset after the last received byte
+     * @param limits      the size limits of the connection
+     * @return the total length of the message (head and body), or -1 if it is not complete yet
+     * @throws HttpStatusException if the message exceeds a size limit, with the status to answer
+     * @throws IOException if the body framing is malformed
+     */
+    static int messageLength(byte[] data, int start, int end, ConnectionLimits limits) throws IOException {
+        long maxBodySize = limits.maxBodySize();
+        int headEnd = _findHeadEnd(data, start, end);
+        if (headEnd < 0) {
+            int lineStart = _skipEmptyLines(data, start, end);
+            int lineEnd = _findLineEnd(data, lineStart, end);
+            if ((lineEnd < 0 ? end : lineEnd) - lineStart > limits.maxRequestLineLength()) {
+                throw new HttpStatusException(HttpStatus.URI_TOO_LONG,
+                        "Request line exceeds " + limits.maxRequestLineLength() + " bytes");
+            }
+            if (end - start > limits.maxHeaderSize()) {
+                throw new HttpStatusException(HttpStatus.REQUEST_HEADER_FIELDS_TOO_LARGE,
+                        "Request head exceeds " + limits.maxHeaderSize() + " bytes");
+            }
+            return -1;
+        }
+        _checkHeaderNames(data, start, headEnd);
+        if (_isChunked(data, start, headEnd)) {
+            if (_headerValue(data, start, headEnd, CONTENT_LENGTH) >= 0) {
+                throw new IOException("Both Transfer-Encoding and Content-Length were sent");
+            }
+            int bodyEnd = _chunkedBodyEnd(data, headEnd, end, maxBodySize);
+            return bodyEnd < 0 ? -1 : bodyEnd - start;
+        }
+        long contentLength = _contentLength(data, start, headEnd);
+        if (contentLength > maxBodySize) {
+            throw new HttpStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "Request body of " + contentLength + " bytes exceeds the limit of " + maxBodySize);
+        }
+        long total = (headEnd - start) + contentLength;
+        if (total > Integer.MAX_VALUE) {
+            throw new HttpStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Request body too large");
+        }
+        return end - start >= total ? (int) total : -1;
+    }
+
+    /**
+     * Tells which part of an incomplete message is still being received, so the event loop can
+     * apply the timeout of that phase.
+     *
+     * @param data  the buffer holding the received bytes
+     * @param start the offset of the first byte of the message
+     * @param end   the offset after the last received byte
+     * @return {@link #PHASE_REQUEST_LINE}, {@link #PHASE_HEADERS} or {@link #PHASE_BODY}
+     */
+    static int phase(byte[] data, int start, int end) {
+        if (_findHeadEnd(data, start, end) >= 0) {
+            return PHASE_BODY;
+        }
+        return _findLineEnd(data, _skipEmptyLines(data, start, end), end) < 0 ? PHASE_REQUEST_LINE : PHASE_HEADERS;
+    }
+
+    /**
+     * Tells whether the message starting at {@code start} has a complete head announcing
+     * {@code Expect: 100-continue}, i.e. the client waits for an interim response before sending its body.
+     *
+     * @param data  the buffer holding the received bytes
+     * @param start the offset of the first byte of the message
+     * @param end   the offset after the last received byte
+     * @return true if a {@code 100 Continue} response should be sent
+     */
+    static boolean expectsContinue(byte[] data, int start, int end) {
+        int headEnd = _findHeadEnd(data, start, end);
+        return headEnd >= 0 && headEnd == end && _headerContains(data, start, headEnd, EXPECT, CONTINUE);
+    }
+
+    /**
+     * Walks the chunks of a chunked body.
+     *
+     * @return the offset after the last trailer line, or -1 if the body was not fully received yet
+     */
+    private static int _chunkedBodyEnd(byte[] data, int position, int end, long maxBodySize) throws IOException {
+        long total = 0;
+        while (true) {
+            int lineEnd = _findLineEnd(data, position, end);
+            if (lineEnd < 0) {
+                return -1;
+            }
+            long size = _chunkSize(data, position, lineEnd);
+            position = lineEnd + 2;
+            if (size == 0) {
+                // Trailer fields, if any, end with an empty line.
+                while (true) {
+                    lineEnd = _findLineEnd(data, position, end);
+                    if (lineEnd < 0) {
+                        return -1;
+                    }
+                    boolean empty = lineEnd == position;
+                    position = lineEnd + 2;
+                    if (empty) {
+                        return position;
+                    }
+                }
+            }
+            total += size;
+            if (total > maxBodySize) {
+                throw new HttpStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                        "Chunked request body exceeds the limit of " + maxBodySize + " bytes");
+            }
+            if (end - position < size + 2) {
+                return -1;
+            }
+            position += (int) size;
+            if (data[position] != '\r' || data[position + 1] != '\n') {
+                throw new IOException("Missing CRLF after chunk data");
+            }
+            position += 2;
+        }
+    }
+
+    private static long _chunkSize(byte[] data, int start, int lineEnd) throws IOException {
+        long size = 0;
+        int digits = 0;
+        for (int p = start; p < lineEnd && data[p] != ';'; p++) {
+            int digit = Character.digit(data[p], 16);
+            if (digit < 0) {
+                if (data[p] == ' ' || data[p] == '\t') {
+                    continue;
+                }
+                throw new IOException("Invalid chunk size");
+            }
+            if (++digits > 15) {
+                throw new IOException("Invalid chunk size");
+            }
+            size = size * 16 + digit;
+        }
+        if (digits == 0) {
+            throw new IOException("Invalid chunk size");
+        }
+        return size;
+    }
+
+    /**
+     * Rejects header names holding control characters, such as a bare CR, which would let this
+     * framer and {@link io.github.marceltanuri.frameworks.restam3.http.HttpRequestParser} disagree
+     * on where a header starts.
+     */
+    private static void _checkHeaderNames(byte[] data, int start, int headEnd) throws IOException {
+        int p = _findLineEnd(data, _skipEmptyLines(data, start, headEnd), headEnd) + 2;
+        while (p < headEnd - 2) {
+            for (; p < headEnd && data[p] != ':'; p++) {
+                if (data[p] == '\r' && data[p + 1] == '\n') {
+                    break; // no colon: left to the parser
+                }
+                if ((data[p] & 0xFF) < 0x20 || data[p] == 0x7F) {
+                    throw new IOException("Invalid character in header name");
+                }
+            }
+            p = _findLineEnd(data, p, headEnd) + 2;
+        }
+    }
+
+    private static int _skipEmptyLines(byte[] data, int start, int end) {
+        while (start + 1 < end && data[start] == '\r' && data[start + 1] == '\n') {
+            start += 2;
+        }
+        return start;
+    }
+
+    /**
+     * Finds the CR of the first CRLF in the range.
+     *
+     * @return the offset of the CR, or -1 if no complete line was received yet
+     */
+    private static int _findLineEnd(byte[] data, int start, int end) {
+        for (int i = start; i < end - 1; i++) {
+            if (data[i] == '\r' && data[i + 1] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the end of the head ({@code CRLF CRLF}).
+     *
+     * @return the offset right after the blank line, or -1 if it was not received yet
+     */
+    private static int _findHeadEnd(byte[] data, int start, int end) {
+        for (int i = start + 3; i < end; i++) {
+            if (data[i] == '\n' && data[i - 1] == '\r' && data[i - 2] == '\n' && data[i - 3] == '\r') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the codings of the Transfer-Encoding header lines, with the same outcome as
+     * {@link io.github.marceltanuri.frameworks.restam3.http.HttpRequestParser}: only {@code chunked}
+     * alone is accepted, since a body whose final coding is another one cannot be delimited.
+     *
+     * @return whether the body is chunked, false if there is no Transfer-Encoding header
+     */
+    private static boolean _isChunked(byte[] data, int start, int headEnd) throws IOException {
+        boolean present = false;
+        boolean chunked = false; // whether the last coding so far is chunked
+        int codings = 0;
+        int p = _headerValue(data, start, headEnd, TRANSFER_ENCODING);
+        while (p >= 0) {
+            present = true;
+            while (data[p] != '\r') {
+                int elementEnd = p;
+                while (data[elementEnd] != ',' && data[elementEnd] != '\r') {
+                    elementEnd++;
+                }
+                int to = elementEnd;
+                while (to > p && (data[to - 1] == ' ' || data[to - 1] == '\t')) {
+                    to--;
+                }
+                if (to > p) {
+                    codings++;
+                    chunked = to - p == CHUNKED.length && _matchesIgnoreCase(data, p, to, CHUNKED);
+                }
+                p = data[elementEnd] == ',' ? _skipBlanks(data, elementEnd + 1, headEnd) : elementEnd;
+            }
+            p = _headerValue(data, p, headEnd, TRANSFER_ENCODING);
+        }
+        if (!present) {
+            return false;
+        }
+        if (!chunked) {
+            throw new IOException("Transfer-Encoding without chunked as the final coding");
+        }
+        if (codings > 1) {
+            throw new HttpStatusException(HttpStatus.NOT_IMPLEMENTED, "Unsupported transfer coding");
+        }
+        return true;
+    }
+
+    /**
+     * Reads the value of the Content-Length header (matched case-insensitively) from the head.
+     * As in {@link io.github.marceltanuri.frameworks.restam3.http.HttpHeaders#getLong(String)}, a
+     * repeated header or a list of different values is rejected, since another server could pick
+     * another length and take the rest of the body for a further request.
+     *
+     * @return the declared body length, or 0 if the header is absent
+     */
+    private static long _contentLength(byte[] data, int start, int headEnd) throws IOException {
+        int p = _headerValue(data, start, headEnd, CONTENT_LENGTH);
+        if (p < 0) {
+            return 0;
+        }
+        if (_headerValue(data, p, headEnd, CONTENT_LENGTH) >= 0) {
+            throw new IOException("Repeated Content-Length header");
+        }
+        long value = -1;
+        while (true) {
+            long element = 0;
+            int digits = 0;
+            while (p < headEnd && data[p] >= '0' && data[p] <= '9') {
+                element = element * 10 + (data[p++] - '0');
+                if (++digits > 18) {
+                    throw new IOException("Invalid Content-Length");
+                }
+            }
+            if (digits == 0) {
+                throw new IOException("Invalid Content-Length");
+            }
+            if (value >= 0 && element != value) {
+                throw new IOException("Conflicting Content-Length values");
+            }
+            value = element;
+            p = _skipBlanks(data, p, headEnd);
+            if (p == headEnd || data[p] != ',') {
+                break;
+            }
+            p = _skipBlanks(data, p + 1, headEnd);
+        }
+        if (p == headEnd || data[p] != '\r') {
+            throw new IOException("Invalid Content-Length");
+        }
+        return value;
+    }
+
+    private static int _skipBlanks(byte[] data, int p, int end) {
+        while (p < end && (data[p] == ' ' || data[p] == '\t')) {
+            p++;
+        }
+        return p;
+    }
+
+    /**
+     * Finds the value of a header (name matched case-insensitively, including the colon) at the
+     * start of a line, after a CRLF as the parser splits them.
+     *
+     * @return the offset of the first non-blank byte of the value, or -1 if the header is absent
+     */
+    private static int _headerValue(byte[] data, int start, int headEnd, byte[] lowerCaseName) {
+        for (int i = start + 1; i < headEnd; i++) {
+            if (data[i] != '\n' || data[i - 1] != '\r' || !_matchesIgnoreCase(data, i + 1, headEnd, lowerCaseName)) {
+                continue;
+            }
+            return _skipBlanks(data, i + 1 + lowerCaseName.length, headEnd);
+        }
+        return -1;
+    }
+
+    /**
+     * Tells whether the value of a header contains the given lower-case token, ignoring case.
+     */
+    private static boolean _headerContains(byte[] data, int start, int headEnd, byte[] lowerCaseName, byte[] token) {
+        int p = _headerValue(data, start, headEnd, lowerCaseName);
+        if (p < 0) {
+            return false;
+        }
+        for (; p < headEnd && data[p] != '\r'; p++) {
+            if (_matchesIgnoreCase(data, p, headEnd, token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean _matchesIgnoreCase(byte[] data, int offset, int limit, byte[] lowerCaseName) {
+        if (limit - offset < lowerCaseName.length) {
+            return false;
+        }
+        for (int i = 0; i < lowerCaseName.length; i++) {
+            int c = data[offset + i];
+            // Only letters are folded: (c | 0x20) would also turn CR into '-' and 0x1A into ':'.
+            if ((c >= 'A' && c <= 'Z' ? c + 32 : c) != lowerCaseName[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,157 @@
+package io.github.marceltanuri.frameworks.restam3.nio;
+
+import io.github.marceltanuri.frameworks.restam3.metrics.ServerMetrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Per-connection state owned by a single {@link EventLoop}: the bytes of a partially received
+ * request, the responses to the requests in progress, in the order the requests arrived, and the
+ * response bytes that could not be written yet. It also keeps the open-connection gauge and the
+ * sent-bytes counter of the server metrics up to date.
+ *
+ * @author Marcel Tanuri
+ */
+final class NioConnection {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    final SocketChannel channel;
+    final SelectionKey key;
+    private final ServerMetrics metrics;
+
+    byte[] pending = EMPTY;
+    int pendingLength;
+    int served;
+    long lastActivityNanos;
+    boolean closeAfterFlush;
+    /** Whether complete requests were left in {@link #pending} because too many are in progress. */
+    boolean parsePaused;
+    /** The phase of the partially received request (see {@link HttpFraming#phase}), or -1. */
+    int phase = -1;
+    long phaseDeadlineNanos;
+    /** When the queued response bytes last made progress, or 0 if nothing is queued. */
+    long writeStalledSinceNanos;
+    /** The responses to the requests in progress, in the order the requests arrived. */
+    final ArrayDeque<PendingResponse> responses = new ArrayDeque<>();
+    /** Whether the connection is already waiting for the loop to send the bytes of its responses. */
+    final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final ArrayDeque<ByteBuffer> writeQueue = new ArrayDeque<>();
+
+    NioConnection(SocketChannel channel, SelectionKey key, ServerMetrics metrics) {
+        this.channel = channel;
+        this.key = key;
+        this.metrics = metrics;
+        this.lastActivityNanos = System.nanoTime();
+        metrics.getOpenConnections().increment();
+    }
+
+    /**
+     * Appends freshly read bytes after the partial request kept from previous reads.
+     */
+    void append(byte[] data, int offset, int length) {
+        _ensureCapacity(pendingLength + length);
+        System.arraycopy(data, offset, pending, pendingLength, length);
+        pendingLength += length;
+    }
+
+    /**
+     * Keeps the bytes of an incomplete request (if any) for the next read.
+     */
+    void retain(byte[] data, int offset, int end) {
+        int remaining = end - offset;
+        if (remaining == 0) {
+            pendingLength = 0;
+            if (pending.length > EventLoop.READ_BUFFER_SIZE) {
+                pending = EMPTY; // do not hold on to buffers grown for one large request
+            }
+            return;
+        }
+        if (data != pending) {
+            _ensureCapacity(remaining);
+        }
+        System.arraycopy(data, offset, pending, 0, remaining);
+        pendingLength = remaining;
+    }
+
+    /**
+     * Writes the buffers with a single gathering write and queues whatever the socket did not accept.
+     *
+     * @return true if everything was written
+     */
+    boolean write(ByteBuffer[] buffers) throws IOException {
+        if (writeQueue.isEmpty()) {
+            metrics.getBytesSent().add(channel.write(buffers));
+        }
+        boolean drained = true;
+        for (ByteBuffer buffer : buffers) {
+            if (buffer.hasRemaining()) {
+                writeQueue.add(buffer);
+                drained = false;
+            }
+        }
+        if (!drained && writeStalledSinceNanos == 0) {
+            writeStalledSinceNanos = System.nanoTime();
+        }
+        return drained;
+    }
+
+    /**
+     * Writes queued response bytes.
+     *
+     * @return true if the queue was fully drained
+     */
+    boolean flushQueue() throws IOException {
+        while (!writeQueue.isEmpty()) {
+            ByteBuffer head = writeQueue.peek();
+            int written = channel.write(head);
+            if (written > 0) {
+                metrics.getBytesSent().add(written);
+                writeStalledSinceNanos = System.nanoTime();
+            }
+            if (head.hasRemaining()) {
+                return false;
+            }
+            writeQueue.poll();
+        }
+        writeStalledSinceNanos = 0;
+        return true;
+    }
+
+    boolean hasQueuedWrites() {
+        return !writeQueue.isEmpty();
+    }
+
+    /**
+     * Discards the responses still in progress, whose requests will not be answered.
+     */
+    void abortResponses() {
+        responses.forEach(PendingResponse::abort);
+        responses.clear();
+    }
+
+    void close() {
+        if (channel.isOpen()) {
+            metrics.getOpenConnections().decrement();
+        }
+        abortResponses();
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void _ensureCapacity(int capacity) {
+        if (pending.length < capacity) {
+            pending = Arrays.copyOf(pending, Math.max(capacity, pending.length * 2));
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package io.github.marceltanuri.frameworks.restam3.nio;
+
+import io.github.marceltanuri.frameworks.restam3.AdmissionController;
+import io.github.marceltanuri.frameworks.restam3.Router;
+import io.github.marceltanuri.frameworks.restam3.TransportServer;
+import io.github.marceltanuri.frameworks.restam3.http.ConnectionLimits;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Selector-based transport: an acceptor hands new connections to a fixed number of
+ * {@link EventLoop}s in round-robin order, and each loop serves all of its connections
+ * with non-blocking reads and writes on a single platform thread. Requests are handled by the
+ * controllers on Virtual Threads, off the loops.
+ * <p>
+ * On {@link #stop(Duration)}, the acceptor stops and every loop drains its connections, waiting
+ * for the requests in progress.
+ *
+ * @author Marcel Tanuri
+ */
+public final class NioServer implements TransportServer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NioServer.class);
+
+    private final Router router;
+    private final int eventLoopCount;
+    private final int maxRequestsPerConnection;
+    private final ConnectionLimits limits;
+    private final AdmissionController admission;
+    private ServerSocketChannel serverChannel;
+    private ExecutorService workers;
+    private EventLoop[] loops;
+    private Thread[] loopThreads;
+    private Thread acceptor;
+    private volatile boolean draining;
+
+    /**
+     * Creates a new NIO transport.
+     *
+     * @param router                   the router requests are dispatched to
+     * @param eventLoopCount           the number of event loop threads
+     * @param maxRequestsPerConnection the maximum number of requests served per connection
+     * @param limits                   the size limits and timeouts enforced on each connection
+     * @param admission                the admission controller bounding concurrent requests, or null for no limit
+     */
+    public NioServer(Router router, int eventLoopCount, int maxRequestsPerConnection, ConnectionLimits limits,
+                     AdmissionController admission) {
+        this.router = router;
+        this.eventLoopCount = eventLoopCount;
+        this.maxRequestsPerConnection = maxRequestsPerConnection;
+        this.limits = limits;
+        this.admission = admission;
+    }
+
+    @Override
+    public int start(int port, int backlog) throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), backlog);
+
+        workers = Executors.newVirtualThreadPerTaskExecutor();
+        loops = new EventLoop[eventLoopCount];
+        loopThreads = new Thread[eventLoopCount];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop(router, maxRequestsPerConnection, limits, admission, workers);
+            loopThreads[i] = Thread.ofPlatform().name("restam3-event-loop-" + i).start(loops[i]);
+        }
+        acceptor = Thread.ofPlatform().name("restam3-acceptor").start(this::_acceptLoop);
+        int boundPort = ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        LOGGER.info("Server started on port {} with {} event loop(s)", boundPort, loops.length);
+        return boundPort;
+    }
+
+    @Override
+    public boolean stop(Duration grace) throws InterruptedException {
+        long deadline = System.nanoTime() + grace.toNanos();
+        draining = true;
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            LOGGER.debug("Error closing server channel", e);
+        }
+        acceptor.join();
+
+        for (EventLoop loop : loops) {
+            loop.drain();
+        }
+        boolean drained = true;
+        for (Thread loopThread : loopThreads) {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis > 0) {
+                loopThread.join(remainingMillis);
+            }
+            if (loopThread.isAlive()) {
+                drained = false;
+                loopThread.interrupt(); // the loop closes its remaining connections as it exits
+                loopThread.join();
+            }
+        }
+        if (!drained) {
+            LOGGER.warn("Closed connections still busy after the grace period");
+        }
+        // Requests of closed connections may still be running; their responses are discarded.
+        workers.shutdownNow();
+        workers.awaitTermination(1, TimeUnit.SECONDS);
+        LOGGER.info("Server stopped");
+        return drained;
+    }
+
+    @Override
+    public boolean isAlive() {
+        if (acceptor == null || !acceptor.isAlive()) {
+            return false;
+        }
+        for (Thread loopThread : loopThreads) {
+            if (!loopThread.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void _acceptLoop() {
+        int next = 0;
+        while (!draining) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                LOGGER.debug("New client connected");
+                loops[next].register(channel);
+                next = (next + 1) % loops.length;
+            } catch (IOException e) {
+                if (!draining) {
+                    LOGGER.error("Error accepting connection", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package io.github.marceltanuri.frameworks.restam3.nio;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The response to one request of a connection, produced by a worker thread while the
+ * {@link EventLoop} sends the responses of the connection in the order their requests arrived.
+ * <p>
+ * The worker adds the bytes of the response as it produces them, and waits while more than
+ * {@value #MAX_BUFFERED_BYTES} bytes are waiting for the loop, so that a streamed body is never
+ * held in memory whole. The loop takes the bytes once the responses before this one are sent and
+ * the socket accepts more. If the connection is closed first, the next write of the worker fails.
+ *
+ * @author Marcel Tanuri
+ */
+final class PendingResponse {
+
+    static final int MAX_BUFFERED_BYTES = 64 * 1024;
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private final Runnable onReady;
+    // Not a monitor: the workers are Virtual Threads, which would pin their carrier while waiting.
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition taken = lock.newCondition();
+    private final ArrayDeque<ByteBuffer> buffers = new ArrayDeque<>();
+    private long bufferedBytes;
+    private boolean complete;
+    private boolean closeConnection;
+    private boolean aborted;
+
+    /**
+     * Creates a response still to be produced.
+     *
+     * @param onReady called, from the worker thread, whenever bytes are added or the response completes
+     */
+    PendingResponse(Runnable onReady) {
+        this.onReady = onReady;
+    }
+
+    /**
+     * Creates a response already produced by the loop itself, such as an error or an interim response.
+     */
+    static PendingResponse completed(ByteBuffer... buffers) {
+        PendingResponse response = new PendingResponse(() -> { });
+        for (ByteBuffer buffer : buffers) {
+            if (buffer.hasRemaining()) {
+                response.buffers.add(buffer);
+            }
+        }
+        response.complete = true;
+        return response;
+    }
+
+    /**
+     * Adds bytes of the response, waiting while too many added bytes have not been taken yet.
+     *
+     * @param buffer the bytes, which must no longer be modified
+     * @throws IOException if the connection was closed
+     */
+    void add(ByteBuffer buffer) throws IOException {
+        lock.lock();
+        try {
+            while (bufferedBytes >= MAX_BUFFERED_BYTES && !aborted) {
+                taken.await();
+            }
+            if (aborted) {
+                throw new IOException("Connection closed");
+            }
+            buffers.add(buffer);
+            bufferedBytes += buffer.remaining();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the connection");
+        } finally {
+            lock.unlock();
+        }
+        onReady.run();
+    }
+
+    /**
+     * Marks the response as fully produced.
+     *
+     * @param closeConnection whether the connection must be closed once the response is sent
+     */
+    void complete(boolean closeConnection) {
+        lock.lock();
+        try {
+            this.complete = true;
+            this.closeConnection = closeConnection;
+        } finally {
+            lock.unlock();
+        }
+        onReady.run();
+    }
+
+    /**
+     * Moves the bytes added so far to a list, for the loop to write.
+     *
+     * @param out the list receiving the bytes
+     * @return true if the response is complete and nothing more will be added
+     */
+    boolean takeInto(List<ByteBuffer> out) {
+        lock.lock();
+        try {
+            out.addAll(buffers);
+            buffers.clear();
+            bufferedBytes = 0;
+            taken.signalAll();
+            return complete;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Tells whether the connection must be closed after this response, once it is complete.
+     */
+    boolean closesConnection() {
+        lock.lock();
+        try {
+            return closeConnection;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Discards the response because the connection is closed, failing the worker's next write.
+     */
+    void abort() {
+        lock.lock();
+        try {
+            aborted = true;
+            buffers.clear();
+            bufferedBytes = 0;
+            taken.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Opens a stream adding what is written to it to the response in chunks of up to
+     * {@value #CHUNK_SIZE} bytes, and on each flush.
+     *
+     * @return the stream, for the worker producing the response
+     */
+    OutputStream output() {
+        return new OutputStream() {
+            private byte[] chunk = new byte[CHUNK_SIZE];
+            private int count;
+
+            @Override
+            public void write(int b) throws IOException {
+                if (count == chunk.length) {
+                    flush();
+                }
+                chunk[count++] = (byte) b;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                while (len > 0) {
+                    if (count == chunk.length) {
+                        flush();
+                    }
+                    int length = Math.min(len, chunk.length - count);
+                    System.arraycopy(b, off, chunk, count, length);
+                    count += length;
+                    off += length;
+                    len -= length;
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (count > 0) {
+                    // Hand the chunk over instead of copying it; the next bytes go to a new one.
+                    add(ByteBuffer.wrap(chunk, 0, count));
+                    chunk = new byte[CHUNK_SIZE];
+                    count = 0;
+                }
+            }
+        };
+    }
+}